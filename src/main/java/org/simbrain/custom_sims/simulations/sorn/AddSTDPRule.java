@@ -31,6 +31,12 @@ public class AddSTDPRule extends STDPRule {
         return duplicateSynapse;
     }
 
+    @Override
+    public boolean isEventDriven() {
+        // Remembers whether neurons spiked on the previous step
+        return false;
+    }
+
     @Override
     public void update(Synapse synapse) {
         boolean ss = synapse.getSource().isSpike();
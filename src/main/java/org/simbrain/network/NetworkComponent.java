@@ -139,12 +139,21 @@ public final class NetworkComponent extends WorkspaceComponent {
     }
 
     /**
-     * Get Xstream with custom converters
+     * Get Xstream with custom converters. Configured once and shared, since creating an XStream is expensive.
      */
     private static XStream getNetworkXStream() {
-        XStream xstream = Utils.getSimbrainXStream();
-        xstream.registerConverter(new Network.NetworkModelListConverter());
-        return xstream;
+        return XStreamHolder.XSTREAM;
+    }
+
+    /**
+     * Lazily creates the shared network XStream.
+     */
+    private static class XStreamHolder {
+        private static final XStream XSTREAM = Utils.getSimbrainXStream();
+
+        static {
+            XSTREAM.registerConverter(new Network.NetworkModelListConverter());
+        }
     }
 
     /**
@@ -0,0 +1,174 @@
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.network.connections;
+
+import org.simbrain.network.core.Neuron;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Buckets neurons into a uniform grid of cubic cells so that the neurons near a point can be found without checking
+ * every neuron. Used by the distance based connection strategies, which would otherwise consider every source / target
+ * pair.
+ * <p>
+ * {@link #getCandidates} returns every neuron that might be within a radius, in the order of the list the grid was
+ * built from. Callers apply their own exact distance test. The grid is not updated when neurons move, so it should
+ * only be used while making a set of connections.
+ */
+class NeuronGrid {
+
+    /**
+     * Neurons in the grid, in their original order.
+     */
+    private final List<Neuron> neurons;
+
+    /**
+     * Width of a cell along each axis.
+     */
+    private final double cellSize;
+
+    /**
+     * If false, z coordinates are ignored, and every neuron is treated as if it were in the z = 0 plane.
+     */
+    private final boolean useZ;
+
+    /**
+     * Indices (into {@link #neurons}) of the neurons in each occupied cell, in increasing order.
+     */
+    private final Map<Cell, int[]> cells = new HashMap<>();
+
+    /**
+     * Create a grid.
+     *
+     * @param neurons  the neurons to index
+     * @param cellSize width of a cell. Usually the radius of the queries that will be made.
+     * @param useZ     whether to use z coordinates. Pass false for strategies that measure distance in the plane.
+     */
+    NeuronGrid(List<Neuron> neurons, double cellSize, boolean useZ) {
+        this.neurons = neurons;
+        this.cellSize = cellSize > 0 && Double.isFinite(cellSize) ? cellSize : Double.MAX_VALUE;
+        this.useZ = useZ;
+        Map<Cell, List<Integer>> lists = new HashMap<>();
+        for (int i = 0; i < neurons.size(); i++) {
+            lists.computeIfAbsent(cellOf(neurons.get(i)), k -> new ArrayList<>()).add(i);
+        }
+        lists.forEach((cell, list) -> cells.put(cell, list.stream().mapToInt(Integer::intValue).toArray()));
+    }
+
+    /**
+     * Returns the neurons that may be within a radius of a neuron, in their original order. The neuron itself is
+     * included if it is in the grid.
+     *
+     * @param center the neuron at the center of the search
+     * @param radius the search radius
+     * @return the candidate neurons
+     */
+    List<Neuron> getCandidates(Neuron center, double radius) {
+        int span = (int) Math.min(Math.ceil(radius / cellSize), Integer.MAX_VALUE / 4);
+        Cell c = cellOf(center);
+        int zSpan = useZ ? span : 0;
+        double rangeCells = Math.pow(2.0 * span + 1, 2) * (2.0 * zSpan + 1);
+
+        List<int[]> found = new ArrayList<>();
+        if (rangeCells > cells.size()) {
+            // Cheaper to look at every occupied cell than every cell in range
+            for (Map.Entry<Cell, int[]> entry : cells.entrySet()) {
+                Cell other = entry.getKey();
+                if (Math.abs((long) other.x - c.x) <= span && Math.abs((long) other.y - c.y) <= span
+                        && Math.abs((long) other.z - c.z) <= zSpan) {
+                    found.add(entry.getValue());
+                }
+            }
+        } else {
+            for (int x = c.x - span; x <= c.x + span; x++) {
+                for (int y = c.y - span; y <= c.y + span; y++) {
+                    for (int z = c.z - zSpan; z <= c.z + zSpan; z++) {
+                        int[] indices = cells.get(new Cell(x, y, z));
+                        if (indices != null) {
+                            found.add(indices);
+                        }
+                    }
+                }
+            }
+        }
+
+        int count = found.stream().mapToInt(indices -> indices.length).sum();
+        int[] all = new int[count];
+        int k = 0;
+        for (int[] indices : found) {
+            System.arraycopy(indices, 0, all, k, indices.length);
+            k += indices.length;
+        }
+        Arrays.sort(all);
+        List<Neuron> ret = new ArrayList<>(count);
+        for (int i : all) {
+            ret.add(neurons.get(i));
+        }
+        return ret;
+    }
+
+    private Cell cellOf(Neuron neuron) {
+        return new Cell(index(neuron.getX()), index(neuron.getY()), useZ ? index(neuron.getZ()) : 0);
+    }
+
+    private int index(double coordinate) {
+        double i = Math.floor(coordinate / cellSize);
+        // Clamp so that spans around extreme cells cannot overflow
+        return (int) Math.max(-(Integer.MAX_VALUE / 4), Math.min(Integer.MAX_VALUE / 4, i));
+    }
+
+    /**
+     * Integer coordinates of a cell.
+     */
+    private static final class Cell {
+
+        final int x;
+
+        final int y;
+
+        final int z;
+
+        Cell(int x, int y, int z) {
+            this.x = x;
+            this.y = y;
+            this.z = z;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Cell)) {
+                return false;
+            }
+            Cell other = (Cell) o;
+            return x == other.x && y == other.y && z == other.z;
+        }
+
+        @Override
+        public int hashCode() {
+            return (x * 31 + y) * 31 + z;
+        }
+    }
+}
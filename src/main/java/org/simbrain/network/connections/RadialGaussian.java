@@ -28,7 +28,6 @@ import org.simbrain.util.propertyeditor.EditableObject;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.*;
 
@@ -63,6 +62,9 @@ import java.util.concurrent.*;
  * <p>
  * Lambda is roughly the average distance in pixels of connections that will be made.
  * <p>
+ * Pairs of neurons far enough apart that their connection probability is below
+ * {@link #MIN_CONNECT_PROB} are never considered. Target neurons are bucketed in a
+ * {@link NeuronGrid} so that only nearby pairs are visited.
  *
  * @author Zoë Tosi
  */
@@ -83,6 +85,12 @@ public class RadialGaussian extends ConnectionStrategy implements EditableObject
 
     public static final double DEFAULT_LAMBDA = 200;
 
+    /**
+     * Connection probabilities below this are treated as zero, which bounds the
+     * distance at which connections are considered.
+     */
+    public static final double MIN_CONNECT_PROB = 1E-9;
+
     // TODO: Add a sparsity constraint, such that connections are still chosen stochastically
     // based on distance, but a specific number of connections are guaranteed to be made.
 
@@ -154,33 +162,18 @@ public class RadialGaussian extends ConnectionStrategy implements EditableObject
      * @return synapses
      */
     public static List<Synapse> connectRadialPolarized(final List<Neuron> source, final List<Neuron> target, double eeDistConst, double eiDistConst, double ieDistConst, double iiDistConst, double distConst, double lambda, boolean loose) {
-        // Pre-allocating assuming that if one is using this as a connector
-        // then they are probably not going to have greater than 25%
-        // connectivity
-        List<Synapse> synapses = new ArrayList<Synapse>(source.size() * target.size() / 4);
+        double cutoff = getCutoffRadius(lambda, eeDistConst, eiDistConst, ieDistConst, iiDistConst, distConst);
+        double cutoffSq = cutoff * cutoff;
+        NeuronGrid grid = new NeuronGrid(target, cutoff, true);
+        List<Synapse> synapses = new ArrayList<Synapse>();
         for (Neuron src : source) {
-            for (Neuron tar : target) {
-                double randVal = Math.random();
-                double probability;
-                if (src.getPolarity() == Polarity.EXCITATORY) {
-                    if (tar.getPolarity() == Polarity.EXCITATORY) {
-                        probability = calcConnectProb(src, tar, eeDistConst, lambda);
-                    } else if (tar.getPolarity() == Polarity.INHIBITORY) {
-                        probability = calcConnectProb(src, tar, eiDistConst, lambda);
-                    } else {
-                        probability = calcConnectProb(src, tar, distConst, lambda);
-                    }
-                } else if (src.getPolarity() == Polarity.INHIBITORY) {
-                    if (tar.getPolarity() == Polarity.EXCITATORY) {
-                        probability = calcConnectProb(src, tar, ieDistConst, lambda);
-                    } else if (tar.getPolarity() == Polarity.INHIBITORY) {
-                        probability = calcConnectProb(src, tar, iiDistConst, lambda);
-                    } else {
-                        probability = calcConnectProb(src, tar, distConst, lambda);
-                    }
-                } else {
-                    probability = calcConnectProb(src, tar, distConst, lambda);
+            for (Neuron tar : grid.getCandidates(src, cutoff)) {
+                if (getRawDist(src, tar) >= cutoffSq) {
+                    continue;
                 }
+                double randVal = Math.random();
+                double probability = calcConnectProb(src, tar, eeDistConst, eiDistConst, ieDistConst,
+                        iiDistConst, distConst, lambda);
                 if (randVal < probability) {
                     Synapse s = new Synapse(src, tar);
                     if(src.getPolarity() == Polarity.INHIBITORY) {
@@ -208,12 +201,15 @@ public class RadialGaussian extends ConnectionStrategy implements EditableObject
      * @return array of synapses
      */
     public static List<Synapse> connectRadialNoPolarity(final List<Neuron> source, final List<Neuron> target, double distConst, double lambda, boolean loose) {
-        // Pre-allocating assuming that if one is using this as a connector
-        // then they are probably not going to have greater than 25%
-        // connectivity
-        List<Synapse> synapses = new ArrayList<Synapse>(source.size() * target.size() / 4);
+        double cutoff = getCutoffRadius(lambda, distConst);
+        double cutoffSq = cutoff * cutoff;
+        NeuronGrid grid = new NeuronGrid(target, cutoff, true);
+        List<Synapse> synapses = new ArrayList<Synapse>();
         for (Neuron src : source) {
-            for (Neuron tar : target) {
+            for (Neuron tar : grid.getCandidates(src, cutoff)) {
+                if (getRawDist(src, tar) >= cutoffSq) {
+                    continue;
+                }
                 double randVal = Math.random();
                 double probability = calcConnectProb(src, tar, distConst, lambda);
                 if (randVal < probability) {
@@ -294,50 +290,33 @@ public class RadialGaussian extends ConnectionStrategy implements EditableObject
         synGroup.setConnectionManager(this);
         List<Neuron> source = synGroup.getSourceNeurons();
         List<Neuron> target = synGroup.getTargetNeurons();
-        List<Synapse> synapses;
         if (source.size() < 500) {
-            synapses = connectRadialPolarized(source, target, eeDistConst, eiDistConst, ieDistConst, iiDistConst, distConst, lambda, false);
+            List<Synapse> synapses = connectRadialPolarized(source, target, eeDistConst, eiDistConst, ieDistConst, iiDistConst, distConst, lambda, false);
             for (Synapse s : synapses) {
                 synGroup.addNewSynapse(s);
             }
         } else {
+            double cutoff = getCutoffRadius(lambda, eeDistConst, eiDistConst, ieDistConst, iiDistConst, distConst);
+            NeuronGrid grid = new NeuronGrid(target, cutoff, true);
             List<Callable<Collection<Synapse>>> workers = new ArrayList<Callable<Collection<Synapse>>>();
             int threads = Runtime.getRuntime().availableProcessors();
-            int idealShare = (int) Math.floor(source.size() / threads);
-            int remaining = source.size();
-            Iterator<Neuron> srcIter = source.iterator();
-            List<Neuron> srcChunk;
+            int share = (int) Math.ceil((double) source.size() / threads);
+            for (int i = 0; i < source.size(); i += share) {
+                List<Neuron> srcChunk = source.subList(i, Math.min(source.size(), i + share));
+                workers.add(new ConnectorService(srcChunk, grid, cutoff, false));
+            }
             double runningPercentEx = 0;
-            for (int i = 0; i < threads; i++) {
-                srcChunk = new ArrayList<Neuron>((int) Math.ceil((idealShare * 2) / 0.75));
-                int share;
-                if (remaining < idealShare * 2) {
-                    share = remaining;
-                } else {
-                    share = idealShare;
+            for (Neuron n : source) {
+                if (n.isPolarized() && Polarity.EXCITATORY == n.getPolarity()) {
+                    runningPercentEx++;
                 }
-                int j = 0;
-                while (j < share) {
-                    Neuron n = srcIter.next();
-                    srcChunk.add(n);
-                    if (n.isPolarized()) {
-                        if (Polarity.EXCITATORY == n.getPolarity()) {
-                            runningPercentEx++;
-                        }
-                    }
-                    j++;
-                }
-                remaining -= j;
-                workers.add(new ConnectorService(srcChunk, target, false));
             }
             runningPercentEx /= source.size();
             synGroup.setExcitatoryRatio(runningPercentEx);
-            ExecutorService ex = Executors.newFixedThreadPool(threads);
+            ExecutorService ex = ForkJoinPool.commonPool();
             List<Future<Collection<Synapse>>> generatedSyns;
             try {
                 generatedSyns = ex.invokeAll(workers);
-                ex.shutdown();
-                ex.awaitTermination(Long.MAX_VALUE, TimeUnit.SECONDS);
             } catch (InterruptedException e) {
                 e.printStackTrace();
                 return;
@@ -361,16 +340,54 @@ public class RadialGaussian extends ConnectionStrategy implements EditableObject
                 }
             }
         }
+    }
 
-//        if (synGroup.isRecurrent()) {
-//            connectionDensity = (double) synGroup.size() / (synGroup.getSourceNeuronGroup().size() * (synGroup.getSourceNeuronGroup().size() - 1));
-//        } else {
-//            connectionDensity = (double) synGroup.size() / (synGroup.getSourceNeuronGroup().size() * synGroup.getTargetNeuronGroup().size());
-//        }
-        source = null;
-        target = null;
-        synapses = null;
-        Runtime.getRuntime().gc();
+    /**
+     * Returns the distance beyond which the connection probability is below
+     * {@link #MIN_CONNECT_PROB} for all of the given connection constants.
+     *
+     * @param lambda    average connection distance.
+     * @param constants the connection constants in use
+     * @return the cutoff distance
+     */
+    static double getCutoffRadius(double lambda, double... constants) {
+        double maxConst = 0;
+        for (double c : constants) {
+            maxConst = Math.max(maxConst, c);
+        }
+        if (maxConst <= MIN_CONNECT_PROB) {
+            return 0;
+        }
+        return lambda * Math.sqrt(Math.log(maxConst / MIN_CONNECT_PROB));
+    }
+
+    /**
+     * @param src         the source neuron.
+     * @param tar         the target neuron.
+     * @param eeDistConst exc. to exc. connection constant.
+     * @param eiDistConst exc. to inh. connection constant.
+     * @param ieDistConst inh. to exc. connection constant.
+     * @param iiDistConst inh. to inh. connection constant.
+     * @param distConst   connection constant when either neuron has no polarity.
+     * @param lambda      average connection distance.
+     * @return the probability of connecting src to tar
+     */
+    private static double calcConnectProb(Neuron src, Neuron tar, double eeDistConst, double eiDistConst,
+                                          double ieDistConst, double iiDistConst, double distConst, double lambda) {
+        if (src.getPolarity() == Polarity.EXCITATORY) {
+            if (tar.getPolarity() == Polarity.EXCITATORY) {
+                return calcConnectProb(src, tar, eeDistConst, lambda);
+            } else if (tar.getPolarity() == Polarity.INHIBITORY) {
+                return calcConnectProb(src, tar, eiDistConst, lambda);
+            }
+        } else if (src.getPolarity() == Polarity.INHIBITORY) {
+            if (tar.getPolarity() == Polarity.EXCITATORY) {
+                return calcConnectProb(src, tar, ieDistConst, lambda);
+            } else if (tar.getPolarity() == Polarity.INHIBITORY) {
+                return calcConnectProb(src, tar, iiDistConst, lambda);
+            }
+        }
+        return calcConnectProb(src, tar, distConst, lambda);
     }
 
     /**
@@ -463,13 +480,17 @@ public class RadialGaussian extends ConnectionStrategy implements EditableObject
 
         private final Collection<Neuron> srcColl;
 
-        private final Collection<Neuron> targColl;
+        private final NeuronGrid targetGrid;
+
+        private final double cutoff;
 
         private final boolean loose;
 
-        public ConnectorService(final Collection<Neuron> srcColl, final Collection<Neuron> targColl, final boolean loose) {
+        public ConnectorService(final Collection<Neuron> srcColl, final NeuronGrid targetGrid, final double cutoff,
+                                final boolean loose) {
             this.srcColl = srcColl;
-            this.targColl = targColl;
+            this.targetGrid = targetGrid;
+            this.cutoff = cutoff;
             this.loose = loose;
         }
 
@@ -481,32 +502,16 @@ public class RadialGaussian extends ConnectionStrategy implements EditableObject
 
         @Override
         public Collection<Synapse> call() throws Exception {
-            // Attempting to pre-allocate... assumes that connection density
-            // will be less than #src * #tar * 0.2 or 20% connectivity
-            List<Synapse> synapses = new ArrayList<Synapse>((int) Math.ceil(srcColl.size() * targColl.size() * 0.2 * 0.75));
+            double cutoffSq = cutoff * cutoff;
+            List<Synapse> synapses = new ArrayList<Synapse>();
             for (Neuron src : srcColl) {
-                for (Neuron tar : targColl) {
-                    double randVal = rand.nextRand();
-                    double probability;
-                    if (src.getPolarity() == Polarity.EXCITATORY) {
-                        if (tar.getPolarity() == Polarity.EXCITATORY) {
-                            probability = calcConnectProb(src, tar, eeDistConst, lambda);
-                        } else if (tar.getPolarity() == Polarity.INHIBITORY) {
-                            probability = calcConnectProb(src, tar, eiDistConst, lambda);
-                        } else {
-                            probability = calcConnectProb(src, tar, distConst, lambda);
-                        }
-                    } else if (src.getPolarity() == Polarity.INHIBITORY) {
-                        if (tar.getPolarity() == Polarity.EXCITATORY) {
-                            probability = calcConnectProb(src, tar, ieDistConst, lambda);
-                        } else if (tar.getPolarity() == Polarity.INHIBITORY) {
-                            probability = calcConnectProb(src, tar, iiDistConst, lambda);
-                        } else {
-                            probability = calcConnectProb(src, tar, distConst, lambda);
-                        }
-                    } else {
-                        probability = calcConnectProb(src, tar, distConst, lambda);
+                for (Neuron tar : targetGrid.getCandidates(src, cutoff)) {
+                    if (getRawDist(src, tar) >= cutoffSq) {
+                        continue;
                     }
+                    double randVal = rand.nextRand();
+                    double probability = calcConnectProb(src, tar, eeDistConst, eiDistConst, ieDistConst,
+                            iiDistConst, distConst, lambda);
                     if (randVal < probability) {
                         Synapse s = new Synapse(src, tar);
                         synapses.add(s);
@@ -528,29 +533,17 @@ public class RadialGaussian extends ConnectionStrategy implements EditableObject
         @Override
         public void run() {
             int count = 0;
+            double cutoff = getCutoffRadius(lambda, eeDistConst, eiDistConst, ieDistConst, iiDistConst, distConst);
+            double cutoffSq = cutoff * cutoff;
+            NeuronGrid grid = new NeuronGrid(synapseGroup.getTargetNeurons(), cutoff, true);
             for (Neuron src : synapseGroup.getSourceNeurons()) {
-                for (Neuron tar : synapseGroup.getTargetNeurons()) {
-                    double randVal = Math.random();
-                    double probability;
-                    if (src.getPolarity() == Polarity.EXCITATORY) {
-                        if (tar.getPolarity() == Polarity.EXCITATORY) {
-                            probability = calcConnectProb(src, tar, eeDistConst, lambda);
-                        } else if (tar.getPolarity() == Polarity.INHIBITORY) {
-                            probability = calcConnectProb(src, tar, eiDistConst, lambda);
-                        } else {
-                            probability = calcConnectProb(src, tar, distConst, lambda);
-                        }
-                    } else if (src.getPolarity() == Polarity.INHIBITORY) {
-                        if (tar.getPolarity() == Polarity.EXCITATORY) {
-                            probability = calcConnectProb(src, tar, ieDistConst, lambda);
-                        } else if (tar.getPolarity() == Polarity.INHIBITORY) {
-                            probability = calcConnectProb(src, tar, iiDistConst, lambda);
-                        } else {
-                            probability = calcConnectProb(src, tar, distConst, lambda);
-                        }
-                    } else {
-                        probability = calcConnectProb(src, tar, distConst, lambda);
+                for (Neuron tar : grid.getCandidates(src, cutoff)) {
+                    if (getRawDist(src, tar) >= cutoffSq) {
+                        continue;
                     }
+                    double randVal = Math.random();
+                    double probability = calcConnectProb(src, tar, eeDistConst, eiDistConst, ieDistConst,
+                            iiDistConst, distConst, lambda);
                     if (randVal < probability) {
                         count++;
                     }
@@ -194,6 +194,12 @@ public class RadialSimple extends ConnectionStrategy implements EditableObject {
      */
     private List<Neuron> nonPolarNeurons;
 
+    /**
+     * Grids over {@link #excNeurons}, {@link #inhNeurons} and {@link #nonPolarNeurons}, used
+     * to find the neurons in a radius while connections are being made.
+     */
+    private transient NeuronGrid excGrid, inhGrid, nonPolarGrid;
+
     /**
      * Default constructor.
      */
@@ -225,6 +231,7 @@ public class RadialSimple extends ConnectionStrategy implements EditableObject {
         ArrayList<Synapse> syns = new ArrayList<Synapse>();
         nonPolarNeurons = excNeurons.stream().filter(neuron -> neuron.getPolarity()
                 == SimbrainConstants.Polarity.BOTH).collect(Collectors.toList());
+        buildGrids();
         for (Neuron source : excNeurons) {
             makeExcitatory(source, syns, looseSynapses);
             makeInhibitory(source, syns, looseSynapses);
@@ -233,9 +240,37 @@ public class RadialSimple extends ConnectionStrategy implements EditableObject {
             makeExcitatory(source, syns, looseSynapses);
             makeInhibitory(source, syns, looseSynapses);
         }
+        clearGrids();
         return syns;
     }
 
+    /**
+     * Index the neuron lists so that neighborhoods can be found without checking every neuron.
+     */
+    private void buildGrids() {
+        excGrid = new NeuronGrid(excNeurons, excitatoryRadius, false);
+        inhGrid = new NeuronGrid(inhNeurons, inhibitoryRadius, false);
+        nonPolarGrid = new NeuronGrid(nonPolarNeurons, Math.max(excitatoryRadius, inhibitoryRadius), false);
+    }
+
+    private void clearGrids() {
+        excGrid = null;
+        inhGrid = null;
+        nonPolarGrid = null;
+    }
+
+    /**
+     * Returns the neurons in a list within a radius of a neuron, in list order, using the list's
+     * grid if there is one.
+     */
+    private static List<Neuron> getNeuronsInRadius(Neuron neuron, List<Neuron> neurons, NeuronGrid grid,
+                                                   double radius) {
+        if (grid != null) {
+            neurons = grid.getCandidates(neuron, radius);
+        }
+        return SimnetUtils.getNeuronsInRadius(neuron, neurons, radius);
+    }
+
     /**
      * Make an inhibitory neuron, in the sense of connecting this neuron with
      * surrounding excNeurons via excitatory connections.
@@ -244,8 +279,8 @@ public class RadialSimple extends ConnectionStrategy implements EditableObject {
      */
     private void makeInhibitory(final Neuron neuron, List<Synapse> syns, boolean looseSynapses) {
         int degreeCounter = 0;
-        List<Neuron> neusInRadius = SimnetUtils.getNeuronsInRadius(neuron, inhNeurons, inhibitoryRadius);
-        neusInRadius.addAll(SimnetUtils.getNeuronsInRadius(neuron, nonPolarNeurons, inhibitoryRadius));
+        List<Neuron> neusInRadius = getNeuronsInRadius(neuron, inhNeurons, inhGrid, inhibitoryRadius);
+        neusInRadius.addAll(getNeuronsInRadius(neuron, nonPolarNeurons, nonPolarGrid, inhibitoryRadius));
         if (conMethod == ConnectStyle.DETERMINISTIC) {
             Collections.shuffle(neusInRadius);
         }
@@ -310,8 +345,8 @@ public class RadialSimple extends ConnectionStrategy implements EditableObject {
      */
     private void makeExcitatory(final Neuron neuron, List<Synapse> syns, boolean looseSynapses) {
         int degreeCounter = 0;
-        List<Neuron> neusInRadius = SimnetUtils.getNeuronsInRadius(neuron, excNeurons, excitatoryRadius);
-        neusInRadius.addAll(SimnetUtils.getNeuronsInRadius(neuron, nonPolarNeurons, excitatoryRadius));
+        List<Neuron> neusInRadius = getNeuronsInRadius(neuron, excNeurons, excGrid, excitatoryRadius);
+        neusInRadius.addAll(getNeuronsInRadius(neuron, nonPolarNeurons, nonPolarGrid, excitatoryRadius));
         if (conMethod == ConnectStyle.DETERMINISTIC) {
             Collections.shuffle(neusInRadius);
         }
@@ -375,12 +410,14 @@ public class RadialSimple extends ConnectionStrategy implements EditableObject {
         List<Synapse> syns = new ArrayList<>();
 
         if(selectMethod == SelectionStyle.IN) {
+            NeuronGrid grid = new NeuronGrid(source, excitatoryRadius, false);
             for(Neuron tar : target) {
-                makeConnects(tar, source, syns);
+                makeConnects(tar, source, grid, syns);
             }
         } else {
+            NeuronGrid grid = new NeuronGrid(target, excitatoryRadius, false);
             for(Neuron src : source) {
-                makeConnects(src, target, syns);
+                makeConnects(src, target, grid, syns);
             }
         }
         for(Synapse s : syns) {
@@ -397,8 +434,16 @@ public class RadialSimple extends ConnectionStrategy implements EditableObject {
      * @return
      */
     public List<Synapse> makeConnects(Neuron neu, List<Neuron> others, List<Synapse> retList) {
+        return makeConnects(neu, others, null, retList);
+    }
+
+    /**
+     * As {@link #makeConnects(Neuron, List, List)}, using a grid over the other neurons (if not
+     * null) to find the neurons in radius.
+     */
+    private List<Synapse> makeConnects(Neuron neu, List<Neuron> others, NeuronGrid grid, List<Synapse> retList) {
 
-        others = SimnetUtils.getNeuronsInRadius(neu, others, getExcitatoryRadius());
+        others = getNeuronsInRadius(neu, others, grid, getExcitatoryRadius());
         if(others.isEmpty()) {
             return retList;
         }
@@ -484,10 +529,12 @@ public class RadialSimple extends ConnectionStrategy implements EditableObject {
         nonPolarNeurons = target.stream().filter(neuron -> neuron.getPolarity()
                 == SimbrainConstants.Polarity.BOTH).collect(Collectors.toList());
 
+        buildGrids();
         for (Neuron src : source) {
             makeExcitatory(src, createdSyns, true);
             makeInhibitory(src, createdSyns, true);
         }
+        clearGrids();
         return createdSyns;
     }
 
@@ -104,6 +104,7 @@ public class NetworkUpdateManager {
         availableActionList.add(new BufferedUpdate(network));
         availableActionList.add(new PriorityUpdate(network));
         availableActionList.add(ConcurrentBufferedUpdate.createConcurrentBufferedUpdate(network));
+        availableActionList.add(new CompiledUpdate(network));
 
         // TODO: If added, these should be removed when any corresponding object is removed
 
@@ -394,6 +394,20 @@ public class Neuron extends LocatableModel implements EditableObject, AttributeC
         events.fireActivationChange(lastActivation, act);
     }
 
+    /**
+     * Set the activation computed by {@link org.simbrain.network.neuron_update_rules.interfaces.BatchUpdatable#updateBatch}, and clear inputs as {@link #update()} does.
+     * The rule has already applied any clipping, so unlike {@link #setActivation(double)} the value is used as is.
+     * No activation change event is fired; the caller fires a single
+     * {@link org.simbrain.network.events.NeuronCollectionEvents#fireActivationsChanged()} for the whole batch.
+     *
+     * @param act the new activation value
+     */
+    public void setBatchUpdateResult(final double act) {
+        lastActivation = activation;
+        activation = act;
+        inputValue = 0.0;
+    }
+
     @Producible()
     public double getActivation() {
         return activation;
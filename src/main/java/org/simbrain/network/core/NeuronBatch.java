@@ -0,0 +1,130 @@
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.network.core;
+
+import org.simbrain.network.neuron_update_rules.interfaces.BatchUpdatable;
+
+import java.util.List;
+
+/**
+ * Reusable buffers for updating a list of neurons that share a rule type with
+ * {@link BatchUpdatable#updateBatch}. Activations and inputs are gathered into primitive arrays, the rule is
+ * invoked once for the whole list, and the results are written back to the neurons.
+ * <p>
+ * Buffers are only reallocated when the list grows, so repeated updates of a group do not allocate. Activation change
+ * events are not fired for individual neurons; callers should fire one event for the whole batch.
+ */
+public class NeuronBatch {
+
+    private Neuron[] neurons = new Neuron[0];
+
+    private NeuronUpdateRule[] rules = new NeuronUpdateRule[0];
+
+    private double[] activations = new double[0];
+
+    private double[] inputs = new double[0];
+
+    private boolean[] spikes = new boolean[0];
+
+    /**
+     * Whether a rule class declares {@link BatchUpdatable#updateBatch} itself, rather than inheriting it.
+     */
+    private static final ClassValue<Boolean> DECLARES_UPDATE_BATCH = new ClassValue<>() {
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            try {
+                type.getDeclaredMethod("updateBatch", NeuronUpdateRule[].class, double[].class, double[].class,
+                        boolean[].class, int.class, double.class, double.class);
+                return true;
+            } catch (NoSuchMethodException e) {
+                return false;
+            }
+        }
+    };
+
+    /**
+     * Returns true if the neurons all use the same type of rule and that rule supports batch update. Subclasses of
+     * a {@link BatchUpdatable} rule that do not declare their own batch update are not batched.
+     *
+     * @param neuronList neurons to check
+     * @return true if {@link #update(List)} can be used
+     */
+    public static boolean canBatchUpdate(List<Neuron> neuronList) {
+        if (neuronList.isEmpty()) {
+            return false;
+        }
+        NeuronUpdateRule first = neuronList.get(0).getUpdateRule();
+        Class<?> cls = first.getClass();
+        if (!(first instanceof BatchUpdatable) || !DECLARES_UPDATE_BATCH.get(cls)) {
+            return false;
+        }
+        for (int i = 1, n = neuronList.size(); i < n; i++) {
+            if (neuronList.get(i).getUpdateRule().getClass() != cls) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Same as calling {@link Neuron#update()} on each neuron, whose inputs must already have been set. Clamped neurons
+     * are skipped. Assumes {@link #canBatchUpdate(List)} is true.
+     *
+     * @param neuronList the neurons to update
+     */
+    public void update(List<Neuron> neuronList) {
+        int n = neuronList.size();
+        if (neurons.length < n) {
+            neurons = new Neuron[n];
+            rules = new NeuronUpdateRule[n];
+            activations = new double[n];
+            inputs = new double[n];
+            spikes = new boolean[n];
+        }
+
+        int size = 0;
+        for (int i = 0; i < n; i++) {
+            Neuron neuron = neuronList.get(i);
+            if (neuron.isClamped()) {
+                continue;
+            }
+            neurons[size] = neuron;
+            rules[size] = neuron.getUpdateRule();
+            activations[size] = neuron.getActivation();
+            inputs[size] = neuron.getInput();
+            size++;
+        }
+        if (size == 0) {
+            return;
+        }
+
+        Network net = neurons[0].getNetwork();
+        NeuronUpdateRule prototype = rules[0];
+        ((BatchUpdatable) prototype).updateBatch(rules, activations, inputs, spikes, size, net.getTime(), net.getTimeStep());
+
+        boolean spiking = prototype.isSpikingNeuron();
+        for (int i = 0; i < size; i++) {
+            if (spiking) {
+                neurons[i].setSpike(spikes[i]);
+            }
+            neurons[i].setBatchUpdateResult(activations[i]);
+        }
+    }
+
+}
@@ -361,10 +361,14 @@ public class Synapse extends NetworkModel implements EditableObject, AttributeCo
     }
 
     /**
-     * Update this synapse using its current learning rule.
+     * Update this synapse using its current learning rule. Event driven rules
+     * are only applied when the source or target neuron spiked.
      */
     public void update() {
         if (!isFrozen()) {
+            if (learningRule.isEventDriven() && !source.isSpike() && !target.isSpike()) {
+                return;
+            }
             learningRule.update(this);
         }
     }
@@ -676,7 +680,11 @@ public class Synapse extends NetworkModel implements EditableObject, AttributeCo
         if (dly < 0 && source != null) {
             return;
         }
+        int oldDelay = delay;
         delay = dly;
+        if (events != null) {
+            events.fireDelayChange(oldDelay, delay);
+        }
 
         if (delay <= 0) {
             delayManager = null;
@@ -771,7 +779,11 @@ public class Synapse extends NetworkModel implements EditableObject, AttributeCo
      * @param enabled true if enabled, false otherwise.
      */
     public void setEnabled(final boolean enabled) {
+        boolean old = this.enabled;
         this.enabled = enabled;
+        if (events != null) {
+            events.fireEnabledChange(old, enabled);
+        }
     }
 
     /**
@@ -836,6 +848,9 @@ public class Synapse extends NetworkModel implements EditableObject, AttributeCo
     public void setLearningRule(SynapseUpdateRule newLearningRule) {
         SynapseUpdateRule oldRule = learningRule;
         this.learningRule = newLearningRule.deepCopy();
+        if (source != null && target != null) {
+            learningRule.init(this);
+        }
         initSpikeResponder();
         // TODO: Needed for calls to SynapseGroup.postUnmashallingInit, which calls
         // SynapseGroup.setAndComformToTemplate. Template synapses don't seem to have
@@ -69,6 +69,20 @@ public abstract class SynapseUpdateRule implements CopyableObject {
      */
     public abstract void update(Synapse synapse);
 
+    /**
+     * Returns true if this rule only changes a synapse on time steps in which
+     * its source or target neuron spikes. The rule is then only applied on
+     * those time steps, so any state that changes in between (e.g. decaying
+     * spike traces) must be brought up to date when the rule is next applied.
+     * This lets synapse groups update only the synapses of neurons that
+     * spiked.
+     *
+     * @return whether the rule is event driven
+     */
+    public boolean isEventDriven() {
+        return false;
+    }
+
     /**
      * Returns a deep copy of the update rule.
      *
@@ -227,14 +227,23 @@ public abstract class AbstractNeuronCollection extends WeightMatrixConnectable i
      * @param neuron the neuron to remove
      */
     public void removeNeuron(Neuron neuron) {
-        neuronList.remove(neuron);
+        int index = neuronList.indexOf(neuron);
+        if (index >= 0) {
+            neuronList.remove(index);
+            events.fireNeuronRemoved(index);
+        }
     }
 
     /**
      * Remove all neurons.
      */
     public void removeAllNeurons() {
+        int size = neuronList.size();
         neuronList.clear();
+        // Last first, so that each index is valid when its event is handled
+        for (int i = size - 1; i >= 0; i--) {
+            events.fireNeuronRemoved(i);
+        }
     }
 
     /**
@@ -541,7 +550,11 @@ public abstract class AbstractNeuronCollection extends WeightMatrixConnectable i
         cachedActivationsDirty = true;
     }
 
-    protected void invalidateCachedActivations() {
+    /**
+     * Mark the cached activation array as out of date. Update actions that set neuron activations directly should call
+     * this.
+     */
+    public void invalidateCachedActivations() {
         cachedActivationsDirty = true;
     }
 
@@ -91,6 +91,11 @@ public class NeuronGroup extends AbstractNeuronCollection {
      */
     private int betweenNeuronInterval = 50;
 
+    /**
+     * Buffers used when all neurons share a rule that supports batch update.
+     */
+    private transient NeuronBatch batch;
+
     /**
      * Create a neuron group without any initial neurons.
      */
@@ -159,16 +164,44 @@ public class NeuronGroup extends AbstractNeuronCollection {
     /**
      * Updates all the neurons in the neuron group according to their NeuronUpdateRule(s). If the group is in input mode
      * reads in the next set of values from the input table and sets the neuron values accordingly.
+     * <p>
+     * If all neurons share a rule type that supports batch update the rule is applied to the whole group in one call.
      */
     @Override
     public void update() {
         super.update();
         // if (!inputMode) {
-            NetworkKt.updateNeurons(getNeuronList());
+            applyCompressedInputs();
+            List<Neuron> neurons = getNeuronList();
+            if (NeuronBatch.canBatchUpdate(neurons)) {
+                for (Neuron neuron : neurons) {
+                    neuron.updateInputs();
+                }
+                if (batch == null) {
+                    batch = new NeuronBatch();
+                }
+                batch.update(neurons);
+                events.fireActivationsChanged();
+            } else {
+                NetworkKt.updateNeurons(neurons);
+            }
             invalidateCachedActivations();
         // }
     }
 
+    /**
+     * Add the weighted inputs of incoming compressed synapse groups to the neurons of this group. Compressed synapses
+     * are not in the fan-in of any neuron, so this is done when the group reads its fan-in, just before its neurons
+     * are updated.
+     */
+    public void applyCompressedInputs() {
+        for (SynapseGroup sg : incomingSgs) {
+            if (sg.isCompressed()) {
+                sg.applyCompressedInputs();
+            }
+        }
+    }
+
     /**
      * Set the update rule for the neurons in this group.
      *
@@ -28,6 +28,7 @@ import org.simbrain.util.SimbrainConstants;
 import org.simbrain.util.SimbrainConstants.Polarity;
 import org.simbrain.util.UserParameter;
 import org.simbrain.util.Utils;
+import org.simbrain.util.math.CompressedRowMatrix;
 import org.simbrain.util.math.ProbDistributions.UniformDistribution;
 import org.simbrain.util.math.ProbabilityDistribution;
 import org.simbrain.util.propertyeditor.CopyableObject;
@@ -256,6 +257,34 @@ public class SynapseGroup extends NetworkModel implements CopyableObject, Attrib
      */
     private boolean useFullRepOnSave = false;
 
+    /**
+     * If true the synapses of this group are not held as {@link Synapse}
+     * objects but only as a sparse matrix of strengths, see {@link
+     * #compress()}. The remaining synapse parameters come from {@link
+     * #excitatoryPrototype} and {@link #inhibitoryPrototype}.
+     */
+    private boolean compressed = false;
+
+    /**
+     * Strengths of the synapses of a compressed group, with one row per target
+     * neuron and one column per source neuron (indices into the neuron lists
+     * of the two groups). Null if the group is not compressed. Saved as a
+     * sparse code in {@link #compressedMatrixRep}.
+     */
+    private transient CompressedRowMatrix compressedWeights;
+
+    /**
+     * Activations of the source neurons, used when computing inputs from
+     * {@link #compressedWeights}.
+     */
+    private transient double[] sourceActivations;
+
+    /**
+     * Weighted inputs to the target neurons, computed from {@link
+     * #compressedWeights}.
+     */
+    private transient double[] targetInputs;
+
     /**
      * Completely creates a synapse group between the two neuron groups with all
      * default parameters. This method creates the individual connections.
@@ -369,6 +398,7 @@ public class SynapseGroup extends NetworkModel implements CopyableObject, Attrib
         recurrent = testRecurrent();
         initializeSynapseVisibility();
         initSpikeResponders();
+        listenForRemovedNeurons();
         source.addOutgoingSg(this);
         target.addIncomingSg(this);
         setLabel(parentNetwork.getIdManager().getProposedId(this.getClass()));
@@ -392,9 +422,29 @@ public class SynapseGroup extends NetworkModel implements CopyableObject, Attrib
         recurrent = testRecurrent();
         initializeSynapseVisibility();
         initSpikeResponders();
+        listenForRemovedNeurons();
         setLabel(parentNetwork.getIdManager().getProposedId(this.getClass()));
     }
 
+    /**
+     * The rows and columns of {@link #compressedWeights} are matched to the
+     * target and source neurons by index, so when a neuron is removed from
+     * either group its row or column is removed too. For a recurrent group
+     * both are removed.
+     */
+    private void listenForRemovedNeurons() {
+        sourceNeuronGroup.getEvents().onNeuronRemoved(index -> {
+            if (compressed) {
+                compressedWeights = compressedWeights.withoutColumn(index);
+            }
+        });
+        targetNeuronGroup.getEvents().onNeuronRemoved(index -> {
+            if (compressed) {
+                compressedWeights = compressedWeights.withoutRow(index);
+            }
+        });
+    }
+
     /**
      * Group level analog of {@link Synapse#initSpikeResponder()}
      */
@@ -425,9 +475,15 @@ public class SynapseGroup extends NetworkModel implements CopyableObject, Attrib
      */
     public void makeConnections() {
         clear();
+        boolean wasCompressed = compressed;
+        compressed = false;
+        compressedWeights = null;
         sourceNeuronGroup.addOutgoingSg(this);
         targetNeuronGroup.addIncomingSg(this);
         connectionManager.connectNeurons(this);
+        if (wasCompressed && size() > 0) {
+            compress();
+        }
         if (size() == 0) {
             String errMessage = "Synapse group creation failed because there are no synapses;";
             errMessage += "source neuron group = " + this.getSourceNeuronGroup().getLabel();
@@ -475,6 +531,10 @@ public class SynapseGroup extends NetworkModel implements CopyableObject, Attrib
      * be called to sort synapses into their appropriate sets.
      */
     public void revalidateSynapseSets() {
+        if (compressed) {
+            excitatoryRatio = getExcitatoryRatioPrecise();
+            return;
+        }
         Iterator<Synapse> exIterator = exSynapseSet.iterator();
         ArrayList<Synapse> exSwitches = new ArrayList<Synapse>(exSynapseSet.size());
         while (exIterator.hasNext()) {
@@ -504,19 +564,25 @@ public class SynapseGroup extends NetworkModel implements CopyableObject, Attrib
      * call super.update() some time during the custom update.
      */
     public void update() {
+        if (compressed) {
+            // Compressed synapses are static, and their inputs are applied by the target group
+            return;
+        }
         if (useGroupLevelSettings) {
-            if (!exStatic) { // Only iterate if excitatory synapses aren't static
-                // Assuming they're not static, only iterate if they aren't frozen.
-                if (!isFrozen(Polarity.EXCITATORY)) {
-                    updateExcitatorySynapses();
-                }
+            // Only iterate over synapses that aren't static or frozen
+            boolean exUpdate = !exStatic && !isFrozen(Polarity.EXCITATORY);
+            boolean inUpdate = !inStatic && !isFrozen(Polarity.INHIBITORY);
+            // Event-driven rules only need to visit synapses next to a spike
+            boolean exEvents = exUpdate && excitatoryPrototype.getLearningRule().isEventDriven();
+            boolean inEvents = inUpdate && inhibitoryPrototype.getLearningRule().isEventDriven();
+            if (exEvents || inEvents) {
+                updateSpikeAdjacentSynapses(exEvents, inEvents);
             }
-
-            if (!inStatic) { // Only iterate if inhibitory synapses aren't static
-                // Assuming they're not static, only iterate if they aren't frozen.
-                if (!isFrozen(Polarity.INHIBITORY)) {
-                    updateInhibitorySynapses();
-                }
+            if (exUpdate && !exEvents) {
+                updateExcitatorySynapses();
+            }
+            if (inUpdate && !inEvents) {
+                updateInhibitorySynapses();
             }
         } else {
             updateExcitatorySynapses();
@@ -524,6 +590,34 @@ public class SynapseGroup extends NetworkModel implements CopyableObject, Attrib
         }
     }
 
+    /**
+     * In a compressed group, add the weighted inputs of the synapses to the
+     * target neurons. Called by the target group when it reads its fan-in (see
+     * {@link NeuronGroup#applyCompressedInputs()}), so that source activations
+     * are read at the same point as for uncompressed synapses. Uncompressed
+     * synapses are read by their target neurons directly.
+     */
+    public void applyCompressedInputs() {
+        if (!compressed) {
+            return;
+        }
+        List<Neuron> sources = sourceNeuronGroup.getNeuronList();
+        List<Neuron> targets = targetNeuronGroup.getNeuronList();
+        if (sourceActivations == null || sourceActivations.length != sources.size()) {
+            sourceActivations = new double[sources.size()];
+        }
+        if (targetInputs == null || targetInputs.length != targets.size()) {
+            targetInputs = new double[targets.size()];
+        }
+        for (int i = 0; i < sourceActivations.length; i++) {
+            sourceActivations[i] = sources.get(i).getActivation();
+        }
+        compressedWeights.mv(sourceActivations, targetInputs);
+        for (int i = 0; i < targetInputs.length; i++) {
+            targets.get(i).addInputValue(targetInputs[i]);
+        }
+    }
+
     private void updateExcitatorySynapses() {
         for (Synapse synapse : exSynapseSet) {
             synapse.update();
@@ -536,12 +630,51 @@ public class SynapseGroup extends NetworkModel implements CopyableObject, Attrib
         }
     }
 
+    /**
+     * Update only the synapses whose source or target neuron spiked on this
+     * step, reaching them through the fan-out of spiking sources and the fan-in
+     * of spiking targets. Each synapse is updated at most once.
+     *
+     * @param excitatory whether to update excitatory synapses
+     * @param inhibitory whether to update inhibitory synapses
+     */
+    private void updateSpikeAdjacentSynapses(boolean excitatory, boolean inhibitory) {
+        for (Neuron source : sourceNeuronGroup.getNeuronList()) {
+            if (!source.isSpike()) {
+                continue;
+            }
+            for (Synapse synapse : source.getFanOutUnsafe().values()) {
+                if (synapse.getParentGroup() == this && isSelected(synapse, excitatory, inhibitory)) {
+                    synapse.update();
+                }
+            }
+        }
+        for (Neuron target : targetNeuronGroup.getNeuronList()) {
+            if (!target.isSpike()) {
+                continue;
+            }
+            for (Synapse synapse : target.getFanInUnsafe()) {
+                if (synapse.getParentGroup() == this && !synapse.getSource().isSpike()
+                        && isSelected(synapse, excitatory, inhibitory)) {
+                    synapse.update();
+                }
+            }
+        }
+    }
+
+    private boolean isSelected(Synapse synapse, boolean excitatory, boolean inhibitory) {
+        return exSynapseSet.contains(synapse) ? excitatory : inhibitory;
+    }
+
     public int size() {
+        if (compressed) {
+            return compressedWeights.getNumNonZero();
+        }
         return exSynapseSet.size() + inSynapseSet.size();
     }
 
     public boolean isEmpty() {
-        return exSynapseSet.isEmpty() && inSynapseSet.isEmpty();
+        return size() == 0;
     }
 
     public void delete() {
@@ -575,7 +708,16 @@ public class SynapseGroup extends NetworkModel implements CopyableObject, Attrib
         }
     }
 
+    /**
+     * Set whether individual synapses are shown. Showing the synapses of a
+     * compressed group expands it, see {@link #expand()}.
+     *
+     * @param displaySynapses true to show individual synapses
+     */
     public void setDisplaySynapses(boolean displaySynapses) {
+        if (displaySynapses && compressed) {
+            expand();
+        }
         this.displaySynapses = displaySynapses;
         events.fireVisibilityChange();
     }
@@ -613,6 +755,10 @@ public class SynapseGroup extends NetworkModel implements CopyableObject, Attrib
      * Removes all synapses with weight 0 from the group.
      */
     public void prune() {
+        if (compressed) {
+            compressedWeights = compressedWeights.withoutZeros();
+            return;
+        }
         for (Synapse s : this.getAllSynapses()) {
             if (s.getStrength() == 0) {
                 removeSynapse(s);
@@ -643,6 +789,176 @@ public class SynapseGroup extends NetworkModel implements CopyableObject, Attrib
         }
         exSynapseSet.clear();
         inSynapseSet.clear();
+        if (compressed) {
+            compressedWeights = new CompressedRowMatrix(targetNeuronGroup.size(), sourceNeuronGroup.size(),
+                new int[targetNeuronGroup.size() + 1], new int[0], new double[0]);
+        }
+    }
+
+    /**
+     * Returns true if this group can be compressed: group level settings are
+     * used and neither prototype synapse learns (has a rule other than static
+     * and is not frozen), is delayed, or is disabled, and the source group
+     * does not spike.
+     *
+     * @return whether {@link #compress()} can be called
+     */
+    public boolean canCompress() {
+        return useGroupLevelSettings && !sourceNeuronGroup.isSpikingNeuronGroup()
+            && isCompressible(excitatoryPrototype) && isCompressible(inhibitoryPrototype);
+    }
+
+    private static boolean isCompressible(Synapse prototype) {
+        return (prototype.getLearningRule() instanceof StaticSynapseRule || prototype.isFrozen())
+            && prototype.getDelay() == 0 && prototype.isEnabled();
+    }
+
+    /**
+     * Replace the synapses of this group with a sparse matrix of their
+     * strengths. A {@link Synapse} takes a few hundred bytes, while a
+     * compressed synapse takes twelve, so this makes very large static
+     * groups practical. The group works as before: weighted inputs are added
+     * to the target neurons when the target group updates (see
+     * {@link #applyCompressedInputs()}),
+     * strengths can be read and set through the group, and the group is saved
+     * in the sparse form.
+     * <p>
+     * Individual synapses are not displayed and are not part of the fan-in or
+     * fan-out of any neuron. They are created again by {@link #expand()},
+     * which is done automatically if the synapses are displayed or group
+     * settings are changed so that the group can no longer be compressed.
+     *
+     * @throws IllegalStateException if the group cannot be compressed, see
+     *                               {@link #canCompress()}
+     */
+    public void compress() {
+        if (compressed) {
+            return;
+        }
+        if (!canCompress()) {
+            throw new IllegalStateException("Only groups of static synapses without delays, using group level"
+                + " settings and with non-spiking sources, can be compressed.");
+        }
+        Map<Neuron, Integer> sourceMap = indexMap(getSourceNeurons());
+        Map<Neuron, Integer> targetMap = indexMap(getTargetNeurons());
+        int n = size();
+        int[] rows = new int[n];
+        int[] cols = new int[n];
+        double[] weights = new double[n];
+        int k = 0;
+        for (Set<Synapse> set : Arrays.asList(exSynapseSet, inSynapseSet)) {
+            for (Synapse s : set) {
+                rows[k] = targetMap.get(s.getTarget());
+                cols[k] = sourceMap.get(s.getSource());
+                weights[k++] = s.getStrength();
+            }
+        }
+        CompressedRowMatrix matrix = CompressedRowMatrix.fromEntries(targetNeuronGroup.size(),
+            sourceNeuronGroup.size(), rows, cols, weights);
+        clear();
+        exSynapseSet = new HashSet<>();
+        inSynapseSet = new HashSet<>();
+        compressed = true;
+        compressedWeights = matrix;
+        displaySynapses = false;
+        events.fireVisibilityChange();
+    }
+
+    /**
+     * Create {@link Synapse} objects for the synapses of a compressed group,
+     * with parameters taken from the prototype synapses, so that they can be
+     * edited or displayed individually. Does nothing if the group is not
+     * compressed.
+     */
+    public void expand() {
+        if (!compressed) {
+            return;
+        }
+        CompressedRowMatrix matrix = compressedWeights;
+        compressed = false;
+        compressedWeights = null;
+        sourceActivations = null;
+        targetInputs = null;
+        List<Neuron> sources = getSourceNeurons();
+        List<Neuron> targets = getTargetNeurons();
+        int[] rowStarts = matrix.getRowStarts();
+        int[] columns = matrix.getColumns();
+        double[] values = matrix.getValues();
+        if (exSynapseSet.isEmpty() && inSynapseSet.isEmpty()) {
+            preAllocateSynapses(values.length);
+        }
+        for (int i = 0; i < matrix.getNumRows(); i++) {
+            for (int k = rowStarts[i]; k < rowStarts[i + 1]; k++) {
+                Synapse s = new Synapse(sources.get(columns[k]), targets.get(i));
+                s.forceSetStrength(values[k]);
+                if (values[k] < 0) {
+                    addInhibitorySynapseUnsafe(s);
+                } else {
+                    addExcitatorySynapseUnsafe(s);
+                }
+            }
+        }
+        setAndConformToTemplate(excitatoryPrototype, Polarity.EXCITATORY);
+        setAndConformToTemplate(inhibitoryPrototype, Polarity.INHIBITORY);
+        excitatoryRatio = getExcitatoryRatioPrecise();
+    }
+
+    public boolean isCompressed() {
+        return compressed;
+    }
+
+    /**
+     * Returns the strengths of a compressed group, with one row per target
+     * neuron and one column per source neuron, or null if the group is not
+     * compressed. Changes to the values write through to the group.
+     */
+    public CompressedRowMatrix getCompressedWeights() {
+        return compressedWeights;
+    }
+
+    /**
+     * Returns the strength of the synapse between two neurons, or 0 if there
+     * is none.
+     *
+     * @param sourceIndex index of a neuron in the source group
+     * @param targetIndex index of a neuron in the target group
+     * @return the strength
+     */
+    public double getStrength(int sourceIndex, int targetIndex) {
+        if (compressed) {
+            return compressedWeights.get(targetIndex, sourceIndex);
+        }
+        Synapse s = getSourceNeurons().get(sourceIndex).getFanOut().get(getTargetNeurons().get(targetIndex));
+        return s == null || s.getParentGroup() != this ? 0 : s.getStrength();
+    }
+
+    /**
+     * Set the strength of the synapse between two neurons. Synapses are not
+     * created or removed.
+     *
+     * @param sourceIndex index of a neuron in the source group
+     * @param targetIndex index of a neuron in the target group
+     * @param strength    the new strength
+     * @return false if there is no synapse between the neurons in this group
+     */
+    public boolean setStrength(int sourceIndex, int targetIndex, double strength) {
+        if (compressed) {
+            return compressedWeights.set(targetIndex, sourceIndex, strength);
+        }
+        Synapse s = getSourceNeurons().get(sourceIndex).getFanOut().get(getTargetNeurons().get(targetIndex));
+        return s != null && s.getParentGroup() == this && setSynapseStrength(s, strength);
+    }
+
+    /**
+     * Returns a map from each neuron in a list to its index.
+     */
+    private static Map<Neuron, Integer> indexMap(List<Neuron> neurons) {
+        Map<Neuron, Integer> map = new HashMap<Neuron, Integer>((int) (neurons.size() / 0.75) + 1);
+        int i = 0;
+        for (Neuron n : neurons) {
+            map.put(n, i++);
+        }
+        return map;
     }
 
     /**
@@ -874,12 +1190,29 @@ public class SynapseGroup extends NetworkModel implements CopyableObject, Attrib
      * excitatory synapses divided by the total.
      */
     public double getExcitatoryRatioPrecise() {
-        return exSynapseSet.size() / (double) size();
+        return getNumExcitatory() / (double) size();
+    }
+
+    /**
+     * Returns the number of excitatory synapses.
+     */
+    private int getNumExcitatory() {
+        if (compressed) {
+            int count = 0;
+            for (double w : compressedWeights.getValues()) {
+                if (w >= 0) {
+                    count++;
+                }
+            }
+            return count;
+        }
+        return exSynapseSet.size();
     }
 
     /**
      * @return a flat list representation of all the synapses in this synapse
-     * group. This list is a defensive copy.
+     * group. This list is a defensive copy. Empty if the group is compressed,
+     * see {@link #expand()}.
      */
     public List<Synapse> getAllSynapses() {
         ArrayList<Synapse> flatList = new ArrayList<Synapse>(size());
@@ -903,6 +1236,9 @@ public class SynapseGroup extends NetworkModel implements CopyableObject, Attrib
      */
     @Producible
     public double[] getWeightVector() {
+        if (compressed) {
+            return compressedWeights.getValues().clone();
+        }
         double[] retArray = new double[size()];
         int i = 0;
         for (Synapse synapse : exSynapseSet) {
@@ -919,6 +1255,9 @@ public class SynapseGroup extends NetworkModel implements CopyableObject, Attrib
      */
     @Producible
     public double[] getInhibitoryStrengths() {
+        if (compressed) {
+            return Arrays.stream(compressedWeights.getValues()).filter(w -> w < 0).toArray();
+        }
         double[] retArray = new double[inSynapseSet.size()];
         int i = 0;
         for (Synapse synapse : inSynapseSet) {
@@ -932,6 +1271,9 @@ public class SynapseGroup extends NetworkModel implements CopyableObject, Attrib
      */
     @Producible
     public double[] getExcitatoryStrengths() {
+        if (compressed) {
+            return Arrays.stream(compressedWeights.getValues()).filter(w -> w >= 0).toArray();
+        }
         double[] retArray = new double[exSynapseSet.size()];
         int i = 0;
         for (Synapse synapse : exSynapseSet) {
@@ -952,6 +1294,9 @@ public class SynapseGroup extends NetworkModel implements CopyableObject, Attrib
      */
     public double[][] getWeightMatrix() {
         double[][] weightMatrix = new double[getSourceNeurons().size()][getTargetNeurons().size()];
+        if (compressed) {
+            return compressedWeights.transpose().toArray();
+        }
         int i = 0;
         int j = 0;
         // Create numbers for neurons... less expensive than constant
@@ -990,6 +1335,20 @@ public class SynapseGroup extends NetworkModel implements CopyableObject, Attrib
      * 2 .9 0 3 5.3 0 1 -.1 Becomes: 0 1 -.1 0 3 5.3 1 2 .9
      */
     public double[][] getNumericIndices() {
+        if (compressed) {
+            // The transpose has one row per source, in order of target within each row
+            CompressedRowMatrix bySource = compressedWeights.transpose();
+            int[] rowStarts = bySource.getRowStarts();
+            int[] columns = bySource.getColumns();
+            double[] values = bySource.getValues();
+            double[][] triples = new double[values.length][];
+            for (int src = 0; src < bySource.getNumRows(); src++) {
+                for (int k = rowStarts[src]; k < rowStarts[src + 1]; k++) {
+                    triples[k] = new double[] {src, columns[k], values[k]};
+                }
+            }
+            return triples;
+        }
         double[][] pairs = new double[size()][3];
         int i = 0;
         int j = 0;
@@ -1251,6 +1610,10 @@ public class SynapseGroup extends NetworkModel implements CopyableObject, Attrib
      * #revalidateSynapseSets()} first.
      */
     public void randomizeExcitatoryConnections() {
+        if (compressed) {
+            randomizeCompressed(true);
+            return;
+        }
         ConnectionUtilities.randomizeExcitatorySynapsesUnsafe(exSynapseSet, exciteRand);
     }
 
@@ -1262,9 +1625,30 @@ public class SynapseGroup extends NetworkModel implements CopyableObject, Attrib
      * #revalidateSynapseSets()} first.
      */
     public void randomizeInhibitoryConnections() {
+        if (compressed) {
+            randomizeCompressed(false);
+            return;
+        }
         ConnectionUtilities.randomizeInhibitorySynapsesUnsafe(inSynapseSet, inhibRand);
     }
 
+    /**
+     * Randomize the excitatory (strength at least 0) or inhibitory strengths
+     * of a compressed group.
+     */
+    private void randomizeCompressed(boolean excitatory) {
+        ProbabilityDistribution rand = excitatory ? exciteRand : inhibRand;
+        if (rand == null) {
+            return;
+        }
+        double[] values = compressedWeights.getValues();
+        for (int k = 0; k < values.length; k++) {
+            if ((values[k] >= 0) == excitatory) {
+                values[k] = rand.getRandom();
+            }
+        }
+    }
+
     /**
      * Sets the connection manager for this synapse group.
      *
@@ -1324,7 +1708,7 @@ public class SynapseGroup extends NetworkModel implements CopyableObject, Attrib
      * @return the ratio of synapses in this group that are excitatory.
      */
     public double calculateExcitatoryRatio() {
-        excitatoryRatio = exSynapseSet.size() / (double) size();
+        excitatoryRatio = getExcitatoryRatioPrecise();
         if (Double.isNaN(excitatoryRatio)) {
             return 0;
         }
@@ -1372,11 +1756,11 @@ public class SynapseGroup extends NetworkModel implements CopyableObject, Attrib
     }
 
     public boolean hasExcitatory() {
-        return !exSynapseSet.isEmpty();
+        return getNumExcitatory() > 0;
     }
 
     public boolean hasInhibitory() {
-        return !inSynapseSet.isEmpty();
+        return getNumExcitatory() < size();
     }
 
     public NeuronGroup getSourceNeuronGroup() {
@@ -1420,6 +1804,9 @@ public class SynapseGroup extends NetworkModel implements CopyableObject, Attrib
 
     public void setUseGroupLevelSettings(boolean useGroupLevelSettings) {
         this.useGroupLevelSettings = useGroupLevelSettings;
+        if (!useGroupLevelSettings) {
+            expand();
+        }
     }
 
     public void setAndConformToTemplate(Synapse template, Polarity polarity) {
@@ -1486,6 +1873,14 @@ public class SynapseGroup extends NetworkModel implements CopyableObject, Attrib
 
     public void setStrength(double strength, Polarity polarity) {
         final double str = polarity.value(strength);
+        if (compressed) {
+            double[] values = compressedWeights.getValues();
+            for (int k = 0; k < values.length; k++) {
+                if (polarity == Polarity.BOTH || (values[k] >= 0) == (polarity == Polarity.EXCITATORY)) {
+                    values[k] = str;
+                }
+            }
+        }
         setProperty(s -> s.setStrength(str), polarity);
         if (Polarity.BOTH == polarity) {
             if (strength > 0) {
@@ -1608,6 +2003,10 @@ public class SynapseGroup extends NetworkModel implements CopyableObject, Attrib
             action.accept(excitatoryPrototype);
             action.accept(inhibitoryPrototype);
         }
+        if (compressed && !canCompress()) {
+            // E.g. a learning rule was set; the synapses must exist to learn
+            expand();
+        }
     }
 
     /**
@@ -1629,6 +2028,10 @@ public class SynapseGroup extends NetworkModel implements CopyableObject, Attrib
      * pre-save init.
      */
     public void preSaveInit() {
+        if (compressed) {
+            compressedMatrixRep = getSparseCode(Precision.FLOAT_64).array();
+            return;
+        }
         if (isUseFullRepOnSave()) {
             preSaveInitFull();
             return;
@@ -1700,6 +2103,10 @@ public class SynapseGroup extends NetworkModel implements CopyableObject, Attrib
      * process sets the synapse sets to null.
      */
     public void postSaveReInit() {
+        if (compressed) {
+            compressedMatrixRep = null;
+            return;
+        }
         if (isUseGroupLevelSettings()) {
             inSynapseSet = inTemp;
             exSynapseSet = exTemp;
@@ -1714,9 +2121,23 @@ public class SynapseGroup extends NetworkModel implements CopyableObject, Attrib
         if (events == null) {
             events = new SynapseGroupEvents(this);
         }
+        listenForRemovedNeurons();
 
         // Rebuild weight matrix if needed.
-        if (this.isUseGroupLevelSettings() && compressedMatrixRep != null) {
+        if (compressed) {
+            if (exSynapseSet == null) {
+                exSynapseSet = new HashSet<Synapse>();
+                inSynapseSet = new HashSet<Synapse>();
+            }
+            if (compressedMatrixRep == null) {
+                compressedWeights = null;
+                clear();
+            } else {
+                compressedWeights = GroupDeserializer.decodeSparseCode(compressedMatrixRep,
+                    sourceNeuronGroup.size(), targetNeuronGroup.size()).transpose();
+                compressedMatrixRep = null;
+            }
+        } else if (this.isUseGroupLevelSettings() && compressedMatrixRep != null) {
             exSynapseSet = new HashSet<Synapse>();
             inSynapseSet = new HashSet<Synapse>();
             GroupDeserializer.reconstructCompressedSynapseStrengths(this.compressedMatrixRep, this);
@@ -1785,6 +2206,15 @@ public class SynapseGroup extends NetworkModel implements CopyableObject, Attrib
 
         clear();
 
+        if (sgToCopy.isCompressed()) {
+            compressedWeights = sgToCopy.compressedWeights.copy();
+            compressed = true;
+            if (!canCompress()) {
+                expand();
+            }
+            return;
+        }
+
         List<Neuron> srcNeurons = sgToCopy.sourceNeuronGroup.getNeuronList();
         List<Neuron> tarNeurons = sgToCopy.targetNeuronGroup.getNeuronList();
         for (int ii = 0; ii < sourceNeuronGroup.size(); ii++) {
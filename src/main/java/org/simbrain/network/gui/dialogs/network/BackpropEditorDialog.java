@@ -22,7 +22,7 @@ import org.simbrain.network.core.NetworkUpdateAction;
 import org.simbrain.network.gui.NetworkPanel;
 import org.simbrain.network.gui.trainer.IterativeControlsPanel;
 import org.simbrain.network.subnetworks.BackpropNetwork;
-// import org.simbrain.network.trainers.BackpropTrainer;
+import org.simbrain.network.trainers.BackpropTrainer;
 import org.simbrain.network.trainers.IterableTrainer;
 import org.simbrain.network.trainers.Trainer;
 
@@ -89,8 +89,7 @@ public class BackpropEditorDialog extends SupervisedTrainingDialog {
         setTitle("Edit Backprop Network");
 
         // Trainer tab
-        currentTrainer = null;
-        // currentTrainer = new BackpropTrainer(backprop);
+        currentTrainer = new BackpropTrainer(backprop);
         networkPanel.getNetwork().getUpdateManager().addAction(updater);
         IterativeControlsPanel iterativeControls = new IterativeControlsPanel(currentTrainer);
         addTab("Train", iterativeControls);
@@ -5,6 +5,7 @@ import org.simbrain.network.events.NeuronCollectionEvents;
 import org.simbrain.network.events.NeuronEvents;
 import org.simbrain.network.groups.AbstractNeuronCollection;
 import org.simbrain.network.gui.NetworkPanel;
+import org.simbrain.network.util.BinaryActivationWriter;
 import org.simbrain.util.SFileChooser;
 import org.simbrain.util.Utils;
 import org.simbrain.util.piccolo.Outline;
@@ -66,6 +67,9 @@ public abstract class AbstractNeuronCollectionNode extends ScreenElement {
         events.onRecordingStarted(this::updateText);
         events.onRecordingStopped(this::updateText);
 
+        // Groups updated in a batch fire one event rather than one per neuron
+        events.onActivationsChanged(() -> neuronNodes.forEach(NeuronNode::updateActivation));
+
     }
 
     /**
@@ -192,6 +196,8 @@ public abstract class AbstractNeuronCollectionNode extends ScreenElement {
                     nc.getActivationRecorder().stopRecording();
                 } else {
                     SFileChooser chooser = new SFileChooser(".", "comma-separated-values (csv)", "csv");
+                    chooser.addExtension("binary activations (" + BinaryActivationWriter.EXTENSION + ")",
+                            BinaryActivationWriter.EXTENSION);
                         File theFile = chooser.showSaveDialog("Recording_" + Utils.getTimeString() + ".csv");
                     if (theFile != null) {
                         nc.getActivationRecorder().startRecording(theFile);
@@ -200,10 +200,7 @@ public class NeuronNode extends ScreenElement implements PropertyChangeListener
         // Handle events
         NeuronEvents events = neuron.getEvents();
         events.onDeleted(n -> removeFromParent());
-        events.onActivationChange((o, n) -> {
-            updateColor();
-            updateText();
-        });
+        events.onActivationChange((o, n) -> updateActivation());
         events.onSpiked((o, n) -> {
             updateSpikeColor();
         });
@@ -215,6 +212,15 @@ public class NeuronNode extends ScreenElement implements PropertyChangeListener
 
     }
 
+    /**
+     * Update the color and text of the node to reflect the neuron's activation. Called by the neuron group node when
+     * the group's activations change in a batch.
+     */
+    void updateActivation() {
+        updateColor();
+        updateText();
+    }
+
     /**
      * Update the shape (square or circle) of the neuron based on whether it's an activity generator or not.
      */
@@ -188,6 +188,24 @@ public class SynapseGroupInteractionBox extends InteractionBox {
         tsvCheckBox.setSelected(synapseGroup.isDisplaySynapses());
         menu.add(tsvCheckBox);
 
+        // Compressed storage
+        final JCheckBoxMenuItem compressCheckBox = new JCheckBoxMenuItem();
+        Action toggleCompression = new AbstractAction("Compress Synapses") {
+            public void actionPerformed(final ActionEvent event) {
+                if (synapseGroup.isCompressed()) {
+                    synapseGroup.expand();
+                } else {
+                    synapseGroup.compress();
+                }
+                compressCheckBox.setSelected(synapseGroup.isCompressed());
+                tsvCheckBox.setSelected(synapseGroup.isDisplaySynapses());
+            }
+        };
+        compressCheckBox.setAction(toggleCompression);
+        compressCheckBox.setSelected(synapseGroup.isCompressed());
+        compressCheckBox.setEnabled(synapseGroup.isCompressed() || synapseGroup.canCompress());
+        menu.add(compressCheckBox);
+
         // Coupling menu
         JMenu couplingMenu = createCouplingMenu(getNetworkPanel().getNetworkComponent(), synapseGroup);
         if (couplingMenu != null) {
@@ -52,6 +52,18 @@ public class NeuronArray extends WeightMatrixConnectable implements EditableObje
     @UserParameter(label = "Show activations", description = "Whether to show activations as a pixel image", order = 4)
     private boolean renderActivations = true;
 
+    /**
+     * Function applied to the net input of each node (its weighted inputs plus its bias) to get its activation.
+     */
+    @UserParameter(label = "Activation function", description = "Function applied to weighted inputs plus bias",
+            order = 5)
+    private ActivationFunction activationFunction = ActivationFunction.LINEAR;
+
+    /**
+     * Bias of each node, added to its weighted inputs. Null until first used, in which case all biases are 0.
+     */
+    private double[] biases;
+
     /**
      * Construct a neuron array.
      *
@@ -78,6 +90,10 @@ public class NeuronArray extends WeightMatrixConnectable implements EditableObje
         copy.x = orig.x;
         copy.y = orig.y;
         copy.setActivations(orig.getActivations());
+        copy.activationFunction = orig.activationFunction;
+        if (orig.biases != null) {
+            copy.biases = orig.biases.clone();
+        }
         return copy;
     }
 
@@ -115,6 +131,142 @@ public class NeuronArray extends WeightMatrixConnectable implements EditableObje
         this.renderActivations = renderActivations;
     }
 
+    public ActivationFunction getActivationFunction() {
+        // Null for arrays saved before activation functions were added
+        return activationFunction == null ? ActivationFunction.LINEAR : activationFunction;
+    }
+
+    public void setActivationFunction(ActivationFunction activationFunction) {
+        this.activationFunction = activationFunction;
+    }
+
+    /**
+     * Returns the biases of the nodes. The array is live: changes to it change the biases.
+     */
+    public double[] getBiases() {
+        if (biases == null || biases.length != activations.length) {
+            biases = new double[activations.length];
+        }
+        return biases;
+    }
+
+    public void setBiases(double[] newBiases) {
+        biases = Arrays.copyOf(newBiases, activations.length);
+        getEvents().fireUpdated();
+    }
+
+    /**
+     * Functions that can be applied to the net input of each node of an array.
+     */
+    public enum ActivationFunction {
+        LINEAR {
+            @Override
+            public double valueOf(double netInput) {
+                return netInput;
+            }
+
+            @Override
+            public double derivative(double netInput, double value) {
+                return 1;
+            }
+
+            @Override
+            public double inverseOf(double value) {
+                return value;
+            }
+
+            @Override
+            public String toString() {
+                return "Linear";
+            }
+        }, LOGISTIC {
+            @Override
+            public double valueOf(double netInput) {
+                return 1 / (1 + Math.exp(-netInput));
+            }
+
+            @Override
+            public double derivative(double netInput, double value) {
+                return value * (1 - value);
+            }
+
+            @Override
+            public double inverseOf(double value) {
+                double v = Math.max(INVERSE_MARGIN, Math.min(1 - INVERSE_MARGIN, value));
+                return Math.log(v / (1 - v));
+            }
+
+            @Override
+            public String toString() {
+                return "Logistic";
+            }
+        }, TANH {
+            @Override
+            public double valueOf(double netInput) {
+                return Math.tanh(netInput);
+            }
+
+            @Override
+            public double derivative(double netInput, double value) {
+                return 1 - value * value;
+            }
+
+            @Override
+            public double inverseOf(double value) {
+                double v = Math.max(-1 + INVERSE_MARGIN, Math.min(1 - INVERSE_MARGIN, value));
+                return 0.5 * Math.log((1 + v) / (1 - v));
+            }
+
+            @Override
+            public String toString() {
+                return "Tanh";
+            }
+        }, RELU {
+            @Override
+            public double valueOf(double netInput) {
+                return Math.max(0, netInput);
+            }
+
+            @Override
+            public double derivative(double netInput, double value) {
+                return netInput > 0 ? 1 : 0;
+            }
+
+            @Override
+            public double inverseOf(double value) {
+                // Not invertible below 0. Asking for the value itself keeps the net input from going far negative.
+                return value;
+            }
+
+            @Override
+            public String toString() {
+                return "Rectified linear";
+            }
+        };
+
+        /**
+         * Returns the activation of a node with the given net input.
+         */
+        public abstract double valueOf(double netInput);
+
+        /**
+         * Returns the derivative of the function at the given net input. The value of the function there is passed as
+         * well, since most derivatives are cheaper to compute from it.
+         */
+        public abstract double derivative(double netInput, double value);
+
+        /**
+         * Returns a net input that produces the given value. Values outside the range of the function are first moved
+         * just inside it. Used to train linear solutions through a nonlinear output layer.
+         */
+        public abstract double inverseOf(double value);
+
+        /**
+         * How far inside the bounds of a bounded function values are moved before being inverted.
+         */
+        private static final double INVERSE_MARGIN = 1E-6;
+    }
+
     @Override
     public void onCommit() {
         getEvents().fireLabelChange("", getLabel());
@@ -194,7 +346,16 @@ public class NeuronArray extends WeightMatrixConnectable implements EditableObje
 
     @Override
     public void update() {
-        setActivations(getInputs());
+        ActivationFunction function = getActivationFunction();
+        if (function == ActivationFunction.LINEAR && biases == null) {
+            setActivations(getInputs());
+        } else {
+            double[] newActivations = new double[inputs.length];
+            for (int i = 0; i < inputs.length; i++) {
+                newActivations[i] = function.valueOf(inputs[i] + getBiases()[i]);
+            }
+            setActivations(newActivations);
+        }
         inputs = new double[inputs.length]; // clear inputs
         getEvents().fireUpdated();
     }
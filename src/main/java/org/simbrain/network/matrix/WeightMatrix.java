@@ -77,11 +77,8 @@ public class WeightMatrix extends NetworkModel implements EditableObject, Attrib
 
         initEvents();
 
-        weightMatrix = new Matrix(source.getActivations().length,
-                target.getActivations().length);
-
-        // Hack to initialize backend array so there are no delays later at first computation
-        weightMatrix.aat();
+        weightMatrix = new Matrix(target.getActivations().length,
+                source.getActivations().length);
 
         // Default for "adapter" cases is 1-1
         if (source instanceof AbstractNeuronCollection) {
@@ -172,7 +169,7 @@ public class WeightMatrix extends NetworkModel implements EditableObject, Attrib
      * Randomize weights in this matrix
      */
     public void randomize() {
-        weightMatrix = Matrix.rand(source.getActivations().length,  target.getActivations().length,
+        weightMatrix = Matrix.rand(target.getActivations().length,  source.getActivations().length,
                 new GaussianDistribution(0, 1));
         events.fireUpdated();
     }
@@ -223,7 +220,8 @@ public class WeightMatrix extends NetworkModel implements EditableObject, Attrib
     }
 
     /**
-     * Returns the product of the this matrix its source activations
+     * Returns the product of the this matrix its source activations. Rows of the matrix correspond to target nodes and
+     * columns to source nodes.
      */
     public double[] weightsTimesSource() {
         return weightMatrix.mv(source.getActivations());
@@ -19,7 +19,9 @@
 package org.simbrain.network.neuron_update_rules;
 
 import org.simbrain.network.core.Neuron;
+import org.simbrain.network.core.NeuronUpdateRule;
 import org.simbrain.network.core.SpikingNeuronUpdateRule;
+import org.simbrain.network.neuron_update_rules.interfaces.BatchUpdatable;
 import org.simbrain.network.neuron_update_rules.interfaces.NoisyUpdateRule;
 import org.simbrain.util.UserParameter;
 import org.simbrain.util.math.ProbDistributions.UniformDistribution;
@@ -40,7 +42,7 @@ import java.util.concurrent.ThreadLocalRandom;
  * <p>
  * TODO: Add custom tooltip
  */
-public class IntegrateAndFireRule extends SpikingNeuronUpdateRule implements NoisyUpdateRule {
+public class IntegrateAndFireRule extends SpikingNeuronUpdateRule implements NoisyUpdateRule, BatchUpdatable {
 
     /**
      * Resistance (M ohms).
@@ -205,6 +207,36 @@ public class IntegrateAndFireRule extends SpikingNeuronUpdateRule implements Noi
         neuron.setActivation(memPotential);
     }
 
+    @Override
+    public void updateBatch(NeuronUpdateRule[] rules, double[] activations, double[] inputs, boolean[] spikes,
+                            int size, double time, double timeStep) {
+        for (int i = 0; i < size; i++) {
+            IntegrateAndFireRule rule = (IntegrateAndFireRule) rules[i];
+            boolean refractory = time < (rule.getLastSpikeTime() + rule.refractoryPeriod);
+            double synCurrent = refractory ? 0 : inputs[i] + rule.backgroundCurrent;
+            if (rule.addNoise) {
+                synCurrent += rule.noiseGenerator.getRandom();
+            }
+
+            double vm = activations[i];
+            vm += timeStep * (-(vm - rule.restingPotential) + rule.resistance * synCurrent) / rule.timeConstant;
+
+            if (ThreadLocalRandom.current().nextDouble() < rule.randSpkChance * timeStep) {
+                vm = rule.threshold + 1;
+            }
+
+            if ((vm >= rule.threshold) && (time > (rule.getLastSpikeTime() + rule.refractoryPeriod))) {
+                spikes[i] = true;
+                rule.setLastSpikeTime(time);
+                vm = rule.resetPotential;
+            } else {
+                spikes[i] = false;
+            }
+            rule.memPotential = vm;
+            activations[i] = vm;
+        }
+    }
+
     @Override
     public double getRandomValue() {
         // Equal chance of spiking or not spiking, taking on any value between
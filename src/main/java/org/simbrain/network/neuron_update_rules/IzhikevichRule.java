@@ -19,7 +19,9 @@
 package org.simbrain.network.neuron_update_rules;
 
 import org.simbrain.network.core.Neuron;
+import org.simbrain.network.core.NeuronUpdateRule;
 import org.simbrain.network.core.SpikingNeuronUpdateRule;
+import org.simbrain.network.neuron_update_rules.interfaces.BatchUpdatable;
 import org.simbrain.network.neuron_update_rules.interfaces.NoisyUpdateRule;
 import org.simbrain.util.UserParameter;
 import org.simbrain.util.math.ProbDistributions.UniformDistribution;
@@ -31,7 +33,7 @@ import org.simbrain.util.math.ProbabilityDistribution;
  * different types. Students could just look it up, but this would be
  * faster/cooler. Just a thought.
  */
-public class IzhikevichRule extends SpikingNeuronUpdateRule implements NoisyUpdateRule {
+public class IzhikevichRule extends SpikingNeuronUpdateRule implements NoisyUpdateRule, BatchUpdatable {
 
     /**
      * Recovery.
@@ -161,6 +163,34 @@ public class IzhikevichRule extends SpikingNeuronUpdateRule implements NoisyUpda
         neuron.setActivation(val);
     }
 
+    @Override
+    public void updateBatch(NeuronUpdateRule[] rules, double[] activations, double[] inputs, boolean[] spikes,
+                            int size, double time, double timeStep) {
+        for (int i = 0; i < size; i++) {
+            IzhikevichRule rule = (IzhikevichRule) rules[i];
+            final double activation = activations[i];
+            double in = inputs[i];
+            if (rule.addNoise) {
+                in += rule.noiseGenerator.getRandom();
+            }
+            in += rule.iBg;
+            rule.recovery += (timeStep * (rule.a * ((rule.b * activation) - rule.recovery)));
+
+            double v = activation + (timeStep * (((.04 * (activation * activation)) + (5 * activation) + 140)
+                    - rule.recovery + in));
+
+            if (v >= rule.threshold) {
+                v = rule.c;
+                rule.recovery += rule.d;
+                spikes[i] = true;
+                rule.setLastSpikeTime(time);
+            } else {
+                spikes[i] = false;
+            }
+            activations[i] = v;
+        }
+    }
+
     @Override
     public double getRandomValue() {
         // Equal chance of spiking or not spiking, taking on any value between
@@ -30,7 +30,7 @@ import org.simbrain.util.math.ProbabilityDistribution;
  * <b>LinearNeuron</b> is a standard linear neuron.
  */
 public class LinearRule extends NeuronUpdateRule implements BiasedUpdateRule, DifferentiableUpdateRule,
-        BoundedUpdateRule, ClippableUpdateRule, NoisyUpdateRule {
+        BoundedUpdateRule, ClippableUpdateRule, NoisyUpdateRule, BatchUpdatable {
 
     /**
      * The Default upper bound.
@@ -102,6 +102,20 @@ public class LinearRule extends NeuronUpdateRule implements BiasedUpdateRule, Di
         neuron.setActivation(val);
     }
 
+    @Override
+    public void updateBatch(NeuronUpdateRule[] rules, double[] activations, double[] inputs, boolean[] spikes,
+                            int size, double time, double timeStep) {
+        for (int i = 0; i < size; i++) {
+            LinearRule rule = (LinearRule) rules[i];
+            double val = (rule.slope * inputs[i]) + rule.bias;
+            if (rule.addNoise) {
+                val += rule.noiseGenerator.getRandom();
+            }
+            // Neuron.setActivation clips clippable rules whether or not clipping is on
+            activations[i] = rule.clip(val);
+        }
+    }
+
     @Override
     public double clip(double val) {
         if (val > getUpperBound()) {
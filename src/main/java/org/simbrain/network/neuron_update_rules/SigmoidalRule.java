@@ -20,6 +20,8 @@ package org.simbrain.network.neuron_update_rules;
 
 import org.simbrain.network.core.Network.TimeType;
 import org.simbrain.network.core.Neuron;
+import org.simbrain.network.core.NeuronUpdateRule;
+import org.simbrain.network.neuron_update_rules.interfaces.BatchUpdatable;
 import org.simbrain.util.math.SquashingFunctionEnum;
 
 /**
@@ -30,7 +32,7 @@ import org.simbrain.util.math.SquashingFunctionEnum;
  * @author Zoë Tosi
  * @author Jeff Yoshimi
  */
-public class SigmoidalRule extends AbstractSigmoidalRule {
+public class SigmoidalRule extends AbstractSigmoidalRule implements BatchUpdatable {
 
     // TODO: Possibly rename to "DiscreteSigmoidalRule"
 
@@ -68,6 +70,19 @@ public class SigmoidalRule extends AbstractSigmoidalRule {
         neuron.setActivation(val);
     }
 
+    @Override
+    public void updateBatch(NeuronUpdateRule[] rules, double[] activations, double[] inputs, boolean[] spikes,
+                            int size, double time, double timeStep) {
+        for (int i = 0; i < size; i++) {
+            SigmoidalRule rule = (SigmoidalRule) rules[i];
+            double val = inputs[i] + rule.bias;
+            if (rule.addNoise) {
+                val += rule.noiseGenerator.getRandom();
+            }
+            activations[i] = rule.sFunction.valueOf(val, rule.getUpperBound(), rule.getLowerBound(), rule.getSlope());
+        }
+    }
+
     @Override
     public final SigmoidalRule deepCopy() {
         SigmoidalRule sr = new SigmoidalRule();
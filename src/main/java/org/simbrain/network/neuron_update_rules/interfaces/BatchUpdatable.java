@@ -0,0 +1,52 @@
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.network.neuron_update_rules.interfaces;
+
+import org.simbrain.network.core.Neuron;
+import org.simbrain.network.core.NeuronBatch;
+import org.simbrain.network.core.NeuronUpdateRule;
+
+/**
+ * <b>Batch Updatable</b> is for update rules that can update a set of neurons which all use the same type of rule
+ * in a single call. See {@link NeuronBatch}.
+ * <p>
+ * Only the class that declares {@link #updateBatch} is batch updated. Subclasses may override
+ * {@link NeuronUpdateRule#update(Neuron)}, so they are updated one neuron at a time unless they declare their own
+ * {@link #updateBatch}.
+ */
+public interface BatchUpdatable {
+
+    /**
+     * Update a batch of neurons that all use this type of rule in one loop. Each neuron keeps its own rule instance,
+     * which holds its parameters and internal state, but activations and inputs are passed in as primitive arrays.
+     * Implementations must give the same results as calling {@link NeuronUpdateRule#update(Neuron)} on each neuron,
+     * including any clipping that {@link Neuron#setActivation(double)} would apply.
+     *
+     * @param rules       the rule of each neuron; all of the same class as this rule
+     * @param activations activations on entry, updated activations on return
+     * @param inputs      total input to each neuron
+     * @param spikes      set to whether each neuron spiked. Only written by spiking rules.
+     * @param size        number of entries of the arrays to update
+     * @param time        current network time
+     * @param timeStep    network time step
+     */
+    void updateBatch(NeuronUpdateRule[] rules, double[] activations, double[] inputs, boolean[] spikes, int size,
+                     double time, double timeStep);
+
+}
@@ -16,6 +16,7 @@ package org.simbrain.network.subnetworks;
 import org.simbrain.network.NetworkModel;
 import org.simbrain.network.core.Network;
 import org.simbrain.network.core.Neuron;
+import org.simbrain.network.matrix.NeuronArray;
 import org.simbrain.network.neuron_update_rules.LinearRule;
 import org.simbrain.network.trainers.Trainable;
 import org.simbrain.network.trainers.TrainingSet;
@@ -44,6 +45,7 @@ public class BackpropNetwork extends FeedForward implements Trainable {
     public BackpropNetwork(Network network, int[] nodesPerLayer, Point2D initialPosition) {
         super(network, nodesPerLayer, initialPosition, new LinearRule());
         setLabel("Backprop");
+        initActivationFunctions();
     }
 
     /**
@@ -55,6 +57,16 @@ public class BackpropNetwork extends FeedForward implements Trainable {
     public BackpropNetwork(Network network, int[] nodesPerLayer) {
         super(network, nodesPerLayer, new Point2D.Double(1, 1), new LinearRule());
         setLabel("Backprop");
+        initActivationFunctions();
+    }
+
+    /**
+     * Use logistic activation functions above the input layer.
+     */
+    private void initActivationFunctions() {
+        for (NeuronArray layer : getNAList().subList(1, getNAList().size())) {
+            layer.setActivationFunction(NeuronArray.ActivationFunction.LOGISTIC);
+        }
     }
 
     @Override
@@ -1,709 +1,665 @@
-// /*
-//  * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
-//  *
-//  * This program is free software; you can redistribute it and/or modify
-//  * it under the terms of the GNU General Public License as published by
-//  * the Free Software Foundation; either version 2 of the License, or
-//  * (at your option) any later version.
-//  *
-//  * This program is distributed in the hope that it will be useful,
-//  * but WITHOUT ANY WARRANTY; without even the implied warranty of
-//  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
-//  * GNU General Public License for more details.
-//  *
-//  * You should have received a copy of the GNU General Public License
-//  * along with this program; if not, write to the Free Software
-//  * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
-//  */
-// package org.simbrain.network.subnetworks;
-//
-// import org.simbrain.network.NetworkModel;
-// import org.simbrain.network.connections.AllToAll;
-// import org.simbrain.network.connections.Sparse;
-// import org.simbrain.network.core.Network;
-// import org.simbrain.network.core.Network.TimeType;
-// import org.simbrain.network.core.Neuron;
-// import org.simbrain.network.core.NeuronUpdateRule;
-// import org.simbrain.network.groups.NeuronGroup;
-// import org.simbrain.network.groups.Subnetwork;
-// import org.simbrain.network.groups.SynapseGroup;
-// import org.simbrain.network.neuron_update_rules.SigmoidalRule;
-// import org.simbrain.network.trainers.Trainable;
-// import org.simbrain.network.trainers.Trainer;
-// import org.simbrain.network.trainers.TrainingSet;
-// import org.simbrain.network.util.Direction;
-// import org.simbrain.util.math.NumericMatrix;
-// import org.simbrain.util.math.ProbDistributions.UniformDistribution;
-// import org.simbrain.util.math.ProbabilityDistribution;
-// import org.simbrain.util.math.SimbrainMath;
-//
-// import java.awt.geom.Point2D;
-// import java.util.ArrayList;
-// import java.util.List;
-//
-// import static org.simbrain.network.util.NetworkLayoutManagerKt.offsetNeuronGroup;
-//
-// /**
-//  * Builds an Echo-State Network with options for all valid weight
-//  * configurations.
-//  *
-//  * @author Zoë Tosi
-//  */
-// public class EchoStateNetwork extends Subnetwork {
-//
-//     /**
-//      * Number of input nodes.
-//      */
-//     private int numInputs;
-//
-//     /**
-//      * Number of reservoir nodes.
-//      */
-//     private int numResNodes;
-//
-//     /**
-//      * Number of output nodes.
-//      */
-//     private int numOutputs;
-//
-//     private TimeType timeType;
-//
-//     /**
-//      * Desired spectral radius (max eigenvalue) of the reservoir's weight
-//      * matrix. Typical range is .8 -1.
-//      */
-//     private double spectralRadius;
-//
-//     /**
-//      * Whether the network has weights from the output to the reservoir (not
-//      * trained.)
-//      */
-//     private boolean backWeights = true;
-//
-//     /**
-//      * Whether the network has recurrent output weights (trained).
-//      */
-//     private boolean recurrentOutWeights;
-//
-//     /**
-//      * Whether the network has direct input to output connections (trained).
-//      */
-//     private boolean directInOutWeights;
-//
-//     /**
-//      * Reservoir neuron type
-//      */
-//     private NeuronUpdateRule reservoirNeuronType = new SigmoidalRule();
-//
-//     /**
-//      * Reference to input layer.
-//      */
-//     private NeuronGroup inputLayer;
-//
-//     /**
-//      * Reference to input layer.
-//      */
-//     private NeuronGroup reservoirLayer;
-//
-//     /**
-//      * Reference to input layer.
-//      */
-//     private NeuronGroup outputLayer;
-//
-//     // /** Default TANH neurons for the reservoir */ {
-//     //     ((SigmoidalRule) reservoirNeuronType).setSquashFunctionType(SquashingFunctionEnum.TANH);
-//     // }
-//
-//     /**
-//      * Initial position of network (from bottom left).
-//      */
-//     private Point2D initialPosition;
-//
-//     /**
-//      * Default space between layers
-//      */
-//     private static final int DEFAULT_LAYER_INTERVAL = 300;
-//
-//     /**
-//      * space between layers
-//      */
-//     private int betweenLayerInterval = DEFAULT_LAYER_INTERVAL;
-//
-//     /**
-//      * Default space between layers
-//      */
-//     private static final int DEFAULT_NEURON_INTERVAL = 50;
-//
-//     /**
-//      * space between neurons within layers
-//      */
-//     private int betweenNeuronInterval = DEFAULT_NEURON_INTERVAL;
-//
-//     /**
-//      * Whether to use noise or not.
-//      */
-//     private boolean noise;
-//
-//     /**
-//      * A noise generator.
-//      */
-//     private ProbabilityDistribution noiseGenerator = UniformDistribution.create();
-//
-//     /**
-//      * Input data. The sequence of inputs to be fed to the ESN's input layer.
-//      * Note that this is not the same as the input data used by the underlying
-//      * classifier (embedded in the trainable object created when getTrainer is
-//      * called).
-//      */
-//     private double[][] inputData;
-//
-//     /**
-//      * Target Data. The desired sequence of inputs from the ESN's output layer.
-//      */
-//     private double[][] targetData;
-//
-//     /**
-//      * Constructor with size of layers specified.
-//      *
-//      * @param network         the root network wherein ESNBuilder will build components
-//      * @param inputNodes      number of input nodes
-//      * @param reservoirNodes  number of reservoir nodes
-//      * @param outputNodes     number of output nodes
-//      * @param initialPosition the initial position
-//      */
-//     public EchoStateNetwork(final Network network, int inputNodes, int reservoirNodes, int outputNodes, Point2D initialPosition) {
-//         super(network);
-//         this.initialPosition = initialPosition;
-//         this.numInputs = inputNodes;
-//         this.numResNodes = reservoirNodes;
-//         this.numOutputs = outputNodes;
-//         setLabel("Echo State Network");
-//     }
-//
-//     /**
-//      * Creates an empty ESN where neuron groups and synapse groups must be
-//      * manually added.
-//      *
-//      * @param network
-//      * @param initialPosition
-//      */
-//     public EchoStateNetwork(final Network network, Point2D initialPosition) {
-//         super(network);
-//         this.initialPosition = initialPosition;
-//         setLabel("Echo-State Network");
-//     }
-//
-//     /**
-//      * Initializes the input layer from a neuron group and adds it to the ESN.
-//      *
-//      * @param neuronGroup
-//      */
-//     public void initializeInputLayer(NeuronGroup neuronGroup) {
-//         if (inputLayer != null) {
-//             throw new IllegalStateException("The input layer has already" + " been set.");
-//         }
-//         inputLayer = neuronGroup;
-//         numInputs = inputLayer.size();
-//         inputLayer.setLabel("Inputs");
-//         inputLayer.setClamped(true);
-//         addNeuronGroup(neuronGroup);
-//     }
-//
-//     /**
-//      * Initializes the reservoir. This method must be given the recurrent
-//      * synapse group in addition to the neuron group associated with the
-//      * reservoir. This method scales the weights of the synapse group to
-//      * conform the desired spectral radius and sets the spectral radius of this
-//      * esn accordingly.
-//      *
-//      * @param neuronGroup
-//      * @param synapseGroup
-//      * @param spectralRadius
-//      */
-//     public void initializeReservoir(NeuronGroup neuronGroup, SynapseGroup synapseGroup, double spectralRadius) {
-//         if (reservoirLayer != null) {
-//             throw new IllegalStateException("The reservoir layer has already" + " been set.");
-//         }
-//         this.spectralRadius = spectralRadius;
-//         reservoirLayer = neuronGroup;
-//         reservoirLayer.setGridThreshold(9);
-//         reservoirLayer.setLayoutBasedOnSize();
-//         reservoirLayer.setLabel("Reservoir");
-//         numResNodes = reservoirLayer.size();
-//         addNeuronGroup(neuronGroup);
-//         addSynapseGroup(synapseGroup);
-//         // Scale the reservoir's weights to have the desired spectral radius
-//         SimbrainMath.scaleEigenvalue(reservoirLayer.getNeuronList(), reservoirLayer.getNeuronList(), spectralRadius);
-//     }
-//
-//     /**
-//      * Initializes the output layer and adds it to the ESN.
-//      *
-//      * @param neuronGroup
-//      */
-//     public void initializeOutput(NeuronGroup neuronGroup) {
-//         if (outputLayer != null) {
-//             throw new IllegalStateException("The output layer has already" + " been set.");
-//         }
-//         this.outputLayer = neuronGroup;
-//         numOutputs = outputLayer.size();
-//         outputLayer.setLabel("Output");
-//         this.addNeuronGroup(neuronGroup);
-//     }
-//
-//     /**
-//      * A helper method which positions the layers relative to each other in
-//      * an aesthetically pleasing arrangement.
-//      */
-//     public void positionLayers() {
-//         offsetNeuronGroup(inputLayer, reservoirLayer, Direction.NORTH, betweenLayerInterval);
-//         offsetNeuronGroup(reservoirLayer, outputLayer, Direction.NORTH, betweenLayerInterval);
-//         reservoirLayer.offset(-2 * reservoirLayer.getWidth() / 3, 0);
-//     }
-//
-//     /**
-//      * {@inheritDoc}
-//      * Updates the ESN layer by layer, input then reservoir then output.
-//      */
-//     @Override
-//     public void update() {
-//         inputLayer.update();
-//         reservoirLayer.update();
-//         outputLayer.update();
-//     }
-//
-//     /**
-//      * Connects all the layers of the network based on 3 connection objects each
-//      * with their own connection parameters. Also scales the spectral radius of
-//      * the recurrent connections in the reservoir.
-//      *
-//      * @param inToRes      the connection object governing how the input connects to the
-//      *                     reservoir.
-//      * @param resRecurrent the connection object governing how the reservoir connects to
-//      *                     itself.
-//      * @param outToRes     the connection object governing how the output connects to the
-//      *                     reservoir. If these connections do not exist, pass null. If
-//      *                     backWeights is false these connections will not be made
-//      *                     regardless of whether or not outToRes is null.
-//      */
-//     public void connectLayers(Sparse inToRes, Sparse resRecurrent, Sparse outToRes) {
-//
-//         addSynapseGroup(connectNeuronGroups(inputLayer, reservoirLayer, inToRes));
-//         addSynapseGroup(connectNeuronGroups(reservoirLayer, reservoirLayer, resRecurrent));
-//
-//         if (backWeights) {
-//             addSynapseGroup(connectNeuronGroups(outputLayer, reservoirLayer, outToRes));
-//         }
-//
-//         // Weights: reservoir layer to output layer
-//         AllToAll allToAll = new AllToAll();
-//         connectNeuronGroups(reservoirLayer, outputLayer, allToAll);
-//
-//         // If recurrent output weights are on, set up an empty, growing synapse
-//         // group on the output layer
-//         if (recurrentOutWeights) {
-//             connectNeuronGroups(outputLayer, outputLayer);
-//         }
-//
-//         // If direct in-out weights are on, set up an empty, growing synapse
-//         // group connecting the input layer directly to the output layer
-//         if (directInOutWeights) {
-//             connectNeuronGroups(inputLayer, outputLayer);
-//         }
-//
-//         // Scale the reservoir's weights to have the desired spectral radius
-//         SimbrainMath.scaleEigenvalue(reservoirLayer.getNeuronList(), reservoirLayer.getNeuronList(), spectralRadius);
-//
-//     }
-//
-//     /**
-//      * Fills and returns an ArrayList with neurons governed by the specified
-//      * node type.
-//      *
-//      * @param nodeType the desired update rule governing all the neurons in the
-//      *                 layer.
-//      * @param nodes    the number of nodes in the layer.
-//      * @return an ArrayList of nodes number of neurons all governed by the
-//      * NeuronUpdateRule nodeType.
-//      */
-//     private ArrayList<Neuron> initializeLayer(NeuronUpdateRule nodeType, int nodes) {
-//         ArrayList<Neuron> layer = new ArrayList<Neuron>(nodes);
-//         for (int i = 0; i < nodes; i++) {
-//             Neuron node = new Neuron(getParentNetwork(), nodeType);
-//             node.setIncrement(1); // TODO: Reasonable?
-//             layer.add(node);
-//         }
-//         return layer;
-//     }
-//
-//     /**
-//      * Return a trainer object that can be used to train this ESN. The trainer
-//      * has harvested state data as "inputs" and the desired outputs as outputs.
-//      *
-//      * @return the trainer.
-//      */
-//     public Trainer getTrainer() {
-//
-//         // Exception if training data is not set properly at this point
-//         if (targetData[0].length != outputLayer.getNeuronList().size()) {
-//             throw new IllegalArgumentException("Output data length does not " + "match the number of output nodes");
-//         }
-//
-//         // Build the network to be used in state harvesting
-//         final ArrayList<Neuron> full = new ArrayList<Neuron>();
-//         if (directInOutWeights) {
-//             for (Neuron node : getInputLayer().getNeuronList()) {
-//                 full.add(node);
-//             }
-//         }
-//         for (Neuron node : reservoirLayer.getNeuronList()) {
-//             full.add(node);
-//         }
-//         if (recurrentOutWeights) {
-//             for (Neuron node : this.getOutputLayer().getNeuronList()) {
-//                 full.add(node);
-//             }
-//         }
-//
-//         // Handle non-linearities in the outputs.
-//         // If output layer neurons are sigmoidal, transform the desired
-//         // output to the inverse of the sigmoidal, so that when it's put
-//         // in to the sigmoidal it will produce the desired output.
-//         for (Neuron n : outputLayer.getNeuronList()) {
-//             if (n.getUpdateRule() instanceof SigmoidalRule) {
-//                 for (int i = 0; i < targetData.length; i++) {
-//                     int col = outputLayer.getNeuronList().indexOf(n);
-//                     targetData[i][col] = ((SigmoidalRule) n.getUpdateRule()).getInverse(targetData[i][col]);
-//                 }
-//             }
-//         }
-//
-//         // Make the training set by harvesting reservoir states
-//         final double[][] harvestedData = harvestData();
-//         if (harvestedData[0].length != full.size()) {
-//             throw new IllegalArgumentException("Input data length does not " + "match training node set");
-//         }
-//         // System.out.println("-------");
-//         // System.out.println(Utils.doubleMatrixToString(mainInputData));
-//         final TrainingSet trainingSet = new TrainingSet();
-//         trainingSet.setInputData(harvestedData);
-//         trainingSet.setTargetData(targetData);
-//
-//         // Make Trainable object
-//         Trainable trainable = new Trainable() {
-//
-//             @Override
-//             public List<Neuron> getInputNeurons() {
-//                 return full;
-//             }
-//
-//             @Override
-//             public List<Neuron> getOutputNeurons() {
-//                 return getOutputLayer().getNeuronList();
-//             }
-//
-//             @Override
-//             public TrainingSet getTrainingSet() {
-//                 return trainingSet;
-//             }
-//
-//             @Override
-//             public void initNetwork() {
-//             }
-//
-//             @Override
-//             public NetworkModel getNetwork() {
-//                 return EchoStateNetwork.this;
-//             }
-//
-//         };
-//         // Create the offline trainer.
-//         LMSOffline trainer = new LMSOffline(trainable);
-//         return trainer;
-//
-//     }
-//
-//     /**
-//      * A general method for harvesting state data for an arbitrary Echo-State
-//      * Network. This method iterates through each row of input and teacher data
-//      * (if the network possesses back weights and/or recurrent output weights),
-//      * and updates the reservoir. Depending on the ESN's un-frozen connectivity
-//      * the resulting return matrix will have rows consisting of concatenated
-//      * input, reservoir, and (teacher-forced) output states in that order.
-//      *
-//      * @return a matrix of data to be used for training
-//      */
-//     private double[][] harvestData() {
-//
-//         // The minimum number of state matrix columns
-//         int columnNumber = numResNodes;
-//
-//         if (directInOutWeights) {
-//             // Add columns for the input layer states
-//             columnNumber += numInputs;
-//         }
-//         if (recurrentOutWeights) {
-//             // Add columns for output layer states
-//             columnNumber += numOutputs;
-//         }
-//
-//         // State matrix
-//         double[][] returnMatrix = new double[inputData.length][columnNumber];
-//
-//         boolean harvest = false;
-//
-//         // Two full passes over the data, one where states are being harvested
-//         // and one where internal dynamics are being allowed to settle.
-//         for (int t = 0; t < 2; t++) {
-//
-//             // Iterate through each row of input data
-//             for (int row = 0; row < inputData.length; row++) {
-//
-//                 int col = 0;
-//
-//                 // Clamp input neurons based on input data
-//                 for (Neuron neuron : getInputLayer().getNeuronList()) {
-//                     double clampValue = inputData[row][col];
-//                     neuron.setActivation(clampValue);
-//                     if (directInOutWeights && harvest) {
-//                         // Add input states to state matrix if direct in to out
-//                         // connections are desired
-//                         returnMatrix[row][col] = neuron.getActivation();
-//                         col++;
-//                     }
-//
-//                 }
-//
-//                 if (backWeights) {
-//                     int count = 0;
-//                     double clampValue = 0.5;
-//                     for (Neuron neuron : getOutputLayer().getNeuronList()) {
-//                         // Teacher forcing
-//                         if (row > 0) {
-//                             clampValue = targetData[row - 1][count];
-//                         }
-//                         neuron.setActivation(clampValue);
-//                         count++;
-//                     }
-//                 }
-//
-//                 // Update the reservoir: handles teacher-forced back-weights
-//                 for (Neuron n : getReservoirLayer().getNeuronList()) {
-//                     n.update();
-//                 }
-//                 for (Neuron n : getReservoirLayer().getNeuronList()) {
-//                     double val = n.getBuffer();
-//
-//                     if (noise) {
-//                         n.setActivation(val + reservoirNoise());
-//                     } else {
-//                         n.setActivation(val);
-//                     }
-//
-//                     if (harvest) {
-//                         returnMatrix[row][col] = n.getActivation();
-//                     }
-//                     col++;
-//                 }
-//
-//                 // Add output states to state matrix if there are recurrent
-//                 // outputs
-//                 if (recurrentOutWeights && harvest) {
-//                     for (int i = 0; i < targetData[0].length; i++) {
-//                         // Teacher-forcing
-//                         returnMatrix[row][col] = targetData[row][i];
-//                         col++;
-//                     }
-//                 }
-//             }
-//             harvest = true;
-//         }
-//
-//         return returnMatrix;
-//     }
-//
-//     /**
-//      * Compute the reservoir noise.
-//      *
-//      * @return noise reservoir noise.
-//      */
-//     private double reservoirNoise() {
-//         return noiseGenerator.getRandom();
-//     }
-//
-//     /**
-//      * Set spectral radius.
-//      *
-//      * @param spectralRadius the spectral radius
-//      */
-//     public void setSpectralRadius(double spectralRadius) {
-//         this.spectralRadius = spectralRadius;
-//     }
-//
-//     /**
-//      * Set type of reservoir neurons.
-//      *
-//      * @param reservoirNeuronType
-//      */
-//     public void setReservoirNeuronType(NeuronUpdateRule reservoirNeuronType) {
-//         this.reservoirNeuronType = reservoirNeuronType;
-//     }
-//
-//     /**
-//      * Set to true for weights from output to reservoir.
-//      *
-//      * @param backWeights
-//      */
-//     public void setBackWeights(boolean backWeights) {
-//         this.backWeights = backWeights;
-//     }
-//
-//     /**
-//      * Set to true for the output to receive input from itself from the previous
-//      * time-step.
-//      *
-//      * @param recurrentWeights
-//      */
-//     public void setRecurrentOutWeights(boolean recurrentWeights) {
-//         this.recurrentOutWeights = recurrentWeights;
-//     }
-//
-//     /**
-//      * Set to true for weights directly from input to output.
-//      *
-//      * @param directInOutWeights weights directly from input to output.
-//      */
-//     public void setDirectInOutWeights(boolean directInOutWeights) {
-//         this.directInOutWeights = directInOutWeights;
-//     }
-//
-//     /**
-//      * @return the inputLayer
-//      */
-//     public NeuronGroup getInputLayer() {
-//         return inputLayer;
-//     }
-//
-//     /**
-//      * @return the reservoirLayer
-//      */
-//     public NeuronGroup getReservoirLayer() {
-//         return reservoirLayer;
-//     }
-//
-//     /**
-//      * @return the outputLayer
-//      */
-//     public NeuronGroup getOutputLayer() {
-//         return outputLayer;
-//     }
-//
-//     /**
-//      * @return the inputData
-//      */
-//     public double[][] getInputData() {
-//         return inputData;
-//     }
-//
-//     /**
-//      * @param inputData the inputData to set
-//      */
-//     public void setInputData(double[][] inputData) {
-//         this.inputData = inputData;
-//     }
-//
-//     /**
-//      * @return the targetData
-//      */
-//     public double[][] getTargetData() {
-//         return targetData;
-//     }
-//
-//     /**
-//      * @param targetData the targetData to set
-//      */
-//     public void setTargetData(double[][] targetData) {
-//         this.targetData = targetData;
-//     }
-//
-//     /**
-//      * @return the noise
-//      */
-//     public boolean getUseNoise() {
-//         return noise;
-//     }
-//
-//     /**
-//      * @param noise the noise to set
-//      */
-//     public void setUseNoise(boolean noise) {
-//         this.noise = noise;
-//     }
-//
-//     public ProbabilityDistribution getNoiseGenerator() {
-//         return noiseGenerator;
-//     }
-//
-//     public void setNoiseGenerator(final ProbabilityDistribution noise) {
-//         this.noiseGenerator = noise;
-//     }
-//
-//     public void setNoise(boolean noise) {
-//         this.noise = noise;
-//     }
-//
-//     // TODO
-//     //@Override
-//     //public String getUpdateMethodDescription() {
-//     //    return "Input layer, reservoir, output layer";
-//     //}
-//
-//     public TimeType getTimeType() {
-//         return timeType;
-//     }
-//
-//     public void setTimeType(TimeType timeType) {
-//         this.timeType = timeType;
-//     }
-//
-//     /**
-//      * Wrap input data in a DataMatrix Object.
-//      *
-//      * @return the data matrix containing this data.
-//      */
-//     public NumericMatrix getInputDataMatrix() {
-//         return new NumericMatrix() {
-//
-//             @Override
-//             public void setData(double[][] data) {
-//                 setInputData(data);
-//             }
-//
-//             @Override
-//             public double[][] getData() {
-//                 return getInputData();
-//             }
-//         };
-//     }
-//
-//     /**
-//      * Wrap target data in a DataMatrix Object.
-//      *
-//      * @return the data matrix containing this data.
-//      */
-//     public NumericMatrix getTargetDataMatrix() {
-//         return new NumericMatrix() {
-//
-//             @Override
-//             public void setData(double[][] data) {
-//                 setTargetData(data);
-//             }
-//
-//             @Override
-//             public double[][] getData() {
-//                 return getTargetData();
-//             }
-//         };
-//     }
-//
-// }
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.network.subnetworks;
+
+import org.simbrain.network.core.Network;
+import org.simbrain.network.groups.Subnetwork;
+import org.simbrain.network.matrix.NeuronArray;
+import org.simbrain.network.matrix.NeuronArray.ActivationFunction;
+import org.simbrain.network.matrix.WeightMatrix;
+import org.simbrain.network.trainers.NormalEquations;
+import org.simbrain.network.util.Direction;
+import org.simbrain.util.UserParameter;
+import org.simbrain.util.math.CompressedRowMatrix;
+import org.simbrain.util.math.ProbDistributions.UniformDistribution;
+import org.simbrain.util.math.ProbabilityDistribution;
+import smile.math.matrix.Matrix;
+
+import java.awt.geom.Point2D;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.simbrain.network.util.NetworkLayoutManagerKt.offsetNeuronGroup;
+
+/**
+ * An Echo-State Network: an input array, a large sparsely connected reservoir of tanh units, and an output array
+ * whose incoming weights (the readout) are the only weights trained.
+ * <p>
+ * The recurrent reservoir weights are held in a {@link CompressedRowMatrix}, so a reservoir of tens of thousands of
+ * units only costs memory and time in proportion to its connections. They are scaled to the desired spectral radius
+ * using a sparse power iteration. The other connections are {@link WeightMatrix} objects: input to reservoir, output
+ * to reservoir ("back weights", not trained), and the trained reservoir to output, input to output and output to
+ * output weights. Connections that are turned off are kept as matrices of zeros.
+ * <p>
+ * {@link #harvest(double[][], double[][], int, double[][])} runs the reservoir over an input sequence using primitive
+ * arrays only, writing its states into a preallocated matrix without firing any events, and {@link #train(double[][],
+ * double[][], int)} uses it to fit the readout by ridge regression, a chunk of states at a time.
+ *
+ * @author Zoë Tosi
+ */
+public class EchoStateNetwork extends Subnetwork {
+
+    /**
+     * Smallest reservoir whose units are updated in parallel when harvesting.
+     */
+    private static final int MIN_PARALLEL_NODES = 1024;
+
+    /**
+     * Number of products used to estimate the spectral radius of the reservoir.
+     */
+    private static final int POWER_ITERATIONS = 100;
+
+    /**
+     * Space between layers.
+     */
+    private static final int BETWEEN_LAYER_INTERVAL = 300;
+
+    private final int numInputs;
+
+    private final int numResNodes;
+
+    private final int numOutputs;
+
+    private final NeuronArray inputLayer;
+
+    private final NeuronArray reservoirLayer;
+
+    private final NeuronArray outputLayer;
+
+    private final WeightMatrix inputToReservoir;
+
+    private final WeightMatrix outputToReservoir;
+
+    private final WeightMatrix reservoirToOutput;
+
+    private final WeightMatrix inputToOutput;
+
+    private final WeightMatrix outputToOutput;
+
+    /**
+     * Recurrent weights of the reservoir, row i holding the weights to unit i.
+     */
+    private CompressedRowMatrix reservoirWeights;
+
+    /**
+     * Desired spectral radius (largest absolute eigenvalue) of the reservoir weights. Typical range is .8 - 1.
+     */
+    @UserParameter(label = "Spectral radius", description = "Largest absolute eigenvalue of the reservoir weights",
+            minimumValue = 0, increment = .05, order = 10)
+    private double spectralRadius = .95;
+
+    /**
+     * Fraction of the reservoir each reservoir unit receives connections from.
+     */
+    @UserParameter(label = "Reservoir density", description = "Fraction of the reservoir each unit is connected to",
+            minimumValue = 0, maximumValue = 1, increment = .01, order = 20)
+    private double density = .1;
+
+    /**
+     * Input to reservoir weights are drawn uniformly from [-inputWeightScale, inputWeightScale].
+     */
+    @UserParameter(label = "Input weight scale", minimumValue = 0, increment = .1, order = 30)
+    private double inputWeightScale = 1;
+
+    /**
+     * Back weights are drawn uniformly from [-backWeightScale, backWeightScale].
+     */
+    @UserParameter(label = "Back weight scale", minimumValue = 0, increment = .1, order = 40)
+    private double backWeightScale = 1;
+
+    /**
+     * Whether the network has weights from the output to the reservoir (not trained).
+     */
+    @UserParameter(label = "Back weights", description = "Weights from the output to the reservoir", order = 50)
+    private boolean backWeights = true;
+
+    /**
+     * Whether the network has recurrent output weights (trained).
+     */
+    @UserParameter(label = "Recurrent output weights", description = "Trained weights from the output to itself",
+            order = 60)
+    private boolean recurrentOutWeights;
+
+    /**
+     * Whether the network has direct input to output connections (trained).
+     */
+    @UserParameter(label = "Direct input to output weights", description = "Trained weights from the input to the " +
+            "output", order = 70)
+    private boolean directInOutWeights;
+
+    /**
+     * Ridge regularization used when training the readout.
+     */
+    @UserParameter(label = "Ridge", description = "Penalty on the sum of squared readout weights", minimumValue = 0,
+            increment = .0001, order = 80)
+    private double ridge = 1E-6;
+
+    /**
+     * Rows of harvested states held in memory at a time when training.
+     */
+    @UserParameter(label = "Chunk size", description = "Reservoir states harvested at a time when training",
+            minimumValue = 1, order = 90)
+    private int chunkSize = 1000;
+
+    /**
+     * Whether noise is added to the net input of the reservoir units.
+     */
+    @UserParameter(label = "Use noise", order = 100)
+    private boolean useNoise;
+
+    /**
+     * Reservoir noise.
+     */
+    private ProbabilityDistribution noiseGenerator = UniformDistribution.builder().floor(-.001).ceil(.001).build();
+
+    private transient Random random = new Random();
+
+    /**
+     * Create an echo state network with back weights and no direct or recurrent output weights.
+     *
+     * @param network         the parent network
+     * @param numInputs       number of input units
+     * @param numResNodes     number of reservoir units
+     * @param numOutputs      number of output units
+     * @param initialPosition location of the input layer, or null
+     */
+    public EchoStateNetwork(final Network network, int numInputs, int numResNodes, int numOutputs,
+                            Point2D initialPosition) {
+        super(network);
+        setLabel("Echo State Network");
+        this.numInputs = numInputs;
+        this.numResNodes = numResNodes;
+        this.numOutputs = numOutputs;
+
+        inputLayer = new NeuronArray(network, numInputs);
+        inputLayer.setLabel("Input");
+        reservoirLayer = new NeuronArray(network, numResNodes);
+        reservoirLayer.setLabel("Reservoir");
+        reservoirLayer.setActivationFunction(ActivationFunction.TANH);
+        outputLayer = new NeuronArray(network, numOutputs);
+        outputLayer.setLabel("Output");
+        addNeuronArray(inputLayer);
+        addNeuronArray(reservoirLayer);
+        addNeuronArray(outputLayer);
+        if (initialPosition != null) {
+            inputLayer.setLocation(initialPosition);
+        }
+        offsetNeuronGroup(inputLayer, reservoirLayer, Direction.NORTH, BETWEEN_LAYER_INTERVAL / 2, 100, 200);
+        offsetNeuronGroup(reservoirLayer, outputLayer, Direction.NORTH, BETWEEN_LAYER_INTERVAL / 2, 100, 200);
+
+        inputToReservoir = connect(inputLayer, reservoirLayer);
+        outputToReservoir = connect(outputLayer, reservoirLayer);
+        reservoirToOutput = connect(reservoirLayer, outputLayer);
+        inputToOutput = connect(inputLayer, outputLayer);
+        outputToOutput = connect(outputLayer, outputLayer);
+        outputToReservoir.setUseCurve(true);
+        reservoirToOutput.setUseCurve(true);
+        reservoirLayer.setRenderActivations(numResNodes <= 1000);
+
+        randomize();
+    }
+
+    private WeightMatrix connect(NeuronArray source, NeuronArray target) {
+        WeightMatrix wm = new WeightMatrix(getParentNetwork(), source, target);
+        wm.clear();
+        addWeightMatrix(wm);
+        return wm;
+    }
+
+    /**
+     * Draw new input, back and reservoir weights, rescaling the reservoir to {@link #spectralRadius}, and clear the
+     * readout.
+     */
+    public void randomize() {
+        fillUniform(inputToReservoir, inputWeightScale);
+        if (backWeights) {
+            fillUniform(outputToReservoir, backWeightScale);
+        } else {
+            outputToReservoir.clear();
+        }
+        Random random = getRandom();
+        reservoirWeights = CompressedRowMatrix.random(numResNodes, numResNodes, density,
+                () -> 2 * random.nextDouble() - 1, random);
+        scaleReservoir();
+        reservoirToOutput.clear();
+        inputToOutput.clear();
+        outputToOutput.clear();
+    }
+
+    private void fillUniform(WeightMatrix wm, double scale) {
+        Matrix weights = wm.getWeightMatrix();
+        Random random = getRandom();
+        for (int j = 0; j < weights.ncols(); j++) {
+            for (int i = 0; i < weights.nrows(); i++) {
+                weights.set(i, j, scale * (2 * random.nextDouble() - 1));
+            }
+        }
+        wm.getEvents().fireUpdated();
+    }
+
+    /**
+     * Rescale the reservoir weights so that their spectral radius, estimated by power iteration, is {@link
+     * #spectralRadius}.
+     */
+    private void scaleReservoir() {
+        double current = reservoirWeights.spectralRadius(POWER_ITERATIONS, getRandom());
+        if (current > 0) {
+            reservoirWeights.mul(spectralRadius / current);
+        }
+    }
+
+    @Override
+    public void update() {
+        reservoirLayer.updateInputs();
+        reservoirLayer.addInputs(reservoirWeights.mv(reservoirLayer.getActivations()));
+        if (useNoise) {
+            double[] noise = new double[numResNodes];
+            for (int i = 0; i < noise.length; i++) {
+                noise[i] = noiseGenerator.nextRand();
+            }
+            reservoirLayer.addInputs(noise);
+        }
+        reservoirLayer.update();
+        outputLayer.updateInputs();
+        outputLayer.update();
+    }
+
+    /**
+     * Returns the number of columns of a harvested state: the inputs if there are direct input to output weights,
+     * the reservoir, and the previous outputs if there are recurrent output weights.
+     */
+    public int getStateSize() {
+        return (directInOutWeights ? numInputs : 0) + numResNodes + (recurrentOutWeights ? numOutputs : 0);
+    }
+
+    /**
+     * Run the reservoir over an input sequence and return its states after a washout period.
+     *
+     * @param inputs  one row of input values per time step
+     * @param teacher one row of desired outputs per time step, used to drive the back weights and recurrent output
+     *                weights (teacher forcing). May be null if there are neither.
+     * @param washout number of initial time steps whose states are discarded
+     * @return one row per time step after the washout, with {@link #getStateSize()} columns
+     */
+    public double[][] harvest(double[][] inputs, double[][] teacher, int washout) {
+        double[][] states = new double[Math.max(0, inputs.length - washout)][getStateSize()];
+        harvest(inputs, teacher, washout, states);
+        return states;
+    }
+
+    /**
+     * Run the reservoir over an input sequence, writing its states after a washout period into a preallocated
+     * matrix. The run starts from the current activations of the reservoir and output, which are left at their final
+     * values, so a long sequence can be harvested in pieces. Only primitive arrays are used and no events are fired
+     * until the final activations are set.
+     *
+     * @param inputs  one row of input values per time step
+     * @param teacher one row of desired outputs per time step, used to drive the back weights and recurrent output
+     *                weights (teacher forcing). May be null if there are neither.
+     * @param washout number of initial time steps whose states are discarded
+     * @param states  matrix with at least inputs.length - washout rows of {@link #getStateSize()} columns. Row i
+     *                receives the state at time step washout + i.
+     */
+    public void harvest(double[][] inputs, double[][] teacher, int washout, double[][] states) {
+        run(inputs, teacher, 0, inputs.length, washout, states);
+    }
+
+    /**
+     * Run the reservoir from time step from to time step to, writing the state at each step t >= washout into row t -
+     * max(from, washout) of states.
+     */
+    private void run(double[][] inputs, double[][] teacher, int from, int to, int washout, double[][] states) {
+        if (teacher == null && (backWeights || recurrentOutWeights)) {
+            throw new IllegalArgumentException("Teacher outputs are needed to drive the back or recurrent output " +
+                    "weights");
+        }
+        int first = Math.max(from, washout);
+        if (to > first && (states.length < to - first || states[0].length < getStateSize())) {
+            throw new IllegalArgumentException("State matrix is " + states.length + "x" + states[0].length
+                    + ". It needs " + (to - first) + " rows and " + getStateSize() + " columns.");
+        }
+
+        double[][] win = inputToReservoir.getWeightMatrix().toArray();
+        double[][] wback = backWeights ? outputToReservoir.getWeightMatrix().toArray() : null;
+        double[] biases = reservoirLayer.getBiases();
+        ActivationFunction function = reservoirLayer.getActivationFunction();
+        double[] x = reservoirLayer.getActivations().clone();
+        double[] xNext = new double[numResNodes];
+        double[] noise = useNoise ? new double[numResNodes] : null;
+        double[] previousOutput = outputLayer.getActivations().clone();
+        double[] input = new double[numInputs];
+
+        for (int t = from; t < to; t++) {
+            input = inputs[t];
+            if (noise != null) {
+                for (int i = 0; i < numResNodes; i++) {
+                    noise[i] = noiseGenerator.nextRand();
+                }
+            }
+            step(input, x, previousOutput, win, wback, biases, noise, function, xNext);
+            double[] swap = x;
+            x = xNext;
+            xNext = swap;
+
+            if (t >= first) {
+                double[] row = states[t - first];
+                int col = 0;
+                if (directInOutWeights) {
+                    System.arraycopy(input, 0, row, col, numInputs);
+                    col += numInputs;
+                }
+                System.arraycopy(x, 0, row, col, numResNodes);
+                col += numResNodes;
+                if (recurrentOutWeights) {
+                    System.arraycopy(previousOutput, 0, row, col, numOutputs);
+                }
+            }
+            if (teacher != null) {
+                previousOutput = teacher[t];
+            }
+        }
+
+        if (to > from) {
+            inputLayer.setActivations(input);
+            reservoirLayer.setActivations(x);
+            outputLayer.setActivations(previousOutput);
+        }
+    }
+
+    /**
+     * Compute the next reservoir state, in parallel for large reservoirs.
+     */
+    private void step(double[] input, double[] x, double[] previousOutput, double[][] win, double[][] wback,
+                      double[] biases, double[] noise, ActivationFunction function, double[] xNext) {
+        if (xNext.length >= MIN_PARALLEL_NODES) {
+            IntStream.range(0, xNext.length).parallel().forEach(i ->
+                    xNext[i] = unitValue(i, input, x, previousOutput, win, wback, biases, noise, function));
+        } else {
+            for (int i = 0; i < xNext.length; i++) {
+                xNext[i] = unitValue(i, input, x, previousOutput, win, wback, biases, noise, function);
+            }
+        }
+    }
+
+    private double unitValue(int i, double[] input, double[] x, double[] previousOutput, double[][] win,
+                             double[][] wback, double[] biases, double[] noise, ActivationFunction function) {
+        double netInput = biases[i] + reservoirWeights.rowTimes(i, x);
+        double[] inputWeights = win[i];
+        for (int j = 0; j < input.length; j++) {
+            netInput += inputWeights[j] * input[j];
+        }
+        if (wback != null) {
+            double[] backWeights = wback[i];
+            for (int k = 0; k < previousOutput.length; k++) {
+                netInput += backWeights[k] * previousOutput[k];
+            }
+        }
+        if (noise != null) {
+            netInput += noise[i];
+        }
+        return function.valueOf(netInput);
+    }
+
+    /**
+     * Train the readout (reservoir to output, and the direct and recurrent output weights if used) by ridge
+     * regression of the targets on the harvested states. States are harvested {@link #chunkSize} rows at a time and
+     * accumulated into the normal equations, so the whole state matrix is never held in memory.
+     *
+     * @param inputs  one row of input values per time step
+     * @param targets one row of desired outputs per time step, also used for teacher forcing
+     * @param washout number of initial time steps not used for training
+     * @return the mean squared error of the trained readout on the net inputs of the output units
+     * @throws IllegalStateException if there are no time steps after the washout, or the equations are singular
+     */
+    public double train(double[][] inputs, double[][] targets, int washout) {
+        int numSteps = Math.min(inputs.length, targets.length);
+        double[][] netInputTargets = getNetInputTargets(targets, numSteps);
+        NormalEquations equations = new NormalEquations(getStateSize(), numOutputs, true);
+        double[][] states = new double[Math.min(chunkSize, Math.max(0, numSteps - washout))][getStateSize()];
+        for (int from = 0; from < numSteps; from += chunkSize) {
+            int to = Math.min(from + chunkSize, numSteps);
+            run(inputs, targets, from, to, washout, states);
+            int first = Math.max(from, washout);
+            if (to > first) {
+                equations.add(states, Arrays.copyOfRange(netInputTargets, first, to));
+            }
+        }
+        Matrix solution = equations.solve(ridge);
+        setReadout(solution);
+        return equations.getSumSquaredError(solution) / ((double) equations.getNumRows() * numOutputs);
+    }
+
+    /**
+     * Returns the net inputs that produce the targets, given the activation function of the output array.
+     */
+    private double[][] getNetInputTargets(double[][] targets, int numSteps) {
+        ActivationFunction function = outputLayer.getActivationFunction();
+        if (function == ActivationFunction.LINEAR) {
+            return targets;
+        }
+        double[][] netInputs = new double[numSteps][numOutputs];
+        for (int t = 0; t < numSteps; t++) {
+            for (int k = 0; k < netInputs[t].length; k++) {
+                netInputs[t][k] = function.inverseOf(targets[t][k]);
+            }
+        }
+        return netInputs;
+    }
+
+    /**
+     * Copy a solution whose columns follow the layout of a harvested state, plus a bias, into the readout matrices
+     * and output biases.
+     */
+    private void setReadout(Matrix solution) {
+        int col = 0;
+        if (directInOutWeights) {
+            copyColumns(solution, col, inputToOutput);
+            col += numInputs;
+        }
+        copyColumns(solution, col, reservoirToOutput);
+        col += numResNodes;
+        if (recurrentOutWeights) {
+            copyColumns(solution, col, outputToOutput);
+            col += numOutputs;
+        }
+        double[] biases = outputLayer.getBiases();
+        for (int k = 0; k < biases.length; k++) {
+            biases[k] = solution.get(k, col);
+        }
+        outputLayer.getEvents().fireUpdated();
+    }
+
+    private static void copyColumns(Matrix solution, int offset, WeightMatrix wm) {
+        Matrix weights = wm.getWeightMatrix();
+        for (int j = 0; j < weights.ncols(); j++) {
+            for (int i = 0; i < weights.nrows(); i++) {
+                weights.set(i, j, solution.get(i, offset + j));
+            }
+        }
+        wm.getEvents().fireUpdated();
+    }
+
+    /**
+     * Set the reservoir and output activations to 0.
+     */
+    public void clearState() {
+        reservoirLayer.clear();
+        outputLayer.clear();
+    }
+
+    public NeuronArray getInputLayer() {
+        return inputLayer;
+    }
+
+    public NeuronArray getReservoirLayer() {
+        return reservoirLayer;
+    }
+
+    public NeuronArray getOutputLayer() {
+        return outputLayer;
+    }
+
+    /**
+     * Returns the recurrent weights of the reservoir. Changes to their values take effect immediately.
+     */
+    public CompressedRowMatrix getReservoirWeights() {
+        return reservoirWeights;
+    }
+
+    public WeightMatrix getReadout() {
+        return reservoirToOutput;
+    }
+
+    public double getSpectralRadius() {
+        return spectralRadius;
+    }
+
+    /**
+     * Set the spectral radius, rescaling the current reservoir weights to match.
+     */
+    public void setSpectralRadius(double spectralRadius) {
+        this.spectralRadius = spectralRadius;
+        scaleReservoir();
+    }
+
+    public double getDensity() {
+        return density;
+    }
+
+    /**
+     * Set the reservoir density. Takes effect when the network is next randomized.
+     */
+    public void setDensity(double density) {
+        this.density = density;
+    }
+
+    public double getInputWeightScale() {
+        return inputWeightScale;
+    }
+
+    public void setInputWeightScale(double inputWeightScale) {
+        this.inputWeightScale = inputWeightScale;
+    }
+
+    public double getBackWeightScale() {
+        return backWeightScale;
+    }
+
+    public void setBackWeightScale(double backWeightScale) {
+        this.backWeightScale = backWeightScale;
+    }
+
+    public boolean isBackWeights() {
+        return backWeights;
+    }
+
+    /**
+     * Set to true for weights from output to reservoir, which are drawn anew; set to false to clear them.
+     */
+    public void setBackWeights(boolean backWeights) {
+        this.backWeights = backWeights;
+        if (backWeights) {
+            fillUniform(outputToReservoir, backWeightScale);
+        } else {
+            outputToReservoir.clear();
+        }
+    }
+
+    public boolean isRecurrentOutWeights() {
+        return recurrentOutWeights;
+    }
+
+    /**
+     * Set to true for the output to receive input from itself from the previous time-step. Either way the weights
+     * are cleared until the readout is trained again.
+     */
+    public void setRecurrentOutWeights(boolean recurrentOutWeights) {
+        this.recurrentOutWeights = recurrentOutWeights;
+        outputToOutput.clear();
+    }
+
+    public boolean isDirectInOutWeights() {
+        return directInOutWeights;
+    }
+
+    /**
+     * Set to true for weights directly from input to output. Either way the weights are cleared until the readout is
+     * trained again.
+     */
+    public void setDirectInOutWeights(boolean directInOutWeights) {
+        this.directInOutWeights = directInOutWeights;
+        inputToOutput.clear();
+    }
+
+    public double getRidge() {
+        return ridge;
+    }
+
+    public void setRidge(double ridge) {
+        this.ridge = ridge;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = Math.max(1, chunkSize);
+    }
+
+    public boolean isUseNoise() {
+        return useNoise;
+    }
+
+    public void setUseNoise(boolean useNoise) {
+        this.useNoise = useNoise;
+    }
+
+    public ProbabilityDistribution getNoiseGenerator() {
+        return noiseGenerator;
+    }
+
+    public void setNoiseGenerator(final ProbabilityDistribution noiseGenerator) {
+        this.noiseGenerator = noiseGenerator;
+    }
+
+    private Random getRandom() {
+        if (random == null) {
+            random = new Random();
+        }
+        return random;
+    }
+
+    /**
+     * Set the random number generator used to draw weights, for reproducible networks.
+     */
+    public void setRandom(Random random) {
+        this.random = random;
+    }
+
+    @Override
+    public String getName() {
+        return "Echo State Network";
+    }
+
+    @Override
+    public void onCommit() {
+    }
+}
@@ -78,6 +78,22 @@ public class LogSTDPRule extends STDPRule {
 
     private double delta_w=0;
 
+    /**
+     * Log-STDP skips synapses whose neurons do not spike, so any neurons are
+     * accepted.
+     */
+    @Override
+    public void init(Synapse synapse) {
+    }
+
+    /**
+     * Log-STDP changes the weight on every time step.
+     */
+    @Override
+    public boolean isEventDriven() {
+        return false;
+    }
+
     /**
      * Updates the synapse's strength using Log-STDP.
      */
@@ -63,6 +63,9 @@ public class PfisterGerstner2006Rule extends SynapseUpdateRule implements Clonea
     // Cached multipliers for trace decays.
     private double tauPlusMult, tauXMult, tauNegMult, tauYMult;
 
+    // Network time at which the traces were last updated.
+    private double lastUpdateTime = Double.NaN;
+
     @Override
     public void init(Synapse synapse) {
         tauPlusMult = 1 / tauPlus;
@@ -86,13 +89,38 @@ public class PfisterGerstner2006Rule extends SynapseUpdateRule implements Clonea
         }
     }
 
+    @Override
+    public boolean isEventDriven() {
+        return true;
+    }
+
+    /**
+     * Traces decay by the same factor on every time step, so instead of
+     * decaying them on each step they are decayed for all the steps since the
+     * last spike when the next one arrives.
+     */
     @Override
     public void update(Synapse synapse) {
         // Time step in ms.
         final double timeStep = synapse.getNetwork().getTimeStep();
+        final double time = synapse.getNetwork().getTime();
         final boolean preSpiked = synapse.getSource().isSpike();
         final boolean postSpiked = synapse.getTarget().isSpike();
 
+        // Bring the traces up to the end of the previous time step
+        long steps = Math.round((time - lastUpdateTime) / timeStep);
+        if (steps < 1) {
+            // First update (the difference is NaN), or the network time was reset
+            steps = 1;
+        }
+        lastUpdateTime = time;
+        if (steps > 1) {
+            r1 *= Math.pow(1 - tauPlusMult * timeStep, steps - 1);
+            r2 *= Math.pow(1 - tauXMult * timeStep, steps - 1);
+            o1 *= Math.pow(1 - tauNegMult * timeStep, steps - 1);
+            o2 *= Math.pow(1 - tauYMult * timeStep, steps - 1);
+        }
+
         // Need current values for these traces for strength update equations
         // below.
         final double r2p = r2;
@@ -28,6 +28,13 @@ import org.simbrain.util.UserParameter;
  * <p>
  * Only works if source and target neurons are spiking neurons.
  * <p>
+ * The most recent weight change is applied on every time step, not only when
+ * a neuron spikes. In discrete mode the rule is still event driven: the steps
+ * between spikes are caught up when the next spike arrives, as the number of
+ * steps times the last change. This gives the same weights as applying the
+ * rule on every step, unless the strength is also changed by other code
+ * between spikes.
+ * <p>
  * Drew on: Jean-Philippe Thivierge and Paul Cisek (2008), Journal of
  * Neuroscience. Nonperiodic Synchronization in Heterogeneous Networks of
  * Spiking Neurons. Also drew on the Scholarpedia article.
@@ -71,8 +78,26 @@ public class STDPRule extends SynapseUpdateRule {
     @UserParameter(label = "Smooth STDP", description = "Whether STDP acts directly on weight or on its derivative instead", order = 5)
     protected boolean continuous = false;
 
+    /**
+     * Network time at which the rule was last applied.
+     */
+    private double lastUpdateTime = Double.NaN;
+
+    /**
+     * Checks that the synapse connects spiking neurons.
+     *
+     * @throws IllegalArgumentException if the source or target neuron does not
+     *                                  spike
+     */
     @Override
     public void init(Synapse synapse) {
+        if (synapse == null) {
+            return;
+        }
+        if (!synapse.getSource().getUpdateRule().isSpikingNeuron()
+                || !synapse.getTarget().getUpdateRule().isSpikingNeuron()) {
+            throw new IllegalArgumentException("STDP needs spiking source and target neurons");
+        }
     }
 
     @Override
@@ -114,37 +139,73 @@ public class STDPRule extends SynapseUpdateRule {
 
     private double delta_w = 0;
 
+    /**
+     * In continuous mode the direction of each change depends on the sign of
+     * the strength at that step, so the rule is applied on every step.
+     */
+    @Override
+    public boolean isEventDriven() {
+        return !continuous;
+    }
+
     @Override
     public void update(Synapse synapse) {
+        final double timeStep = synapse.getSource().getNetwork().getTimeStep();
+        final double time = synapse.getSource().getNetwork().getTime();
+
+        // Apply the last change for the steps since the rule was last applied
+        long steps = Math.round((time - lastUpdateTime) / timeStep);
+        if (steps < 1) {
+            // First update (the difference is NaN), or the network time was reset
+            steps = 1;
+        }
+        lastUpdateTime = time;
+        if (steps > 1) {
+            catchUp(synapse, steps - 1, timeStep);
+        }
+
         final double str = synapse.getStrength();
         if (synapse.getSource().isSpike() || synapse.getTarget().isSpike()) {
-            try {
-
-                final double delta_t = ((((SpikingNeuronUpdateRule) synapse.getSource().getUpdateRule())
-                        .getLastSpikeTime())
-                        - ((SpikingNeuronUpdateRule) synapse.getTarget().getUpdateRule()).getLastSpikeTime())
-                        * (hebbian ? 1 : -1);
-                if (delta_t < 0) {
-                    delta_w = W_plus * Math.exp(delta_t / tau_plus) * learningRate;
-                } else if (delta_t > 0) {
-                    delta_w = -W_minus * Math.exp(-delta_t / tau_minus) * learningRate;
-                }
-
-            } catch (ClassCastException cce) {
-                cce.printStackTrace();
-                System.out.println("Don't use non-spiking neurons with STDP!");
-            }
-            if ( !continuous && Math.signum(str) == -1 ) {
-                synapse.setStrength(str - delta_w * synapse.getSource().getNetwork().getTimeStep());
-            } else {
-                synapse.setStrength(str + delta_w * synapse.getSource().getNetwork().getTimeStep());
+            final double delta_t = ((((SpikingNeuronUpdateRule) synapse.getSource().getUpdateRule())
+                    .getLastSpikeTime())
+                    - ((SpikingNeuronUpdateRule) synapse.getTarget().getUpdateRule()).getLastSpikeTime())
+                    * (hebbian ? 1 : -1);
+            if (delta_t < 0) {
+                delta_w = W_plus * Math.exp(delta_t / tau_plus) * learningRate;
+            } else if (delta_t > 0) {
+                delta_w = -W_minus * Math.exp(-delta_t / tau_minus) * learningRate;
             }
         }
+        applyChange(synapse, str, timeStep);
+    }
 
-        if ( continuous && Math.signum(str) == -1 ) {
-            synapse.setStrength(str - delta_w * synapse.getSource().getNetwork().getTimeStep());
+    /**
+     * Apply the last change to a strength, as on one time step.
+     */
+    private void applyChange(Synapse synapse, double str, double timeStep) {
+        if (continuous && Math.signum(str) == -1) {
+            synapse.setStrength(str - delta_w * timeStep);
         } else {
-            synapse.setStrength(str + delta_w * synapse.getSource().getNetwork().getTimeStep());
+            synapse.setStrength(str + delta_w * timeStep);
+        }
+    }
+
+    /**
+     * Apply the last change for a number of time steps. In discrete mode the
+     * strength moves by the same amount on each step until it is clipped, so
+     * after the first step (which may clip a strength that is out of bounds)
+     * the remaining steps are applied at once.
+     */
+    private void catchUp(Synapse synapse, long steps, double timeStep) {
+        if (continuous) {
+            for (long i = 0; i < steps; i++) {
+                applyChange(synapse, synapse.getStrength(), timeStep);
+            }
+            return;
+        }
+        applyChange(synapse, synapse.getStrength(), timeStep);
+        if (steps > 1) {
+            synapse.setStrength(synapse.getStrength() + (steps - 1) * delta_w * timeStep);
         }
     }
 
@@ -1,505 +1,496 @@
-// /*
-//  * Part of Simbrain--a java-based neural network kit
-//  * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
-//  *
-//  * This program is free software; you can redistribute it and/or modify
-//  * it under the terms of the GNU General Public License as published by
-//  * the Free Software Foundation; either version 2 of the License, or
-//  * (at your option) any later version.
-//  *
-//  * This program is distributed in the hope that it will be useful,
-//  * but WITHOUT ANY WARRANTY; without even the implied warranty of
-//  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
-//  * GNU General Public License for more details.
-//  *
-//  * You should have received a copy of the GNU General Public License
-//  * along with this program; if not, write to the Free Software
-//  * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
-//  */
-// package org.simbrain.network.trainers;
-//
-// import org.nd4j.linalg.api.ndarray.INDArray;
-// import org.nd4j.linalg.factory.Nd4j;
-// import org.simbrain.network.core.Neuron;
-// import org.simbrain.network.dl4j.WeightMatrix;
-// import org.simbrain.network.groups.NeuronGroup;
-// import org.simbrain.network.neuron_update_rules.TransferFunction;
-// import org.simbrain.network.neuron_update_rules.interfaces.BiasedUpdateRule;
-// import org.simbrain.network.subnetworks.BackpropNetwork;
-// import org.simbrain.util.UserParameter;
-// import org.simbrain.util.Utils;
-//
-// import java.util.ArrayList;
-// import java.util.List;
-// import java.util.concurrent.ThreadLocalRandom;
-// import java.util.stream.Collectors;
-//
-// /**
-//  * Array-backed backprop. To be supplanted by new nd4j objects, but still allows backprop with "loose" neurons and old
-//  * style neuron groups, which has some pedagogical purpose.
-//  * <p>
-//  *
-//  * @author Zoë Tosi
-//  * @author Jeff Yoshimi
-//  */
-// public class BackpropTrainer extends IterableTrainer {
-//
-//     /**
-//      * Default learning rate.
-//      */
-//     public static final double DEFAULT_LEARNING_RATE = 0.1;
-//
-//     /**
-//      * Default momentum.
-//      */
-//     public static final double DEFAULT_MOMENTUM = 0.2;
-//
-//     /**
-//      * The backprop network to be trained.
-//      */
-//     private BackpropNetwork net;
-//
-//     /**
-//      * Memory of last weight updates for momentum.
-//      */
-//     private List<INDArray> lastWeightUpdates = new ArrayList<>();
-//
-//     /**
-//      * Memory of last bias updates for momentum.
-//      */
-//     private List<INDArray> lastBiasUpdates = new ArrayList<>();
-//
-//     /**
-//      * Activation vectors.
-//      */
-//     private List<INDArray> activations = new ArrayList<>();
-//
-//     /**
-//      * Reference to neuron groups.
-//      */
-//     private List<NeuronGroup> neuronGroups = new ArrayList<NeuronGroup>();
-//
-//     /**
-//      * Net inputs.
-//      */
-//     private List<INDArray> netInputs = new ArrayList<>();
-//
-//     /**
-//      * Biases.
-//      */
-//     private List<INDArray> biases = new ArrayList<>();
-//
-//     /**
-//      * Errors for a single input row.
-//      */
-//     private INDArray errors;
-//
-//     /**
-//      * Aggregate errors for a batch of input rows.
-//      */
-//     private INDArray batchErrors;
-//
-//     /**
-//      * Deltas on on the neurons of the network (error times derivative).
-//      */
-//     private List<INDArray> deltas = new ArrayList<INDArray>();
-//
-//     /**
-//      * Holder for derivatives.
-//      */
-//     private List<INDArray> derivs = new ArrayList<INDArray>();
-//
-//     /**
-//      * Input layer. Holds current input vector from input dataset. Separate for simpler indexing on other lists.
-//      */
-//     private INDArray inputLayer;
-//
-//     /**
-//      * Current target vector.
-//      */
-//     private INDArray targetVector;
-//
-//     /**
-//      * Inputs.
-//      */
-//     private INDArray inputData;
-//
-//     /**
-//      * Targets.
-//      */
-//     private INDArray targetData;
-//
-//     /**
-//      * List of activation functions for easy reference.
-//      */
-//     private List<TransferFunction> updateRules = new ArrayList<TransferFunction>();
-//
-//     @UserParameter(label = "Learning Rate", description = "Learning Rate", minimumValue = 0, maximumValue = 10,
-//             order = 1)
-//     private double learningRate = DEFAULT_LEARNING_RATE;
-//
-//     /**
-//      * Current update method.
-//      */
-//     @UserParameter(label = "Update Method", description = "Update Method", order = 10)
-//     private UpdateMethod updateMethod = UpdateMethod.SINGLE;
-//
-//     /**
-//      * Specifies the method for batching data when calculating network outputs and errors.
-//      */
-//     public enum UpdateMethod {
-//         EPOCH {
-//             public String toString() {
-//                 return "Epoch (whole dataset per iteration)";
-//             }
-//         }, STOCHASTIC {
-//             public String toString() {
-//                 return "Stochastic (random row per iteration)";
-//             }
-//         }, SINGLE {
-//             public String toString() {
-//                 return "Single (one row per iteration)";
-//             }
-//         }
-//     }
-//     // TODO: Mini-batch
-//
-//     /**
-//      * Momentum. Must be between 0 and 1.
-//      */
-//     @UserParameter(label = "Momentum", description = "Momentum", minimumValue = 0, maximumValue = 10, order = 50)
-//     private double momentum = DEFAULT_MOMENTUM;
-//
-//     /**
-//      * Mean squared error of the most recent training step.
-//      */
-//     private double mse;
-//
-//     /**
-//      * Construct the backprop trainer.
-//      *
-//      * @param network the network
-//      * @param layers  the layers to train
-//      */
-//     public BackpropTrainer(Trainable network, List<List<Neuron>> layers) {
-//     }
-//
-//     /**
-//      * Construct the trainer.
-//      *
-//      * @param network the network to train
-//      */
-//     public BackpropTrainer(BackpropNetwork network) {
-//         net = network;
-//
-//         // Synapse group list is ordered from input to output layers
-//         for (WeightMatrix wm : net.getWeightMatrixList()) {
-//             lastWeightUpdates.add(Nd4j.zeros(wm.getWeightMatrix().rows(), wm.getWeightMatrix().columns()));
-//         }
-//
-//         // Initialize layers
-//         int ii = 0;
-//         for (NeuronGroup neuronGroup : net.getNeuronGroupList()) {
-//             if (ii > 0) {
-//                 activations.add(Nd4j.zeros(1,neuronGroup.size()));
-//                 netInputs.add(Nd4j.zeros(1,neuronGroup.size()));
-//                 deltas.add(Nd4j.zeros(1,neuronGroup.size()));
-//                 INDArray bs = Nd4j
-//                         .create(Utils.castToFloat(neuronGroup.getBiases()))
-//                         .reshape(1, neuronGroup.getBiases().length);
-//                 biases.add(bs);
-//                 lastBiasUpdates.add(Nd4j.zeros(bs.rows(), bs.columns()));
-//                 updateRules.add((TransferFunction) neuronGroup.getNeuronList().get(0).getUpdateRule());
-//                 neuronGroups.add(neuronGroup);
-//                 derivs.add(Nd4j.zeros(1,neuronGroup.size()));
-//             } else {
-//                 inputLayer = Nd4j.zeros(1,neuronGroup.size());
-//             }
-//             ii++;
-//         }
-//         errors = Nd4j.zeros(1, getOutputLayer().length());
-//         batchErrors = Nd4j.zeros(1, getOutputLayer().length());
-//         setLearningRate(DEFAULT_LEARNING_RATE);
-//         setMomentum(DEFAULT_MOMENTUM);
-//     }
-//
-//     @Override
-//     public void apply() {
-//         // Apply one training step according to the currently selected update method
-//         mse = 0;
-//         int numTrainingExamples = getMinimumNumRows();
-//         if (updateMethod == UpdateMethod.EPOCH) {
-//             mse = trainRows(0, numTrainingExamples);
-//         } else if (updateMethod == UpdateMethod.STOCHASTIC) {
-//             int rowNum = ThreadLocalRandom.current().nextInt(numTrainingExamples);
-//             mse = trainRow(rowNum);
-//         } else if (updateMethod == UpdateMethod.SINGLE) {
-//             mse = trainRow(getIteration() % numTrainingExamples);
-//         }
-//         incrementIteration();
-//         getEvents().fireErrorUpdated();
-//     }
-//
-//     /**
-//      * Backpropagate error on a single row of the dataset.
-//      *
-//      * @param row Which row of the dataset to use for this update.
-//      * @return mean squared error of the row
-//      */
-//     private double trainRow(int row) {
-//         batchErrors.muli(0);
-//         // Get the inputs and feed them forward
-//         inputLayer = inputData.getRow(row, true);
-//         updateNetwork();
-//         // Backpropagate error
-//         targetVector = targetData.getRow(row, true);
-//         targetVector.subi(getOutputLayer(), errors);
-//         batchErrors.addi(errors);
-//         backpropagateError();
-//         // Update weights and biases
-//         updateParameters();
-//         // Return the MSE for the row
-//         return (double) batchErrors.mul(batchErrors).sumNumber() /net.getOutputNeurons().size();
-//     }
-//
-//     /**
-//      * Backpropagate errors for all rows in the dataset.
-//      *
-//      * @return mean squared error
-//      */
-//     private double trainRows(int firstRow, int lastRow) {
-//         // Get inputs and feed them forward row-by-row
-//         batchErrors.muli(0);
-//         for (int row = firstRow; row < lastRow; row++) {
-//
-//             // Get the inputs and feed them forward
-//             inputLayer = inputData.getRow(row, true);
-//             updateNetwork();
-//             targetVector = targetData.getRow(row, true);
-//             targetVector.subi(getOutputLayer(), errors);
-//
-//             // Calculate batch errors
-//             batchErrors.addi(errors);
-//             System.out.println(batchErrors);
-//         }
-//         batchErrors.divi(lastRow - firstRow);
-//         // Back propagate batch errors
-//         backpropagateError();
-//         // Update weights and biases
-//         updateParameters();
-//         // Return the MSE for the batch
-//         return (double) batchErrors.mul(batchErrors).sumNumber() / net.getOutputNeurons().size();
-//     }
-//
-//     /**
-//      * Update the array-based "shadow" network.
-//      */
-//     private void updateNetwork() {
-//
-//         for (int i = 0; i < net.getWeightMatrixList().size(); i++) {
-//
-//             // Set up variables for easy reading
-//             INDArray netInput = netInputs.get(i);
-//             INDArray biasVec = biases.get(i);
-//             INDArray weights = net.getWeightMatrixList().get(i).getWeightMatrix();
-//
-//             // Set inputs
-//             INDArray inputs;
-//             if (i == 0) {
-//                 inputs = inputLayer;
-//             } else {
-//                 inputs = activations.get(i - 1);
-//             }
-//
-//             // Multiply weight matrix times inputs and store in next layer netInput
-//             inputs.mmuli(weights, netInput);
-//
-//             // Add biases to the net input
-//             netInput.addi(biasVec);
-//
-//             // Apply the transfer function to net input to get the activation values for the next layer and store
-//             // that value in the activations vector, also calculate derivatives.
-//             updateRules.get(i).applyFunctionAndDerivative(netInput, activations.get(i), derivs.get(i));
-//         }
-//     }
-//
-//     /**
-//      * Set error values using backprop (roughly output errors times intervening weights, going "backwards" from output
-//      * towards input).
-//      */
-//     private void backpropagateError() {
-//         int maxLayerIndex = activations.size() - 1;
-//
-//         // Calculate output deltas from error and derivative
-//         batchErrors.muli(derivs.get(maxLayerIndex), deltas.get(maxLayerIndex));
-//         INDArray wts = net.getWeightMatrixList().get(maxLayerIndex).getWeightMatrix();
-//         deltas.get(maxLayerIndex).mmuli(wts.transpose(),deltas.get(maxLayerIndex - 1));
-//
-//         // Deltas for 2nd to last layer
-//         deltas.get(maxLayerIndex - 1).muli(derivs.get(maxLayerIndex - 1));
-//         // For multiple hidden layers
-//         for (int layerIndex = maxLayerIndex - 1; layerIndex > 0; layerIndex--) {
-//             wts = net.getWeightMatrixList().get(layerIndex).getWeightMatrix();
-//             deltas.get(layerIndex).mmuli(wts.transpose(),deltas.get(layerIndex - 1));
-//             deltas.get(layerIndex - 1).muli(derivs.get(layerIndex - 1));
-//         }
-//     }
-//
-//     /**
-//      * Apply weight and bias updates.
-//      */
-//     private void updateParameters() {
-//         int layerIndex = 0;
-//         for (WeightMatrix weightMatrix : net.getWeightMatrixList()) {
-//             INDArray wm = weightMatrix.getWeightMatrix();
-//             INDArray prevLayer;
-//             INDArray lastDeltas = lastWeightUpdates.get(layerIndex);
-//             INDArray lastBiasDeltas = lastBiasUpdates.get(layerIndex);
-//
-//             if (layerIndex == 0) {
-//                 prevLayer = inputLayer;
-//             } else {
-//                 prevLayer = activations.get(layerIndex - 1);
-//             }
-//             INDArray biasVector = biases.get(layerIndex);
-//             INDArray currentLayer = activations.get(layerIndex);
-//
-//             // Update weights, traversing along weight matrix in column-major order
-//             int kk = 0;
-//             for (int ii = 0; ii < prevLayer.length(); ii++) {
-//                 for (int jj = 0; jj < currentLayer.length(); jj++) {
-//                     float deltaVal =
-//                             (float) (learningRate * deltas.get(layerIndex).getDouble(jj) * prevLayer.getDouble(ii) + (momentum * lastDeltas.getDouble(kk)));
-//                     wm.putScalar(kk, wm.getDouble(kk) + deltaVal);
-//                     lastDeltas.putScalar(kk, deltaVal);
-//                     kk++;
-//                 }
-//             }
-//             // Update biases
-//             for (int ii = 0; ii < biasVector.length(); ii++) {
-//                 float deltaVal =
-//                         (float) (learningRate * deltas.get(layerIndex).getDouble(ii) + (momentum * lastBiasDeltas.getDouble(ii)));
-//                 biasVector.putScalar(ii, biasVector.getDouble(ii) + deltaVal);
-//                 lastBiasDeltas.putScalar(ii, deltaVal);
-//             }
-//             weightMatrix.getEvents().fireUpdated();
-//             layerIndex++;
-//         }
-//     }
-//
-//     /**
-//      * Helper to get output layer.
-//      */
-//     private INDArray getOutputLayer() {
-//         return activations.get(activations.size() - 1);
-//     }
-//
-//     @Override
-//     public double getError() {
-//         return mse;
-//     }
-//
-//     @Override
-//     public void randomize() {
-//         // Randomize weights
-//         net.getWeightMatrixList().forEach(WeightMatrix::randomize);
-//         // Randomize biases
-//         // TODO: Move randomization of ndarrays to utility method
-//         for (int kk = 0; kk < biases.size(); ++kk) {
-//             for (int ii = 0; ii < biases.get(kk).length(); ii++) {
-//                 biases.get(kk).putScalar(ii, (Math.random() * 0.1) - 0.05);
-//             }
-//         }
-//     }
-//
-//     // TODO
-//     @Override
-//     protected TrainingSet getTrainingSet() {
-//         return null;
-//     }
-//
-//     /**
-//      * Print debug info.
-//      */
-//     public void printDebugInfo() {
-//         System.out.println("---------------------------");
-//         System.out.println("Node Layer 1");
-//         System.out.println("\tActivations:" + inputLayer);
-//         for (int i = 0; i < activations.size(); i++) {
-//             System.out.println("Weight Layer " + (i + 1) + " --> " + (i + 2));
-//             System.out.println("\tWeights:" + net.getWeightMatrixList().get(i));
-//             System.out.println("Node Layer " + (i + 2));
-//             System.out.println("\tActivations: " + activations.get(i));
-//             System.out.println("\tBiases: " + biases.get(i));
-//             System.out.println("\tDeltas: " + deltas.get(i));
-//             System.out.println("\tNet inputs: " + netInputs.get(i));
-//             System.out.println("\tDerivatives: " + derivs.get(i));
-//         }
-//         System.out.println("MSE:" + getError());
-//     }
-//
-//     public void printShapes() {
-//         System.out.println("---------------------------");
-//         System.out.println("Node Layer 1");
-//         System.out.println("\tActivations:" + Utils.shapeString(inputLayer));
-//         for (int i = 0; i < activations.size(); i++) {
-//             System.out.println("Weight Layer " + (i + 1) + " --> " + (i + 2));
-//             System.out.println("\tWeights:" + Utils.shapeString(net.getWeightMatrixList().get(i).getWeightMatrix()));
-//             System.out.println("Node Layer " + (i + 2));
-//             System.out.println("\tActivations: " + Utils.shapeString(activations.get(i)));
-//             System.out.println("\tBiases: " + Utils.shapeString(biases.get(i)));
-//             System.out.println("\tDeltas: " + Utils.shapeString(deltas.get(i)));
-//             System.out.println("\tNet inputs: " + Utils.shapeString(netInputs.get(i)));
-//             System.out.println("\tDerivatives: " + Utils.shapeString(derivs.get(i)));
-//         }
-//         System.out.println("MSE:" + getError());
-//     }
-//
-//     @Override
-//     public void commitChanges() {
-//         for (int ii = 0; ii < activations.size(); ++ii) {
-//             for (int jj = 0; jj < neuronGroups.get(ii).size(); ++jj) {
-//                 neuronGroups.get(ii).getNeuron(jj).forceSetActivation(activations.get(ii).getDouble(jj));
-//                 ((BiasedUpdateRule) neuronGroups.get(ii).getNeuron(jj).getUpdateRule()).setBias(biases.get(ii).getDouble(jj));
-//             }
-//         }
-//     }
-//
-//     /**
-//      * Initialize input and target datasets ND4J matrices.
-//      */
-//     public void initData() {
-//         // TODO
-//         // // Store data as columns since that's what everything else deals with so there is no need to transpose later.
-//         // if (network.getTrainingSet().getInputData() != null) {
-//         //     inputData = Nd4j.create(Utils.castToFloat(network.getTrainingSet().getInputData()));
-//         // }
-//         // if (network.getTrainingSet().getTargetData() != null) {
-//         //     targetData = Nd4j.create(Utils.castToFloat(network.getTrainingSet().getTargetData()));
-//         // }
-//     }
-//
-//     public double getLearningRate() {
-//         return learningRate;
-//     }
-//
-//     public void setLearningRate(double learningRate) {
-//         this.learningRate = learningRate;
-//     }
-//
-//     public void setMomentum(double momentum) {
-//         this.momentum = momentum;
-//     }
-//
-//     public List<INDArray> getBiases() {
-//         return biases;
-//     }
-//
-//     public void setUpdateMethod(UpdateMethod updateMethod) {
-//         this.updateMethod = updateMethod;
-//     }
-//
-//     public BackpropNetwork getNetwork() {
-//         return net;
-//     }
-// }
\ No newline at end of file
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.network.trainers;
+
+import org.simbrain.network.matrix.NeuronArray;
+import org.simbrain.network.matrix.NeuronArray.ActivationFunction;
+import org.simbrain.network.matrix.WeightMatrix;
+import org.simbrain.network.subnetworks.BackpropNetwork;
+import org.simbrain.util.UserParameter;
+import smile.math.matrix.Matrix;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Backprop on a chain of {@link WeightMatrix} objects connecting {@link NeuronArray}s, computed on the Smile matrices
+ * that hold the weights.
+ * <p>
+ * Each call to {@link #apply()} trains one epoch. The rows of the training set are visited in mini-batches, and the
+ * weights and biases are updated after each batch by gradient descent with momentum. The gradient of a large batch is
+ * computed in parallel over slices of its rows. The activation functions and biases of the arrays are used, so the
+ * trained network produces the same outputs when it is run.
+ * <p>
+ * The mean squared error and the number of rows trained per second are reported through {@link #getEvents()} at the
+ * end of each epoch.
+ */
+public class BackpropTrainer extends IterableTrainer {
+
+    /**
+     * Default learning rate.
+     */
+    public static final double DEFAULT_LEARNING_RATE = 0.1;
+
+    /**
+     * Default momentum.
+     */
+    public static final double DEFAULT_MOMENTUM = 0.2;
+
+    /**
+     * Smallest number of rows worth computing in a separate task.
+     */
+    private static final int MIN_ROWS_PER_TASK = 16;
+
+    /**
+     * The network being trained, if the trainer was created from one.
+     */
+    private BackpropNetwork net;
+
+    /**
+     * Weight matrices, from the input layer to the output layer.
+     */
+    private final List<WeightMatrix> weightMatrices;
+
+    /**
+     * The target of each weight matrix. The last one is the output layer.
+     */
+    private final List<NeuronArray> layers = new ArrayList<>();
+
+    /**
+     * Input and target data.
+     */
+    private final TrainingSet trainingSet;
+
+    /**
+     * Last change to each weight matrix, for momentum.
+     */
+    private Matrix[] lastWeightUpdates;
+
+    /**
+     * Last change to the biases of each layer, for momentum.
+     */
+    private double[][] lastBiasUpdates;
+
+    @UserParameter(label = "Learning Rate", description = "Learning Rate", minimumValue = 0, maximumValue = 10,
+            order = 1)
+    private double learningRate = DEFAULT_LEARNING_RATE;
+
+    /**
+     * Number of rows used for each update. 1 updates after every row, and the number of rows in the training set (or
+     * more) updates once per epoch.
+     */
+    @UserParameter(label = "Batch Size", description = "Number of rows used for each weight update", minimumValue = 1,
+            order = 10)
+    private int batchSize = 1;
+
+    /**
+     * If true the rows are visited in a new random order each epoch.
+     */
+    @UserParameter(label = "Shuffle", description = "Visit rows in a random order each epoch", order = 20)
+    private boolean shuffle = true;
+
+    /**
+     * If true the gradient of each batch is computed on several threads.
+     */
+    @UserParameter(label = "Parallel", description = "Compute the gradient of large batches on several threads",
+            order = 30)
+    private boolean parallel = true;
+
+    /**
+     * Momentum. Must be between 0 and 1.
+     */
+    @UserParameter(label = "Momentum", description = "Momentum", minimumValue = 0, maximumValue = 10, order = 50)
+    private double momentum = DEFAULT_MOMENTUM;
+
+    /**
+     * Mean squared error over the most recent epoch.
+     */
+    private double mse;
+
+    /**
+     * Rows trained per second in the most recent epoch.
+     */
+    private double throughput;
+
+    /**
+     * Construct the trainer.
+     *
+     * @param network the network to train
+     */
+    public BackpropTrainer(BackpropNetwork network) {
+        this(network.getWeightMatrixList(), network.getTrainingSet());
+        net = network;
+    }
+
+    /**
+     * Construct a trainer for a chain of weight matrices, each of whose targets is a neuron array and the source of the
+     * next matrix.
+     *
+     * @param weightMatrices the weight matrices, from input to output
+     * @param trainingSet    rows of input data for the source of the first matrix and of target data for the target
+     *                       of the last
+     */
+    public BackpropTrainer(List<WeightMatrix> weightMatrices, TrainingSet trainingSet) {
+        if (weightMatrices.isEmpty()) {
+            throw new IllegalArgumentException("No weight matrices to train");
+        }
+        for (int i = 0; i < weightMatrices.size(); i++) {
+            WeightMatrix wm = weightMatrices.get(i);
+            if (!(wm.getTarget() instanceof NeuronArray)) {
+                throw new IllegalArgumentException(wm.getId() + " does not project to a neuron array");
+            }
+            if (i > 0 && wm.getSource() != weightMatrices.get(i - 1).getTarget()) {
+                throw new IllegalArgumentException(wm.getId() + " is not connected to the previous weight matrix");
+            }
+            layers.add((NeuronArray) wm.getTarget());
+        }
+        this.weightMatrices = new ArrayList<>(weightMatrices);
+        this.trainingSet = trainingSet;
+    }
+
+    @Override
+    public void apply() throws DataNotInitializedException {
+        double[][] inputs = trainingSet.getInputData();
+        double[][] targets = trainingSet.getTargetData();
+        if (inputs == null || targets == null) {
+            throw new DataNotInitializedException("Input or target data not initialized");
+        }
+        int numRows = getMinimumNumRows();
+        if (numRows == 0) {
+            return;
+        }
+        if (inputs[0].length < getNumInputs() || targets[0].length < getNumOutputs()) {
+            throw new IllegalArgumentException("Training data has " + inputs[0].length + " input and " +
+                    targets[0].length + " target columns. The network has " + getNumInputs() + " inputs and " +
+                    getNumOutputs() + " outputs.");
+        }
+        initMomentum(false);
+
+        int[] order = IntStream.range(0, numRows).toArray();
+        if (shuffle) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int i = numRows - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int temp = order[i];
+                order[i] = order[j];
+                order[j] = temp;
+            }
+        }
+
+        long start = System.nanoTime();
+        double sumSquaredError = 0;
+        int rowsPerBatch = Math.max(1, Math.min(batchSize, numRows));
+        for (int from = 0; from < numRows; from += rowsPerBatch) {
+            int to = Math.min(from + rowsPerBatch, numRows);
+            Gradient gradient = computeGradient(inputs, targets, order, from, to);
+            sumSquaredError += gradient.sumSquaredError;
+            updateParameters(gradient, to - from);
+        }
+        double seconds = Math.max(System.nanoTime() - start, 1) / 1e9;
+
+        // Error of each row is measured before the update for its batch, as is usual when reporting training error
+        mse = sumSquaredError / ((double) numRows * getNumOutputs());
+        throughput = numRows / seconds;
+
+        weightMatrices.forEach(wm -> wm.getEvents().fireUpdated());
+        incrementIteration();
+        getEvents().fireErrorUpdated(mse);
+        getEvents().fireThroughputUpdated(throughput);
+    }
+
+    /**
+     * Sum the gradient over a range of rows, splitting them among threads if there are enough.
+     *
+     * @param order indices of the rows, in the order they are being trained
+     * @param from  first position in order to use
+     * @param to    position in order to stop at (exclusive)
+     */
+    private Gradient computeGradient(double[][] inputs, double[][] targets, int[] order, int from, int to) {
+        int numRows = to - from;
+        int numTasks = parallel
+                ? Math.min(ForkJoinPool.getCommonPoolParallelism(), numRows / MIN_ROWS_PER_TASK)
+                : 1;
+        if (numTasks <= 1) {
+            return computeGradientSerial(inputs, targets, order, from, to);
+        }
+        return IntStream.range(0, numTasks).parallel()
+                .mapToObj(t -> computeGradientSerial(inputs, targets, order,
+                        from + (int) ((long) numRows * t / numTasks),
+                        from + (int) ((long) numRows * (t + 1) / numTasks)))
+                .reduce(Gradient::add)
+                .get();
+    }
+
+    /**
+     * Feed a range of rows forward as one matrix, and propagate their errors back to get the gradient. Only reads the
+     * weights and biases, so can be run on several ranges at once.
+     */
+    private Gradient computeGradientSerial(double[][] inputs, double[][] targets, int[] order, int from, int to) {
+        int numRows = to - from;
+        int numLayers = layers.size();
+
+        // Activations of each layer, one row per data row, starting with the inputs
+        Matrix[] activations = new Matrix[numLayers + 1];
+        // Derivative of the activation function of each layer at its net inputs
+        Matrix[] derivatives = new Matrix[numLayers + 1];
+
+        Matrix input = new Matrix(numRows, getNumInputs());
+        for (int i = 0; i < numRows; i++) {
+            double[] row = inputs[order[from + i]];
+            for (int j = 0; j < input.ncols(); j++) {
+                input.set(i, j, row[j]);
+            }
+        }
+        activations[0] = input;
+
+        // Forward pass. Rows of a weight matrix are its target nodes, so each layer is the previous times its transpose
+        for (int layer = 0; layer < numLayers; layer++) {
+            Matrix act = activations[layer].mt(weightMatrices.get(layer).getWeightMatrix());
+            Matrix deriv = new Matrix(act.nrows(), act.ncols());
+            ActivationFunction function = layers.get(layer).getActivationFunction();
+            double[] biases = layers.get(layer).getBiases();
+            for (int j = 0; j < act.ncols(); j++) {
+                for (int i = 0; i < numRows; i++) {
+                    double netInput = act.get(i, j) + biases[j];
+                    double value = function.valueOf(netInput);
+                    act.set(i, j, value);
+                    deriv.set(i, j, function.derivative(netInput, value));
+                }
+            }
+            activations[layer + 1] = act;
+            derivatives[layer + 1] = deriv;
+        }
+
+        // Output deltas: error times derivative
+        Gradient gradient = new Gradient(numLayers);
+        Matrix output = activations[numLayers];
+        Matrix delta = derivatives[numLayers];
+        for (int i = 0; i < numRows; i++) {
+            double[] target = targets[order[from + i]];
+            for (int j = 0; j < output.ncols(); j++) {
+                double error = target[j] - output.get(i, j);
+                gradient.sumSquaredError += error * error;
+                delta.set(i, j, error * delta.get(i, j));
+            }
+        }
+
+        // Backward pass
+        for (int layer = numLayers - 1; layer >= 0; layer--) {
+            gradient.weights[layer] = delta.tm(activations[layer]);
+            double[] biasGradient = new double[delta.ncols()];
+            for (int j = 0; j < delta.ncols(); j++) {
+                for (int i = 0; i < numRows; i++) {
+                    biasGradient[j] += delta.get(i, j);
+                }
+            }
+            gradient.biases[layer] = biasGradient;
+            if (layer > 0) {
+                Matrix previous = delta.mm(weightMatrices.get(layer).getWeightMatrix());
+                Matrix deriv = derivatives[layer];
+                for (int j = 0; j < previous.ncols(); j++) {
+                    for (int i = 0; i < numRows; i++) {
+                        previous.set(i, j, previous.get(i, j) * deriv.get(i, j));
+                    }
+                }
+                delta = previous;
+            }
+        }
+        return gradient;
+    }
+
+    /**
+     * Apply the weight and bias changes for a batch.
+     *
+     * @param gradient the summed gradient of the batch
+     * @param numRows  the number of rows in the batch
+     */
+    private void updateParameters(Gradient gradient, int numRows) {
+        double rate = learningRate / numRows;
+        for (int layer = 0; layer < layers.size(); layer++) {
+            Matrix weights = weightMatrices.get(layer).getWeightMatrix();
+            Matrix lastUpdate = lastWeightUpdates[layer];
+            lastUpdate.mul(momentum).add(gradient.weights[layer].mul(rate));
+            weights.add(lastUpdate);
+
+            double[] biases = layers.get(layer).getBiases();
+            double[] lastBiasUpdate = lastBiasUpdates[layer];
+            double[] biasGradient = gradient.biases[layer];
+            for (int j = 0; j < biases.length; j++) {
+                lastBiasUpdate[j] = momentum * lastBiasUpdate[j] + rate * biasGradient[j];
+                biases[j] += lastBiasUpdate[j];
+            }
+        }
+    }
+
+    /**
+     * Create the momentum terms if needed.
+     *
+     * @param reset if true, zero them even if they exist
+     */
+    private void initMomentum(boolean reset) {
+        if (!reset && lastWeightUpdates != null) {
+            boolean sizesMatch = true;
+            for (int layer = 0; layer < layers.size(); layer++) {
+                Matrix weights = weightMatrices.get(layer).getWeightMatrix();
+                sizesMatch &= lastWeightUpdates[layer].nrows() == weights.nrows()
+                        && lastWeightUpdates[layer].ncols() == weights.ncols();
+            }
+            if (sizesMatch) {
+                return;
+            }
+        }
+        lastWeightUpdates = new Matrix[layers.size()];
+        lastBiasUpdates = new double[layers.size()][];
+        for (int layer = 0; layer < layers.size(); layer++) {
+            Matrix weights = weightMatrices.get(layer).getWeightMatrix();
+            lastWeightUpdates[layer] = new Matrix(weights.nrows(), weights.ncols());
+            lastBiasUpdates[layer] = new double[layers.get(layer).getBiases().length];
+        }
+    }
+
+    /**
+     * Gradient of the squared error, summed over some rows.
+     */
+    private static class Gradient {
+
+        final Matrix[] weights;
+
+        final double[][] biases;
+
+        double sumSquaredError;
+
+        Gradient(int numLayers) {
+            weights = new Matrix[numLayers];
+            biases = new double[numLayers][];
+        }
+
+        /**
+         * Add another gradient to this one and return this one.
+         */
+        Gradient add(Gradient other) {
+            for (int layer = 0; layer < weights.length; layer++) {
+                weights[layer].add(other.weights[layer]);
+                for (int j = 0; j < biases[layer].length; j++) {
+                    biases[layer][j] += other.biases[layer][j];
+                }
+            }
+            sumSquaredError += other.sumSquaredError;
+            return this;
+        }
+    }
+
+    private int getNumInputs() {
+        return weightMatrices.get(0).getWeightMatrix().ncols();
+    }
+
+    private int getNumOutputs() {
+        return layers.get(layers.size() - 1).getActivations().length;
+    }
+
+    @Override
+    public double getError() {
+        return mse;
+    }
+
+    /**
+     * Returns the number of rows trained per second in the most recent epoch.
+     */
+    public double getThroughput() {
+        return throughput;
+    }
+
+    @Override
+    public void randomize() {
+        weightMatrices.forEach(WeightMatrix::randomize);
+        for (NeuronArray layer : layers) {
+            double[] biases = layer.getBiases();
+            for (int j = 0; j < biases.length; j++) {
+                biases[j] = (Math.random() * 0.1) - 0.05;
+            }
+        }
+        initMomentum(true);
+    }
+
+    @Override
+    public void initData() {
+        initMomentum(true);
+    }
+
+    @Override
+    public void commitChanges() {
+        weightMatrices.forEach(wm -> wm.getEvents().fireUpdated());
+        layers.forEach(layer -> layer.getEvents().fireUpdated());
+    }
+
+    @Override
+    protected TrainingSet getTrainingSet() {
+        return trainingSet;
+    }
+
+    public double getLearningRate() {
+        return learningRate;
+    }
+
+    public void setLearningRate(double learningRate) {
+        this.learningRate = learningRate;
+    }
+
+    public double getMomentum() {
+        return momentum;
+    }
+
+    public void setMomentum(double momentum) {
+        this.momentum = momentum;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public boolean isShuffle() {
+        return shuffle;
+    }
+
+    public void setShuffle(boolean shuffle) {
+        this.shuffle = shuffle;
+    }
+
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    public BackpropNetwork getNetwork() {
+        return net;
+    }
+
+    public List<WeightMatrix> getWeightMatrices() {
+        return weightMatrices;
+    }
+}
@@ -1,375 +1,347 @@
-// /*
-//  * Part of Simbrain--a java-based neural network kit
-//  * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
-//  *
-//  * This program is free software; you can redistribute it and/or modify
-//  * it under the terms of the GNU General Public License as published by
-//  * the Free Software Foundation; either version 2 of the License, or
-//  * (at your option) any later version.
-//  *
-//  * This program is distributed in the hope that it will be useful,
-//  * but WITHOUT ANY WARRANTY; without even the implied warranty of
-//  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
-//  * GNU General Public License for more details.
-//  *
-//  * You should have received a copy of the GNU General Public License
-//  * along with this program; if not, write to the Free Software
-//  * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
-//  */
-// package org.simbrain.network.trainers;
-//
-// //import java.io.FileWriter;
-// //import java.io.IOException;
-// //import java.io.PrintWriter;
-// //import java.util.ArrayList;
-// //import java.util.Collections;
-//
-// import Jama.Matrix;
-// import kotlin.Pair;
-// import org.ojalgo.access.Access2D.Builder;
-// import org.ojalgo.access.*;
-//
-// import org.ojalgo.matrix.BasicMatrix;
-// import org.ojalgo.matrix.BasicMatrix.Factory;
-// import org.ojalgo.matrix.PrimitiveMatrix;
-// import org.simbrain.network.core.Neuron;
-// import org.simbrain.network.groups.Subnetwork;
-// import org.simbrain.network.groups.SynapseGroup;
-// import org.simbrain.network.neuron_update_rules.SigmoidalRule;
-// import org.simbrain.network.util.SimnetUtils;
-// import org.simbrain.util.math.Matrices;
-// import org.simbrain.util.math.ProbDistributions.UniformDistribution;
-// import org.simbrain.util.math.ProbabilityDistribution;
-//
-// import javax.swing.*;
-//
-// /**
-//  * Offline/Batch Learning with least mean squares.
-//  *
-//  * @author ztosi
-//  * @author jyoshimi
-//  */
-// public class LMSOffline extends Trainer {
-//
-//     /**
-//      * Current solution type.
-//      */
-//     private SolutionType solutionType = SolutionType.WIENER_HOPF;
-//
-//     /**
-//      * Whether or not ridge regression is to be performed.
-//      */
-//     private boolean ridgeRegression;
-//
-//     /**
-//      * The magnitude of the ridge regression.
-//      */
-//     private double alpha;
-//
-//     /**
-//      * Whether or not to add noise to the input state matrix.
-//      */
-//     private boolean noiseAdded;
-//
-//     /**
-//      * The noise generator from which random values are taken if randomizing
-//      * the input state matrix.
-//      */
-//     private ProbabilityDistribution noiseGen = UniformDistribution.create();
-//
-//     /**
-//      * Construct the LMSOOffline object, with a trainable network the Synapse
-//      * group where the new synapses will be placed.
-//      *
-//      * @param network the network to train
-//      */
-//     public LMSOffline(Trainable network) {
-//         super(network);
-//     }
-//
-//     /**
-//      * Solution methods for offline LMS.
-//      */
-//     public enum SolutionType {
-//         /**
-//          * Wiener-Hopf solution.
-//          */
-//         WIENER_HOPF {
-//             @Override
-//             public String toString() {
-//                 return "Wiener-Hopf";
-//             }
-//         },
-//
-//         /**
-//          * Moore-Penrose Solution.
-//          */
-//         MOORE_PENROSE {
-//             @Override
-//             public String toString() {
-//                 return "Moore-Penrose";
-//             }
-//         }
-//
-//     }
-//
-//     ;
-//
-//     @Override
-//     public void apply() throws DataNotInitializedException {
-//
-//         if (getTrainableNetwork().getTrainingSet().getInputData() == null) {
-//             throw new DataNotInitializedException("Input data not initalized");
-//         }
-//         if (getTrainableNetwork().getTrainingSet().getTargetData() == null) {
-//             throw new DataNotInitializedException("Target data not initalized");
-//         }
-//
-//         getEvents().fireBeginTraining();
-//
-//         int index = 0;
-//         for (Neuron n : network.getOutputNeurons()) {
-//
-//             // If output nodes are sigmoidal, alter the effective target data
-//             // such that the desired value will result when it is put through
-//             // the sigmoidal. Warning: problems can occur here if the bounds of
-//             // the sigmoidal are not set properly.
-//             if (n.getUpdateRule() instanceof SigmoidalRule) {
-//                 for (int i = 0; i < network.getTrainingSet().getTargetData().length; i++) {
-//                     network.getTrainingSet().getTargetData()[i][index] = ((SigmoidalRule) n.getUpdateRule()).getInverse(network.getTrainingSet().getTargetData()[i][index]);
-//                 }
-//             }
-//             index++;
-//         }
-//
-//         // Add noise to the input state matrix.
-//         if (noiseAdded) {
-//             double[][] stateMat = network.getTrainingSet().getInputData();
-//             for (int i = 0, n = stateMat.length; i < n; i++) {
-//                 for (int j = 0, m = stateMat[i].length; j < m; j++) {
-//                     network.getTrainingSet().getInputData()[i][j] = stateMat[i][j] + noiseGen.getRandom();
-//                 }
-//             }
-//         }
-//
-//         if (solutionType == SolutionType.WIENER_HOPF) {
-//             weinerHopfSolution(network);
-//         } else if (solutionType == SolutionType.MOORE_PENROSE) {
-//             moorePenroseSolution(network);
-//         } else {
-//             throw new IllegalArgumentException("Solution type must be " + "'MoorePenrose' or 'WeinerHopf'.");
-//         }
-//
-//         // Make sure excitatory/inhibitory are in proper lists
-//         if (getTrainableNetwork().getNetwork() instanceof Subnetwork) {
-//             SynapseGroup group = ((Subnetwork) getTrainableNetwork().getNetwork()).getSynapseGroup();
-//             if (group != null) {
-//                 group.revalidateSynapseSets();
-//             }
-//         } else if (getTrainableNetwork().getNetwork() instanceof SynapseGroup) {
-//             if (getTrainableNetwork().getNetwork() != null) {
-//                 ((SynapseGroup) getTrainableNetwork().getNetwork()).revalidateSynapseSets();
-//             }
-//         }
-//
-//         getEvents().fireEndTraining();
-//         revalidateSynapseGroups();
-//
-//     }
-//
-//     /**
-//      * Implements the Wiener-Hopf solution to LMS linear regression.
-//      * TODO: Fix progress updates to reflect actual training times &#38; %s
-//      *
-//      * @param network the trainable network being trained
-//      */
-//     public void weinerHopfSolution(Trainable network) {
-//         long start = System.nanoTime();
-//         double[][] inputMatrix = network.getTrainingSet().getInputData();
-//         double[][] trainingMatrix = network.getTrainingSet().getTargetData();
-//         try {
-//
-//             Factory<?> mf = PrimitiveMatrix.FACTORY;
-//
-//             Builder<?> tmpBuilder = mf.getBuilder(inputMatrix.length, inputMatrix[0].length);
-//             for (int i = 0; i < tmpBuilder.countRows(); i++) {
-//                 for (int j = 0; j < tmpBuilder.countColumns(); j++) {
-//                     tmpBuilder.set(i, j, inputMatrix[i][j]);
-//                 }
-//             }
-//
-//             BasicMatrix stateMat = (BasicMatrix) tmpBuilder.build();
-//
-//             tmpBuilder = mf.getBuilder(trainingMatrix.length, trainingMatrix[0].length);
-//             for (int i = 0; i < tmpBuilder.countRows(); i++) {
-//                 for (int j = 0; j < tmpBuilder.countColumns(); j++) {
-//                     tmpBuilder.set(i, j, trainingMatrix[i][j]);
-//                     if (Double.isInfinite(trainingMatrix[i][j]) || Double.isNaN(trainingMatrix[i][j])) {
-//                         throw new NumberFormatException("Invalid target" + " values.");
-//                     }
-//                 }
-//             }
-//
-//             BasicMatrix teachMat = (BasicMatrix) tmpBuilder.build();
-//
-//             getEvents().fireProgressUpdated("Correlating State Matrix (R = S'S)...", 0);
-//             teachMat = stateMat.transpose().multiplyRight(teachMat);
-//
-//
-//             getEvents().fireProgressUpdated("Cross-Correlating States with Teacher data (P = S'D)...", 15);
-//             stateMat = stateMat.transpose().multiplyRight(stateMat);
-//
-//             getEvents().fireProgressUpdated("Computing Inverse Correlation Matrix...", 30);
-//
-//             if (ridgeRegression) {
-//                 tmpBuilder = mf.getBuilder((int) stateMat.countRows(), (int) stateMat.countColumns());
-//                 for (int i = 0, n = (int) stateMat.countColumns(); i < n; i++) {
-//                     tmpBuilder.set(i, i, alpha * alpha);
-//                 }
-//                 BasicMatrix scaleMat = (BasicMatrix) tmpBuilder.build();
-//                 stateMat = stateMat.add(scaleMat);
-//             }
-//
-//             stateMat = stateMat.invert();
-//
-//             getEvents().fireProgressUpdated("Computing Weights", 80);
-//             tmpBuilder = stateMat.multiplyRight(teachMat).copyToBuilder();
-//             BasicMatrix finalMat = (BasicMatrix) tmpBuilder.build();
-//             double[][] wOut = new double[(int) tmpBuilder.countRows()]
-//                     [(int) tmpBuilder.countColumns()];
-//             for (int i = 0, n = (int) tmpBuilder.countRows(); i < n; i++) {
-//                 for (int j = 0, m = (int) tmpBuilder.countColumns(); j < m; j++) {
-//                     wOut[i][j] = finalMat.doubleValue(i, j);
-//                 }
-//             }
-//             getEvents().fireProgressUpdated("Set weights...", 95);
-//             SimnetUtils.setWeights(network.getInputNeurons(), network.getOutputNeurons(), wOut);
-//             getEvents().fireProgressUpdated("Done!", 100);
-//
-//             // TODO: What error does JAMA actually throw for singular Matrices?
-//         } catch (RuntimeException e) {
-//             JOptionPane.showMessageDialog(new JFrame(), "" + "State Correlation Matrix is Singular." + "\nCheck that target values are in range of output units." + "\nOtherwise, input matrix is rank-deficient.", "Training Failed", JOptionPane.ERROR_MESSAGE);
-//             getEvents().fireProgressUpdated("Training Failed", 0);
-//         }
-//
-//         trainingMatrix = null;
-//         inputMatrix = null;
-//
-//         long end = System.nanoTime();
-//         System.out.println("Time: " + (end - start) / Math.pow(10, 9));
-//     }
-//
-//     /**
-//      * Moore penrose.
-//      *
-//      * @param network the trainable network being trained
-//      */
-//     public void moorePenroseSolution(Trainable network) {
-//         Matrix inputMatrix = new Matrix(network.getTrainingSet().getInputData());
-//         Matrix trainingMatrix = new Matrix(network.getTrainingSet().getTargetData());
-//
-//         getEvents().fireProgressUpdated("Computing Moore-Penrose Pseudoinverse...", 0);
-//         // Computes Moore-Penrose Pseudoinverse
-//         inputMatrix = Matrices.pinv(inputMatrix);
-//
-//         getEvents().fireProgressUpdated("Computing Weights...", 50);
-//         double[][] wOut = inputMatrix.times(trainingMatrix).getArray();
-//
-//         getEvents().fireProgressUpdated("Setting Weights...", 75);
-//         SimnetUtils.setWeights(network.getInputNeurons(), network.getOutputNeurons(), wOut);
-//         getEvents().fireProgressUpdated("Done!", 100);
-//
-//         inputMatrix = null;
-//         trainingMatrix = null;
-//     }
-//
-//     /**
-//      * Set solution type.
-//      *
-//      * @param solutionType the solutionType to set
-//      */
-//     public void setSolutionType(SolutionType solutionType) {
-//         this.solutionType = solutionType;
-//     }
-//
-//     public boolean isRidgeRegression() {
-//         return ridgeRegression;
-//     }
-//
-//     public void setRidgeRegression(boolean ridgeRegression) {
-//         this.ridgeRegression = ridgeRegression;
-//     }
-//
-//     public double getAlpha() {
-//         return alpha;
-//     }
-//
-//     public void setAlpha(double alpha) {
-//         this.alpha = alpha;
-//     }
-//
-//     public boolean isNoiseAdded() {
-//         return noiseAdded;
-//     }
-//
-//     public void setNoiseAdded(boolean noiseAdded) {
-//         this.noiseAdded = noiseAdded;
-//     }
-//
-//     public ProbabilityDistribution getNoiseGen() {
-//         return noiseGen;
-//     }
-//     //
-//     //    /**
-//     //     *
-//     //     * @param args args
-//     //     */
-//     //    public static void main(String[] args) {
-//     //        try {
-//     //            FileWriter fw = new FileWriter("SinContIn.csv");
-//     //            PrintWriter pw = new PrintWriter(fw);
-//     //
-//     //            int samples = 20;
-//     //            int tPerSample = 5000;
-//     //
-//     //            ArrayList<Double> frequencies = new ArrayList<Double>();
-//     //            double [] sineWave = new double [samples * tPerSample];
-//     //            double delta_t = 0.1; //ms
-//     //
-//     //            for (int i = 0; i < 20; i++) {
-//     //                frequencies.add(1.0 + (double) i / 10.0);
-//     //            }
-//     //            Collections.shuffle(frequencies);
-//     //            for (int i = 0; i < samples; i++) {
-//     //                for (int j = 0; j < tPerSample; j++) {
-//     //
-//     //                    sineWave[(i * tPerSample) + j] = Math.sin((j/10.0)
-//     //                            * frequencies.get(i));
-//     //                    System.out.println((j/100.0) * frequencies.get(i));
-//     //
-//     //                }
-//     //            }
-//     //
-//     //            for (int i = 0; i < tPerSample * samples; i++) {
-//     //                pw.println(frequencies.get((int) Math.floor(i/tPerSample))
-//     //                        + "");
-//     //            }
-//     //
-//     //            fw.close();
-//     //            pw.close();
-//     //            FileWriter fw2 = new FileWriter("SinContTeach.csv");
-//     //            PrintWriter pw2 = new PrintWriter(fw2);
-//     //
-//     //            for (int i = 0; i < tPerSample * samples; i++) {
-//     //                pw2.println(sineWave[i] + "");
-//     //            }
-//     //
-//     //            pw2.close();
-//     //            fw2.close();
-//     //
-//     //        } catch (IOException e) {
-//     //            e.printStackTrace();
-//     //        }
-//     //    }
-//     //
-// }
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.network.trainers;
+
+import org.simbrain.network.matrix.NeuronArray;
+import org.simbrain.network.matrix.NeuronArray.ActivationFunction;
+import org.simbrain.network.matrix.WeightMatrix;
+import org.simbrain.util.UserParameter;
+import smile.math.matrix.Matrix;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Offline/Batch Learning with least mean squares. Sets the weights of a {@link WeightMatrix} (and the biases of its
+ * target, if it is a {@link NeuronArray}) to the linear least squares solution for a training set, optionally with
+ * ridge regularization.
+ * <p>
+ * If the target array has a nonlinear activation function, the targets are first passed through its inverse, so the
+ * solution is exact for the net inputs and the reported error is measured on them.
+ * <p>
+ * The default solution accumulates the normal equations in chunks (see {@link NormalEquations}) and solves them by
+ * Cholesky decomposition. {@link #train(Iterable)} can be given the chunks directly, so that a training set too large
+ * for memory can be read piece by piece. The QR solution is more accurate for badly conditioned inputs but needs the
+ * whole training set at once.
+ *
+ * @author ztosi
+ * @author jyoshimi
+ */
+public class LMSOffline extends IterableTrainer {
+
+    /**
+     * The weight matrix being trained.
+     */
+    private final WeightMatrix weightMatrix;
+
+    /**
+     * Rows of source activations and target values.
+     */
+    private final TrainingSet trainingSet;
+
+    /**
+     * Current solution type.
+     */
+    @UserParameter(label = "Solution", description = "How the least squares problem is solved", order = 1)
+    private SolutionType solutionType = SolutionType.CHOLESKY;
+
+    /**
+     * Ridge regularization. 0 for ordinary least squares.
+     */
+    @UserParameter(label = "Ridge", description = "Penalty on the sum of squared weights", minimumValue = 0,
+            increment = .01, order = 10)
+    private double ridge = 0;
+
+    /**
+     * Whether to solve for the biases of the target array.
+     */
+    @UserParameter(label = "Train biases", description = "Solve for the biases of the target array", order = 20)
+    private boolean trainBiases = true;
+
+    /**
+     * Rows of the training set multiplied at a time when accumulating the normal equations.
+     */
+    @UserParameter(label = "Chunk size", description = "Rows used at a time for the Cholesky solution",
+            minimumValue = 1, order = 30)
+    private int chunkSize = 10000;
+
+    /**
+     * Mean squared error of the last solution.
+     */
+    private double mse;
+
+    /**
+     * Solution methods for offline LMS.
+     */
+    public enum SolutionType {
+
+        /**
+         * Solve the normal equations (X'X + ridge I) W' = X'Y by Cholesky decomposition.
+         */
+        CHOLESKY {
+            @Override
+            public String toString() {
+                return "Normal equations (Cholesky)";
+            }
+        },
+
+        /**
+         * Solve X W' = Y directly by QR decomposition of X.
+         */
+        QR {
+            @Override
+            public String toString() {
+                return "Least squares (QR)";
+            }
+        }
+    }
+
+    /**
+     * Construct the trainer.
+     *
+     * @param weightMatrix the weight matrix to train
+     * @param trainingSet  rows of values for its source and target
+     */
+    public LMSOffline(WeightMatrix weightMatrix, TrainingSet trainingSet) {
+        this.weightMatrix = weightMatrix;
+        this.trainingSet = trainingSet;
+    }
+
+    @Override
+    public void apply() throws DataNotInitializedException {
+        if (trainingSet.getInputData() == null) {
+            throw new DataNotInitializedException("Input data not initalized");
+        }
+        if (trainingSet.getTargetData() == null) {
+            throw new DataNotInitializedException("Target data not initalized");
+        }
+        if (solutionType == SolutionType.QR) {
+            solveQR();
+        } else {
+            train(getChunks());
+        }
+        incrementIteration();
+        getEvents().fireErrorUpdated(mse);
+    }
+
+    /**
+     * Train on data supplied in chunks, accumulating the normal equations one chunk at a time. The chunks are only
+     * iterated over once.
+     *
+     * @param chunks training sets holding successive rows of the data
+     * @throws IllegalStateException if there are no rows, or the inputs are linearly dependent and there is no ridge
+     */
+    public void train(Iterable<TrainingSet> chunks) {
+        int numInputs = getNumInputs();
+        int numOutputs = getNumOutputs();
+        NormalEquations equations = new NormalEquations(numInputs, numOutputs, isSolvingBiases());
+        for (TrainingSet chunk : chunks) {
+            int numRows = Math.min(chunk.getInputData().length, chunk.getTargetData().length);
+            equations.add(chunk.getInputData(), getNetInputTargets(chunk.getTargetData(), numRows));
+            getEvents().fireProgressUpdated("Accumulated " + equations.getNumRows() + " rows", 0);
+        }
+        Matrix solution = equations.solve(ridge);
+        setWeights(solution);
+        mse = equations.getSumSquaredError(solution) / ((double) equations.getNumRows() * numOutputs);
+        getEvents().fireProgressUpdated("Done", 100);
+    }
+
+    /**
+     * Solve with a QR decomposition of the whole input matrix. Ridge regularization is applied by appending a row of
+     * sqrt(ridge) for each weighted input.
+     */
+    private void solveQR() {
+        int numInputs = getNumInputs();
+        int numOutputs = getNumOutputs();
+        boolean solveBiases = isSolvingBiases();
+        int size = numInputs + (solveBiases ? 1 : 0);
+        double[][] inputs = trainingSet.getInputData();
+        int numRows = getMinimumNumRows();
+        double[][] targets = getNetInputTargets(trainingSet.getTargetData(), numRows);
+        int ridgeRows = ridge > 0 ? numInputs : 0;
+        if (numRows + ridgeRows < size) {
+            throw new IllegalStateException("QR solution needs at least as many rows as inputs. Use ridge " +
+                    "regularization or the Cholesky solution.");
+        }
+
+        Matrix x = new Matrix(numRows + ridgeRows, size);
+        Matrix y = new Matrix(numRows + ridgeRows, numOutputs);
+        for (int i = 0; i < numRows; i++) {
+            for (int j = 0; j < numInputs; j++) {
+                x.set(i, j, inputs[i][j]);
+            }
+            if (solveBiases) {
+                x.set(i, numInputs, 1);
+            }
+            for (int k = 0; k < numOutputs; k++) {
+                y.set(i, k, targets[i][k]);
+            }
+        }
+        for (int j = 0; j < ridgeRows; j++) {
+            x.set(numRows + j, j, Math.sqrt(ridge));
+        }
+
+        try {
+            x.qr().solve(y);
+        } catch (ArithmeticException e) {
+            throw new IllegalStateException("Input matrix is rank deficient. Use ridge regularization.", e);
+        }
+        Matrix solution = new Matrix(numOutputs, size);
+        for (int k = 0; k < numOutputs; k++) {
+            for (int j = 0; j < size; j++) {
+                solution.set(k, j, y.get(j, k));
+            }
+        }
+        setWeights(solution);
+
+        double sse = 0;
+        for (int i = 0; i < numRows; i++) {
+            for (int k = 0; k < numOutputs; k++) {
+                double netInput = solveBiases ? solution.get(k, numInputs) : 0;
+                for (int j = 0; j < numInputs; j++) {
+                    netInput += solution.get(k, j) * inputs[i][j];
+                }
+                double error = targets[i][k] - netInput;
+                sse += error * error;
+            }
+        }
+        mse = sse / ((double) numRows * numOutputs);
+    }
+
+    /**
+     * Split the training set into chunks of {@link #chunkSize} rows. The rows are shared, not copied.
+     */
+    private List<TrainingSet> getChunks() {
+        int numRows = getMinimumNumRows();
+        List<TrainingSet> chunks = new ArrayList<>();
+        for (int from = 0; from < numRows; from += chunkSize) {
+            int to = Math.min(from + chunkSize, numRows);
+            chunks.add(new TrainingSet(Arrays.copyOfRange(trainingSet.getInputData(), from, to),
+                    Arrays.copyOfRange(trainingSet.getTargetData(), from, to)));
+        }
+        return chunks;
+    }
+
+    /**
+     * Returns the net inputs that would produce the target values, given the activation function of the target
+     * array. Returns the targets themselves if no transformation is needed.
+     */
+    private double[][] getNetInputTargets(double[][] targets, int numRows) {
+        if (!(weightMatrix.getTarget() instanceof NeuronArray)) {
+            return targets;
+        }
+        ActivationFunction function = ((NeuronArray) weightMatrix.getTarget()).getActivationFunction();
+        if (function == ActivationFunction.LINEAR) {
+            return targets;
+        }
+        double[][] netInputs = new double[numRows][getNumOutputs()];
+        for (int i = 0; i < numRows; i++) {
+            for (int k = 0; k < netInputs[i].length; k++) {
+                netInputs[i][k] = function.inverseOf(targets[i][k]);
+            }
+        }
+        return netInputs;
+    }
+
+    /**
+     * Copy a solution into the weight matrix and the biases of its target.
+     */
+    private void setWeights(Matrix solution) {
+        int numInputs = getNumInputs();
+        Matrix weights = weightMatrix.getWeightMatrix();
+        for (int k = 0; k < weights.nrows(); k++) {
+            for (int j = 0; j < numInputs; j++) {
+                weights.set(k, j, solution.get(k, j));
+            }
+        }
+        if (isSolvingBiases()) {
+            NeuronArray target = (NeuronArray) weightMatrix.getTarget();
+            double[] biases = target.getBiases();
+            for (int k = 0; k < biases.length; k++) {
+                biases[k] = solution.get(k, numInputs);
+            }
+            target.getEvents().fireUpdated();
+        }
+        weightMatrix.getEvents().fireUpdated();
+    }
+
+    private boolean isSolvingBiases() {
+        return trainBiases && weightMatrix.getTarget() instanceof NeuronArray;
+    }
+
+    private int getNumInputs() {
+        return weightMatrix.getWeightMatrix().ncols();
+    }
+
+    private int getNumOutputs() {
+        return weightMatrix.getWeightMatrix().nrows();
+    }
+
+    @Override
+    public double getError() {
+        return mse;
+    }
+
+    @Override
+    public void randomize() {
+        weightMatrix.randomize();
+    }
+
+    @Override
+    protected TrainingSet getTrainingSet() {
+        return trainingSet;
+    }
+
+    public WeightMatrix getWeightMatrix() {
+        return weightMatrix;
+    }
+
+    public SolutionType getSolutionType() {
+        return solutionType;
+    }
+
+    public void setSolutionType(SolutionType solutionType) {
+        this.solutionType = solutionType;
+    }
+
+    public double getRidge() {
+        return ridge;
+    }
+
+    public void setRidge(double ridge) {
+        this.ridge = ridge;
+    }
+
+    public boolean isTrainBiases() {
+        return trainBiases;
+    }
+
+    public void setTrainBiases(boolean trainBiases) {
+        this.trainBiases = trainBiases;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = Math.max(1, chunkSize);
+    }
+}
@@ -0,0 +1,272 @@
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.network.trainers;
+
+import smile.math.blas.UPLO;
+import smile.math.matrix.Matrix;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Accumulates the normal equations of a linear least squares problem, X'X and X'Y, from rows of input data X and
+ * target data Y, and solves them by Cholesky decomposition (with optional ridge regularization).
+ * <p>
+ * Rows can be added in any number of chunks, so the data never needs to be in memory at once: memory use depends only
+ * on the number of inputs and outputs. Large chunks are split into blocks whose products are computed in parallel.
+ */
+public class NormalEquations {
+
+    /**
+     * Smallest number of rows worth multiplying in a separate task.
+     */
+    private static final int MIN_ROWS_PER_TASK = 256;
+
+    private final int numInputs;
+
+    private final int numOutputs;
+
+    /**
+     * If true a constant input of 1 is appended to every row, so the solution includes a bias for each output.
+     */
+    private final boolean addBias;
+
+    /**
+     * Columns of X: the inputs plus the bias input, if any.
+     */
+    private final int size;
+
+    /**
+     * X'X, size x size.
+     */
+    private Matrix xtx;
+
+    /**
+     * X'Y, size x numOutputs.
+     */
+    private Matrix xty;
+
+    /**
+     * Sum of squares of each target column, used to compute the error of a solution without another pass over the
+     * data.
+     */
+    private double[] yty;
+
+    private long numRows;
+
+    private boolean parallel = true;
+
+    /**
+     * Create empty normal equations.
+     *
+     * @param numInputs  number of input columns
+     * @param numOutputs number of target columns
+     * @param addBias    whether to solve for a bias on each output
+     */
+    public NormalEquations(int numInputs, int numOutputs, boolean addBias) {
+        this.numInputs = numInputs;
+        this.numOutputs = numOutputs;
+        this.addBias = addBias;
+        size = numInputs + (addBias ? 1 : 0);
+        clear();
+    }
+
+    /**
+     * Remove all rows.
+     */
+    public void clear() {
+        xtx = new Matrix(size, size);
+        xty = new Matrix(size, numOutputs);
+        yty = new double[numOutputs];
+        numRows = 0;
+    }
+
+    /**
+     * Add rows of data. Extra columns are ignored, as are extra rows in either array.
+     *
+     * @param inputs  input rows
+     * @param targets target rows
+     */
+    public void add(double[][] inputs, double[][] targets) {
+        int rows = Math.min(inputs.length, targets.length);
+        if (rows == 0) {
+            return;
+        }
+        if (inputs[0].length < numInputs || targets[0].length < numOutputs) {
+            throw new IllegalArgumentException("Rows have " + inputs[0].length + " input and " + targets[0].length +
+                    " target columns. " + numInputs + " and " + numOutputs + " are needed.");
+        }
+        int numTasks = parallel ? Math.min(ForkJoinPool.getCommonPoolParallelism(), rows / MIN_ROWS_PER_TASK) : 1;
+        Products products;
+        if (numTasks <= 1) {
+            products = multiply(inputs, targets, 0, rows);
+        } else {
+            products = IntStream.range(0, numTasks).parallel()
+                    .mapToObj(t -> multiply(inputs, targets,
+                            (int) ((long) rows * t / numTasks),
+                            (int) ((long) rows * (t + 1) / numTasks)))
+                    .reduce(Products::add)
+                    .get();
+        }
+        xtx.add(products.xtx);
+        xty.add(products.xty);
+        for (int k = 0; k < numOutputs; k++) {
+            yty[k] += products.yty[k];
+        }
+        numRows += rows;
+    }
+
+    /**
+     * Compute the products for a block of rows.
+     */
+    private Products multiply(double[][] inputs, double[][] targets, int from, int to) {
+        int rows = to - from;
+        Matrix x = new Matrix(rows, size);
+        Matrix y = new Matrix(rows, numOutputs);
+        Products products = new Products();
+        products.yty = new double[numOutputs];
+        for (int i = 0; i < rows; i++) {
+            double[] input = inputs[from + i];
+            for (int j = 0; j < numInputs; j++) {
+                x.set(i, j, input[j]);
+            }
+            if (addBias) {
+                x.set(i, numInputs, 1);
+            }
+            double[] target = targets[from + i];
+            for (int k = 0; k < numOutputs; k++) {
+                y.set(i, k, target[k]);
+                products.yty[k] += target[k] * target[k];
+            }
+        }
+        products.xtx = x.tm(x);
+        products.xty = x.tm(y);
+        return products;
+    }
+
+    /**
+     * Partial sums of the normal equations.
+     */
+    private static class Products {
+
+        Matrix xtx;
+
+        Matrix xty;
+
+        double[] yty;
+
+        Products add(Products other) {
+            xtx.add(other.xtx);
+            xty.add(other.xty);
+            for (int k = 0; k < yty.length; k++) {
+                yty[k] += other.yty[k];
+            }
+            return this;
+        }
+    }
+
+    /**
+     * Solve the normal equations, minimizing the squared error plus ridge times the sum of squared weights (biases are
+     * not penalized).
+     *
+     * @param ridge the ridge regularization. 0 for ordinary least squares.
+     * @return a numOutputs x (numInputs + 1 if there are biases) matrix. Row k holds the weights from each input to
+     * output k, followed by its bias.
+     * @throws IllegalStateException if the equations cannot be solved because X'X is singular
+     */
+    public Matrix solve(double ridge) {
+        if (numRows == 0) {
+            throw new IllegalStateException("No rows have been added");
+        }
+        Matrix a = copy(xtx);
+        for (int i = 0; i < numInputs; i++) {
+            a.set(i, i, a.get(i, i) + ridge);
+        }
+        a.uplo(UPLO.LOWER);
+        Matrix.Cholesky cholesky;
+        try {
+            cholesky = a.cholesky();
+        } catch (ArithmeticException e) {
+            throw new IllegalStateException("Input correlation matrix is singular. Use ridge regularization, or " +
+                    "check that no input is a linear combination of the others.", e);
+        }
+        Matrix b = copy(xty);
+        cholesky.solve(b);
+        return b.transpose();
+    }
+
+    /**
+     * Returns the sum of squared errors of a solution over all rows added, computed from the accumulated products as
+     * Y'Y - 2 B'X'Y + B'X'XB.
+     *
+     * @param solution a solution in the form returned by {@link #solve(double)}
+     * @return the sum over rows and outputs of the squared errors
+     */
+    public double getSumSquaredError(Matrix solution) {
+        double sse = 0;
+        double[] b = new double[size];
+        for (int k = 0; k < numOutputs; k++) {
+            for (int j = 0; j < size; j++) {
+                b[j] = solution.get(k, j);
+            }
+            double[] xtxb = xtx.mv(b);
+            double error = yty[k];
+            for (int j = 0; j < size; j++) {
+                error += b[j] * (xtxb[j] - 2 * xty.get(j, k));
+            }
+            sse += error;
+        }
+        // Rounding can make a perfect fit slightly negative
+        return Math.max(0, sse);
+    }
+
+    private static Matrix copy(Matrix m) {
+        Matrix copy = new Matrix(m.nrows(), m.ncols());
+        for (int j = 0; j < m.ncols(); j++) {
+            for (int i = 0; i < m.nrows(); i++) {
+                copy.set(i, j, m.get(i, j));
+            }
+        }
+        return copy;
+    }
+
+    public long getNumRows() {
+        return numRows;
+    }
+
+    public int getNumInputs() {
+        return numInputs;
+    }
+
+    public int getNumOutputs() {
+        return numOutputs;
+    }
+
+    public boolean isAddBias() {
+        return addBias;
+    }
+
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+}
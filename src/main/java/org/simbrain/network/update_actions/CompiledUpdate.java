@@ -0,0 +1,445 @@
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.network.update_actions;
+
+import org.simbrain.network.NetworkModel;
+import org.simbrain.network.core.Network;
+import org.simbrain.network.core.NetworkUpdateAction;
+import org.simbrain.network.core.Neuron;
+import org.simbrain.network.core.NeuronBatch;
+import org.simbrain.network.core.NeuronUpdateRule;
+import org.simbrain.network.core.Synapse;
+import org.simbrain.network.groups.NeuronGroup;
+import org.simbrain.network.neuron_update_rules.ProductRule;
+import org.simbrain.network.neuron_update_rules.TimedAccumulatorRule;
+import org.simbrain.network.synapse_update_rules.StaticSynapseRule;
+import org.simbrain.network.util.ActivationRecorder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A "compiled" version of {@link BufferedUpdate}. Plain {@link NeuronGroup}s are flattened into primitive arrays: the
+ * activations of all neurons they read from are held in one array, and the incoming weights of each group are stored
+ * in compressed sparse row (CSR) form, one row per target neuron. Weighted inputs are then computed as tight array
+ * loops rather than by walking the fan-in list of each neuron and calling {@link Synapse#calcWeightedSum()}.
+ * <p>
+ * All other models are updated exactly as in {@link Network#bufferedUpdate()}, and compiled groups are updated at the
+ * same point in the update order their models occupy, so results are identical to buffered update. Weights of
+ * synapses with a learning rule are re-read every iteration. The compiled form is rebuilt before the next update
+ * whenever a model is added to or removed from the network, a neuron is removed from a compiled group, a compiled
+ * neuron's update rule is changed, or a synapse read by a compiled group has its static strength, learning rule,
+ * enabled flag or delay changed.
+ * <p>
+ * Groups are not compiled if they are subclasses of neuron group with custom update logic, if they contain spiking
+ * neurons, or if their update rules read post-synaptic responses directly off of synapses.
+ */
+public class CompiledUpdate implements NetworkUpdateAction {
+
+    /**
+     * Reference to network to update.
+     */
+    private final Network network;
+
+    /**
+     * Models in update order, frozen at compile time.
+     */
+    private transient NetworkModel[] models;
+
+    /**
+     * Compiled kernels, parallel to {@link #models}. Null for models that are updated normally.
+     */
+    private transient CompiledNeuronGroup[] kernels;
+
+    /**
+     * Flattened activations of every neuron read by a compiled group.
+     */
+    private transient double[] activations;
+
+    /**
+     * The neuron associated with each entry of {@link #activations}.
+     */
+    private transient Neuron[] slots;
+
+    /**
+     * True if the compiled form must be rebuilt before the next update.
+     */
+    private transient boolean dirty;
+
+    /**
+     * Groups, neurons and synapses that {@link #invalidate()} has been registered with, so that recompiling does not
+     * register it again.
+     */
+    private transient Set<Object> watched;
+
+    /**
+     * Construct a compiled update for the given network.
+     *
+     * @param network network to update
+     */
+    public CompiledUpdate(Network network) {
+        this.network = network;
+    }
+
+    /**
+     * Register listeners on first use (including after deserialization), so that actions that are only offered in
+     * the update manager and never invoked do not listen to the network.
+     */
+    private void init() {
+        watched = Collections.newSetFromMap(new IdentityHashMap<>());
+        network.getEvents().onModelAdded(m -> invalidate());
+        network.getEvents().onModelRemoved(m -> invalidate());
+        compile();
+    }
+
+    /**
+     * Invalidate the compiled form when a group's neurons or their rules change, and for a compiled group, when
+     * anything it copied from the fan-in of its neurons changes. Strength changes of plastic synapses are ignored,
+     * since those are re-read every update.
+     */
+    private void watch(NeuronGroup ng, boolean compiled) {
+        if (watched.add(ng)) {
+            ng.getEvents().onNeuronRemoved(i -> invalidate());
+        }
+        for (Neuron n : ng.getNeuronList()) {
+            if (watched.add(n)) {
+                n.getEvents().onUpdateRuleChange((o, r) -> invalidate());
+            }
+            if (!compiled) {
+                continue;
+            }
+            for (Synapse s : n.getFanInUnsafe()) {
+                if (watched.add(s)) {
+                    s.getEvents().onStrengthUpdate(() -> {
+                        if (s.getLearningRule() instanceof StaticSynapseRule) {
+                            invalidate();
+                        }
+                    });
+                    s.getEvents().onLearningRuleUpdate((o, r) -> invalidate());
+                    s.getEvents().onEnabledChange((o, e) -> invalidate());
+                    s.getEvents().onDelayChange((o, d) -> invalidate());
+                }
+            }
+        }
+    }
+
+    /**
+     * Force the compiled form to be rebuilt on the next update.
+     */
+    public void invalidate() {
+        dirty = true;
+    }
+
+    @Override
+    public void invoke() {
+        if (models == null) {
+            init();
+        } else if (dirty) {
+            compile();
+        }
+
+        // Pick up changes made since the last update (couplings, gui edits, clamped inputs, etc.)
+        for (int i = 0; i < slots.length; i++) {
+            activations[i] = slots[i].getActivation();
+        }
+
+        for (int i = 0; i < models.length; i++) {
+            if (kernels[i] == null) {
+                models[i].updateInputs();
+            } else {
+                kernels[i].group.updateInputs();
+            }
+        }
+        for (int i = 0; i < models.length; i++) {
+            if (kernels[i] == null) {
+                models[i].update();
+            } else {
+                kernels[i].update(activations);
+            }
+        }
+    }
+
+    /**
+     * Build the flattened representation of the network.
+     */
+    private void compile() {
+        List<NetworkModel> all = network.getAllModels();
+        models = all.toArray(new NetworkModel[0]);
+        kernels = new CompiledNeuronGroup[models.length];
+
+        // Assign activation slots. Compiled groups occupy contiguous ranges.
+        Map<Neuron, Integer> slotMap = new IdentityHashMap<>();
+        List<Neuron> slotList = new ArrayList<>();
+        List<NeuronGroup> compilable = new ArrayList<>();
+        for (NetworkModel model : models) {
+            if (model instanceof NeuronGroup) {
+                NeuronGroup ng = (NeuronGroup) model;
+                boolean compiled = isCompilable(ng);
+                // A group that cannot be compiled yet may become compilable when a neuron's rule changes
+                watch(ng, compiled);
+                if (!compiled) {
+                    continue;
+                }
+                compilable.add(ng);
+                for (Neuron n : ng.getNeuronList()) {
+                    slotMap.put(n, slotList.size());
+                    slotList.add(n);
+                }
+            }
+        }
+        int compiledSlots = slotList.size();
+
+        Map<NeuronGroup, CompiledNeuronGroup> kernelMap = new IdentityHashMap<>();
+        for (NeuronGroup ng : compilable) {
+            kernelMap.put(ng, new CompiledNeuronGroup(ng, slotMap, slotList, compiledSlots));
+        }
+        for (int i = 0; i < models.length; i++) {
+            kernels[i] = kernelMap.get(models[i]);
+        }
+
+        slots = slotList.toArray(new Neuron[0]);
+        activations = new double[slots.length];
+        dirty = false;
+    }
+
+    /**
+     * Returns true if a neuron group can be updated using a compiled kernel.
+     */
+    private static boolean isCompilable(NeuronGroup ng) {
+        if (ng.getClass() != NeuronGroup.class || ng.isEmpty()) {
+            return false;
+        }
+        for (Neuron n : ng.getNeuronList()) {
+            NeuronUpdateRule rule = n.getUpdateRule();
+            if (rule.isSpikingNeuron() || rule instanceof ProductRule || rule instanceof TimedAccumulatorRule) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Flattened form of a single neuron group.
+     */
+    private static final class CompiledNeuronGroup {
+
+        /**
+         * The group being updated.
+         */
+        final NeuronGroup group;
+
+        /**
+         * Neurons of the group, in group order.
+         */
+        final Neuron[] neurons;
+
+        /**
+         * The same neurons as a list, for {@link NeuronBatch}.
+         */
+        final List<Neuron> neuronList;
+
+        /**
+         * Buffers for batch update of the group's neurons.
+         */
+        final NeuronBatch batch = new NeuronBatch();
+
+        /**
+         * Offset of this group's neurons in the shared activation array.
+         */
+        final int offset;
+
+        /**
+         * Weighted inputs computed in the current update.
+         */
+        final double[] inputs;
+
+        /**
+         * CSR row pointers. The incoming weights of neuron i are at positions rowStart[i] to rowStart[i+1].
+         */
+        final int[] rowStart;
+
+        /**
+         * CSR column indices: slot in the shared activation array of each source neuron.
+         */
+        final int[] sourceSlots;
+
+        /**
+         * CSR values: synapse strengths.
+         */
+        final double[] weights;
+
+        /**
+         * Positions in {@link #weights} whose synapses have a learning rule and must be re-read each update.
+         */
+        final int[] plasticEntries;
+
+        /**
+         * Synapses corresponding to {@link #plasticEntries}.
+         */
+        final Synapse[] plasticSynapses;
+
+        /**
+         * Slots of source neurons outside any compiled group. These may change during an update (e.g. a loose neuron
+         * updated before this group), so they are re-read before this group is updated.
+         */
+        final int[] externalSlots;
+
+        /**
+         * Neurons corresponding to {@link #externalSlots}.
+         */
+        final Neuron[] externalNeurons;
+
+        /**
+         * Neurons with delayed synapses in their fan-in. Their inputs are computed the usual way.
+         */
+        final boolean[] uncompiledFanIn;
+
+        CompiledNeuronGroup(NeuronGroup ng, Map<Neuron, Integer> slotMap, List<Neuron> slotList,
+                            int compiledSlots) {
+            group = ng;
+            neurons = ng.getNeuronList().toArray(new Neuron[0]);
+            neuronList = Arrays.asList(neurons);
+            offset = slotMap.get(neurons[0]);
+            inputs = new double[neurons.length];
+            rowStart = new int[neurons.length + 1];
+            uncompiledFanIn = new boolean[neurons.length];
+
+            int nnz = 0;
+            for (int i = 0; i < neurons.length; i++) {
+                for (Synapse s : neurons[i].getFanInUnsafe()) {
+                    if (s.getDelay() != 0) {
+                        uncompiledFanIn[i] = true;
+                    } else if (s.isEnabled()) {
+                        nnz++;
+                    }
+                }
+            }
+
+            sourceSlots = new int[nnz];
+            weights = new double[nnz];
+            List<Integer> plastic = new ArrayList<>();
+            List<Synapse> plasticSyns = new ArrayList<>();
+            List<Integer> external = new ArrayList<>();
+            int k = 0;
+            for (int i = 0; i < neurons.length; i++) {
+                rowStart[i] = k;
+                if (uncompiledFanIn[i]) {
+                    continue;
+                }
+                for (Synapse s : neurons[i].getFanInUnsafe()) {
+                    if (!s.isEnabled()) {
+                        continue;
+                    }
+                    Integer slot = slotMap.get(s.getSource());
+                    if (slot == null) {
+                        slot = slotList.size();
+                        slotMap.put(s.getSource(), slot);
+                        slotList.add(s.getSource());
+                    }
+                    if (slot >= compiledSlots) {
+                        external.add(slot);
+                    }
+                    sourceSlots[k] = slot;
+                    weights[k] = s.getStrength();
+                    if (!(s.getLearningRule() instanceof StaticSynapseRule)) {
+                        plastic.add(k);
+                        plasticSyns.add(s);
+                    }
+                    k++;
+                }
+            }
+            rowStart[neurons.length] = k;
+
+            plasticEntries = plastic.stream().mapToInt(Integer::intValue).toArray();
+            plasticSynapses = plasticSyns.toArray(new Synapse[0]);
+            externalSlots = external.stream().mapToInt(Integer::intValue).distinct().toArray();
+            externalNeurons = new Neuron[externalSlots.length];
+            for (int j = 0; j < externalSlots.length; j++) {
+                externalNeurons[j] = slotList.get(externalSlots[j]);
+            }
+        }
+
+        /**
+         * Same as {@link NeuronGroup#update()} but with weighted inputs computed from the flattened arrays, and the
+         * group's rule applied with {@link NeuronBatch} where possible.
+         */
+        void update(double[] activations) {
+
+            ActivationRecorder recorder = group.getActivationRecorder();
+            if (recorder.isRecording()) {
+                recorder.writeActsToFile();
+            }
+
+            for (int j = 0; j < externalSlots.length; j++) {
+                activations[externalSlots[j]] = externalNeurons[j].getActivation();
+            }
+
+            for (int j = 0; j < plasticEntries.length; j++) {
+                weights[plasticEntries[j]] = plasticSynapses[j].getStrength();
+            }
+
+            for (int i = 0; i < neurons.length; i++) {
+                if (uncompiledFanIn[i]) {
+                    inputs[i] = neurons[i].getWeightedInputs();
+                    continue;
+                }
+                double sum = 0;
+                for (int k = rowStart[i], end = rowStart[i + 1]; k < end; k++) {
+                    sum += weights[k] * activations[sourceSlots[k]];
+                }
+                inputs[i] = sum;
+            }
+
+            group.applyCompressedInputs();
+            for (int i = 0; i < neurons.length; i++) {
+                neurons[i].addInputValue(inputs[i]);
+            }
+            if (NeuronBatch.canBatchUpdate(neuronList)) {
+                batch.update(neuronList);
+                group.getEvents().fireActivationsChanged();
+            } else {
+                for (Neuron neuron : neurons) {
+                    neuron.update();
+                }
+            }
+            for (int i = 0; i < neurons.length; i++) {
+                activations[offset + i] = neurons[i].getActivation();
+            }
+
+            group.invalidateCachedActivations();
+        }
+
+    }
+
+    @Override
+    public String getDescription() {
+        return "Compiled buffered update";
+    }
+
+    @Override
+    public String getLongDescription() {
+        return "Buffered update with neuron groups flattened into primitive arrays";
+    }
+
+}
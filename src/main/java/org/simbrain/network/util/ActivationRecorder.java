@@ -10,7 +10,9 @@ import java.io.IOException;
 import java.io.PrintWriter;
 
 /**
- * Manages recording activations or spike histories.
+ * Manages recording activations or spike histories. Recordings are written as text, or, if the file has the extension
+ * {@link BinaryActivationWriter#EXTENSION}, in a compact binary format by a background thread (see {@link
+ * BinaryActivationWriter}), which is much faster for large groups.
  */
 public class ActivationRecorder {
 
@@ -31,6 +33,16 @@ public class ActivationRecorder {
      */
     private PrintWriter valueWriter;
 
+    /**
+     * Writes binary recordings. Null when recording as text.
+     */
+    private transient BinaryActivationWriter binaryWriter;
+
+    /**
+     * Whether binary recordings are gzip compressed.
+     */
+    private boolean compressBinary;
+
     /**
      * Whether or not this group is in a state that allows recording.
      */
@@ -64,7 +76,8 @@ public class ActivationRecorder {
      * neuron group is populated entirely by spiking neurons and if so, sets
      * {@link #recordAsSpikes} to true, since {@link #writeActsToFile()} writes
      * activations differently if the neuron group contains only spiking
-     * neurons.
+     * neurons. Files with the extension {@link BinaryActivationWriter#EXTENSION}
+     * are written in binary.
      *
      * @param outputFile the file to write the activations to
      */
@@ -79,11 +92,14 @@ public class ActivationRecorder {
         recordAsSpikes = spikeRecord;
         recording = true;
         try {
-            if (valueWriter != null) {
-                valueWriter.close();
+            closeWriters();
+            if (outputFile.getName().endsWith("." + BinaryActivationWriter.EXTENSION)) {
+                binaryWriter = new BinaryActivationWriter(outputFile, nc.size(), recordAsSpikes, compressBinary,
+                        BinaryActivationWriter.DEFAULT_CAPACITY);
+            } else {
+                FileWriter fw = new FileWriter(outputFile);
+                valueWriter = new PrintWriter(fw);
             }
-            FileWriter fw = new FileWriter(outputFile);
-            valueWriter = new PrintWriter(fw);
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -95,12 +111,28 @@ public class ActivationRecorder {
      * Halts recording of activations. Closes all involved output streams.
      */
     public void stopRecording() {
+        try {
+            closeWriters();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        recording = false;
+        nc.getEvents().fireRecordingStopped();
+    }
+
+    /**
+     * Close the text or binary writer, waiting for the binary writer to finish.
+     */
+    private void closeWriters() throws IOException {
         if (valueWriter != null) {
             valueWriter.close();
             valueWriter = null;
         }
-        recording = false;
-        nc.getEvents().fireRecordingStopped();
+        if (binaryWriter != null) {
+            BinaryActivationWriter writer = binaryWriter;
+            binaryWriter = null;
+            writer.close();
+        }
     }
 
     /**
@@ -111,8 +143,25 @@ public class ActivationRecorder {
      * id][spk time] couplets. Otherwise it writes the neurons' activation
      * values as a state matrix to the file. Flushes the output stream every
      * {@link #FLUSH_FREQUENCY} invocations.
+     * <p>
+     * Binary recordings just copy the activations (or spike indices) to a
+     * buffer that is written by another thread.
      */
     public void writeActsToFile() {
+        if (binaryWriter != null) {
+            try {
+                if (recordAsSpikes) {
+                    binaryWriter.writeSpikes(nc.getParentNetwork().getTime(), i -> nc.getNeuron(i).isSpike());
+                } else {
+                    binaryWriter.writeValues(nc.getParentNetwork().getTime(),
+                            i -> nc.getNeuron(i).getActivation());
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+                stopRecording();
+            }
+            return;
+        }
         try {
             if (writeCounter >= FLUSH_FREQUENCY) {
                 valueWriter.flush();
@@ -161,6 +210,18 @@ public class ActivationRecorder {
         this.recording = recording;
     }
 
+    public boolean isCompressBinary() {
+        return compressBinary;
+    }
+
+    /**
+     * Set whether binary recordings are gzip compressed. Takes effect when
+     * recording next starts.
+     */
+    public void setCompressBinary(boolean compressBinary) {
+        this.compressBinary = compressBinary;
+    }
+
     public boolean isRecordAsSpikes() {
         return recordAsSpikes;
     }
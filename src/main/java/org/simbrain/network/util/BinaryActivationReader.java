@@ -0,0 +1,152 @@
+package org.simbrain.network.util;
+
+import org.simbrain.util.table.NumericTable;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Loads files written by {@link BinaryActivationWriter}, compressed or not.
+ */
+public class BinaryActivationReader {
+
+    /**
+     * Time of each record read.
+     */
+    private final List<Double> times = new ArrayList<>();
+
+    /**
+     * One row per record: activations, or (time, neuron index) pairs for spikes.
+     */
+    private final List<double[]> rows = new ArrayList<>();
+
+    private boolean spikes;
+
+    private int numNeurons;
+
+    /**
+     * Read a file.
+     *
+     * @param file the file to read
+     * @throws IOException if the file cannot be read or is not an activation file
+     */
+    public BinaryActivationReader(File file) throws IOException {
+        try (DataInputStream in = open(file)) {
+            if (in.readInt() != BinaryActivationWriter.MAGIC) {
+                throw new IOException(file + " is not a binary activation file");
+            }
+            byte version = in.readByte();
+            if (version > BinaryActivationWriter.VERSION) {
+                throw new IOException("Unsupported activation file version " + version);
+            }
+            spikes = in.readByte() == BinaryActivationWriter.SPIKES;
+            numNeurons = in.readInt();
+            byte[] record = new byte[4 * numNeurons];
+            while (true) {
+                double time;
+                try {
+                    time = in.readDouble();
+                } catch (EOFException e) {
+                    break;
+                }
+                times.add(time);
+                if (spikes) {
+                    int numSpikes = readVarInt(in);
+                    int index = 0;
+                    for (int k = 0; k < numSpikes; k++) {
+                        index += readVarInt(in);
+                        rows.add(new double[]{time, index});
+                    }
+                } else {
+                    in.readFully(record);
+                    double[] row = new double[numNeurons];
+                    for (int i = 0; i < numNeurons; i++) {
+                        int j = 4 * i;
+                        row[i] = Float.intBitsToFloat(((record[j] & 0xFF) << 24) | ((record[j + 1] & 0xFF) << 16)
+                                | ((record[j + 2] & 0xFF) << 8) | (record[j + 3] & 0xFF));
+                    }
+                    rows.add(row);
+                }
+            }
+        }
+    }
+
+    /**
+     * Open a file, unzipping it if it starts with the gzip magic number.
+     */
+    private static DataInputStream open(File file) throws IOException {
+        InputStream stream = new BufferedInputStream(new FileInputStream(file), 1 << 16);
+        stream.mark(2);
+        int first = stream.read();
+        int second = stream.read();
+        stream.reset();
+        if (first == (GZIPInputStream.GZIP_MAGIC & 0xFF) && second == (GZIPInputStream.GZIP_MAGIC >> 8)) {
+            stream = new BufferedInputStream(new GZIPInputStream(stream, 1 << 16), 1 << 16);
+        }
+        return new DataInputStream(stream);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * Load a file into a table. Activation files give one row per time step and one column per neuron. Spike files
+     * give one row per spike, with the time in the first column and the index of the neuron in the second.
+     *
+     * @param file the file to read
+     * @return the table
+     * @throws IOException if the file cannot be read or is not an activation file
+     */
+    public static NumericTable readTable(File file) throws IOException {
+        return new BinaryActivationReader(file).toTable();
+    }
+
+    /**
+     * Returns the data as a table, in the form described in {@link #readTable(File)}.
+     */
+    public NumericTable toTable() {
+        if (rows.isEmpty()) {
+            return new NumericTable(0, spikes ? 2 : numNeurons);
+        }
+        return new NumericTable(rows.toArray(new double[0][]));
+    }
+
+    /**
+     * Returns the rows read: activations, or (time, neuron index) pairs for spikes.
+     */
+    public List<double[]> getRows() {
+        return rows;
+    }
+
+    /**
+     * Returns the time of each record. For spike files there is one record per time step in which some neuron
+     * spiked.
+     */
+    public List<Double> getTimes() {
+        return times;
+    }
+
+    public boolean isSpikes() {
+        return spikes;
+    }
+
+    public int getNumNeurons() {
+        return numNeurons;
+    }
+}
@@ -0,0 +1,287 @@
+package org.simbrain.network.util;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.IntPredicate;
+import java.util.function.IntToDoubleFunction;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes activations or spikes to a compact binary file on a background thread, so that recording costs the
+ * simulation thread little more than copying the values.
+ * <p>
+ * A fixed number of frames (each holding one time step) are allocated up front and passed between the simulation
+ * thread and the writer thread through two bounded queues: empty frames go one way and filled frames the other. If
+ * the writer falls behind by more than the number of frames, the simulation waits for it.
+ * <p>
+ * File format (big-endian), optionally gzip compressed as a whole:
+ * <ul>
+ * <li>Header: the int {@link #MAGIC}, a byte version, a byte type ({@link #VALUES} or {@link #SPIKES}) and an int
+ * number of neurons.</li>
+ * <li>Values records: a double time followed by a float for each neuron.</li>
+ * <li>Spike records, written only for time steps where some neuron spiked: a double time, the number of spikes, and
+ * the indices of the neurons that spiked, each as the difference from the previous index. Counts and differences are
+ * variable length ints (7 bits per byte, low bits first), so most take a single byte.</li>
+ * </ul>
+ * Use {@link BinaryActivationReader} to load a file.
+ */
+public class BinaryActivationWriter {
+
+    /**
+     * Recommended file extension.
+     */
+    public static final String EXTENSION = "acts";
+
+    /**
+     * First four bytes of an uncompressed file: "SBAC".
+     */
+    public static final int MAGIC = 0x53424143;
+
+    public static final byte VERSION = 1;
+
+    /**
+     * Type of a file holding activation values.
+     */
+    public static final byte VALUES = 0;
+
+    /**
+     * Type of a file holding spike indices.
+     */
+    public static final byte SPIKES = 1;
+
+    /**
+     * Default number of time steps that can be waiting to be written.
+     */
+    public static final int DEFAULT_CAPACITY = 64;
+
+    /**
+     * One time step of data.
+     */
+    private static final class Frame {
+
+        double time;
+
+        float[] values;
+
+        int[] spikes;
+
+        int numSpikes;
+
+        /**
+         * Marks the end of the data.
+         */
+        boolean last;
+    }
+
+    private final int numNeurons;
+
+    private final boolean recordSpikes;
+
+    private final BlockingQueue<Frame> emptyFrames;
+
+    private final BlockingQueue<Frame> fullFrames;
+
+    private final Thread writerThread;
+
+    private final DataOutputStream out;
+
+    /**
+     * The first error encountered by the writer thread.
+     */
+    private volatile IOException error;
+
+    private boolean closed;
+
+    /**
+     * Create the file, write its header, and start the writer thread.
+     *
+     * @param file         the file to write
+     * @param numNeurons   number of neurons recorded
+     * @param recordSpikes true to record which neurons spiked, false to record activations
+     * @param compress     whether to gzip compress the file
+     * @param capacity     number of time steps that can be waiting to be written
+     * @throws IOException if the file cannot be created
+     */
+    public BinaryActivationWriter(File file, int numNeurons, boolean recordSpikes, boolean compress, int capacity)
+            throws IOException {
+        this.numNeurons = numNeurons;
+        this.recordSpikes = recordSpikes;
+        OutputStream stream = new FileOutputStream(file);
+        if (compress) {
+            stream = new GZIPOutputStream(stream, 1 << 16);
+        }
+        out = new DataOutputStream(new BufferedOutputStream(stream, 1 << 16));
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeByte(recordSpikes ? SPIKES : VALUES);
+        out.writeInt(numNeurons);
+
+        emptyFrames = new ArrayBlockingQueue<>(capacity);
+        fullFrames = new ArrayBlockingQueue<>(capacity + 1);
+        for (int i = 0; i < capacity; i++) {
+            Frame frame = new Frame();
+            if (recordSpikes) {
+                frame.spikes = new int[numNeurons];
+            } else {
+                frame.values = new float[numNeurons];
+            }
+            emptyFrames.add(frame);
+        }
+        writerThread = new Thread(this::writeFrames, "Activation writer " + file.getName());
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Record the activations at one time step.
+     *
+     * @param time       the network time
+     * @param activation returns the activation of the neuron at an index
+     * @throws IOException if the writer thread has failed
+     */
+    public void writeValues(double time, IntToDoubleFunction activation) throws IOException {
+        Frame frame = takeEmptyFrame();
+        if (frame == null) {
+            return;
+        }
+        frame.time = time;
+        for (int i = 0; i < numNeurons; i++) {
+            frame.values[i] = (float) activation.applyAsDouble(i);
+        }
+        fullFrames.add(frame);
+    }
+
+    /**
+     * Record which neurons spiked at one time step. Nothing is written if none did.
+     *
+     * @param time    the network time
+     * @param spiked  returns whether the neuron at an index spiked
+     * @throws IOException if the writer thread has failed
+     */
+    public void writeSpikes(double time, IntPredicate spiked) throws IOException {
+        Frame frame = takeEmptyFrame();
+        if (frame == null) {
+            return;
+        }
+        frame.time = time;
+        frame.numSpikes = 0;
+        for (int i = 0; i < numNeurons; i++) {
+            if (spiked.test(i)) {
+                frame.spikes[frame.numSpikes++] = i;
+            }
+        }
+        if (frame.numSpikes == 0) {
+            emptyFrames.add(frame);
+        } else {
+            fullFrames.add(frame);
+        }
+    }
+
+    /**
+     * Wait for an empty frame. Returns null if the thread is interrupted while waiting, in which case the time step
+     * is dropped.
+     */
+    private Frame takeEmptyFrame() throws IOException {
+        if (error != null) {
+            throw error;
+        }
+        if (closed) {
+            throw new IOException("Writer is closed");
+        }
+        try {
+            return emptyFrames.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /**
+     * Body of the writer thread.
+     */
+    private void writeFrames() {
+        ByteBuffer buffer = ByteBuffer.allocate(recordSpikes ? 13 + 5 * numNeurons : 8 + 4 * numNeurons);
+        try {
+            while (true) {
+                Frame frame = fullFrames.take();
+                if (frame.last) {
+                    break;
+                }
+                if (error == null) {
+                    buffer.clear();
+                    buffer.putDouble(frame.time);
+                    if (recordSpikes) {
+                        putVarInt(buffer, frame.numSpikes);
+                        int previous = 0;
+                        for (int k = 0; k < frame.numSpikes; k++) {
+                            putVarInt(buffer, frame.spikes[k] - previous);
+                            previous = frame.spikes[k];
+                        }
+                    } else {
+                        for (float value : frame.values) {
+                            buffer.putFloat(value);
+                        }
+                    }
+                    try {
+                        out.write(buffer.array(), 0, buffer.position());
+                    } catch (IOException e) {
+                        error = e;
+                    }
+                }
+                emptyFrames.add(frame);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            try {
+                out.close();
+            } catch (IOException e) {
+                if (error == null) {
+                    error = e;
+                }
+            }
+        }
+    }
+
+    private static void putVarInt(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    /**
+     * Write everything still queued, close the file and stop the writer thread.
+     *
+     * @throws IOException if any write failed
+     */
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        Frame end = new Frame();
+        end.last = true;
+        fullFrames.add(end);
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    public boolean isRecordSpikes() {
+        return recordSpikes;
+    }
+}
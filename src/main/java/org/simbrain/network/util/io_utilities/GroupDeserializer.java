@@ -22,8 +22,10 @@ import org.simbrain.network.core.Neuron;
 import org.simbrain.network.core.Synapse;
 import org.simbrain.network.groups.SynapseGroup;
 import org.simbrain.network.trainers.InvalidDataException;
+import org.simbrain.util.math.CompressedRowMatrix;
 
 import java.io.IOException;
+import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -109,6 +111,56 @@ public class GroupDeserializer {
         return true;
     }
 
+    /**
+     * Decodes connection and weight data produced by {@link SynapseGroup#getSparseCode} into a sparse matrix with one
+     * row per source neuron and one column per target neuron, without creating any synapses.
+     *
+     * @param synBytes   the sparse code
+     * @param numSources number of neurons in the source group
+     * @param numTargets number of neurons in the target group
+     * @return the weight matrix
+     * @throws IllegalArgumentException if the bytes are not a sparse code or are inconsistent with the group sizes
+     */
+    public static CompressedRowMatrix decodeSparseCode(byte[] synBytes, int numSources, int numTargets) {
+        ByteBuffer inStream = ByteBuffer.wrap(synBytes);
+        if (inStream.getInt() != -1) {
+            throw new IllegalArgumentException("Not a sparse synapse code");
+        }
+        boolean doublePrecision = inStream.get() == (byte) 0x1;
+        int size = inStream.getInt();
+        int numSrc = inStream.getInt();
+        int[] rowStarts = new int[numSources + 1];
+        int[] columns = new int[size];
+        int k = 0;
+        int lastSrc = -1;
+        try {
+            for (int ii = 0; ii < numSrc; ++ii) {
+                int srcInd = inStream.getInt();
+                int outD = inStream.getInt();
+                if (srcInd <= lastSrc || srcInd >= numSources) {
+                    throw new IllegalArgumentException("Source index " + srcInd + " out of order or range");
+                }
+                for (int row = lastSrc + 1; row <= srcInd; row++) {
+                    rowStarts[row] = k;
+                }
+                for (int jj = 0; jj < outD; ++jj) {
+                    columns[k++] = inStream.getInt();
+                }
+                lastSrc = srcInd;
+            }
+            for (int row = lastSrc + 1; row <= numSources; row++) {
+                rowStarts[row] = k;
+            }
+            double[] values = new double[size];
+            for (int ii = 0; ii < size; ++ii) {
+                values[ii] = doublePrecision ? inStream.getDouble() : inStream.getFloat();
+            }
+            return new CompressedRowMatrix(numSources, numTargets, rowStarts, columns, values);
+        } catch (IndexOutOfBoundsException | BufferUnderflowException ex) {
+            throw new IllegalArgumentException("Sparse code inconsistent with its meta-data", ex);
+        }
+    }
+
     /**
      * @param rowCompByteArr the row compressed sparse matrix used to fill the
      *                       synapse group in compressed byte array format.
@@ -0,0 +1,316 @@
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.plot;
+
+import org.jfree.data.DomainOrder;
+import org.jfree.data.xy.AbstractXYDataset;
+import org.jfree.data.xy.XYSeries;
+import org.simbrain.plot.RingBufferSeries.Decimation;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A JFreeChart dataset backed by {@link RingBufferSeries}. Data are added without boxing or change events; call
+ * {@link #fireDatasetChanged()} once a batch of points has been added to update the chart.
+ * <p>
+ * The chart only sees a decimated copy of each series, with at most a few points per bucket for {@link
+ * #getNumBuckets()} buckets, so drawing costs the same however much history is kept. Decimated copies are recomputed
+ * when the chart asks for them after new data has arrived.
+ * <p>
+ * Optionally, points that drop out of the ring buffers can be written to a file, so that the full history of a long
+ * run is kept on disk. Each point is written as an int series index, a double x and a double y.
+ */
+public class RingBufferDataset extends AbstractXYDataset {
+
+    private final List<RingBufferSeries> seriesList = new ArrayList<>();
+
+    /**
+     * Decimated points currently shown for each series: x values then y values.
+     */
+    private transient List<double[][]> displayed = new ArrayList<>();
+
+    /**
+     * True if data have changed since the decimated copies were made.
+     */
+    private transient volatile boolean stale = true;
+
+    private int capacity;
+
+    private int numBuckets;
+
+    private Decimation decimation;
+
+    /**
+     * Receives points that drop out of the ring buffers, if not null.
+     */
+    private transient DataOutputStream spillStream;
+
+    /**
+     * Create an empty dataset.
+     *
+     * @param capacity   number of points held in memory for each series
+     * @param numBuckets number of buckets the x range is divided into for display
+     * @param decimation how the points in a bucket are reduced for display
+     */
+    public RingBufferDataset(int capacity, int numBuckets, Decimation decimation) {
+        this.capacity = capacity;
+        this.numBuckets = numBuckets;
+        this.decimation = decimation;
+    }
+
+    /**
+     * Add a new, empty series.
+     *
+     * @param key the name of the series
+     * @return the series
+     */
+    public synchronized RingBufferSeries addSeries(Comparable<?> key) {
+        RingBufferSeries series = new RingBufferSeries(key, capacity);
+        series.setEvictionListener(this::spill);
+        seriesList.add(series);
+        stale = true;
+        fireDatasetChanged();
+        return series;
+    }
+
+    /**
+     * Add a copy of a JFreeChart series, e.g. one read from a plot saved before ring buffers were used. Null y values
+     * become NaN. If the series is longer than the capacity only the newest points are kept.
+     *
+     * @param xy the series to copy
+     * @return the new series
+     */
+    public synchronized RingBufferSeries addSeries(XYSeries xy) {
+        RingBufferSeries series = addSeries(xy.getKey());
+        for (int i = 0; i < xy.getItemCount(); i++) {
+            Number y = xy.getY(i);
+            series.add(xy.getX(i).doubleValue(), y == null ? Double.NaN : y.doubleValue());
+        }
+        return series;
+    }
+
+    public synchronized void removeSeries(RingBufferSeries series) {
+        seriesList.remove(series);
+        stale = true;
+        fireDatasetChanged();
+    }
+
+    public synchronized void removeSeries(int index) {
+        removeSeries(seriesList.get(index));
+    }
+
+    public synchronized void removeAllSeries() {
+        seriesList.clear();
+        stale = true;
+        fireDatasetChanged();
+    }
+
+    public synchronized RingBufferSeries getSeries(int index) {
+        return seriesList.get(index);
+    }
+
+    /**
+     * Add a point to a series, without notifying the chart.
+     *
+     * @param series the series index
+     * @param x      the x value
+     * @param y      the y value
+     */
+    public void add(int series, double x, double y) {
+        getSeries(series).add(x, y);
+        stale = true;
+    }
+
+    /**
+     * Note that data have been added directly to a series, without notifying the chart.
+     */
+    public void markStale() {
+        stale = true;
+    }
+
+    /**
+     * Remove all points from every series.
+     */
+    public synchronized void clear() {
+        seriesList.forEach(RingBufferSeries::clear);
+        stale = true;
+        fireDatasetChanged();
+    }
+
+    /**
+     * Notify the chart that the data have changed.
+     */
+    @Override
+    public void fireDatasetChanged() {
+        super.fireDatasetChanged();
+    }
+
+    /**
+     * Make new decimated copies of the series if the data have changed.
+     */
+    private synchronized List<double[][]> getDisplayed() {
+        if (displayed == null) {
+            displayed = new ArrayList<>();
+            stale = true;
+        }
+        if (stale) {
+            stale = false;
+            List<double[][]> newDisplayed = new ArrayList<>(seriesList.size());
+            for (RingBufferSeries series : seriesList) {
+                newDisplayed.add(series.decimate(numBuckets, decimation));
+            }
+            displayed = newDisplayed;
+        }
+        return displayed;
+    }
+
+    /**
+     * Returns the displayed points of a series, or empty arrays if the series has just been removed.
+     */
+    private double[][] getDisplayed(int series) {
+        List<double[][]> current = getDisplayed();
+        return series < current.size() ? current.get(series) : new double[2][0];
+    }
+
+    @Override
+    public synchronized int getSeriesCount() {
+        return seriesList.size();
+    }
+
+    @Override
+    public synchronized Comparable getSeriesKey(int series) {
+        return series < seriesList.size() ? seriesList.get(series).getKey() : "";
+    }
+
+    @Override
+    public int getItemCount(int series) {
+        return getDisplayed(series)[0].length;
+    }
+
+    @Override
+    public double getXValue(int series, int item) {
+        double[] values = getDisplayed(series)[0];
+        return item < values.length ? values[item] : Double.NaN;
+    }
+
+    @Override
+    public double getYValue(int series, int item) {
+        double[] values = getDisplayed(series)[1];
+        return item < values.length ? values[item] : Double.NaN;
+    }
+
+    @Override
+    public Number getX(int series, int item) {
+        return getXValue(series, item);
+    }
+
+    @Override
+    public Number getY(int series, int item) {
+        double y = getYValue(series, item);
+        return Double.isNaN(y) ? null : y;
+    }
+
+    @Override
+    public DomainOrder getDomainOrder() {
+        return DomainOrder.ASCENDING;
+    }
+
+    /**
+     * Write points that drop out of the ring buffers to a file, or stop doing so.
+     *
+     * @param file the file to write, or null to stop spilling
+     * @throws IOException if the file cannot be opened, or the previous one cannot be closed
+     */
+    public synchronized void setSpillFile(File file) throws IOException {
+        if (spillStream != null) {
+            spillStream.close();
+            spillStream = null;
+        }
+        if (file != null) {
+            spillStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+        }
+    }
+
+    /**
+     * Flush points written to the spill file.
+     */
+    public synchronized void flushSpillFile() throws IOException {
+        if (spillStream != null) {
+            spillStream.flush();
+        }
+    }
+
+    private void spill(RingBufferSeries series, double x, double y) {
+        DataOutputStream out = spillStream;
+        if (out == null) {
+            return;
+        }
+        try {
+            out.writeInt(seriesList.indexOf(series));
+            out.writeDouble(x);
+            out.writeDouble(y);
+        } catch (IOException e) {
+            e.printStackTrace();
+            spillStream = null;
+        }
+    }
+
+    /**
+     * Re-attach the spill listener, which is not saved, to each series.
+     */
+    private Object readResolve() {
+        seriesList.forEach(s -> s.setEvictionListener(this::spill));
+        displayed = new ArrayList<>();
+        stale = true;
+        return this;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Set the number of points held in memory for each series, keeping the newest points.
+     */
+    public synchronized void setCapacity(int capacity) {
+        this.capacity = capacity;
+        seriesList.forEach(s -> s.setCapacity(capacity));
+        stale = true;
+        fireDatasetChanged();
+    }
+
+    public int getNumBuckets() {
+        return numBuckets;
+    }
+
+    public synchronized void setNumBuckets(int numBuckets) {
+        this.numBuckets = Math.max(1, numBuckets);
+        stale = true;
+    }
+
+    public Decimation getDecimation() {
+        return decimation;
+    }
+}
@@ -0,0 +1,303 @@
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.plot;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A series of (x, y) points held in primitive ring buffers of fixed capacity. When the buffer is full, each new point
+ * replaces the oldest. Points are expected in order of non-decreasing x (e.g. time), as in time series and raster
+ * plots. A y value of NaN marks a time with no value.
+ * <p>
+ * For display, {@link #decimate} reduces the points to a bounded number by dividing the x range into buckets and
+ * keeping only the points in each bucket that would be visible at that resolution.
+ * <p>
+ * Only the points currently held are saved, oldest first, not the whole buffer.
+ */
+public class RingBufferSeries implements Serializable {
+
+    /**
+     * How points in one bucket are reduced for display.
+     */
+    public enum Decimation {
+
+        /**
+         * Keep the lowest and highest point, in their original order. Preserves the envelope of a line.
+         */
+        MIN_MAX,
+
+        /**
+         * Keep the first point with each distinct y value. Suited to raster plots, where y is a neuron index.
+         */
+        DISTINCT
+    }
+
+    private final Comparable<?> key;
+
+    private transient double[] xs;
+
+    private transient double[] ys;
+
+    /**
+     * Index of the oldest point.
+     */
+    private transient int start;
+
+    private int size;
+
+    /**
+     * Receives points as they are overwritten. May be null.
+     */
+    private transient EvictionListener evictionListener;
+
+    /**
+     * Notified of each point removed from a full buffer to make room for a new one.
+     */
+    public interface EvictionListener {
+
+        /**
+         * Called when a point is overwritten.
+         *
+         * @param series the series
+         * @param x      x value of the point
+         * @param y      y value of the point
+         */
+        void evicted(RingBufferSeries series, double x, double y);
+    }
+
+    /**
+     * Create an empty series.
+     *
+     * @param key      the name of the series, shown in the legend
+     * @param capacity the maximum number of points held
+     */
+    public RingBufferSeries(Comparable<?> key, int capacity) {
+        this.key = key;
+        capacity = Math.max(1, capacity);
+        xs = new double[capacity];
+        ys = new double[capacity];
+    }
+
+    /**
+     * Add a point, replacing the oldest if the buffer is full.
+     *
+     * @param x the x value
+     * @param y the y value
+     */
+    public synchronized void add(double x, double y) {
+        int capacity = xs.length;
+        int index = start + size;
+        if (index >= capacity) {
+            index -= capacity;
+        }
+        if (size == capacity) {
+            if (evictionListener != null) {
+                evictionListener.evicted(this, xs[start], ys[start]);
+            }
+            start = start + 1 == capacity ? 0 : start + 1;
+        } else {
+            size++;
+        }
+        xs[index] = x;
+        ys[index] = y;
+    }
+
+    /**
+     * Remove all points.
+     */
+    public synchronized void clear() {
+        start = 0;
+        size = 0;
+    }
+
+    /**
+     * Change the capacity, keeping the newest points that fit. Points dropped are not passed to the eviction
+     * listener.
+     *
+     * @param capacity the new capacity
+     */
+    public synchronized void setCapacity(int capacity) {
+        capacity = Math.max(1, capacity);
+        if (capacity == xs.length) {
+            return;
+        }
+        int newSize = Math.min(size, capacity);
+        double[] newXs = new double[capacity];
+        double[] newYs = new double[capacity];
+        for (int i = 0; i < newSize; i++) {
+            int index = physicalIndex(size - newSize + i);
+            newXs[i] = xs[index];
+            newYs[i] = ys[index];
+        }
+        xs = newXs;
+        ys = newYs;
+        start = 0;
+        size = newSize;
+    }
+
+    private int physicalIndex(int item) {
+        int index = start + item;
+        return index >= xs.length ? index - xs.length : index;
+    }
+
+    /**
+     * Returns the x value of a point, oldest first.
+     */
+    public synchronized double getX(int item) {
+        return xs[physicalIndex(item)];
+    }
+
+    /**
+     * Returns the y value of a point, oldest first.
+     */
+    public synchronized double getY(int item) {
+        return ys[physicalIndex(item)];
+    }
+
+    /**
+     * Reduce the points to at most a few per bucket, dividing the x range of the points into equal buckets.
+     *
+     * @param numBuckets number of buckets; typically the width of the plot in pixels
+     * @param mode       how the points in a bucket are reduced
+     * @return two arrays, the x values and the y values of the points kept, oldest first. If there are no more points
+     * than buckets all are kept.
+     */
+    public synchronized double[][] decimate(int numBuckets, Decimation mode) {
+        if (size <= numBuckets || size < 2) {
+            double[][] all = new double[2][size];
+            for (int i = 0; i < size; i++) {
+                int index = physicalIndex(i);
+                all[0][i] = xs[index];
+                all[1][i] = ys[index];
+            }
+            return all;
+        }
+        double minX = xs[start];
+        double range = xs[physicalIndex(size - 1)] - minX;
+        double[] outX = new double[mode == Decimation.MIN_MAX ? 2 * numBuckets + 2 : size];
+        double[] outY = new double[outX.length];
+        int count = 0;
+        Set<Double> seen = new HashSet<>();
+        int bucketStart = 0;
+        while (bucketStart < size) {
+            int bucket = bucketOf(xs[physicalIndex(bucketStart)], minX, range, numBuckets);
+            int bucketEnd = bucketStart + 1;
+            while (bucketEnd < size && bucketOf(xs[physicalIndex(bucketEnd)], minX, range, numBuckets) == bucket) {
+                bucketEnd++;
+            }
+            if (mode == Decimation.MIN_MAX) {
+                int min = -1;
+                int max = -1;
+                for (int i = bucketStart; i < bucketEnd; i++) {
+                    double y = ys[physicalIndex(i)];
+                    if (Double.isNaN(y)) {
+                        continue;
+                    }
+                    if (min < 0 || y < ys[physicalIndex(min)]) {
+                        min = i;
+                    }
+                    if (max < 0 || y > ys[physicalIndex(max)]) {
+                        max = i;
+                    }
+                }
+                if (min < 0) {
+                    // Only gaps: keep one so the line is broken here
+                    min = bucketStart;
+                    max = bucketStart;
+                }
+                int first = Math.min(min, max);
+                int second = Math.max(min, max);
+                count = put(outX, outY, count, physicalIndex(first));
+                if (second != first) {
+                    count = put(outX, outY, count, physicalIndex(second));
+                }
+            } else {
+                seen.clear();
+                for (int i = bucketStart; i < bucketEnd; i++) {
+                    if (seen.add(ys[physicalIndex(i)])) {
+                        count = put(outX, outY, count, physicalIndex(i));
+                    }
+                }
+            }
+            bucketStart = bucketEnd;
+        }
+        return new double[][]{Arrays.copyOf(outX, count), Arrays.copyOf(outY, count)};
+    }
+
+    private int put(double[] outX, double[] outY, int count, int index) {
+        outX[count] = xs[index];
+        outY[count] = ys[index];
+        return count + 1;
+    }
+
+    private static int bucketOf(double x, double minX, double range, int numBuckets) {
+        if (range <= 0) {
+            return 0;
+        }
+        return (int) Math.min(numBuckets - 1, (x - minX) / range * numBuckets);
+    }
+
+    /**
+     * Write the capacity and the points held, oldest first.
+     */
+    private synchronized void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeInt(xs.length);
+        for (int i = 0; i < size; i++) {
+            int index = physicalIndex(i);
+            out.writeDouble(xs[index]);
+            out.writeDouble(ys[index]);
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        int capacity = Math.max(1, in.readInt());
+        xs = new double[capacity];
+        ys = new double[capacity];
+        start = 0;
+        size = Math.min(size, capacity);
+        for (int i = 0; i < size; i++) {
+            xs[i] = in.readDouble();
+            ys[i] = in.readDouble();
+        }
+    }
+
+    public Comparable<?> getKey() {
+        return key;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized int getCapacity() {
+        return xs.length;
+    }
+
+    public void setEvictionListener(EvictionListener evictionListener) {
+        this.evictionListener = evictionListener;
+    }
+}
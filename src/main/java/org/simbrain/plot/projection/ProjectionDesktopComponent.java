@@ -141,7 +141,7 @@ public class ProjectionDesktopComponent extends DesktopComponent<ProjectionCompo
     private JLabel warningLabel = new JLabel(ResourceManager.getImageIcon("menu_icons/Warning.png"));
 
     /**
-     * Panel for showing Sammon step size and label, both with tooltip.
+     * Panel for showing the Sammon map settings and their labels, all with tooltips.
      */
     private Box sammonStepSizePanel = Box.createHorizontalBox();
 
@@ -150,6 +150,16 @@ public class ProjectionDesktopComponent extends DesktopComponent<ProjectionCompo
      */
     private JTextField sammonStepSize;
 
+    /**
+     * Whether Sammon map iterations are split across threads.
+     */
+    private JCheckBox sammonParallel;
+
+    /**
+     * Shows the number of points each point is compared with per Sammon map iteration.
+     */
+    private JTextField sammonSampleSize;
+
     /**
      * Combo box for first dimension of coordinate projection.
      */
@@ -341,6 +351,18 @@ public class ProjectionDesktopComponent extends DesktopComponent<ProjectionCompo
         sammonStepSize.setColumns(3);
         sammonStepSize.setToolTipText(stepSizeToolTip);
         sammonStepSizePanel.add(sammonStepSize);
+        sammonParallel = new JCheckBox("Parallel", SimbrainPreferences.getBoolean("projectorSammonParallel"));
+        sammonParallel.setToolTipText("Split each iteration across processor cores");
+        sammonStepSizePanel.add(sammonParallel);
+        String sampleSizeToolTip = "Number of points each point is compared with per iteration, or 0 to compare "
+                + "with all of them";
+        JLabel sampleSizeLabel = new JLabel("Sample Size");
+        sampleSizeLabel.setToolTipText(sampleSizeToolTip);
+        sammonStepSizePanel.add(sampleSizeLabel);
+        sammonSampleSize = new JFormattedTextField("" + SimbrainPreferences.getInt("projectorSammonSampleSize"));
+        sammonSampleSize.setColumns(3);
+        sammonSampleSize.setToolTipText(sampleSizeToolTip);
+        sammonStepSizePanel.add(sammonSampleSize);
         theToolBar.add(sammonStepSizePanel);
         adjustDimension1.setToolTipText("Dimension 1");
         adjustDimension2.setToolTipText("Dimension 2");
@@ -394,6 +416,22 @@ public class ProjectionDesktopComponent extends DesktopComponent<ProjectionCompo
                 }
             }
         });
+        sammonParallel.addActionListener(e -> {
+            ProjectionMethod method = getWorkspaceComponent().getProjector().getProjectionMethod();
+            if (method instanceof ProjectSammon) {
+                ((ProjectSammon) method).setParallel(sammonParallel.isSelected());
+            }
+        });
+        sammonSampleSize.addFocusListener(new FocusAdapter() {
+            @Override
+            public void focusLost(FocusEvent e) {
+                ProjectionMethod method = getWorkspaceComponent().getProjector().getProjectionMethod();
+                Integer sampleSize = Utils.parseInteger(sammonSampleSize);
+                if (method instanceof ProjectSammon && sampleSize != null && sampleSize >= 0) {
+                    ((ProjectSammon) method).setSampleSize(sampleSize);
+                }
+            }
+        });
         updateToolBar();
         update();
 
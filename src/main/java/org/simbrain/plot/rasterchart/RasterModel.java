@@ -21,18 +21,24 @@ package org.simbrain.plot.rasterchart;
 import com.thoughtworks.xstream.XStream;
 import org.jfree.data.xy.XYSeries;
 import org.jfree.data.xy.XYSeriesCollection;
+import org.simbrain.plot.RingBufferDataset;
+import org.simbrain.plot.RingBufferSeries.Decimation;
 import org.simbrain.util.UserParameter;
 import org.simbrain.util.Utils;
 import org.simbrain.util.propertyeditor.EditableObject;
 import org.simbrain.workspace.AttributeContainer;
 import org.simbrain.workspace.Consumable;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.function.Supplier;
 
 /**
- * Data model for a raster plot.
+ * Data model for a raster plot. Each data source is kept in a primitive ring buffer of {@link #historySize} points
+ * (see {@link RingBufferDataset}), and the chart is only given one point for each distinct value in each of {@link
+ * #displayPoints} time buckets.
  */
 public class RasterModel implements AttributeContainer, EditableObject {
 
@@ -51,10 +57,26 @@ public class RasterModel implements AttributeContainer, EditableObject {
      */
     private transient Supplier<Integer> timeSupplier;
 
+    /**
+     * Default number of buckets the time axis is divided into for display.
+     */
+    private static final int DEFAULT_DISPLAY_POINTS = 1000;
+
+    /**
+     * Default number of points kept in memory for each data source.
+     */
+    private static final int DEFAULT_HISTORY_SIZE = 100_000;
+
     /**
      * Raster Data.
      */
-    private XYSeriesCollection dataset = new XYSeriesCollection();
+    private RingBufferDataset ringDataset = new RingBufferDataset(DEFAULT_HISTORY_SIZE, DEFAULT_DISPLAY_POINTS,
+            Decimation.DISTINCT);
+
+    /**
+     * Data of a plot saved before ring buffers were used. Converted to {@link #ringDataset} when opened.
+     */
+    private XYSeriesCollection dataset;
 
     /**
      * Should the range automatically change to reflect the data.
@@ -92,6 +114,20 @@ public class RasterModel implements AttributeContainer, EditableObject {
     @UserParameter(label = "Fixed width", order = 30)
     private boolean fixedWidth = true;
 
+    /**
+     * Number of points kept in memory for each data source.
+     */
+    @UserParameter(label = "History Size", description = "Number of points kept in memory for each source",
+            minimumValue = 100, useSetter = true, increment = 1000, order = 40)
+    private int historySize = DEFAULT_HISTORY_SIZE;
+
+    /**
+     * Number of buckets the time axis is divided into for display.
+     */
+    @UserParameter(label = "Display Points", description = "Number of time intervals drawn. Within an interval " +
+            "each value is drawn once.", minimumValue = 10, useSetter = true, increment = 100, order = 50)
+    private int displayPoints = DEFAULT_DISPLAY_POINTS;
+
     /**
      * Raster series model constructor.
      */
@@ -116,9 +152,9 @@ public class RasterModel implements AttributeContainer, EditableObject {
      * Removes a data source from the chart.
      */
     public void removeDataSource() {
-        Integer lastSeriesIndex = dataset.getSeriesCount() - 1;
+        int lastSeriesIndex = ringDataset.getSeriesCount() - 1;
         if (lastSeriesIndex > 0) {
-            dataset.removeSeries(lastSeriesIndex);
+            ringDataset.removeSeries(lastSeriesIndex);
             rasterConsumerList.remove(lastSeriesIndex);
         }
 
@@ -128,8 +164,8 @@ public class RasterModel implements AttributeContainer, EditableObject {
      * Adds a data source to the chart.
      */
     public void addDataSource() {
-        Integer currentSize = dataset.getSeriesCount();
-        dataset.addSeries(new XYSeries(currentSize + 1));
+        int currentSize = ringDataset.getSeriesCount();
+        ringDataset.addSeries(currentSize + 1);
         rasterConsumerList.add(new RasterConsumer(currentSize));
     }
 
@@ -137,14 +173,11 @@ public class RasterModel implements AttributeContainer, EditableObject {
      * Clears the plot.
      */
     public void clearData() {
-        int seriesCount = dataset.getSeriesCount();
-        for (int i = 0; seriesCount > i; ++i) {
-            dataset.getSeries(i).clear();
-        }
+        ringDataset.clear();
     }
 
-    public XYSeriesCollection getDataset() {
-        return dataset;
+    public RingBufferDataset getDataset() {
+        return ringDataset;
     }
 
     /**
@@ -165,6 +198,22 @@ public class RasterModel implements AttributeContainer, EditableObject {
      * @return Initialized object.
      */
     private Object readResolve() {
+        if (historySize == 0) {
+            historySize = DEFAULT_HISTORY_SIZE;
+        }
+        if (displayPoints == 0) {
+            displayPoints = DEFAULT_DISPLAY_POINTS;
+        }
+        if (ringDataset == null) {
+            ringDataset = new RingBufferDataset(historySize, displayPoints, Decimation.DISTINCT);
+        }
+        if (dataset != null) {
+            // Saved before ring buffers were used
+            for (Object xy : dataset.getSeries()) {
+                ringDataset.addSeries((XYSeries) xy);
+            }
+            dataset = null;
+        }
         return this;
     }
 
@@ -185,6 +234,42 @@ public class RasterModel implements AttributeContainer, EditableObject {
         return timeSupplier;
     }
 
+    public int getHistorySize() {
+        return historySize;
+    }
+
+    /**
+     * Set the number of points kept in memory for each data source, keeping the newest.
+     */
+    public void setHistorySize(int historySize) {
+        this.historySize = historySize;
+        ringDataset.setCapacity(historySize);
+    }
+
+    public int getDisplayPoints() {
+        return displayPoints;
+    }
+
+    /**
+     * Set the number of time intervals drawn.
+     */
+    public void setDisplayPoints(int displayPoints) {
+        this.displayPoints = displayPoints;
+        ringDataset.setNumBuckets(displayPoints);
+        ringDataset.fireDatasetChanged();
+    }
+
+    /**
+     * Write points that no longer fit in memory to a file, so the full history of a long run is kept. See {@link
+     * RingBufferDataset#setSpillFile(File)} for the format.
+     *
+     * @param file the file, or null to stop writing
+     * @throws IOException if the file cannot be opened
+     */
+    public void setSpillFile(File file) throws IOException {
+        ringDataset.setSpillFile(file);
+    }
+
     public int getDotSize() {
         return dotSize;
     }
@@ -228,7 +313,7 @@ public class RasterModel implements AttributeContainer, EditableObject {
     public class RasterConsumer implements AttributeContainer {
 
         /**
-         * Index of this consumer in an {@link XYSeriesCollection}
+         * Index of this consumer's series in the ringDataset.
          */
         int index = 0;
 
@@ -238,13 +323,15 @@ public class RasterModel implements AttributeContainer, EditableObject {
 
         @Consumable()
         public void setValues(final double[] values) {
+            double time = timeSupplier.get();
             if (values.length == 0) {
-                getDataset().getSeries(index).add(timeSupplier.get(), null);
-                return;
+                // Advance the time axis
+                ringDataset.add(index, time, Double.NaN);
             }
             for (int i = 0, n = values.length; i < n; i++) {
-                getDataset().getSeries(index).add(timeSupplier.get(), (Double) values[i]);
+                ringDataset.add(index, time, values[i]);
             }
+            ringDataset.fireDatasetChanged();
         }
 
         @Override
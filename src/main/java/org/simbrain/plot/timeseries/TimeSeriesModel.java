@@ -21,6 +21,9 @@ package org.simbrain.plot.timeseries;
 import com.thoughtworks.xstream.XStream;
 import org.jfree.data.xy.XYSeries;
 import org.jfree.data.xy.XYSeriesCollection;
+import org.simbrain.plot.RingBufferDataset;
+import org.simbrain.plot.RingBufferSeries;
+import org.simbrain.plot.RingBufferSeries.Decimation;
 import org.simbrain.util.UserParameter;
 import org.simbrain.util.Utils;
 import org.simbrain.util.propertyeditor.EditableObject;
@@ -29,9 +32,12 @@ import org.simbrain.workspace.Consumable;
 
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.function.Supplier;
 
 /**
@@ -39,13 +45,33 @@ import java.util.function.Supplier;
  * doubles, with one component for each member of the time series. There is no
  * support currently for representing separate scalar values in a single time
  * series.
+ * <p>
+ * Each series is kept in a primitive ring buffer (see {@link RingBufferDataset}). With a fixed width the buffer holds
+ * the window; otherwise it holds the most recent {@link #historySize} points, which can optionally be spilled to disk
+ * as they are dropped. Either way the chart is only given the minimum and maximum of each of {@link #displayPoints}
+ * buckets, so drawing time does not grow with the length of the run.
  */
 public class TimeSeriesModel implements AttributeContainer, EditableObject {
 
+    /**
+     * Default number of buckets the time axis is divided into for display.
+     */
+    private static final int DEFAULT_DISPLAY_POINTS = 1000;
+
+    /**
+     * Default number of time points kept in memory when fixed width is off.
+     */
+    private static final int DEFAULT_HISTORY_SIZE = 100_000;
+
     /**
      * Time Series Data.
      */
-    private XYSeriesCollection dataset = new XYSeriesCollection();
+    private RingBufferDataset ringDataset;
+
+    /**
+     * Data of a plot saved before ring buffers were used. Converted to {@link #ringDataset} when opened.
+     */
+    private XYSeriesCollection dataset;
 
     /**
      * Lambda to supply time to the time series model.
@@ -84,6 +110,21 @@ public class TimeSeriesModel implements AttributeContainer, EditableObject {
             "when fixedWidth is turned on", minimumValue = 10, useSetter = true, increment = 10, order = 60)
     private int windowSize = 100;
 
+    /**
+     * Number of time points kept in memory when fixedWidth is turned off.
+     */
+    @UserParameter(label = "History Size", description = "Number of time points kept in memory when fixed width " +
+            "is off", minimumValue = 100, useSetter = true, increment = 1000, order = 70)
+    private int historySize = DEFAULT_HISTORY_SIZE;
+
+    /**
+     * Number of buckets the time axis is divided into for display.
+     */
+    @UserParameter(label = "Display Points", description = "Maximum number of time points drawn. Beyond this the " +
+            "minimum and maximum of each interval is drawn.", minimumValue = 10, useSetter = true, increment = 100,
+            order = 80)
+    private int displayPoints = DEFAULT_DISPLAY_POINTS;
+
     /**
      * Names for the time series.  Set via coupling events.
      */
@@ -115,8 +156,8 @@ public class TimeSeriesModel implements AttributeContainer, EditableObject {
      */
     public TimeSeriesModel(Supplier<Integer> timeSupplier) {
         this.timeSupplier = timeSupplier;
+        ringDataset = new RingBufferDataset(fixedWidth ? windowSize : historySize, displayPoints, Decimation.MIN_MAX);
         addScalarTimeSeries(3);
-        setFixedWidth(fixedWidth); // Force update
     }
 
     /**
@@ -134,10 +175,7 @@ public class TimeSeriesModel implements AttributeContainer, EditableObject {
      * Clears the plot.
      */
     public void clearData() {
-        int seriesCount = dataset.getSeriesCount();
-        for (int i = 0; seriesCount > i; ++i) {
-            dataset.getSeries(i).clear();
-        }
+        ringDataset.clear();
     }
 
     /**
@@ -149,8 +187,9 @@ public class TimeSeriesModel implements AttributeContainer, EditableObject {
      *                    the specified description.
      */
     public void addData(int seriesIndex, double time, double value) {
-        if (seriesIndex < dataset.getSeriesCount()) {
-            dataset.getSeries(seriesIndex).add(time, value);
+        if (seriesIndex < ringDataset.getSeriesCount()) {
+            ringDataset.add(seriesIndex, time, value);
+            ringDataset.fireDatasetChanged();
         }
     }
 
@@ -173,7 +212,7 @@ public class TimeSeriesModel implements AttributeContainer, EditableObject {
         if (isArrayMode) {
             return null;
         }
-        ScalarTimeSeries sts = new ScalarTimeSeries(addXYSeries(description));
+        ScalarTimeSeries sts = new ScalarTimeSeries(addSeries(description));
         timeSeriesList.add(sts);
         changeSupport.firePropertyChange("scalarTimeSeriesAdded", null, sts);
         return sts;
@@ -189,22 +228,24 @@ public class TimeSeriesModel implements AttributeContainer, EditableObject {
         // If there is a size mismatch (for example, after removing neurons from
         // a neuron group sending activations), clear and start over.
         // Resets labels for all time series
-        if (vector.length != dataset.getSeriesCount()) {
-            dataset.removeAllSeries();
+        if (vector.length != ringDataset.getSeriesCount()) {
+            ringDataset.removeAllSeries();
             timeSeriesList.clear();
             for (int i = 0; i < vector.length; i++) {
                 if (i < seriesNames.length) {
-                    addXYSeries(seriesNames[i]);
+                    addSeries(seriesNames[i]);
                 } else {
-                    addXYSeries("" + i);
+                    addSeries("" + i);
                 }
             }
         }
 
-        // Write the data
+        // Write the data, then update the chart once
+        double time = timeSupplier.get();
         for (int i = 0; i < vector.length; i++) {
-            dataset.getSeries(i).add(timeSupplier.get(), (Double) vector[i]);
+            ringDataset.add(i, time, vector[i]);
         }
+        ringDataset.fireDatasetChanged();
     }
 
     /**
@@ -214,11 +255,11 @@ public class TimeSeriesModel implements AttributeContainer, EditableObject {
      */
     public void initializeArrayMode(String[] names) {
         isArrayMode = true;
-        dataset.removeAllSeries();
+        ringDataset.removeAllSeries();
         this.seriesNames = names;
         int i = 0;
         for (String name : names) {
-            addXYSeries(names[i] + 1);
+            addSeries(names[i] + 1);
             i++;
         }
     }
@@ -228,7 +269,7 @@ public class TimeSeriesModel implements AttributeContainer, EditableObject {
      */
     public void setArrayMode(boolean isArrayMode) {
         this.isArrayMode = isArrayMode;
-        dataset.removeAllSeries();
+        ringDataset.removeAllSeries();
         removeAllScalarTimeSeries();
         changeSupport.firePropertyChange("changeArrayMode", null, null);
         if (isArrayMode) {
@@ -246,14 +287,10 @@ public class TimeSeriesModel implements AttributeContainer, EditableObject {
     }
 
     /**
-     * Adds an xy series to the chart with the specified description.
+     * Adds a series to the chart with the specified description.
      */
-    private XYSeries addXYSeries(String description) {
-        XYSeries xy = new XYSeries(description);
-        xy.setMaximumItemCount(windowSize);
-        xy.setDescription(description);
-        dataset.addSeries(xy);
-        return xy;
+    private RingBufferSeries addSeries(String description) {
+        return ringDataset.addSeries(description);
     }
 
     /**
@@ -261,7 +298,7 @@ public class TimeSeriesModel implements AttributeContainer, EditableObject {
      */
     public void removeAllScalarTimeSeries() {
         for (ScalarTimeSeries ts : timeSeriesList) {
-            dataset.removeSeries(ts.getSeries());
+            ringDataset.removeSeries(ts.getSeries());
             changeSupport.firePropertyChange("scalarTimeSeriesRemoved", ts, null);
         }
         timeSeriesList.clear();
@@ -273,7 +310,7 @@ public class TimeSeriesModel implements AttributeContainer, EditableObject {
      * @param ts the time series to remove.
      */
     private void removeTimeSeries(ScalarTimeSeries ts) {
-        dataset.removeSeries(ts.getSeries());
+        ringDataset.removeSeries(ts.getSeries());
         timeSeriesList.remove(ts);
         changeSupport.firePropertyChange("scalarTimeSeriesRemoved", ts, null);
     }
@@ -293,10 +330,55 @@ public class TimeSeriesModel implements AttributeContainer, EditableObject {
      */
     public void setWindowSize(int value) {
         windowSize = value;
+        if (fixedWidth) {
+            ringDataset.setCapacity(windowSize);
+        }
     }
 
-    public XYSeriesCollection getDataset() {
-        return dataset;
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    /**
+     * Set the number of time points kept in memory when fixed width is off.
+     */
+    public void setHistorySize(int historySize) {
+        this.historySize = historySize;
+        if (!fixedWidth) {
+            ringDataset.setCapacity(historySize);
+        }
+    }
+
+    public int getHistorySize() {
+        return historySize;
+    }
+
+    /**
+     * Set the maximum number of time points drawn.
+     */
+    public void setDisplayPoints(int displayPoints) {
+        this.displayPoints = displayPoints;
+        ringDataset.setNumBuckets(displayPoints);
+        ringDataset.fireDatasetChanged();
+    }
+
+    public int getDisplayPoints() {
+        return displayPoints;
+    }
+
+    /**
+     * Write points that no longer fit in memory to a file, so the full history of a long run is kept. See {@link
+     * RingBufferDataset#setSpillFile(File)} for the format.
+     *
+     * @param file the file, or null to stop writing
+     * @throws IOException if the file cannot be opened
+     */
+    public void setSpillFile(File file) throws IOException {
+        ringDataset.setSpillFile(file);
+    }
+
+    public RingBufferDataset getDataset() {
+        return ringDataset;
     }
 
     public List<ScalarTimeSeries> getTimeSeriesList() {
@@ -337,15 +419,7 @@ public class TimeSeriesModel implements AttributeContainer, EditableObject {
 
     public void setFixedWidth(boolean fixedWidth) {
         this.fixedWidth = fixedWidth;
-        if(fixedWidth) {
-            for (Object s : dataset.getSeries()) {
-                ((XYSeries) s).setMaximumItemCount(windowSize);
-            }
-        } else {
-            for (Object s : dataset.getSeries()) {
-                ((XYSeries) s).setMaximumItemCount(Integer.MAX_VALUE);
-            }
-        }
+        ringDataset.setCapacity(fixedWidth ? windowSize : historySize);
     }
 
     /**
@@ -374,6 +448,29 @@ public class TimeSeriesModel implements AttributeContainer, EditableObject {
      */
     private Object readResolve() {
         changeSupport = new PropertyChangeSupport(this);
+        if (historySize == 0) {
+            historySize = DEFAULT_HISTORY_SIZE;
+        }
+        if (displayPoints == 0) {
+            displayPoints = DEFAULT_DISPLAY_POINTS;
+        }
+        if (ringDataset == null) {
+            ringDataset = new RingBufferDataset(fixedWidth ? windowSize : historySize, displayPoints, Decimation.MIN_MAX);
+        }
+        if (dataset != null) {
+            // Saved before ring buffers were used
+            Map<XYSeries, RingBufferSeries> converted = new IdentityHashMap<>();
+            for (Object xy : dataset.getSeries()) {
+                converted.put((XYSeries) xy, ringDataset.addSeries((XYSeries) xy));
+            }
+            for (ScalarTimeSeries ts : timeSeriesList) {
+                if (ts.series != null) {
+                    ts.ringSeries = converted.computeIfAbsent(ts.series, ringDataset::addSeries);
+                    ts.series = null;
+                }
+            }
+            dataset = null;
+        }
         return this;
     }
 
@@ -393,29 +490,36 @@ public class TimeSeriesModel implements AttributeContainer, EditableObject {
         /**
          * The represented time series
          */
+        RingBufferSeries ringSeries;
+
+        /**
+         * Series of a plot saved before ring buffers were used. Converted when the plot is opened.
+         */
         XYSeries series;
 
         /**
          * Construct the time series.
          */
-        public ScalarTimeSeries(XYSeries xy) {
-            series = xy;
+        public ScalarTimeSeries(RingBufferSeries series) {
+            this.ringSeries = series;
         }
 
-        public XYSeries getSeries() {
-            return series;
+        public RingBufferSeries getSeries() {
+            return ringSeries;
         }
 
         /**
          * Get the description.
          */
         public String getDescription() {
-            return series.getDescription();
+            return ringSeries.getKey().toString();
         }
 
         @Consumable()
         public void setValue(double value) {
-            series.add(timeSupplier.get(), (Number) value);
+            ringSeries.add(timeSupplier.get(), value);
+            ringDataset.markStale();
+            ringDataset.fireDatasetChanged();
         }
 
         @Override
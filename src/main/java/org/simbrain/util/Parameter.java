@@ -26,6 +26,7 @@ import java.lang.reflect.Method;
 import java.math.BigDecimal;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -68,9 +69,10 @@ public class Parameter implements Comparable<Parameter> {
 
     /**
      *  Static cache of annotated fields for a class.
-     *  Avoids multiple runs of expensive reflection code.
+     *  Avoids multiple runs of expensive reflection code. Concurrent, since
+     *  parameters may be set from several threads, e.g. in parameter sweeps.
      */
-    private static Map<Class<?>, Set<Parameter>> classParameters = new HashMap<>();
+    private static Map<Class<?>, Set<Parameter>> classParameters = new ConcurrentHashMap<>();
 
     /**
      * Construct a parameter object from a field.
@@ -514,9 +516,9 @@ public class Parameter implements Comparable<Parameter> {
     }
 
     /**
-     * Abstract over methods and fields.
+     * Returns the name of the annotated field, or of the getter for a method annotation.
      */
-    private String getName() {
+    public String getName() {
         return isFieldAnnotation() ? field.getName() : getter.getName();
     }
 
@@ -85,6 +85,8 @@ public class SimbrainPreferences {
         DEFAULT_MAP.put("projectorTolerance", .1);
         DEFAULT_MAP.put("projectorSammonPerturbationAmount", .1);
         DEFAULT_MAP.put("projectorSammonEpsilon", .5);
+        DEFAULT_MAP.put("projectorSammonParallel", false);
+        DEFAULT_MAP.put("projectorSammonSampleSize", 0);
         DEFAULT_MAP.put("textWorldDictionaryDirectory", ".");
         DEFAULT_MAP.put("visionWorldDirectory", ".");
         DEFAULT_MAP.put("selfConnectionAllowed", false);
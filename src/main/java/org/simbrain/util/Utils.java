@@ -21,7 +21,10 @@ package org.simbrain.util;
 import com.Ostermiller.util.CSVParser;
 import com.Ostermiller.util.CSVPrinter;
 import com.thoughtworks.xstream.XStream;
-import com.thoughtworks.xstream.io.xml.DomDriver;
+import com.thoughtworks.xstream.io.HierarchicalStreamWriter;
+import com.thoughtworks.xstream.io.binary.BinaryStreamDriver;
+import com.thoughtworks.xstream.io.xml.PrettyPrintWriter;
+import com.thoughtworks.xstream.io.xml.StaxDriver;
 import com.thoughtworks.xstream.security.AnyTypePermission;
 import org.pmw.tinylog.Logger;
 import org.simbrain.util.math.SimbrainMath;
@@ -32,6 +35,7 @@ import java.awt.event.ActionEvent;
 import java.io.*;
 import java.lang.reflect.Array;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.*;
@@ -717,12 +721,13 @@ public class Utils {
 
     /**
      * Returns an XStream instance with default Simbrain settings, including backwards compatibility with earlier xml,
-     * and turning off security warning, and formatting xml as utf-8.
+     * and turning off security warning, and formatting xml as utf-8. Xml is read with a streaming (StAX) parser, so
+     * large files are not first loaded into a DOM tree.
      *
      * @return the properly initialized XStream object
      */
     public static XStream getSimbrainXStream() {
-        XStream xstream = new XStream(new DomDriver("UTF-8"));
+        XStream xstream = new XStream(new SimbrainXmlDriver());
         xstream.ignoreUnknownElements();
         XStream.setupDefaultSecurity(xstream);
         // No obvious downsides to this for Simbrain applications.
@@ -731,6 +736,42 @@ public class Utils {
         return xstream;
     }
 
+    /**
+     * Xml driver for {@link #getSimbrainXStream()}. Reads using StAX and writes the same indented utf-8 xml as
+     * XStream's DomDriver.
+     */
+    private static class SimbrainXmlDriver extends StaxDriver {
+
+        @Override
+        public HierarchicalStreamWriter createWriter(Writer out) {
+            return new PrettyPrintWriter(out, getNameCoder());
+        }
+
+        @Override
+        public HierarchicalStreamWriter createWriter(OutputStream out) {
+            return createWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Returns an XStream instance that reads and writes a compact binary format
+     * instead of xml, for in-memory snapshots and copies that are never read by
+     * people. Objects are referenced by id rather than by path. Use
+     * {@link XStream#toXML(Object, OutputStream)} and
+     * {@link XStream#fromXML(InputStream)} with it; the methods using strings
+     * and writers are not supported by the binary driver.
+     *
+     * @return the binary xstream object
+     */
+    public static XStream getSimbrainBinaryXStream() {
+        XStream xstream = new XStream(new BinaryStreamDriver());
+        xstream.ignoreUnknownElements();
+        xstream.setMode(XStream.ID_REFERENCES);
+        XStream.setupDefaultSecurity(xstream);
+        xstream.addPermission(AnyTypePermission.ANY);
+        return xstream;
+    }
+
     /**
      * Returns a string that wraps around to new line at the limit width.
      *
@@ -0,0 +1,491 @@
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.util.math;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.Random;
+import java.util.function.DoubleSupplier;
+import java.util.stream.IntStream;
+
+/**
+ * A sparse matrix in compressed row form: the non-zero values of each row are stored contiguously, together with
+ * their column indices. Memory use and the cost of a matrix-vector product are proportional to the number of non-zero
+ * entries rather than to rows x columns, which is what makes large, sparsely connected recurrent networks practical.
+ * <p>
+ * The structure (which entries are non-zero) is fixed when the matrix is created; values can be changed.
+ */
+public class CompressedRowMatrix {
+
+    /**
+     * Smallest number of non-zero entries for which a product is computed in parallel.
+     */
+    private static final int MIN_PARALLEL_ENTRIES = 1 << 16;
+
+    private final int numRows;
+
+    private final int numCols;
+
+    /**
+     * Row i occupies indices rowStarts[i] (inclusive) to rowStarts[i + 1] (exclusive) of {@link #columns} and {@link
+     * #values}. Length numRows + 1.
+     */
+    private final int[] rowStarts;
+
+    /**
+     * Column of each non-zero entry, ascending within a row.
+     */
+    private final int[] columns;
+
+    /**
+     * Value of each non-zero entry.
+     */
+    private final double[] values;
+
+    /**
+     * Create a matrix from its compressed row arrays, which are used directly, not copied.
+     *
+     * @param numRows   number of rows
+     * @param numCols   number of columns
+     * @param rowStarts index of the first entry of each row, followed by the number of entries
+     * @param columns   column index of each entry, ascending within each row
+     * @param values    value of each entry
+     */
+    public CompressedRowMatrix(int numRows, int numCols, int[] rowStarts, int[] columns, double[] values) {
+        if (rowStarts.length != numRows + 1 || columns.length != values.length
+                || rowStarts[numRows] != values.length) {
+            throw new IllegalArgumentException("Inconsistent compressed row arrays");
+        }
+        this.numRows = numRows;
+        this.numCols = numCols;
+        this.rowStarts = rowStarts;
+        this.columns = columns;
+        this.values = values;
+    }
+
+    /**
+     * Create a matrix with the same number of randomly chosen non-zero entries in each row.
+     *
+     * @param numRows    number of rows
+     * @param numCols    number of columns
+     * @param density    fraction of the entries of each row that are non-zero
+     * @param valueMaker supplies the value of each non-zero entry
+     * @param random     used to choose the columns of the non-zero entries
+     * @return the new matrix
+     */
+    public static CompressedRowMatrix random(int numRows, int numCols, double density, DoubleSupplier valueMaker,
+                                             Random random) {
+        int perRow = (int) Math.min(numCols, Math.max(0, Math.round(density * numCols)));
+        int[] rowStarts = new int[numRows + 1];
+        int[] columns = new int[numRows * perRow];
+        double[] values = new double[columns.length];
+        int[] row = new int[perRow];
+        boolean[] taken = new boolean[numCols];
+        for (int i = 0; i < numRows; i++) {
+            chooseColumns(row, taken, random);
+            System.arraycopy(row, 0, columns, i * perRow, perRow);
+            for (int k = i * perRow; k < (i + 1) * perRow; k++) {
+                values[k] = valueMaker.getAsDouble();
+            }
+            rowStarts[i + 1] = (i + 1) * perRow;
+        }
+        return new CompressedRowMatrix(numRows, numCols, rowStarts, columns, values);
+    }
+
+    /**
+     * Fill an array with distinct random integers in [0, bound), in ascending order, using Floyd's sampling algorithm
+     * so that the cost depends on the number chosen rather than the bound. Entries of taken must be false on entry,
+     * and are false again on return.
+     */
+    private static void chooseColumns(int[] chosen, boolean[] taken, Random random) {
+        int bound = taken.length;
+        int count = 0;
+        for (int j = bound - chosen.length; j < bound; j++) {
+            int candidate = random.nextInt(j + 1);
+            int column = taken[candidate] ? j : candidate;
+            taken[column] = true;
+            chosen[count++] = column;
+        }
+        for (int column : chosen) {
+            taken[column] = false;
+        }
+        Arrays.sort(chosen);
+    }
+
+    /**
+     * Create a sparse copy of a dense matrix, keeping entries that are not 0.
+     *
+     * @param dense a matrix in row major form
+     * @return the sparse copy
+     */
+    public static CompressedRowMatrix of(double[][] dense) {
+        int numRows = dense.length;
+        int numCols = numRows == 0 ? 0 : dense[0].length;
+        int[] rowStarts = new int[numRows + 1];
+        for (int i = 0; i < numRows; i++) {
+            rowStarts[i + 1] = rowStarts[i];
+            for (double value : dense[i]) {
+                if (value != 0) {
+                    rowStarts[i + 1]++;
+                }
+            }
+        }
+        int[] columns = new int[rowStarts[numRows]];
+        double[] values = new double[columns.length];
+        for (int i = 0; i < numRows; i++) {
+            int k = rowStarts[i];
+            for (int j = 0; j < numCols; j++) {
+                if (dense[i][j] != 0) {
+                    columns[k] = j;
+                    values[k++] = dense[i][j];
+                }
+            }
+        }
+        return new CompressedRowMatrix(numRows, numCols, rowStarts, columns, values);
+    }
+
+    /**
+     * Create a matrix from a list of entries, given in any order. Entries with a value of 0 are kept. The arrays are
+     * not modified.
+     *
+     * @param numRows number of rows
+     * @param numCols number of columns
+     * @param rows    row index of each entry
+     * @param cols    column index of each entry
+     * @param values  value of each entry
+     * @return the matrix
+     * @throws IllegalArgumentException if the arrays differ in length or an index is out of range
+     */
+    public static CompressedRowMatrix fromEntries(int numRows, int numCols, int[] rows, int[] cols,
+                                                  double[] values) {
+        if (rows.length != cols.length || rows.length != values.length) {
+            throw new IllegalArgumentException("Entry arrays differ in length");
+        }
+        int n = values.length;
+        // Counting sort by column, then a stable counting sort by row, leaves columns ascending within each row
+        int[] colStarts = countStarts(numCols, cols);
+        int[] byCol = new int[n];
+        int[] next = Arrays.copyOf(colStarts, numCols);
+        for (int k = 0; k < n; k++) {
+            byCol[next[cols[k]]++] = k;
+        }
+        int[] rowStarts = countStarts(numRows, rows);
+        next = Arrays.copyOf(rowStarts, numRows);
+        int[] columns = new int[n];
+        double[] sorted = new double[n];
+        for (int k : byCol) {
+            int index = next[rows[k]]++;
+            columns[index] = cols[k];
+            sorted[index] = values[k];
+        }
+        return new CompressedRowMatrix(numRows, numCols, rowStarts, columns, sorted);
+    }
+
+    /**
+     * Returns the start of each group of entries when entries are sorted by an index, followed by the number of
+     * entries.
+     */
+    private static int[] countStarts(int size, int[] indices) {
+        int[] starts = new int[size + 1];
+        for (int index : indices) {
+            if (index < 0 || index >= size) {
+                throw new IllegalArgumentException("Index " + index + " out of range [0, " + size + ")");
+            }
+            starts[index + 1]++;
+        }
+        for (int i = 0; i < size; i++) {
+            starts[i + 1] += starts[i];
+        }
+        return starts;
+    }
+
+    /**
+     * Returns the transpose of this matrix, with the same stored entries.
+     */
+    public CompressedRowMatrix transpose() {
+        int[] rows = new int[values.length];
+        for (int i = 0; i < numRows; i++) {
+            Arrays.fill(rows, rowStarts[i], rowStarts[i + 1], i);
+        }
+        return fromEntries(numCols, numRows, columns, rows, values);
+    }
+
+    /**
+     * Returns a copy of this matrix.
+     */
+    public CompressedRowMatrix copy() {
+        return new CompressedRowMatrix(numRows, numCols, rowStarts.clone(), columns.clone(), values.clone());
+    }
+
+    /**
+     * Returns a copy of this matrix without one row. Later rows move up by one.
+     *
+     * @param row the row to remove
+     * @return the smaller matrix
+     */
+    public CompressedRowMatrix withoutRow(int row) {
+        Objects.checkIndex(row, numRows);
+        return filter(row, -1, false);
+    }
+
+    /**
+     * Returns a copy of this matrix without one column. Later columns move left by one.
+     *
+     * @param column the column to remove
+     * @return the smaller matrix
+     */
+    public CompressedRowMatrix withoutColumn(int column) {
+        Objects.checkIndex(column, numCols);
+        return filter(-1, column, false);
+    }
+
+    /**
+     * Returns a copy of this matrix that does not store entries with a value of 0.
+     */
+    public CompressedRowMatrix withoutZeros() {
+        return filter(-1, -1, true);
+    }
+
+    /**
+     * Copy the matrix, leaving out a row, a column and zero entries as requested.
+     *
+     * @param skipRow    row to leave out, or -1
+     * @param skipColumn column to leave out, or -1
+     * @param skipZeros  whether to leave out entries with a value of 0
+     */
+    private CompressedRowMatrix filter(int skipRow, int skipColumn, boolean skipZeros) {
+        int newRows = skipRow < 0 ? numRows : numRows - 1;
+        int newCols = skipColumn < 0 ? numCols : numCols - 1;
+        int[] newStarts = new int[newRows + 1];
+        int[] newColumns = new int[values.length];
+        double[] newValues = new double[values.length];
+        int n = 0;
+        int r = 0;
+        for (int i = 0; i < numRows; i++) {
+            if (i == skipRow) {
+                continue;
+            }
+            for (int k = rowStarts[i]; k < rowStarts[i + 1]; k++) {
+                int j = columns[k];
+                if (j == skipColumn || (skipZeros && values[k] == 0)) {
+                    continue;
+                }
+                newColumns[n] = skipColumn >= 0 && j > skipColumn ? j - 1 : j;
+                newValues[n++] = values[k];
+            }
+            newStarts[++r] = n;
+        }
+        return new CompressedRowMatrix(newRows, newCols, newStarts, Arrays.copyOf(newColumns, n),
+                Arrays.copyOf(newValues, n));
+    }
+
+    /**
+     * Returns the product of this matrix and a vector.
+     *
+     * @param x vector with one entry per column
+     * @return vector with one entry per row
+     */
+    public double[] mv(double[] x) {
+        double[] y = new double[numRows];
+        mv(x, y);
+        return y;
+    }
+
+    /**
+     * Write the product of this matrix and a vector into an existing array. Large products are computed in
+     * parallel.
+     *
+     * @param x vector with one entry per column
+     * @param y array to hold the result, with one entry per row. Must not be x.
+     */
+    public void mv(double[] x, double[] y) {
+        if (values.length >= MIN_PARALLEL_ENTRIES) {
+            IntStream.range(0, numRows).parallel().forEach(i -> y[i] = rowTimes(i, x));
+        } else {
+            for (int i = 0; i < numRows; i++) {
+                y[i] = rowTimes(i, x);
+            }
+        }
+    }
+
+    /**
+     * Returns the dot product of a row and a vector.
+     *
+     * @param row the row index
+     * @param x   vector with one entry per column
+     * @return the dot product
+     */
+    public double rowTimes(int row, double[] x) {
+        double sum = 0;
+        for (int k = rowStarts[row]; k < rowStarts[row + 1]; k++) {
+            sum += values[k] * x[columns[k]];
+        }
+        return sum;
+    }
+
+    /**
+     * Multiply every entry by a constant.
+     *
+     * @param scale the constant
+     */
+    public void mul(double scale) {
+        for (int k = 0; k < values.length; k++) {
+            values[k] *= scale;
+        }
+    }
+
+    /**
+     * Estimate the spectral radius (the largest absolute value of the eigenvalues) by power iteration. Only
+     * matrix-vector products are used, so the cost is proportional to the number of non-zero entries times the number
+     * of iterations. A non-symmetric matrix can have a complex pair of dominant eigenvalues, so instead of the
+     * Rayleigh quotient the estimate is the geometric mean of the growth of the vector's norm over the second half of
+     * the iterations, which converges to the spectral radius in either case.
+     *
+     * @param iterations number of products to compute
+     * @param random     used to choose the starting vector
+     * @return the estimated spectral radius
+     * @throws IllegalStateException if the matrix is not square
+     */
+    public double spectralRadius(int iterations, Random random) {
+        if (numRows != numCols) {
+            throw new IllegalStateException("Spectral radius of a non-square matrix (" + numRows + "x" + numCols
+                    + ")");
+        }
+        double[] x = new double[numRows];
+        for (int i = 0; i < numRows; i++) {
+            x[i] = random.nextGaussian();
+        }
+        normalize(x);
+        double[] y = new double[numRows];
+        double logGrowth = 0;
+        int counted = 0;
+        for (int t = 0; t < iterations; t++) {
+            mv(x, y);
+            double norm = normalize(y);
+            if (norm == 0) {
+                // The starting vector was annihilated, as happens for nilpotent matrices
+                return 0;
+            }
+            if (t >= iterations / 2) {
+                logGrowth += Math.log(norm);
+                counted++;
+            }
+            double[] swap = x;
+            x = y;
+            y = swap;
+        }
+        return counted == 0 ? 0 : Math.exp(logGrowth / counted);
+    }
+
+    /**
+     * Scale a vector to unit length, returning its original length.
+     */
+    private static double normalize(double[] x) {
+        double sum = 0;
+        for (double value : x) {
+            sum += value * value;
+        }
+        double norm = Math.sqrt(sum);
+        if (norm > 0) {
+            for (int i = 0; i < x.length; i++) {
+                x[i] /= norm;
+            }
+        }
+        return norm;
+    }
+
+    /**
+     * Returns an entry, which is 0 if it is not stored.
+     *
+     * @param row    the row index
+     * @param column the column index
+     * @return the value of the entry
+     */
+    public double get(int row, int column) {
+        int k = Arrays.binarySearch(columns, rowStarts[row], rowStarts[row + 1], column);
+        return k >= 0 ? values[k] : 0;
+    }
+
+    /**
+     * Change a stored entry.
+     *
+     * @param row    the row index
+     * @param column the column index
+     * @param value  the new value
+     * @return false if the entry is not stored, in which case nothing is changed
+     */
+    public boolean set(int row, int column, double value) {
+        int k = Arrays.binarySearch(columns, rowStarts[row], rowStarts[row + 1], column);
+        if (k < 0) {
+            return false;
+        }
+        values[k] = value;
+        return true;
+    }
+
+    /**
+     * Returns a dense copy of the matrix, in row major form.
+     */
+    public double[][] toArray() {
+        double[][] dense = new double[numRows][numCols];
+        for (int i = 0; i < numRows; i++) {
+            for (int k = rowStarts[i]; k < rowStarts[i + 1]; k++) {
+                dense[i][columns[k]] = values[k];
+            }
+        }
+        return dense;
+    }
+
+    public int getNumRows() {
+        return numRows;
+    }
+
+    public int getNumCols() {
+        return numCols;
+    }
+
+    /**
+     * Returns the number of stored entries.
+     */
+    public int getNumNonZero() {
+        return values.length;
+    }
+
+    /**
+     * Returns the index in {@link #getColumns()} and {@link #getValues()} of the first entry of each row, followed by
+     * the number of entries. Must not be modified.
+     */
+    public int[] getRowStarts() {
+        return rowStarts;
+    }
+
+    /**
+     * Returns the column index of each stored entry, in row order. Must not be modified.
+     */
+    public int[] getColumns() {
+        return columns;
+    }
+
+    /**
+     * Returns the stored values, in row order. Changes write through to the matrix.
+     */
+    public double[] getValues() {
+        return values;
+    }
+}
@@ -26,7 +26,6 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.PrintStream;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -40,6 +39,27 @@ public class Dataset {
 
     // TODO: Consider migrating this to ND4J and friends.
 
+    /**
+     * How interpoint distances are stored.
+     */
+    public enum DistanceStorage {
+
+        /**
+         * Cache distances in a double array on the heap. Fastest, but needs 8 bytes per pair of points.
+         */
+        DENSE,
+
+        /**
+         * Cache distances at float precision outside the heap, using 4 bytes per pair of points.
+         */
+        FLOAT_OFF_HEAP,
+
+        /**
+         * Do not cache distances; compute each one when it is needed.
+         */
+        NONE
+    }
+
     /**
      * The data.
      */
@@ -51,9 +71,15 @@ public class Dataset {
     private int dimensions;
 
     /**
-     * Matrix of interpoint distances.
+     * How interpoint distances are stored. If a dataset grows past what the storage can hold, distances are computed
+     * as needed instead.
      */
-    private transient double[] distances = new double[10240];
+    private DistanceStorage distanceStorage = DistanceStorage.DENSE;
+
+    /**
+     * Cache of interpoint distances.
+     */
+    private transient DistanceCache distances = DistanceCache.create(DistanceStorage.DENSE);
 
     /**
      * Persistent form of data, which is read back in to the dataset to recreate all necessary structures.
@@ -120,29 +146,20 @@ public class Dataset {
     }
 
     /**
-     * Returns the logical end of the distance array
-     *
-     * @return the logical end of the distance array
-     */
-    private int getDistanceEnd() {
-        int lastPoint = getNumPoints() - 1;
-        return getDistanceIndex(lastPoint) + lastPoint;
-    }
-
-    /**
-     * Makes sure there is enough space in the distances array
+     * Makes sure there is room to cache the distances between all points, or stops caching if there are too many.
      */
     private void ensureDistances() {
-        if (getDistanceEnd() > distances.length) {
-            int newLength = distances.length * 4;
-            double[] newDistances = new double[newLength];
-            System.arraycopy(distances, 0, newDistances, 0, distances.length);
-            Arrays.fill(newDistances, distances.length, newLength, -1);
-            distances = newDistances;
+        int numPoints = getNumPoints();
+        if (DistanceCache.size(numPoints) > distances.maxSize()) {
+            Logger.info("Dataset has " + numPoints + " points; no longer caching interpoint distances");
+            distances = DistanceCache.create(DistanceStorage.NONE);
+        }
+        if (!distances.ensureCapacity(numPoints)) {
+            Logger.warn("Not enough memory to cache the interpoint distances of " + numPoints + " points");
+            distances = DistanceCache.create(DistanceStorage.NONE);
         }
     }
 
-
     /**
      * Add a new datapoint to the dataset.
      *
@@ -252,32 +269,30 @@ public class Dataset {
         currentPoint = null;
         lastAddedPoint = null;
         ntree = new NTree(dimensions);
-        if (distances == null) {
-            distances = new double[10240];
-        }
-        Arrays.fill(distances, -1);
+        distances = DistanceCache.create(getDistanceStorage());
     }
 
     /**
-     * calculates the index of the start index for distances from the given point
+     * Returns how interpoint distances are stored.
+     */
+    public DistanceStorage getDistanceStorage() {
+        // Null in datasets saved before the setting existed
+        return distanceStorage == null ? DistanceStorage.DENSE : distanceStorage;
+    }
+
+    /**
+     * Set how interpoint distances are stored. Cached distances are discarded.
      *
-     * @param point the point to find the start index for
-     * @return the index to the distances array for the given point
+     * @param distanceStorage the new storage
      */
-    private int getDistanceIndex(int point) {
-        switch (point) {
-            case 0:
-                return -1; /* no start for point 0 */
-            case 1:
-                return 0;
-            default:
-                int n = point - 1;
-                return ((n * n) + n) / 2;
-        }
+    public void setDistanceStorage(DistanceStorage distanceStorage) {
+        this.distanceStorage = distanceStorage;
+        distances = DistanceCache.create(distanceStorage);
+        ensureDistances();
     }
 
     /**
-     * Calculates the distances between pointA and pointB. A must be greater than B
+     * Calculates and caches the distance between pointA and pointB. A must be greater than B
      *
      * @param pointA the first point
      * @param pointB the second point
@@ -287,41 +302,34 @@ public class Dataset {
             throw new IllegalArgumentException("pointA must be greater than pointB - A: " + pointA + " B: " + pointB);
         }
 
-        int start = getDistanceIndex(pointA);
-
         double distance = getDistance(ntree.get(pointA), ntree.get(pointB));
-        distances[start + pointB] = distance;
+        distances.put(pointA, pointB, distance);
 
         return distance;
     }
 
     /**
-     * Calculates and stores all the distances to all other points with the given point
+     * Recalculates the distances between all pairs of points, caching them and passing each to a visitor.
      *
-     * @param point the point to calculate distances for
+     * @param visitor called with each pair of points (the first greater than the second) and their distance
      */
-    private void calculateDistances(int point) {
-        int start = getDistanceIndex(point);
-
-        for (int i = 0; i < point; i++) {
-            distances[start + i] = getDistance(ntree.get(point), ntree.get(i));
-        }
-
+    private void calculateDistances(DistanceVisitor visitor) {
         int numPoints = getNumPoints();
-
-        for (int i = point + 1; i < numPoints; i++) {
-            start = getDistanceIndex(i);
-            distances[start + point] = getDistance(ntree.get(point), ntree.get(i));
+        for (int a = 1; a < numPoints; a++) {
+            DataPoint pointA = ntree.get(a);
+            for (int b = 0; b < a; b++) {
+                double distance = getDistance(pointA, ntree.get(b));
+                distances.put(a, b, distance);
+                visitor.visit(a, b, distance);
+            }
         }
     }
 
     /**
-     * calculates all distances for the current set of points
+     * Receives interpoint distances from {@link #calculateDistances(DistanceVisitor)}.
      */
-    private void calculateDistances() {
-        for (int point = 0; point < ntree.size(); point++) {
-            calculateDistances(point);
-        }
+    private interface DistanceVisitor {
+        void visit(int a, int b, double distance);
     }
 
     /**
@@ -339,9 +347,7 @@ public class Dataset {
             getPoint(i).setData(data);
         }
 
-        Arrays.fill(distances, -1);
-
-        calculateDistances();
+        distances.clear();
     }
 
     /**
@@ -350,16 +356,9 @@ public class Dataset {
      * @return minimum distance between any two points in the low-d dataset
      */
     public double getMinimumDistance() {
-        double l = Double.POSITIVE_INFINITY;
-        int stop = getDistanceEnd();
-
-        calculateDistances();
-
-        for (int i = 0; i < stop; i++) {
-            l = Math.min(l, distances[i]);
-        }
-
-        return l;
+        double[] l = {Double.POSITIVE_INFINITY};
+        calculateDistances((a, b, distance) -> l[0] = Math.min(l[0], distance));
+        return l[0];
     }
 
     /**
@@ -368,16 +367,9 @@ public class Dataset {
      * @return maximum distance between any two points in the low-d dataset
      */
     public double getMaximumDistance() {
-        double l = 0;
-        int stop = getDistanceEnd();
-
-        calculateDistances();
-
-        for (int i = 0; i < stop; i++) {
-            l = Math.max(l, distances[i]);
-        }
-
-        return l;
+        double[] l = {0};
+        calculateDistances((a, b, distance) -> l[0] = Math.max(l[0], distance));
+        return l[0];
     }
 
     /**
@@ -573,7 +565,7 @@ public class Dataset {
             index1 = swap;
         }
 
-        double d = distances[getDistanceIndex(index1) + index2];
+        double d = distances.get(index1, index2);
 
         if (d < 0) {
             return calculateDistance(index1, index2);
@@ -602,22 +594,18 @@ public class Dataset {
 
     /**
      * Returns a matrix of interpoint distances, between the points in the dataset. Note that the lower triangular
-     * duplicates the upper triangular
+     * duplicates the upper triangular. The matrix needs 8 bytes for every ordered pair of points, so for large datasets
+     * use {@link #getDistance(int, int)} instead.
      *
      * @return a matrix of interpoint distances
      */
     public double[][] getDistances() {
-        calculateDistances();
-
         int numPoints = getNumPoints();
         double[][] temp = new double[numPoints][numPoints];
-
-        for (int i = 0; i < numPoints; i++) {
-            for (int j = 0; j < numPoints; j++) {
-                temp[i][j] = getDistance(i, j);
-            }
-        }
-
+        calculateDistances((a, b, distance) -> {
+            temp[a][b] = distance;
+            temp[b][a] = distance;
+        });
         return temp;
     }
 
@@ -625,16 +613,9 @@ public class Dataset {
      * @return the sum of the distances between points in the dataset
      */
     public double getSumDistances() {
-        double sum = 0;
-        int stop = getDistanceEnd();
-
-        calculateDistances();
-
-        for (int i = 0; i < stop; i++) {
-            sum += distances[i];
-        }
-
-        return sum;
+        double[] sum = {0};
+        calculateDistances((a, b, distance) -> sum[0] += distance);
+        return sum[0];
     }
 
     /**
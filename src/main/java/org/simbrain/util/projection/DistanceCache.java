@@ -0,0 +1,299 @@
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.util.projection;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Storage for the interpoint distances of a {@link Dataset}. Distances are stored in a lower triangular layout: the
+ * distance between points a and b, with a greater than b, is at index a * (a - 1) / 2 + b.
+ * <p>
+ * A missing distance is reported as a negative value, in which case the dataset computes it and may store it.
+ */
+abstract class DistanceCache {
+
+    /**
+     * Create a cache of the given kind.
+     */
+    static DistanceCache create(Dataset.DistanceStorage storage) {
+        switch (storage) {
+            case FLOAT_OFF_HEAP:
+                return new OffHeapFloat();
+            case NONE:
+                return new None();
+            default:
+                return new Dense();
+        }
+    }
+
+    /**
+     * Index of the distance between two points. a must be greater than b.
+     */
+    static long index(int a, int b) {
+        return (long) a * (a - 1) / 2 + b;
+    }
+
+    /**
+     * Number of distances between the given number of points.
+     */
+    static long size(int numPoints) {
+        return (long) numPoints * (numPoints - 1) / 2;
+    }
+
+    /**
+     * Largest number of distances this cache will hold. Past this, the dataset stops caching.
+     */
+    abstract long maxSize();
+
+    /**
+     * Make room for the distances between the given number of points, which must not exceed {@link #maxSize()}.
+     *
+     * @return false if there is not enough memory, in which case the dataset stops caching
+     */
+    abstract boolean ensureCapacity(int numPoints);
+
+    /**
+     * Returns the stored distance between points a and b, with a greater than b, or a negative value if it is not
+     * stored.
+     */
+    abstract double get(int a, int b);
+
+    /**
+     * Store the distance between points a and b, with a greater than b.
+     */
+    abstract void put(int a, int b, double distance);
+
+    /**
+     * Forget all stored distances.
+     */
+    abstract void clear();
+
+    /**
+     * Distances held in an on-heap double array, which grows as points are added. Fastest, but uses 8 bytes per pair
+     * of points.
+     */
+    static final class Dense extends DistanceCache {
+
+        /**
+         * About 11,500 points, or 512 MB.
+         */
+        private static final long MAX_SIZE = 1L << 26;
+
+        private double[] distances = new double[10240];
+
+        Dense() {
+            Arrays.fill(distances, -1);
+        }
+
+        @Override
+        long maxSize() {
+            return MAX_SIZE;
+        }
+
+        @Override
+        boolean ensureCapacity(int numPoints) {
+            long needed = size(numPoints);
+            if (needed > distances.length) {
+                long newLength = distances.length;
+                while (newLength < needed) {
+                    newLength *= 4;
+                }
+                newLength = Math.min(newLength, MAX_SIZE);
+                double[] newDistances = new double[(int) newLength];
+                System.arraycopy(distances, 0, newDistances, 0, distances.length);
+                Arrays.fill(newDistances, distances.length, newDistances.length, -1);
+                distances = newDistances;
+            }
+            return true;
+        }
+
+        @Override
+        double get(int a, int b) {
+            return distances[(int) index(a, b)];
+        }
+
+        @Override
+        void put(int a, int b, double distance) {
+            distances[(int) index(a, b)] = distance;
+        }
+
+        @Override
+        void clear() {
+            Arrays.fill(distances, -1);
+        }
+    }
+
+    /**
+     * Distances held at float precision in direct buffers outside the java heap, allocated in fixed size chunks so
+     * that growing never copies more than one chunk. Uses 4 bytes per pair of points, none of it on the heap. The
+     * first chunk starts small and grows with the dataset, so small datasets do not reserve a full chunk.
+     * <p>
+     * Direct memory is limited separately from the heap (by default to the maximum heap size), so if a chunk cannot
+     * be allocated the cache is released and the dataset stops caching.
+     */
+    static final class OffHeapFloat extends DistanceCache {
+
+        /**
+         * Floats per chunk (64 MB).
+         */
+        private static final int CHUNK_SIZE = 1 << 24;
+
+        /**
+         * Floats in the first chunk when it is created (64 KB).
+         */
+        private static final int MIN_CHUNK_SIZE = 1 << 14;
+
+        /**
+         * About 46,000 points, or 4 GB.
+         */
+        private static final long MAX_SIZE = 1L << 30;
+
+        private final List<FloatBuffer> chunks = new ArrayList<>();
+
+        @Override
+        long maxSize() {
+            return MAX_SIZE;
+        }
+
+        @Override
+        boolean ensureCapacity(int numPoints) {
+            long needed = size(numPoints);
+            if (needed == 0) {
+                return true;
+            }
+            try {
+                if (chunks.size() <= 1) {
+                    growFirstChunk(needed);
+                }
+                while ((long) chunks.size() * CHUNK_SIZE < needed) {
+                    FloatBuffer chunk = allocate(CHUNK_SIZE);
+                    fill(chunk, 0);
+                    chunks.add(chunk);
+                }
+            } catch (OutOfMemoryError e) {
+                chunks.clear();
+                return false;
+            }
+            return true;
+        }
+
+        /**
+         * Grow the first chunk, by factors of 4, until it holds the needed number of distances or is a full chunk.
+         */
+        private void growFirstChunk(long needed) {
+            int oldLength = chunks.isEmpty() ? 0 : chunks.get(0).capacity();
+            int length = Math.max(oldLength, MIN_CHUNK_SIZE);
+            while (length < needed && length < CHUNK_SIZE) {
+                length *= 4;
+            }
+            length = Math.min(length, CHUNK_SIZE);
+            if (length == oldLength) {
+                return;
+            }
+            FloatBuffer chunk = allocate(length);
+            if (oldLength > 0) {
+                FloatBuffer old = chunks.get(0).duplicate();
+                old.clear();
+                chunk.put(old);
+                chunk.clear();
+            }
+            fill(chunk, oldLength);
+            if (chunks.isEmpty()) {
+                chunks.add(chunk);
+            } else {
+                chunks.set(0, chunk);
+            }
+        }
+
+        private static FloatBuffer allocate(int length) {
+            return ByteBuffer.allocateDirect(length * Float.BYTES).order(ByteOrder.nativeOrder()).asFloatBuffer();
+        }
+
+        /**
+         * Returns the number of distances that can be stored without allocating.
+         */
+        long capacity() {
+            return chunks.size() == 1 ? chunks.get(0).capacity() : (long) chunks.size() * CHUNK_SIZE;
+        }
+
+        @Override
+        double get(int a, int b) {
+            long i = index(a, b);
+            return chunks.get((int) (i / CHUNK_SIZE)).get((int) (i % CHUNK_SIZE));
+        }
+
+        @Override
+        void put(int a, int b, double distance) {
+            long i = index(a, b);
+            chunks.get((int) (i / CHUNK_SIZE)).put((int) (i % CHUNK_SIZE), (float) distance);
+        }
+
+        @Override
+        void clear() {
+            // Keep the first chunk, release the rest
+            if (chunks.size() > 1) {
+                chunks.subList(1, chunks.size()).clear();
+            }
+            chunks.forEach(chunk -> fill(chunk, 0));
+        }
+
+        /**
+         * Mark the distances in a chunk as missing, from the given index on.
+         */
+        private static void fill(FloatBuffer chunk, int from) {
+            for (int i = from, n = chunk.capacity(); i < n; i++) {
+                chunk.put(i, -1);
+            }
+        }
+    }
+
+    /**
+     * Stores nothing, so every distance is computed when it is needed. Uses no memory.
+     */
+    static final class None extends DistanceCache {
+
+        @Override
+        long maxSize() {
+            return Long.MAX_VALUE;
+        }
+
+        @Override
+        boolean ensureCapacity(int numPoints) {
+            return true;
+        }
+
+        @Override
+        double get(int a, int b) {
+            return -1;
+        }
+
+        @Override
+        void put(int a, int b, double distance) {
+        }
+
+        @Override
+        void clear() {
+        }
+    }
+}
@@ -37,7 +37,14 @@ import java.util.*;
  * In searching for an element, the mid-point of each branch is used to
  * determine the path through the tree. When the point to be searched is closer
  * than the given tolerance to the midpoint, the other branch is also followed
- * for correctness.
+ * for correctness. Nearest neighbor searches keep the closest points found so
+ * far in a bounded heap, and only follow the other branch when it could hold a
+ * closer point.
+ * <p>
+ * <p>
+ * Adding points one at a time can leave the tree unbalanced. A whole tree can
+ * be rebuilt by splitting at medians, which {@link #addAll(NTree)} does when
+ * it adds many points.
  * <p>
  * <p>
  * A couple of other standard collections are used to provide efficient
@@ -74,6 +81,11 @@ public class NTree implements Iterable<DataPoint> {
      */
     private Map<DataPoint, Leaf> all = new LinkedHashMap<DataPoint, Leaf>();
 
+    /**
+     * Index of each element in {@link #list}, by identity
+     */
+    private Map<DataPoint, Integer> indices = new IdentityHashMap<DataPoint, Integer>();
+
     /**
      * The number of elements to allow in a leaf before splitting
      * (Determined by ad hoc testing and hand-waving optimization theories
@@ -152,6 +164,7 @@ public class NTree implements Iterable<DataPoint> {
 
         /* Add the point to the leaf and the list and map */
         leaf.points.add(point);
+        indices.putIfAbsent(point, list.size());
         list.add(point);
         all.put(point, leaf);
 
@@ -354,10 +367,11 @@ public class NTree implements Iterable<DataPoint> {
          * a tolerance of the given point, check the distance. otherwise, the
          * point cannot be within a tolerance distance of the given point.
          */
+        points:
         for (DataPoint p : leaf.points) {
             for (int i = 0; i < p.getDimension(); i++) {
                 if (Math.abs(p.get(i) - point.get(i)) >= tolerance) {
-                    break;
+                    continue points;
                 }
             }
 
@@ -398,97 +412,79 @@ public class NTree implements Iterable<DataPoint> {
 
     /**
      * Gets the closest points to the passed in point. The amount of points to
-     * determine is specified by the number argument
+     * determine is specified by the number argument. The points are returned
+     * closest first, and each point in the tree appears at most once.
      *
      * @param number the number of points to collect
      * @param point  the point to find points close to
      * @return the closest points
      */
     public List<DataPoint> getClosestPoints(int number, DataPoint point) {
-        List<DataPoint> points = new ArrayList<DataPoint>();
-        for (DistancePoint dp : getClosestPoints(root, number, point)) {
-            points.add(dp.point);
-            // TODO: Returning multiple copies of same number
-            //System.out.println(Arrays.asList(dp.point));
+        if (number <= 0 || list.isEmpty()) {
+            return new ArrayList<DataPoint>();
         }
 
+        /* Max-heap of the closest points found so far, farthest on top */
+        PriorityQueue<DistancePoint> closest = new PriorityQueue<DistancePoint>(Math.min(number, list.size()),
+                (o1, o2) -> Double.compare(o2.distance, o1.distance));
+        getClosestPoints(root, number, point, closest);
+
+        DistancePoint[] sorted = closest.toArray(new DistancePoint[0]);
+        Arrays.sort(sorted, (o1, o2) -> Double.compare(o1.distance, o2.distance));
+        List<DataPoint> points = new ArrayList<DataPoint>(sorted.length);
+        for (DistancePoint dp : sorted) {
+            points.add(dp.point);
+        }
         return points;
     }
 
     /**
-     * Gets the closest points to the passed in point. The amount of points to
-     * determine is specified by the number argument
+     * Collects the closest points under a node into a bounded max-heap. The
+     * side of each branch containing the point is searched first, and the
+     * other side only if it could hold a point closer than the farthest one
+     * collected so far.
      *
-     * @param from   the node to start from
-     * @param number the number of points to collect
-     * @param point  the point to find points close to
-     * @return the closest points
+     * @param from    the node to start from
+     * @param number  the number of points to collect
+     * @param point   the point to find points close to
+     * @param closest the closest points found so far, farthest first
      */
-    private List<DistancePoint> getClosestPoints(Node from, int number, DataPoint point) {
-        List<DistancePoint> points;
-
-        /*
-         * If from is a branch, recurse otherwise get the closest points in the
-         * leaf
-         */
+    private void getClosestPoints(Node from, int number, DataPoint point, PriorityQueue<DistancePoint> closest) {
         if (from.type == Type.branch) {
 
             /* Cast to Branch */
             Branch branch = (Branch) from;
 
-            /* The point's value on the splitDimension */
-            double d = point.get(branch.splitDimension);
+            /* The point's distance from the split, along the split dimension */
+            double d = point.get(branch.splitDimension) - branch.midPoint;
 
-            /* Determine whether the normal path is left or right */
-            boolean left = d < branch.midPoint;
-
-            /* Recurse on branch determined above */
-            points = getClosestPoints(left ? branch.left : branch.right, number, point);
+            /* Search the normal path first */
+            getClosestPoints(d < 0 ? branch.left : branch.right, number, point, closest);
 
             /*
-             * Determine whether to recurse on the other path. if the farthest
-             * out point from the main branch is less than the distance to the
-             * split, get the n points from the other branch
+             * Points on the other path are at least |d| away, so it only needs
+             * to be searched if the heap is not full or its farthest point is
+             * farther than that.
              */
-            if (points.size() < number || points.get(number - 1).distance > Math.abs(d - branch.midPoint)) {
-                points.addAll(getClosestPoints(left ? branch.right : branch.left, number, point));
-
-                /* combine the points and sort */
-                Collections.sort(points, new Comparator<DistancePoint>() {
-                    public int compare(DistancePoint o1, DistancePoint o2) {
-                        if (o1.distance < o2.distance)
-                            return -1;
-                        else if (o1.distance > o2.distance)
-                            return 1;
-                        else
-                            return 0;
-                    }
-                });
+            if (closest.size() < number || Math.abs(d) < closest.peek().distance) {
+                getClosestPoints(d < 0 ? branch.right : branch.left, number, point, closest);
             }
         } else {
-            points = new ArrayList<DistancePoint>();
             /* Cast to Leaf */
             Leaf leaf = (Leaf) from;
 
-            /*
-             * Loop over the points in the leaf adding any that are less than
-             * the current or adding if there are less than n
-             */
-            for (DataPoint d : leaf.points) {
-                double distance = getDistance(d, point);
-
-                for (int i = 0; i < number; i++) {
-                    if (i >= points.size()) {
-                        points.add(new DistancePoint(distance, d));
-                    } else if (distance < points.get(i).distance) {
-                        points.add(i, new DistancePoint(distance, d));
+            for (DataPoint p : leaf.points) {
+                if (closest.size() < number) {
+                    closest.add(new DistancePoint(getDistance(p, point), p));
+                } else {
+                    double distance = getDistance(p, point);
+                    if (distance < closest.peek().distance) {
+                        closest.poll();
+                        closest.add(new DistancePoint(distance, p));
                     }
                 }
             }
         }
-
-        /* Trim the list to size, if necessary */
-        return points.size() < number ? points : points.subList(0, number);
     }
 
     /**
@@ -512,10 +508,11 @@ public class NTree implements Iterable<DataPoint> {
      * Returns the closest point in the tree to the given point.
      *
      * @param point
-     * @return the point closest to the given point
+     * @return the point closest to the given point, or null if the tree is empty
      */
     public DataPoint getClosestPoint(final DataPoint point) {
-        return getClosestPoints(1, point).get(0);
+        List<DataPoint> closest = getClosestPoints(1, point);
+        return closest.isEmpty() ? null : closest.get(0);
     }
 
     /**
@@ -525,7 +522,8 @@ public class NTree implements Iterable<DataPoint> {
      * @return the index of that point
      */
     public int getIndex(DataPoint point) {
-        return list.indexOf(point);
+        Integer index = indices.get(point);
+        return index != null ? index : list.indexOf(point);
     }
 
     /**
@@ -538,14 +536,73 @@ public class NTree implements Iterable<DataPoint> {
     }
 
     /**
-     * adds all the elements from the given tree to this tree
+     * adds all the elements from the given tree to this tree. When the other
+     * tree is at least as large as this one, the whole tree is rebuilt with
+     * {@link #rebuild()} rather than adding the points one at a time.
      *
      * @param other the other tree
      */
     public void addAll(NTree other) {
-        for (DataPoint d : other) {
-            add(d);
+        if (other.size() < size()) {
+            for (DataPoint d : other) {
+                add(d);
+            }
+            return;
+        }
+        for (DataPoint d : other.asArrayList()) {
+            indices.putIfAbsent(d, list.size());
+            list.add(d);
+        }
+        rebuild();
+    }
+
+    /**
+     * Rebuilds the tree from all of its points. Each node is split at the
+     * median of its points, so the tree is balanced regardless of the order
+     * the points were added in. Indices are unchanged.
+     */
+    public void rebuild() {
+        all.clear();
+        root = build(new ArrayList<DataPoint>(list), 0);
+    }
+
+    /**
+     * Builds a subtree holding the given points, splitting at the median until
+     * no leaf holds more than {@link #MAX} points. If the points cannot be
+     * split on the given dimension (because they all have the same value
+     * there), the following dimensions are tried.
+     *
+     * @param points    the points, which will be reordered
+     * @param dimension the dimension to split on first
+     * @return the root of the subtree
+     */
+    private Node build(List<DataPoint> points, int dimension) {
+        if (points.size() > MAX) {
+            for (int i = 0; i < dimensions; i++) {
+                int splitOn = (dimension + i) % dimensions;
+                points.sort(new PointComparator(splitOn));
+                int middle = points.size() / 2;
+                double midPoint = (points.get(middle - 1).get(splitOn) + points.get(middle).get(splitOn)) / 2;
+
+                /* As in add, points below the midpoint go left */
+                int split = 0;
+                while (split < points.size() && points.get(split).get(splitOn) < midPoint) {
+                    split++;
+                }
+                if (split > 0 && split < points.size()) {
+                    Branch branch = new Branch(midPoint, splitOn);
+                    branch.left = build(points.subList(0, split), splitOn + 1);
+                    branch.right = build(points.subList(split, points.size()), splitOn + 1);
+                    return branch;
+                }
+            }
+        }
+        Leaf leaf = new Leaf();
+        leaf.points.addAll(points);
+        for (DataPoint p : points) {
+            all.put(p, leaf);
         }
+        return leaf;
     }
 
     /**
@@ -573,6 +630,8 @@ public class NTree implements Iterable<DataPoint> {
         leaf.points.set(leafIndex, point);
         all.put(point, leaf);
         all.remove(old);
+        indices.remove(old);
+        indices.put(point, index);
         list.set(index, point);
     }
 
@@ -619,4 +678,4 @@ public class NTree implements Iterable<DataPoint> {
             return "size: " + points.size();
         }
     }
-}
\ No newline at end of file
+}
\ No newline at end of file
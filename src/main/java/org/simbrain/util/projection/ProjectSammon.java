@@ -20,20 +20,27 @@ package org.simbrain.util.projection;
 
 import org.simbrain.util.SimbrainPreferences;
 
-import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.IntStream;
 
 /**
  * <B>ProjectSammon.java</B> implements gradient descent to compute image of
  * Sammon projection.
  * <p>
+ * Each iteration moves every point according to the positions of all points
+ * at the start of the iteration, so points can be updated in parallel. For
+ * large datasets an approximate mode compares each point with a random sample
+ * of the other points rather than all of them.
+ * <p>
  * TODO: Possibly convert all arrays to datapoints.
  */
 public class ProjectSammon extends IterableProjectionMethod {
 
     /**
-     * Array of datasets.
+     * Minimum number of points for which iterations are run in parallel.
      */
-    private ArrayList<DataPoint> yArray;
+    private static final int MIN_PARALLEL_POINTS = 256;
 
     /**
      * Amount by which to perturb overlapping points.
@@ -46,70 +53,46 @@ public class ProjectSammon extends IterableProjectionMethod {
     private double epsilon;
 
     /**
-     * Temporary variables.
-     */
-    private double[] xI;
-
-    /**
-     * Temporary variables.
-     */
-    private double[] xJ;
-
-    /**
-     * Temporary variables.
-     */
-    private double[] yI;
-
-    /**
-     * Temporary variables.
+     * Whether to update points on multiple threads.
      */
-    private double[] yJ;
+    private boolean parallel;
 
     /**
-     * Temporary variables.
+     * If positive and smaller than the number of points, each point is compared
+     * with this many randomly chosen points per iteration instead of all of
+     * them.
      */
-    private double[] yM;
+    private int sampleSize;
 
     /**
-     * Temporary variables.
+     * "Downstairs" points as they were at the start of an iteration, one after
+     * another. Downstairs interpoint distances are computed from these, and
+     * "upstairs" distances come from the upstairs dataset, so neither is stored
+     * as a full matrix.
      */
-    private double[] yN;
+    private double[] yStart = new double[0];
 
     /**
-     * Temporary variables.
+     * New downstairs points computed in an iteration, laid out like
+     * {@link #yStart}.
      */
-    private double[] yNew;
+    private double[] yNew = new double[0];
 
     /**
-     * Matrix of "upstairs" interpoint distances.
+     * Each point's contribution to the closeness, indexed by point.
      */
-    private double[][] dstar;
-
-    /**
-     * Matrix of "downstairs" interpoint distances.
-     */
-    private double[][] d;
+    private double[] errors = new double[0];
 
     /**
      * Sum distances.
      */
     private double dstarSum;
 
-    /**
-     * Parital sum.
-     */
-    private double partialSum;
-
     /**
      * Current closeness of datapoints.
      */
     private double currentCloseness;
 
-    /**
-     * Temporary variable.
-     */
-    private double e;
-
     /**
      * Default sammon projector constructor.
      *
@@ -123,8 +106,14 @@ public class ProjectSammon extends IterableProjectionMethod {
     public void init() {
         perturbationAmount = SimbrainPreferences.getDouble("projectorSammonPerturbationAmount");
         epsilon = SimbrainPreferences.getDouble("projectorSammonEpsilon");
-        dstar = projector.getUpstairs().getDistances();
-        dstarSum = projector.getUpstairs().getSumDistances();
+        parallel = SimbrainPreferences.getBoolean("projectorSammonParallel");
+        sampleSize = SimbrainPreferences.getInt("projectorSammonSampleSize");
+        Dataset upstairs = projector.getUpstairs();
+        if (isSampling(upstairs.getNumPoints())) {
+            dstarSum = estimateSumDistances(upstairs);
+        } else {
+            dstarSum = upstairs.getSumDistances();
+        }
         projector.getDownstairs().perturbOverlappingPoints(perturbationAmount);
         setNeedsReInit(false);
     }
@@ -145,44 +134,144 @@ public class ProjectSammon extends IterableProjectionMethod {
             init();
         }
 
-        yArray = projector.getDownstairs().getDatasetCopy();
-        d = projector.getDownstairs().getDistances();
+        Dataset downstairs = projector.getDownstairs();
+        int numPoints = projector.getNumPoints();
+        int dims = downstairs.getDimensions();
+        if (yStart.length != numPoints * dims) {
+            yStart = new double[numPoints * dims];
+            yNew = new double[numPoints * dims];
+            errors = new double[numPoints];
+        }
+        for (int i = 0; i < numPoints; i++) {
+            System.arraycopy(downstairs.getPoint(i).getVector(), 0, yStart, i * dims, dims);
+        }
 
-        // Computes partials
-        for (int m = 0; m < projector.getNumPoints(); m++) {
-            yM = yArray.get(m).getVector();
-            yNew = new double[projector.getDownstairs().getDimensions()];
+        boolean sampling = isSampling(numPoints);
+        IntStream points = IntStream.range(0, numPoints);
+        if (parallel && numPoints >= MIN_PARALLEL_POINTS) {
+            points = points.parallel();
+        }
+        if (sampling) {
+            points.forEach(m -> updateSampled(m, numPoints, dims));
+        } else {
+            points.forEach(m -> updateExact(m, numPoints, dims));
+        }
 
-            for (int n = 0; n < projector.getDownstairs().getDimensions(); n++) {
-                partialSum = 0;
+        double e = 0;
+        for (int m = 0; m < numPoints; m++) {
+            System.arraycopy(yNew, m * dims, downstairs.getPoint(m).getVector(), 0, dims);
+            e += errors[m];
+        }
+        if (sampling) {
+            // Each sampled ordered pair stands for (n - 1) / k pairs, and each
+            // unordered pair is counted twice
+            e *= (numPoints - 1) / (2.0 * sampleSize);
+        }
 
-                for (int i = 0; i < projector.getNumPoints(); i++) {
-                    if (i == m) {
-                        continue;
-                    }
+        currentCloseness = e / dstarSum;
+        setError(currentCloseness);
+        projector.getEvents().fireDatasetInitialized();
+        // System.out.println("currentCloseness = " + currentCloseness);
+    }
 
-                    yI = yArray.get(i).getVector();
-                    partialSum += (((dstar[i][m] - d[i][m]) * (yI[n] - yM[n])) / dstar[i][m] / d[i][m]);
-                }
+    /**
+     * Compute the new position of point m using all other points, and its
+     * contribution to the closeness (from the points after it).
+     */
+    private void updateExact(int m, int numPoints, int dims) {
+        Dataset upstairs = projector.getUpstairs();
+        double[] partialSums = new double[dims];
+        double error = 0;
+        for (int i = 0; i < numPoints; i++) {
+            if (i == m) {
+                continue;
+            }
+            double dstar = upstairs.getDistance(i, m);
+            double d = downstairsDistance(i, m, dims);
+            double scale = (dstar - d) / dstar / d;
+            for (int n = 0; n < dims; n++) {
+                partialSums[n] += scale * (yStart[i * dims + n] - yStart[m * dims + n]);
+            }
+            if (i > m) {
+                error += ((dstar - d) * (dstar - d)) / dstar;
+            }
+        }
+        errors[m] = error;
+        setNewPosition(m, dims, partialSums, 1);
+    }
 
-                yNew[n] = yM[n] - ((epsilon * 2 * partialSum) / dstarSum);
+    /**
+     * Compute the new position of point m using a random sample of the other
+     * points, scaled up to stand for all of them, and its sampled contribution
+     * to the closeness.
+     */
+    private void updateSampled(int m, int numPoints, int dims) {
+        Dataset upstairs = projector.getUpstairs();
+        Random random = ThreadLocalRandom.current();
+        double[] partialSums = new double[dims];
+        double error = 0;
+        for (int k = 0; k < sampleSize; k++) {
+            int i = sampleOther(random, m, numPoints);
+            double dstar = upstairs.getDistance(i, m);
+            double d = downstairsDistance(i, m, dims);
+            double scale = (dstar - d) / dstar / d;
+            for (int n = 0; n < dims; n++) {
+                partialSums[n] += scale * (yStart[i * dims + n] - yStart[m * dims + n]);
             }
+            error += ((dstar - d) * (dstar - d)) / dstar;
+        }
+        errors[m] = error;
+        setNewPosition(m, dims, partialSums, (numPoints - 1) / (double) sampleSize);
+    }
 
-            projector.getDownstairs().getPoint(m).setData(yNew);
+    private void setNewPosition(int m, int dims, double[] partialSums, double scale) {
+        for (int n = 0; n < dims; n++) {
+            yNew[m * dims + n] = yStart[m * dims + n] - ((epsilon * 2 * partialSums[n] * scale) / dstarSum);
         }
+    }
 
-        // Computes Closeness
-        e = 0;
-        for (int i = 0; i < projector.getNumPoints(); i++) {
-            for (int j = i + 1; j < projector.getNumPoints(); j++) {
-                e += ((dstar[i][j] - d[i][j]) * (dstar[i][j] - d[i][j])) / dstar[i][j];
-            }
+    /**
+     * Distance between two downstairs points at the start of the iteration.
+     */
+    private double downstairsDistance(int i, int m, int dims) {
+        double sum = 0;
+        for (int n = 0; n < dims; n++) {
+            double diff = yStart[i * dims + n] - yStart[m * dims + n];
+            sum += diff * diff;
         }
+        return Math.sqrt(sum);
+    }
 
-        currentCloseness = e / dstarSum;
-        setError(currentCloseness);
-        projector.getEvents().fireDatasetInitialized();
-        // System.out.println("currentCloseness = " + currentCloseness);
+    /**
+     * Returns true if iterations over this many points compare each point with
+     * a sample of the others.
+     */
+    private boolean isSampling(int numPoints) {
+        return sampleSize > 0 && sampleSize < numPoints - 1;
+    }
+
+    /**
+     * Returns a random point other than m.
+     */
+    private static int sampleOther(Random random, int m, int numPoints) {
+        int i = random.nextInt(numPoints - 1);
+        return i >= m ? i + 1 : i;
+    }
+
+    /**
+     * Estimate the sum of the upstairs interpoint distances from a sample of
+     * pairs.
+     */
+    private double estimateSumDistances(Dataset upstairs) {
+        int numPoints = upstairs.getNumPoints();
+        Random random = ThreadLocalRandom.current();
+        double sum = 0;
+        for (int m = 0; m < numPoints; m++) {
+            for (int k = 0; k < sampleSize; k++) {
+                sum += upstairs.getDistance(sampleOther(random, m, numPoints), m);
+            }
+        }
+        return sum * (numPoints - 1) / (2.0 * sampleSize);
     }
 
     /**
@@ -200,4 +289,29 @@ public class ProjectSammon extends IterableProjectionMethod {
         this.epsilon = epsilon;
     }
 
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    public void setParallel(boolean parallel) {
+        SimbrainPreferences.putBoolean("projectorSammonParallel", parallel);
+        this.parallel = parallel;
+        setNeedsReInit(true);
+    }
+
+    public int getSampleSize() {
+        return sampleSize;
+    }
+
+    /**
+     * @param sampleSize number of points each point is compared with per
+     *                   iteration, or 0 to compare with all of them
+     */
+    public void setSampleSize(int sampleSize) {
+        SimbrainPreferences.putInt("projectorSammonSampleSize", sampleSize);
+        this.sampleSize = sampleSize;
+        // The sum of distances is estimated when sampling and exact otherwise
+        setNeedsReInit(true);
+    }
+
 }
@@ -5,6 +5,8 @@ import org.simbrain.workspace.couplings.Coupling;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Type;
+import java.util.function.BiConsumer;
+import java.util.function.ObjDoubleConsumer;
 
 /**
  * The part of a {@link Coupling} that receives values from a {@link Producer}.
@@ -12,6 +14,17 @@ import java.lang.reflect.Type;
  */
 public class Consumer extends Attribute {
 
+    /**
+     * Compiled form of {@link #method}, used instead of reflection when available. Created once per method by
+     * {@link org.simbrain.workspace.couplings.CouplingCache}.
+     */
+    private BiConsumer<Object, Object> setter;
+
+    /**
+     * Compiled form of {@link #method} for setters taking a primitive double, which avoids boxing.
+     */
+    private ObjDoubleConsumer<Object> doubleSetter;
+
     /**
      * Contruct a consumer.
      *
@@ -39,6 +52,10 @@ public class Consumer extends Attribute {
      * @param value the value to set
      */
     public void setValue(Object value) {
+        if (setter != null) {
+            setter.accept(baseObject, value);
+            return;
+        }
         try {
             method.invoke(baseObject, value);
         } catch (IllegalAccessException | IllegalArgumentException | InvocationTargetException ex) {
@@ -47,6 +64,26 @@ public class Consumer extends Attribute {
         }
     }
 
+    /**
+     * Update a consumer whose type is double, without boxing the value.
+     *
+     * @param value the value to set
+     */
+    public void setDoubleValue(double value) {
+        if (doubleSetter != null) {
+            doubleSetter.accept(baseObject, value);
+        } else {
+            setValue(value);
+        }
+    }
+
+    /**
+     * Returns true if values are set through compiled accessors rather than reflection.
+     */
+    public boolean isCompiled() {
+        return setter != null && (method.getParameterTypes()[0] != double.class || doubleSetter != null);
+    }
+
     @Override
     public Type getType() {
         return method.getGenericParameterTypes()[0];
@@ -83,6 +120,19 @@ public class Consumer extends Attribute {
             product = new Consumer(baseObject, method);
         }
 
+        /**
+         * Set compiled accessors to use in place of reflection.
+         *
+         * @param setter       general setter
+         * @param doubleSetter setter for double consumers, or null
+         * @return the Builder instance (for use in chained initialization)
+         */
+        public ConsumerBuilder accessors(BiConsumer<Object, Object> setter, ObjDoubleConsumer<Object> doubleSetter) {
+            product.setter = setter;
+            product.doubleSetter = doubleSetter;
+            return this;
+        }
+
         @Override
         protected Consumer product() {
             return product;
@@ -5,6 +5,8 @@ import org.simbrain.workspace.couplings.Coupling;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Type;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
 
 /**
  * The part of a {@link Coupling} that send values to a {@link Consumable}.
@@ -19,6 +21,17 @@ public class Producer extends Attribute {
      */
     private Method arrayDescriptionMethod;
 
+    /**
+     * Compiled form of {@link #method}, used instead of reflection when available. Created once per method by
+     * {@link org.simbrain.workspace.couplings.CouplingCache}.
+     */
+    private Function<Object, Object> getter;
+
+    /**
+     * Compiled form of {@link #method} for getters returning a primitive double, which avoids boxing.
+     */
+    private ToDoubleFunction<Object> doubleGetter;
+
     /**
      * Contruct a producer.
      *
@@ -46,6 +59,9 @@ public class Producer extends Attribute {
      * @return current value
      */
     public Object getValue() {
+        if (getter != null) {
+            return getter.apply(baseObject);
+        }
         try {
             return method.invoke(baseObject);
         } catch (IllegalAccessException | IllegalArgumentException | InvocationTargetException ex) {
@@ -54,6 +70,25 @@ public class Producer extends Attribute {
         }
     }
 
+    /**
+     * Return the value of a producer whose type is double, without boxing it.
+     *
+     * @return current value
+     */
+    public double getDoubleValue() {
+        if (doubleGetter != null) {
+            return doubleGetter.applyAsDouble(baseObject);
+        }
+        return (Double) getValue();
+    }
+
+    /**
+     * Returns true if values are read through compiled accessors rather than reflection.
+     */
+    public boolean isCompiled() {
+        return getter != null && (method.getReturnType() != double.class || doubleGetter != null);
+    }
+
     @Override
     public Type getType() {
         return method.getReturnType();
@@ -119,6 +154,19 @@ public class Producer extends Attribute {
             return this;
         }
 
+        /**
+         * Set compiled accessors to use in place of reflection.
+         *
+         * @param getter       general getter
+         * @param doubleGetter getter for double producers, or null
+         * @return the Builder instance (for use in chained initialization)
+         */
+        public ProducerBuilder accessors(Function<Object, Object> getter, ToDoubleFunction<Object> doubleGetter) {
+            product.getter = getter;
+            product.doubleGetter = doubleGetter;
+            return this;
+        }
+
         @Override
         protected Producer product() {
             return product;
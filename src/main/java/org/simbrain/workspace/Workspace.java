@@ -500,7 +500,7 @@ public class Workspace {
         try {
             if (theFile != null) {
                 clearWorkspace();
-                serializer.deserialize(new FileInputStream(theFile));
+                serializer.deserialize(theFile);
                 setCurrentFile(theFile);
                 setWorkspaceChanged(false);
                 events.fireNewWorkspaceOpened();
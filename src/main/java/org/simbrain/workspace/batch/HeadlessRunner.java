@@ -0,0 +1,429 @@
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.workspace.batch;
+
+import org.simbrain.workspace.AttributeContainer;
+import org.simbrain.workspace.Producer;
+import org.simbrain.workspace.Workspace;
+import org.simbrain.workspace.WorkspaceComponent;
+import org.simbrain.workspace.serialization.WorkspaceSerializer;
+import org.simbrain.workspace.updater.UpdateAction;
+import org.simbrain.workspace.updater.WorkspaceUpdaterListener;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Runs saved workspaces without a display. Only the model classes are loaded: no desktop, Swing components or
+ * Piccolo nodes are created, so this can run on servers with no graphics.
+ * <p>
+ * Each workspace is opened with {@link WorkspaceSerializer} and updated for a number of iterations, or until a
+ * condition on a producer is met. The time taken by each iteration and the values of selected producers are written
+ * to a csv file per workspace. A summary of load times, run times and memory use is printed and written to
+ * summary.csv, along with the startup time of the JVM.
+ * <p>
+ * A workspace fails if any of its components cannot be loaded, or if its update stops early without the condition
+ * being met. The exit status is nonzero if any workspace failed.
+ * <p>
+ * Usage: {@code HeadlessRunner [options] workspace.zip...}
+ * <ul>
+ * <li>{@code -n <iterations>}: number of iterations, or the maximum number with {@code -until}. Default 1000.</li>
+ * <li>{@code -p <component/object id/method>}: a producer to record, e.g. {@code Network1/Neuron_1/getActivation}.
+ * Can be repeated.</li>
+ * <li>{@code -until <component/object id/method>(<|>)<value>}: stop when a producer goes above or below a value.</li>
+ * <li>{@code -o <directory>}: where to write results. Default is the current directory.</li>
+ * </ul>
+ */
+public class HeadlessRunner {
+
+    private int maxIterations = 1000;
+
+    private final List<String> producerSpecs = new ArrayList<>();
+
+    private String untilSpec;
+
+    private File outputDirectory = new File(".");
+
+    /**
+     * Results of running one workspace.
+     */
+    public static class Result {
+
+        public final String name;
+
+        public final long loadMs;
+
+        public final int iterations;
+
+        public final long runMs;
+
+        public final boolean conditionMet;
+
+        public final long usedHeapBytes;
+
+        Result(String name, long loadMs, int iterations, long runMs, boolean conditionMet, long usedHeapBytes) {
+            this.name = name;
+            this.loadMs = loadMs;
+            this.iterations = iterations;
+            this.runMs = runMs;
+            this.conditionMet = conditionMet;
+            this.usedHeapBytes = usedHeapBytes;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: loaded in %d ms, %d iterations in %d ms (%.1f us/iteration)%s, %.1f MB heap",
+                    name, loadMs, iterations, runMs, iterations == 0 ? 0 : runMs * 1000.0 / iterations,
+                    conditionMet ? ", condition met" : "", usedHeapBytes / 1e6);
+        }
+    }
+
+    /**
+     * Stop when a producer goes above or below a threshold.
+     */
+    private static class Condition {
+
+        private final Producer producer;
+
+        private final boolean above;
+
+        private final double threshold;
+
+        Condition(Producer producer, boolean above, double threshold) {
+            this.producer = producer;
+            this.above = above;
+            this.threshold = threshold;
+        }
+
+        boolean isMet() {
+            double value = ((Number) producer.getValue()).doubleValue();
+            return above ? value > threshold : value < threshold;
+        }
+    }
+
+    /**
+     * Added as the last update action of a workspace. Times each iteration, records producers and stops the
+     * workspace when done.
+     */
+    private static class Recorder implements UpdateAction {
+
+        private final Workspace workspace;
+
+        private final List<Producer> producers;
+
+        private final Condition condition;
+
+        private final int maxIterations;
+
+        private final Writer writer;
+
+        private long lastTime = System.nanoTime();
+
+        private int iterations;
+
+        private boolean conditionMet;
+
+        Recorder(Workspace workspace, List<Producer> producers, Condition condition, int maxIterations, Writer writer) {
+            this.workspace = workspace;
+            this.producers = producers;
+            this.condition = condition;
+            this.maxIterations = maxIterations;
+            this.writer = writer;
+        }
+
+        @Override
+        public void invoke() {
+            long now = System.nanoTime();
+            iterations++;
+            try {
+                writer.write(Integer.toString(iterations));
+                writer.write(',');
+                writer.write(Long.toString(now - lastTime));
+                for (Producer producer : producers) {
+                    writer.write(',');
+                    writer.write(format(producer.getValue()));
+                }
+                writer.write('\n');
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            if (condition != null && condition.isMet()) {
+                conditionMet = true;
+            }
+            if (conditionMet || iterations >= maxIterations) {
+                workspace.getUpdater().stop();
+            }
+            lastTime = System.nanoTime();
+        }
+
+        @Override
+        public String getDescription() {
+            return "Record producers";
+        }
+
+        @Override
+        public String getLongDescription() {
+            return "Record producer values and iteration times for the headless runner";
+        }
+    }
+
+    /**
+     * Run each workspace given on the command line.
+     */
+    public static void main(String[] args) throws IOException {
+        System.setProperty("java.awt.headless", "true");
+        long startupMs = ManagementFactory.getRuntimeMXBean().getUptime();
+
+        HeadlessRunner runner = new HeadlessRunner();
+        List<File> files;
+        try {
+            files = runner.parseArguments(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: HeadlessRunner [-n iterations] [-p component/id/method]... "
+                    + "[-until component/id/method(<|>)value] [-o directory] workspace.zip...");
+            System.exit(1);
+            return;
+        }
+
+        runner.outputDirectory.mkdirs();
+        System.err.println("JVM started in " + startupMs + " ms");
+        int failures = 0;
+        try (Writer summary = new BufferedWriter(new FileWriter(new File(runner.outputDirectory, "summary.csv")))) {
+            summary.write("workspace,load_ms,iterations,run_ms,condition_met,used_heap_bytes,jvm_startup_ms\n");
+            for (File file : files) {
+                try {
+                    Result result = runner.run(file);
+                    System.err.println(result);
+                    summary.write(String.format("%s,%d,%d,%d,%b,%d,%d%n", result.name, result.loadMs,
+                            result.iterations, result.runMs, result.conditionMet, result.usedHeapBytes, startupMs));
+                    summary.flush();
+                } catch (Exception e) {
+                    System.err.println("Failed to run " + file + ": " + e);
+                    failures++;
+                }
+            }
+        }
+        System.err.printf("Peak heap %.1f MB, %d classes loaded%n", getPeakHeapBytes() / 1e6,
+                ManagementFactory.getClassLoadingMXBean().getTotalLoadedClassCount());
+        System.exit(failures == 0 ? 0 : 2);
+    }
+
+    /**
+     * Read options, returning the workspace files to run.
+     *
+     * @throws IllegalArgumentException if the arguments are not valid
+     */
+    public List<File> parseArguments(String[] args) {
+        List<File> files = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.startsWith("-") && i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + arg);
+            }
+            switch (arg) {
+                case "-n":
+                    maxIterations = Integer.parseInt(args[++i]);
+                    break;
+                case "-p":
+                    producerSpecs.add(args[++i]);
+                    break;
+                case "-until":
+                    untilSpec = args[++i];
+                    break;
+                case "-o":
+                    outputDirectory = new File(args[++i]);
+                    break;
+                default:
+                    if (arg.startsWith("-")) {
+                        throw new IllegalArgumentException("Unknown option " + arg);
+                    }
+                    files.add(new File(arg));
+            }
+        }
+        if (files.isEmpty()) {
+            throw new IllegalArgumentException("No workspaces given");
+        }
+        return files;
+    }
+
+    /**
+     * Open a workspace, run it and write its iteration file.
+     *
+     * @param file a saved workspace
+     * @return the timings of the run
+     * @throws IOException           if the workspace cannot be read, in whole or in part, or the results written
+     * @throws IllegalStateException if the updater stopped before the last iteration without the condition being met,
+     *                               e.g. because an update failed
+     */
+    public Result run(File file) throws IOException, InterruptedException {
+        String name = file.getName().replaceFirst("\\.zip$", "");
+
+        long loadStart = System.nanoTime();
+        Workspace workspace = new Workspace();
+        try {
+            WorkspaceSerializer serializer = new WorkspaceSerializer(workspace);
+            serializer.deserialize(file);
+            if (!serializer.getFailedComponents().isEmpty()) {
+                throw new IOException("Failed to load components " + serializer.getFailedComponents());
+            }
+            long loadMs = (System.nanoTime() - loadStart) / 1_000_000;
+            return run(workspace, name, loadMs);
+        } finally {
+            // Stop the updater's threads, which would otherwise be left running for each workspace
+            workspace.getUpdater().shutdown();
+        }
+    }
+
+    private Result run(Workspace workspace, String name, long loadMs) throws IOException, InterruptedException {
+        List<Producer> producers = new ArrayList<>();
+        for (String spec : producerSpecs) {
+            producers.add(getProducer(workspace, spec));
+        }
+        Condition condition = untilSpec == null ? null : parseCondition(workspace, untilSpec);
+
+        File out = new File(outputDirectory, name + ".csv");
+        try (Writer writer = new BufferedWriter(new FileWriter(out), 1 << 16)) {
+            writer.write("iteration,nanos");
+            for (String spec : producerSpecs) {
+                writer.write(',');
+                writer.write(spec);
+            }
+            writer.write('\n');
+
+            Recorder recorder = new Recorder(workspace, producers, condition, maxIterations, writer);
+            workspace.getUpdater().getUpdateManager().addAction(recorder);
+            CountDownLatch finished = new CountDownLatch(1);
+            workspace.getUpdater().addUpdaterListener(new WorkspaceUpdaterListener() {
+                public void updatedCouplings(int update) {
+                }
+
+                public void changedUpdateController() {
+                }
+
+                public void changeNumThreads() {
+                }
+
+                public void workspaceUpdated() {
+                }
+
+                public void updatingStarted() {
+                }
+
+                public void updatingFinished() {
+                    finished.countDown();
+                }
+            });
+
+            long runStart = System.nanoTime();
+            if (maxIterations > 0) {
+                workspace.run();
+                finished.await();
+            }
+            long runMs = (System.nanoTime() - runStart) / 1_000_000;
+            if (recorder.iterations < maxIterations && !recorder.conditionMet) {
+                // The updater logs and swallows exceptions thrown by updates, and stops
+                throw new IllegalStateException(String.format("Updater stopped after %d of %d iterations",
+                        recorder.iterations, maxIterations));
+            }
+
+            Runtime runtime = Runtime.getRuntime();
+            long usedHeap = runtime.totalMemory() - runtime.freeMemory();
+            return new Result(name, loadMs, recorder.iterations, runMs, recorder.conditionMet, usedHeap);
+        }
+    }
+
+    /**
+     * Find a producer given as component name/object id/method name.
+     */
+    static Producer getProducer(Workspace workspace, String spec) {
+        String[] parts = spec.split("/");
+        if (parts.length != 3) {
+            throw new IllegalArgumentException("Producers are given as component/object id/method, not " + spec);
+        }
+        WorkspaceComponent component = workspace.getComponent(parts[0]);
+        if (component == null) {
+            throw new IllegalArgumentException("No component named " + parts[0]);
+        }
+        for (AttributeContainer container : component.getAttributeContainers()) {
+            if (parts[1].equals(container.getId())) {
+                return workspace.getCouplingManager().getProducer(container, parts[2]);
+            }
+        }
+        throw new IllegalArgumentException("No object " + parts[1] + " in " + parts[0]);
+    }
+
+    private static Condition parseCondition(Workspace workspace, String spec) {
+        int index = Math.max(spec.lastIndexOf('>'), spec.lastIndexOf('<'));
+        if (index < 0) {
+            throw new IllegalArgumentException("Conditions are given as producer>value or producer<value, not " + spec);
+        }
+        Producer producer = getProducer(workspace, spec.substring(0, index));
+        double threshold = Double.parseDouble(spec.substring(index + 1));
+        return new Condition(producer, spec.charAt(index) == '>', threshold);
+    }
+
+    static String format(Object value) {
+        if (value instanceof double[]) {
+            // Keep array values in one column
+            return Arrays.toString((double[]) value).replace(",", "").replace("[", "").replace("]", "");
+        }
+        return String.valueOf(value);
+    }
+
+    private static long getPeakHeapBytes() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    public int getMaxIterations() {
+        return maxIterations;
+    }
+
+    public void setMaxIterations(int maxIterations) {
+        this.maxIterations = maxIterations;
+    }
+
+    public List<String> getProducerSpecs() {
+        return producerSpecs;
+    }
+
+    public void setUntilSpec(String untilSpec) {
+        this.untilSpec = untilSpec;
+    }
+
+    public void setOutputDirectory(File outputDirectory) {
+        this.outputDirectory = outputDirectory;
+    }
+}
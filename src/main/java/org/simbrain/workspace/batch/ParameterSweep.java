@@ -0,0 +1,433 @@
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.workspace.batch;
+
+import org.simbrain.util.Parameter;
+import org.simbrain.workspace.AttributeContainer;
+import org.simbrain.workspace.Workspace;
+import org.simbrain.workspace.WorkspaceComponent;
+import org.simbrain.workspace.serialization.WorkspaceTemplate;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a saved workspace with every combination of a set of parameter values, several variants at a time.
+ * <p>
+ * The workspace is read once into a {@link WorkspaceTemplate} and each variant is made from the template. Parameters
+ * are set through their {@link org.simbrain.util.UserParameter} annotations, and are given as {@code
+ * component/object id/parameter}, e.g. {@code Network1/Neuron_1/updateRule.slope}. The parameter is a field name or
+ * label, and can be followed by the parameters of an object it holds, separated by dots. The object id {@code *}
+ * sets the parameter on every object of the component that has it.
+ * <p>
+ * After each variant has run for a number of iterations, the values of selected producers are written as a row of a
+ * csv file. Rows are written as variants finish, so they are not in order of the variant number.
+ * <p>
+ * Usage: {@code ParameterSweep [options] workspace.zip}
+ * <ul>
+ * <li>{@code -s <parameter>=<values>}: values to try for a parameter, either a comma separated list or {@code
+ * from:to:step}. Can be repeated.</li>
+ * <li>{@code -p <component/object id/method>}: a producer to record. Can be repeated.</li>
+ * <li>{@code -n <iterations>}: iterations to run each variant for. Default 1000.</li>
+ * <li>{@code -t <threads>}: number of variants run at once. Default is the number of processors.</li>
+ * <li>{@code -o <file>}: the results file. Default sweep.csv.</li>
+ * </ul>
+ */
+public class ParameterSweep {
+
+    private final WorkspaceTemplate template;
+
+    /**
+     * Parameters to vary.
+     */
+    private final List<String> parameters = new ArrayList<>();
+
+    /**
+     * Values to try for each parameter, in the same order as {@link #parameters}.
+     */
+    private final List<List<Object>> values = new ArrayList<>();
+
+    private final List<String> producerSpecs = new ArrayList<>();
+
+    private int iterations = 1000;
+
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Create a sweep over copies of a template.
+     *
+     * @param template the workspace to run
+     */
+    public ParameterSweep(WorkspaceTemplate template) {
+        this.template = template;
+    }
+
+    /**
+     * Add a parameter to vary.
+     *
+     * @param parameter the parameter, as component/object id/parameter
+     * @param values    the values to try. Strings are converted to the type of the parameter.
+     * @return this sweep
+     */
+    public ParameterSweep addParameter(String parameter, Object... values) {
+        if (values.length == 0) {
+            throw new IllegalArgumentException("No values given for " + parameter);
+        }
+        parameters.add(parameter);
+        this.values.add(Arrays.asList(values));
+        return this;
+    }
+
+    /**
+     * Add a producer whose value is recorded at the end of each variant.
+     *
+     * @param spec the producer, as component/object id/method
+     * @return this sweep
+     */
+    public ParameterSweep addProducer(String spec) {
+        producerSpecs.add(spec);
+        return this;
+    }
+
+    /**
+     * Returns the number of variants, one for each combination of values.
+     */
+    public int getNumVariants() {
+        int count = 1;
+        for (List<Object> list : values) {
+            count = Math.multiplyExact(count, list.size());
+        }
+        return count;
+    }
+
+    /**
+     * Returns the parameter values of a variant, in the order the parameters were added. The first parameter varies
+     * slowest.
+     *
+     * @param variant the number of the variant, from 0
+     * @return the values
+     */
+    public Object[] getAssignment(int variant) {
+        Object[] assignment = new Object[parameters.size()];
+        for (int i = parameters.size() - 1; i >= 0; i--) {
+            List<Object> list = values.get(i);
+            assignment[i] = list.get(variant % list.size());
+            variant /= list.size();
+        }
+        return assignment;
+    }
+
+    /**
+     * Make a workspace from the template and set the parameters of a variant.
+     *
+     * @param variant the number of the variant, from 0
+     * @return the workspace, ready to run
+     */
+    public Workspace createVariant(int variant) {
+        Workspace workspace = template.instantiate();
+        Object[] assignment = getAssignment(variant);
+        for (int i = 0; i < assignment.length; i++) {
+            setParameter(workspace, parameters.get(i), assignment[i]);
+        }
+        return workspace;
+    }
+
+    /**
+     * Run every variant and write the results to a file.
+     *
+     * @param output the csv file to write
+     * @throws IOException if the file cannot be written
+     */
+    public void run(File output) throws IOException, InterruptedException {
+        try (Writer writer = new BufferedWriter(new FileWriter(output))) {
+            run(writer);
+        }
+    }
+
+    /**
+     * Run every variant, writing a csv row for each as it finishes. Variants that fail are reported in the last
+     * column, and do not stop the sweep.
+     *
+     * @param writer where to write the results
+     * @throws IOException if the results cannot be written
+     */
+    public void run(Writer writer) throws IOException, InterruptedException {
+        writer.write("variant");
+        for (String parameter : parameters) {
+            writer.write(',');
+            writer.write(parameter);
+        }
+        for (String spec : producerSpecs) {
+            writer.write(',');
+            writer.write(spec);
+        }
+        writer.write(",run_ms,error\n");
+        writer.flush();
+
+        int numVariants = getNumVariants();
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        try {
+            for (int i = 0; i < numVariants; i++) {
+                int variant = i;
+                executor.submit(() -> {
+                    String row = runVariant(variant);
+                    synchronized (writer) {
+                        try {
+                            writer.write(row);
+                            writer.flush();
+                        } catch (IOException e) {
+                            e.printStackTrace();
+                        }
+                    }
+                });
+            }
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        }
+    }
+
+    /**
+     * Run one variant and return its row of results.
+     */
+    private String runVariant(int variant) {
+        StringBuilder row = new StringBuilder(Integer.toString(variant));
+        for (Object value : getAssignment(variant)) {
+            row.append(',').append(value);
+        }
+        Workspace workspace = null;
+        long start = System.nanoTime();
+        try {
+            workspace = createVariant(variant);
+            // Variants already run in parallel
+            workspace.getUpdater().setNumThreads(1);
+            workspace.iterate(iterations);
+            for (String spec : producerSpecs) {
+                row.append(',').append(HeadlessRunner.format(HeadlessRunner.getProducer(workspace, spec).getValue()));
+            }
+            row.append(',').append((System.nanoTime() - start) / 1_000_000).append(",\n");
+        } catch (Exception e) {
+            e.printStackTrace();
+            // Keep the columns aligned
+            for (int i = 0; i < producerSpecs.size(); i++) {
+                row.append(',');
+            }
+            row.append(',').append((System.nanoTime() - start) / 1_000_000).append(',')
+                    .append(String.valueOf(e).replace(',', ';').replace('\n', ' ')).append('\n');
+        } finally {
+            if (workspace != null) {
+                workspace.getUpdater().shutdown();
+            }
+        }
+        return row.toString();
+    }
+
+    /**
+     * Set a parameter in a workspace.
+     *
+     * @param workspace the workspace
+     * @param parameter the parameter, as component/object id/parameter
+     * @param value     the new value. Strings are converted to the type of the parameter.
+     * @throws IllegalArgumentException if the parameter is not found or the value is not valid
+     */
+    public static void setParameter(Workspace workspace, String parameter, Object value) {
+        String[] parts = parameter.split("/");
+        if (parts.length != 3) {
+            throw new IllegalArgumentException("Parameters are given as component/object id/parameter, not "
+                    + parameter);
+        }
+        WorkspaceComponent component = workspace.getComponent(parts[0]);
+        if (component == null) {
+            throw new IllegalArgumentException("No component named " + parts[0]);
+        }
+        String[] path = parts[2].split("\\.");
+        boolean found = false;
+        for (AttributeContainer container : component.getAttributeContainers()) {
+            if (parts[1].equals("*") || parts[1].equals(container.getId())) {
+                found |= setParameter(container, path, value);
+            }
+        }
+        if (!found) {
+            throw new IllegalArgumentException("No parameter " + parameter);
+        }
+    }
+
+    /**
+     * Set a parameter of an object, following the parameters of objects it holds.
+     *
+     * @return false if the object has no such parameter
+     */
+    private static boolean setParameter(Object object, String[] path, Object value) {
+        for (int i = 0; i < path.length - 1; i++) {
+            Parameter parameter = findParameter(object.getClass(), path[i]);
+            if (parameter == null) {
+                return false;
+            }
+            object = parameter.getFieldValue(object);
+            if (object == null) {
+                return false;
+            }
+        }
+        Parameter parameter = findParameter(object.getClass(), path[path.length - 1]);
+        if (parameter == null) {
+            return false;
+        }
+        parameter.setFieldValue(object, value);
+        return true;
+    }
+
+    /**
+     * Find a parameter by field name or label.
+     */
+    private static Parameter findParameter(Class<?> type, String name) {
+        for (Parameter parameter : Parameter.getParameters(type)) {
+            if (parameter.getName().equals(name) || parameter.getAnnotation().label().equalsIgnoreCase(name)) {
+                return parameter;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Parse the values of a parameter given on the command line, either a comma separated list or from:to:step.
+     */
+    static Object[] parseValues(String values) {
+        String[] range = values.split(":");
+        if (range.length == 3) {
+            // Decimal arithmetic, so that e.g. 0:1:.1 gives 0.3 rather than 0.30000000000000004, and integral ranges
+            // give values that can also be set on int parameters
+            BigDecimal from = new BigDecimal(range[0]);
+            BigDecimal to = new BigDecimal(range[1]);
+            BigDecimal step = new BigDecimal(range[2]);
+            if (step.signum() <= 0 || to.compareTo(from) < 0) {
+                throw new IllegalArgumentException("Not a valid range: " + values);
+            }
+            int count = to.subtract(from).divide(step, 0, RoundingMode.FLOOR).intValueExact() + 1;
+            Object[] ret = new Object[count];
+            for (int i = 0; i < count; i++) {
+                ret[i] = from.add(step.multiply(BigDecimal.valueOf(i))).stripTrailingZeros().toPlainString();
+            }
+            return ret;
+        }
+        return values.split(",");
+    }
+
+    /**
+     * Run a sweep given on the command line.
+     */
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+        Map<String, Object[]> sweeps = new LinkedHashMap<>();
+        List<String> producers = new ArrayList<>();
+        int iterations = 1000;
+        int threads = Runtime.getRuntime().availableProcessors();
+        File output = new File("sweep.csv");
+        File workspaceFile = null;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                if (arg.startsWith("-") && i + 1 >= args.length) {
+                    throw new IllegalArgumentException("Missing value for " + arg);
+                }
+                switch (arg) {
+                    case "-s":
+                        String[] sweep = args[++i].split("=", 2);
+                        if (sweep.length != 2) {
+                            throw new IllegalArgumentException("Sweeps are given as parameter=values, not "
+                                    + args[i]);
+                        }
+                        sweeps.put(sweep[0], parseValues(sweep[1]));
+                        break;
+                    case "-p":
+                        producers.add(args[++i]);
+                        break;
+                    case "-n":
+                        iterations = Integer.parseInt(args[++i]);
+                        break;
+                    case "-t":
+                        threads = Integer.parseInt(args[++i]);
+                        break;
+                    case "-o":
+                        output = new File(args[++i]);
+                        break;
+                    default:
+                        if (arg.startsWith("-")) {
+                            throw new IllegalArgumentException("Unknown option " + arg);
+                        }
+                        if (workspaceFile != null) {
+                            throw new IllegalArgumentException("Only one workspace can be swept");
+                        }
+                        workspaceFile = new File(arg);
+                }
+            }
+            if (workspaceFile == null) {
+                throw new IllegalArgumentException("No workspace given");
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: ParameterSweep [-s component/id/parameter=values]... "
+                    + "[-p component/id/method]... [-n iterations] [-t threads] [-o file] workspace.zip");
+            System.exit(1);
+            return;
+        }
+
+        long start = System.nanoTime();
+        ParameterSweep parameterSweep = new ParameterSweep(new WorkspaceTemplate(workspaceFile));
+        System.err.printf("Loaded %s in %d ms%n", workspaceFile, (System.nanoTime() - start) / 1_000_000);
+        sweeps.forEach(parameterSweep::addParameter);
+        producers.forEach(parameterSweep::addProducer);
+        parameterSweep.setIterations(iterations);
+        parameterSweep.setParallelism(threads);
+
+        start = System.nanoTime();
+        parameterSweep.run(output);
+        System.err.printf("Ran %d variants in %d ms%n", parameterSweep.getNumVariants(),
+                (System.nanoTime() - start) / 1_000_000);
+        System.exit(0);
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    public void setIterations(int iterations) {
+        this.iterations = iterations;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public void setParallelism(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+    }
+}
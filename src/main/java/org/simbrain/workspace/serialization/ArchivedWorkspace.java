@@ -20,7 +20,7 @@ package org.simbrain.workspace.serialization;
 
 import com.thoughtworks.xstream.XStream;
 import com.thoughtworks.xstream.annotations.XStreamAlias;
-import com.thoughtworks.xstream.io.xml.DomDriver;
+import org.simbrain.util.Utils;
 import org.simbrain.workspace.couplings.Coupling;
 import org.simbrain.workspace.Workspace;
 import org.simbrain.workspace.WorkspaceComponent;
@@ -260,13 +260,26 @@ class ArchivedWorkspace {
 
     /**
      * Returns the XStream instance used to serialize and deserialize instances
-     * of this class.
+     * of this class. The instance is configured once and shared.
      *
      * @return An XStream instance.
      */
     static XStream xstream() {
-        XStream xstream = new XStream(new DomDriver());
-        xstream.ignoreUnknownElements();
+        return XStreamHolder.XSTREAM;
+    }
+
+    /**
+     * Lazily creates the shared XStream instance.
+     */
+    private static class XStreamHolder {
+        private static final XStream XSTREAM = createXStream();
+    }
+
+    /**
+     * Create and configure the XStream instance used for this class.
+     */
+    private static XStream createXStream() {
+        XStream xstream = Utils.getSimbrainXStream();
         xstream.processAnnotations(ArchivedWorkspace.class);
         xstream.processAnnotations(ArchivedWorkspaceComponent.class);
         xstream.processAnnotations(ArchivedCoupling.class);
@@ -59,6 +59,17 @@ public class WorkspaceComponentDeserializer {
     WorkspaceComponent deserializeWorkspaceComponent(ArchivedWorkspaceComponent archivedComponent, InputStream input) throws ReflectiveOperationException {
         Class<?> componentClass = Class.forName(archivedComponent.getClassName());
         WorkspaceComponent wc = deserializeWorkspaceComponent(componentClass, archivedComponent.getName(), input, null);
+        return register(archivedComponent, wc);
+    }
+
+    /**
+     * Associates a component that was created some other way, e.g. from a snapshot, with its archived entry.
+     *
+     * @param archivedComponent The component entry from the archive contents.
+     * @param wc                The component created for the entry.
+     * @return the component
+     */
+    WorkspaceComponent register(ArchivedWorkspaceComponent archivedComponent, WorkspaceComponent wc) {
         componentKeys.put(archivedComponent.getUri(), wc);
         wc.setChangedSinceLastSave(false);
         return wc;
@@ -18,8 +18,6 @@
  */
 package org.simbrain.workspace.serialization;
 
-import com.thoughtworks.xstream.XStream;
-import com.thoughtworks.xstream.io.xml.DomDriver;
 import org.simbrain.util.SFileChooser;
 import org.simbrain.util.SimbrainPreferences;
 import org.simbrain.workspace.*;
@@ -35,7 +33,9 @@ import java.io.*;
 import java.lang.reflect.Method;
 import java.util.List;
 import java.util.*;
+import java.util.function.Function;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
 
@@ -66,9 +66,9 @@ import java.util.zip.ZipOutputStream;
 public class WorkspaceSerializer {
 
     /**
-     * The number of bytes to attempt to read at a time from an InputStream.
+     * Name of the archive entry describing the workspace.
      */
-    private static final int BUFFER_SIZE = 1024;
+    private static final String CONTENTS_FILE = "contents.xml";
 
     /**
      * The current workspace.
@@ -76,9 +76,9 @@ public class WorkspaceSerializer {
     private Workspace workspace;
 
     /**
-     * The desktop component for the workspace.
+     * Names of the components that could not be read in the last call to deserialize.
      */
-    private SimbrainDesktop desktop;
+    private final List<String> failedComponents = new ArrayList<>();
 
     /**
      * Creates a new serializer.
@@ -87,7 +87,26 @@ public class WorkspaceSerializer {
      */
     public WorkspaceSerializer(Workspace workspace) {
         this.workspace = workspace;
-        this.desktop = SimbrainDesktop.getDesktop(workspace);
+    }
+
+    /**
+     * Returns the names of the components listed in the archive that could not be read and were left out of the
+     * workspace in the last call to deserialize. Failures are reported but do not stop the rest of the workspace from
+     * loading.
+     */
+    public List<String> getFailedComponents() {
+        return Collections.unmodifiableList(failedComponents);
+    }
+
+    /**
+     * Returns the desktop showing the workspace, or null if there is none. When running headless the desktop classes
+     * are not loaded at all.
+     */
+    private SimbrainDesktop getDesktop() {
+        if (GraphicsEnvironment.isHeadless()) {
+            return null;
+        }
+        return SimbrainDesktop.getDesktop(workspace);
     }
 
     /**
@@ -117,7 +136,7 @@ public class WorkspaceSerializer {
         serializeCouplings(archive);
         serializeUpdateActions(archive);
 
-        ZipEntry entry = new ZipEntry("contents.xml");
+        ZipEntry entry = new ZipEntry(CONTENTS_FILE);
         zipStream.putNextEntry(entry);
         archive.toXml(zipStream);
         zipStream.finish();
@@ -163,8 +182,9 @@ public class WorkspaceSerializer {
         try {
             zipStream.putNextEntry(entry);
             serializer.serializeComponent(component, zipStream);
-            if (SimbrainDesktop.getDesktop(workspace) != null) {
-                DesktopComponent<?> desktopComponent = SimbrainDesktop.getDesktop(workspace).getDesktopComponent(component);
+            SimbrainDesktop desktop = getDesktop();
+            if (desktop != null) {
+                DesktopComponent<?> desktopComponent = desktop.getDesktopComponent(component);
                 // Makes it possible to save a non-GUI simulation
                 if (desktopComponent != null) {
                     ArchivedWorkspaceComponent.ArchivedDesktopComponent dc = archiveComp.addDesktopComponent(desktopComponent);
@@ -228,18 +248,50 @@ public class WorkspaceSerializer {
     }
 
     /**
-     * Creates a workspace from a zip compressed input stream.
+     * Creates a workspace from a zip compressed input stream. The stream is read once, holding the uncompressed
+     * entries in memory until the components that use them are created. To open a file prefer {@link
+     * #deserialize(File)}, which reads entries directly from the file.
      *
      * @param stream The stream to read from. This is expected to be zip compressed.
      * @throws IOException if an IO error occurs.
      */
-    @SuppressWarnings("unchecked")
     public void deserialize(InputStream stream) throws IOException {
-        Map<String, byte[]> byteArrays = processInputStream(stream);
-        ArchivedWorkspace archive = (ArchivedWorkspace) ArchivedWorkspace.xstream().fromXML(new ByteArrayInputStream(byteArrays.get("contents.xml")));
+        deserialize(readEntries(stream));
+    }
 
+    /**
+     * Creates a workspace from a zip file. Each component is parsed as it is read from the archive, so only the
+     * resulting objects are held in memory.
+     *
+     * @param file the zip file to open
+     * @throws IOException if an IO error occurs.
+     */
+    public void deserialize(File file) throws IOException {
+        try (ZipFile zip = new ZipFile(file)) {
+            deserialize(getEntries(zip));
+        }
+    }
+
+    /**
+     * Creates a workspace from the entries of an archive.
+     */
+    private void deserialize(ArchiveEntries entries) throws IOException {
+        deserialize(readContents(entries), entries, archivedComponent -> null);
+    }
+
+    /**
+     * Creates a workspace from an archive whose contents have already been parsed, e.g. by a {@link
+     * WorkspaceTemplate}.
+     *
+     * @param archive  the parsed contents of the archive
+     * @param entries  the entries of the archive
+     * @param prebuilt returns a component made without reading its entry, or null to read the entry
+     */
+    void deserialize(ArchivedWorkspace archive, ArchiveEntries entries,
+                     Function<ArchivedWorkspaceComponent, WorkspaceComponent> prebuilt) throws IOException {
         WorkspaceComponentDeserializer deserializer = new WorkspaceComponentDeserializer();
-        deserializeComponents(archive, deserializer, byteArrays);
+        failedComponents.clear();
+        deserializeComponents(archive, deserializer, entries, prebuilt);
 
         deserializeCouplings(archive);
         deserializeUpdateActions(archive, deserializer);
@@ -247,69 +299,116 @@ public class WorkspaceSerializer {
 
     }
 
-    private Map<String, byte[]> processInputStream(InputStream stream) throws IOException {
-        // Populate the byte stream BUFFER_SIZE at a time and create a zip input
-        // stream (currently 1 kb at a time).
-        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
-        byte[] buffer = new byte[BUFFER_SIZE];
-        for (int read; (read = stream.read(buffer)) >= 0; ) {
-            bytes.write(buffer, 0, read);
-        }
-        ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(bytes.toByteArray()));
-
-        // Populate a map from zip entries (strings containing path+file info in
-        // zip archive) to the associated data
-        Map<String, byte[]> byteArrays = new HashMap<String, byte[]>();
-        ZipEntry entry = zip.getNextEntry();
-        // Initialize byte arrays
-        for (ZipEntry next; entry != null; entry = next) {
-            next = zip.getNextEntry();
-            byteArrays.put(entry.getName(), new byte[(int) entry.getSize()]);
-        }
-        zip = new ZipInputStream(new ByteArrayInputStream(bytes.toByteArray()));
-        // Populate byte arrays
-        while ((entry = zip.getNextEntry()) != null) {
-            byte[] data = byteArrays.get(entry.getName());
-            read(zip, data);
+    /**
+     * Parse the contents file of an archive.
+     */
+    static ArchivedWorkspace readContents(ArchiveEntries entries) throws IOException {
+        try (InputStream contents = entries.open(CONTENTS_FILE)) {
+            return (ArchivedWorkspace) ArchivedWorkspace.xstream().fromXML(contents);
         }
+    }
+
+    /**
+     * Read every entry of a zip stream, in one pass. Entries are removed from the map when they are opened, so their
+     * memory can be reclaimed as the workspace is built.
+     */
+    private static ArchiveEntries readEntries(InputStream stream) throws IOException {
+        Map<String, byte[]> byteArrays = readEntryData(stream);
+        return name -> {
+            byte[] data = byteArrays.remove(name);
+            if (data == null) {
+                throw new FileNotFoundException(name);
+            }
+            return new ByteArrayInputStream(data);
+        };
+    }
 
-        // Find the contents.xml file and set the zip entries relative to that
-        Set<String> zipEntries = new HashSet<String>(byteArrays.keySet());
-        String contentsFile = "contents.xml";
+    /**
+     * Read every entry of a zip stream, in one pass, into a map from entry names (relative to the directory
+     * containing contents.xml) to data.
+     */
+    static Map<String, byte[]> readEntryData(InputStream stream) throws IOException {
+        ZipInputStream zip = new ZipInputStream(new BufferedInputStream(stream));
+        Map<String, byte[]> byteArrays = new HashMap<>();
         String contentsPath = "";
-        for (String entryName : zipEntries) {
-            if (entryName.endsWith(contentsFile)) {
-                contentsPath = entryName.substring(0, entryName.length() - contentsFile.length());
+        for (ZipEntry entry; (entry = zip.getNextEntry()) != null; ) {
+            byteArrays.put(entry.getName(), zip.readAllBytes());
+            contentsPath = getContentsPath(entry.getName(), contentsPath);
+        }
+        if (contentsPath.isEmpty()) {
+            return byteArrays;
+        }
+        Map<String, byte[]> relative = new HashMap<>();
+        for (Map.Entry<String, byte[]> entry : byteArrays.entrySet()) {
+            if (entry.getKey().startsWith(contentsPath)) {
+                relative.put(entry.getKey().substring(contentsPath.length()), entry.getValue());
             }
         }
+        return relative;
+    }
 
-        // Remove the contents path from all entries that have it
-        if (!contentsPath.isEmpty()) {
-            for (String entryName : zipEntries) {
-                if (entryName.startsWith(contentsPath)) {
-                    byteArrays.put(entryName.replace(contentsPath, ""), byteArrays.get(entryName));
-                    byteArrays.remove(entryName);
-                }
+    /**
+     * Returns the entries of a zip file, relative to the directory containing contents.xml.
+     */
+    private static ArchiveEntries getEntries(ZipFile zip) {
+        String contentsPath = "";
+        for (Enumeration<? extends ZipEntry> e = zip.entries(); e.hasMoreElements(); ) {
+            contentsPath = getContentsPath(e.nextElement().getName(), contentsPath);
+        }
+        String prefix = contentsPath;
+        return name -> {
+            ZipEntry entry = zip.getEntry(prefix + name);
+            if (entry == null) {
+                throw new FileNotFoundException(name);
             }
+            return new BufferedInputStream(zip.getInputStream(entry));
+        };
+    }
+
+    /**
+     * If the entry is the contents file, return the directory containing it, otherwise the current path. Archives
+     * created by zipping a directory have all their entries in that directory.
+     */
+    private static String getContentsPath(String entryName, String currentPath) {
+        if (entryName.endsWith(CONTENTS_FILE)) {
+            return entryName.substring(0, entryName.length() - CONTENTS_FILE.length());
         }
-        return byteArrays;
+        return currentPath;
     }
 
-    private void deserializeComponents(ArchivedWorkspace archive, WorkspaceComponentDeserializer deserializer, Map<String, byte[]> byteArrays) {
+    private void deserializeComponents(ArchivedWorkspace archive, WorkspaceComponentDeserializer deserializer,
+                                       ArchiveEntries entries,
+                                       Function<ArchivedWorkspaceComponent, WorkspaceComponent> prebuilt) {
         if (archive.getArchivedComponents() != null) {
             for (ArchivedWorkspaceComponent archivedComponent : archive.getArchivedComponents()) {
                 try {
-                    WorkspaceComponent wc = deserializer.deserializeWorkspaceComponent(archivedComponent, new ByteArrayInputStream(byteArrays.get(archivedComponent.getUri())));
+                    WorkspaceComponent wc = prebuilt.apply(archivedComponent);
+                    if (wc != null) {
+                        deserializer.register(archivedComponent, wc);
+                    } else {
+                        try (InputStream input = entries.open(archivedComponent.getUri())) {
+                            wc = deserializer.deserializeWorkspaceComponent(archivedComponent, input);
+                        }
+                    }
                     workspace.addWorkspaceComponent(wc);
-                    if (archivedComponent.getDesktopComponent() != null) {
-                        Rectangle bounds = (Rectangle) new XStream(new DomDriver()).fromXML(new ByteArrayInputStream(byteArrays.get(archivedComponent.getDesktopComponent().getUri())));
+                    SimbrainDesktop desktop = archivedComponent.getDesktopComponent() == null ? null : getDesktop();
+                    if (desktop != null) {
+                        Rectangle bounds;
+                        try (InputStream input = entries.open(archivedComponent.getDesktopComponent().getUri())) {
+                            bounds = (Rectangle) ArchivedWorkspace.xstream().fromXML(input);
+                        }
                         DesktopComponent<?> desktopComponent = desktop.getDesktopComponent(wc);
                         desktopComponent.getParentFrame().setBounds(bounds);
                     }
                 } catch (Exception ex) {
                     ex.printStackTrace();
+                    failedComponents.add(archivedComponent.getName());
                     String message = String.format("Failed to deserialize component %s.", archivedComponent.getName());
-                    JOptionPane.showMessageDialog(null, message);
+                    if (GraphicsEnvironment.isHeadless()) {
+                        System.err.println(message);
+                    } else {
+                        JOptionPane.showMessageDialog(null, message);
+                    }
                 }
             }
         }
@@ -345,24 +444,6 @@ public class WorkspaceSerializer {
         }
     }
 
-    /**
-     * Helper method that will read the InputStream repeatedly until the given array is filled.
-     *
-     * @param istream the InputStream to read from.
-     * @param bytes   the array to write to
-     * @throws IOException if there is an IO error
-     */
-    private static void read(InputStream istream, byte[] bytes) throws IOException {
-        int pos = 0;
-        while (pos < bytes.length) {
-            int read = istream.read(bytes, pos, bytes.length - pos);
-            if (read < 0) {
-                throw new RuntimeException("premature EOF");
-            }
-            pos += read;
-        }
-    }
-
     public static <T> WorkspaceComponent showOpenComponentDialog(Class<T> type) {
         String defaultDirectory = SimbrainPreferences.getString("workspace" + type.getSimpleName() + "Directory");
         SFileChooser chooser = new SFileChooser(defaultDirectory, "XML File", "xml");
@@ -398,6 +479,19 @@ public class WorkspaceSerializer {
         }
     }
 
-
+    /**
+     * Entries of a workspace archive, by name relative to the directory containing contents.xml.
+     */
+    interface ArchiveEntries {
+
+        /**
+         * Open an entry.
+         *
+         * @param name entry name, e.g. a component uri
+         * @return a stream of the entry's data
+         * @throws IOException if the entry is missing or cannot be read
+         */
+        InputStream open(String name) throws IOException;
+    }
 
 }
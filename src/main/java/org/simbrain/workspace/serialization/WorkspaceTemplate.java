@@ -0,0 +1,148 @@
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.workspace.serialization;
+
+import org.simbrain.network.NetworkComponent;
+import org.simbrain.network.core.Network;
+import org.simbrain.workspace.Workspace;
+import org.simbrain.workspace.WorkspaceComponent;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A saved workspace held in memory, from which any number of independent workspaces can be made, e.g. for each
+ * variant of a parameter sweep.
+ * <p>
+ * The archive is unzipped and its contents parsed once. Networks, which are usually the bulk of a workspace, are
+ * parsed once too and kept as binary snapshots (see {@link Network#toSnapshot()}), so new workspaces do not parse
+ * their xml again. Other components are read from their entries for each new workspace.
+ * <p>
+ * {@link #instantiate()} may be called from several threads at once.
+ */
+public class WorkspaceTemplate {
+
+    /**
+     * Parsed contents of the archive. Only read when workspaces are made.
+     */
+    private final ArchivedWorkspace archive;
+
+    /**
+     * Uncompressed entries, by name relative to the contents file.
+     */
+    private final Map<String, byte[]> entries;
+
+    /**
+     * Snapshots of networks, by component uri.
+     */
+    private final Map<String, byte[]> networkSnapshots = new HashMap<>();
+
+    /**
+     * Create a template from the data of a saved workspace, as produced by {@link Workspace#getZipData()}.
+     *
+     * @param zipData the zipped workspace
+     * @throws IOException if the data cannot be read
+     */
+    public WorkspaceTemplate(byte[] zipData) throws IOException {
+        this(new ByteArrayInputStream(zipData));
+    }
+
+    /**
+     * Create a template from a saved workspace file.
+     *
+     * @param file the zip file
+     * @throws IOException if the file cannot be read
+     */
+    public WorkspaceTemplate(File file) throws IOException {
+        this(new FileInputStream(file));
+    }
+
+    private WorkspaceTemplate(InputStream stream) throws IOException {
+        try (InputStream input = stream) {
+            entries = WorkspaceSerializer.readEntryData(input);
+        }
+        archive = WorkspaceSerializer.readContents(this::open);
+        if (archive.getArchivedComponents() != null) {
+            for (ArchivedWorkspaceComponent archivedComponent : archive.getArchivedComponents()) {
+                if (archivedComponent.getClassName().equals(NetworkComponent.class.getName())) {
+                    try (InputStream input = open(archivedComponent.getUri())) {
+                        Network network = NetworkComponent.open(input, archivedComponent.getName(), null)
+                                .getNetwork();
+                        networkSnapshots.put(archivedComponent.getUri(), network.toSnapshot());
+                    }
+                    // The snapshot replaces the xml
+                    entries.remove(archivedComponent.getUri());
+                }
+            }
+        }
+    }
+
+    /**
+     * Create a template from the current state of a workspace.
+     *
+     * @param workspace the workspace to copy
+     * @return the template
+     */
+    public static WorkspaceTemplate of(Workspace workspace) {
+        try {
+            return new WorkspaceTemplate(workspace.getZipData());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Make a new workspace from this template.
+     *
+     * @return the workspace, with its components, couplings and update actions
+     */
+    public Workspace instantiate() {
+        Workspace workspace = new Workspace();
+        try {
+            new WorkspaceSerializer(workspace).deserialize(archive, this::open, this::createFromSnapshot);
+        } catch (IOException e) {
+            // Entries are in memory
+            throw new RuntimeException(e);
+        }
+        return workspace;
+    }
+
+    private WorkspaceComponent createFromSnapshot(ArchivedWorkspaceComponent archivedComponent) {
+        byte[] snapshot = networkSnapshots.get(archivedComponent.getUri());
+        if (snapshot == null) {
+            return null;
+        }
+        return new NetworkComponent(archivedComponent.getName(), Network.fromSnapshot(snapshot));
+    }
+
+    private InputStream open(String name) throws IOException {
+        byte[] data = entries.get(name);
+        if (data == null) {
+            throw new FileNotFoundException(name);
+        }
+        return new ByteArrayInputStream(data);
+    }
+
+}
@@ -19,16 +19,25 @@
 package org.simbrain.workspace.updater;
 
 import org.pmw.tinylog.Logger;
+import org.simbrain.workspace.AttributeContainer;
 import org.simbrain.workspace.WorkspaceComponent;
+import org.simbrain.workspace.couplings.Coupling;
+import org.simbrain.workspace.couplings.CouplingManager;
 
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ThreadFactory;
 
 /**
  * This is the default action for all workspace updates.
  * First update couplings then update all the components.
+ * <p>
+ * Components are grouped into clusters that are connected by couplings. Clusters
+ * share no data, so the couplings of each cluster are updated, in order, in parallel
+ * with those of the other clusters on the updater's component executor. Once all
+ * couplings are done the couplings updated notification is sent and all components
+ * are updated in parallel. The result is the same as updating all couplings and then
+ * all components.
  *
  * @author jyoshimi
  */
@@ -39,11 +48,25 @@ public class UpdateAllAction implements UpdateAction {
      */
     private transient WorkspaceUpdater updater;
 
+    /**
+     * Clusters of coupled components. Rebuilt when couplings or components change.
+     */
+    private transient List<Cluster> clusters;
 
     /**
-     * The executor service for doing the component updates.
+     * Coupling manager the clusters were built from.
      */
-    private transient ExecutorService componentUpdateExecutor;
+    private transient CouplingManager clusteredManager;
+
+    /**
+     * Value of {@link CouplingManager#getModificationCount()} when the clusters were built.
+     */
+    private transient int clusteredModificationCount;
+
+    /**
+     * Components the clusters were built from.
+     */
+    private transient List<WorkspaceComponent> clusteredComponents;
 
     /**
      * Construct the action.
@@ -52,15 +75,6 @@ public class UpdateAllAction implements UpdateAction {
      */
     public UpdateAllAction(WorkspaceUpdater updater) {
         this.updater = updater;
-
-        // In some cases components can be updated in parallel. So
-        // a thread pool with a configurable number of threads is used
-        componentUpdateExecutor = Executors.newFixedThreadPool(updater.getNumThreads(), new UpdaterThreadFactory());
-
-        // TODO: the executor needs to be reinitialized when
-        // updater.setNumThreads is called
-        //this.componentUpdates = Executors.newFixedThreadPool(numThreads,
-        //        new UpdaterThreadFactory());
     }
 
     @Override
@@ -73,18 +87,35 @@ public class UpdateAllAction implements UpdateAction {
             return;
         }
 
-        Logger.trace("updating couplings");
-        updateCouplings();
+        ExecutorService executor = updater.getComponentUpdateExecutor();
+        List<Cluster> clusters = getClusters(components);
 
-        Logger.trace("creating latch");
-        LatchCompletionSignal latch = new LatchCompletionSignal(componentCount);
+        // Update each cluster's couplings in parallel, and wait for all of them so the
+        // couplings updated notification precedes every component update
+        Logger.trace("updating couplings");
+        List<CompletableFuture<Void>> couplingUpdates = new ArrayList<>();
+        for (Cluster cluster : clusters) {
+            if (!cluster.couplings.isEmpty()) {
+                couplingUpdates.add(CompletableFuture.runAsync(() -> cluster.couplings.forEach(Coupling::update),
+                        executor));
+            }
+        }
+        CompletableFuture.allOf(couplingUpdates.toArray(new CompletableFuture[0])).join();
+        updater.notifyCouplingsUpdated();
 
         Logger.trace("updating components");
-        for (WorkspaceComponent component : components) {
-            updateComponent(component, latch);
+        List<CompletableFuture<Void>> tasks = new ArrayList<>();
+        for (Cluster cluster : clusters) {
+            for (WorkspaceComponent component : cluster.components) {
+                // If update is turned off on this component, skip it
+                if (component.getUpdateOn()) {
+                    tasks.add(CompletableFuture.runAsync(() -> updateComponent(component), executor));
+                }
+            }
         }
+
         Logger.trace("waiting");
-        latch.await();
+        CompletableFuture.allOf(tasks.toArray(new CompletableFuture[0])).join();
         Logger.trace("update complete");
     }
 
@@ -102,14 +133,9 @@ public class UpdateAllAction implements UpdateAction {
             return;
         }
 
-        componentUpdateExecutor.submit(() -> {
+        updater.getComponentUpdateExecutor().submit(() -> {
             try {
-                UpdateThread thread = (UpdateThread) Thread.currentThread();
-                thread.setCurrentTask(component);
-                component.update();
-                thread.clearCurrentTask(component);
-            } catch (Exception e) {
-                e.printStackTrace();
+                updateComponent(component);
             } finally {
                 signal.done();
             }
@@ -117,6 +143,23 @@ public class UpdateAllAction implements UpdateAction {
 
     }
 
+    /**
+     * Update a component on the current thread, which must be one of the updater's
+     * {@link UpdateThread}s.
+     *
+     * @param component the component to update
+     */
+    private void updateComponent(final WorkspaceComponent component) {
+        try {
+            UpdateThread thread = (UpdateThread) Thread.currentThread();
+            thread.setCurrentTask(component);
+            component.update();
+            thread.clearCurrentTask(component);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
     /**
      * Update couplings.
      */
@@ -126,6 +169,84 @@ public class UpdateAllAction implements UpdateAction {
         updater.notifyCouplingsUpdated();
     }
 
+    /**
+     * Returns the clusters for the current components, rebuilding them if the
+     * components or couplings have changed since the last update.
+     */
+    private List<Cluster> getClusters(List<? extends WorkspaceComponent> components) {
+        CouplingManager manager = updater.getWorkspace().getCouplingManager();
+        if (clusters == null || manager != clusteredManager
+                || manager.getModificationCount() != clusteredModificationCount
+                || !components.equals(clusteredComponents)) {
+            clusteredManager = manager;
+            clusteredModificationCount = manager.getModificationCount();
+            clusteredComponents = new ArrayList<>(components);
+            clusters = buildClusters(components, manager.getCouplings());
+        }
+        return clusters;
+    }
+
+    /**
+     * Partition components into sets connected by couplings, using union-find. Each
+     * coupling goes to the cluster of its components, in coupling manager order.
+     * If a coupling refers to a container that is not in any component, everything
+     * goes in one cluster.
+     */
+    private static List<Cluster> buildClusters(List<? extends WorkspaceComponent> components,
+                                               Collection<Coupling> couplings) {
+        int n = components.size();
+
+        // Find the component index of each coupled container
+        Map<AttributeContainer, Integer> owners = new HashMap<>();
+        for (Coupling coupling : couplings) {
+            owners.put(coupling.getProducer().getBaseObject(), -1);
+            owners.put(coupling.getConsumer().getBaseObject(), -1);
+        }
+        int unresolved = owners.size();
+        for (int i = 0; i < n && unresolved > 0; i++) {
+            for (AttributeContainer container : components.get(i).getAttributeContainers()) {
+                Integer owner = owners.get(container);
+                if (owner != null && owner == -1) {
+                    owners.put(container, i);
+                    unresolved--;
+                }
+            }
+        }
+
+        int[] parent = new int[n];
+        for (int i = 0; i < n; i++) {
+            parent[i] = unresolved > 0 ? 0 : i;
+        }
+        if (unresolved == 0) {
+            for (Coupling coupling : couplings) {
+                int a = find(parent, owners.get(coupling.getProducer().getBaseObject()));
+                int b = find(parent, owners.get(coupling.getConsumer().getBaseObject()));
+                parent[Math.max(a, b)] = Math.min(a, b);
+            }
+        }
+
+        Map<Integer, Cluster> clusterMap = new LinkedHashMap<>();
+        for (int i = 0; i < n; i++) {
+            clusterMap.computeIfAbsent(find(parent, i), k -> new Cluster()).components.add(components.get(i));
+        }
+        for (Coupling coupling : couplings) {
+            int root = unresolved > 0 ? 0 : find(parent, owners.get(coupling.getConsumer().getBaseObject()));
+            clusterMap.get(root).couplings.add(coupling);
+        }
+        return new ArrayList<>(clusterMap.values());
+    }
+
+    /**
+     * Union-find root lookup with path halving.
+     */
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
     @Override
     public String getDescription() {
         return "Update All Components and Couplings";
@@ -137,28 +258,12 @@ public class UpdateAllAction implements UpdateAction {
     }
 
     /**
-     * Creates the threads used in the ExecutorService. Used to create a custom
-     * thread class that will be generated inside the executor. This allows for
-     * a clean way to capture the events using the thread instances themselves
-     * which 'know' their thread number.
+     * Components connected by couplings, and the couplings between them.
      */
-    private class UpdaterThreadFactory implements ThreadFactory {
-
-        /**
-         * Numbers the threads sequentially.
-         */
-        private int nextThread = 1;
-
-        /**
-         * Creates a new UpdateThread with the current thread number.
-         *
-         * @param runnable The runnable this thread will execute.
-         * @return current thread number
-         */
-        public Thread newThread(final Runnable runnable) {
-            synchronized (this) {
-                return new UpdateThread(updater, runnable, nextThread++);
-            }
-        }
+    private static class Cluster {
+
+        final List<WorkspaceComponent> components = new ArrayList<>();
+
+        final List<Coupling> couplings = new ArrayList<>();
     }
-}
\ No newline at end of file
+}
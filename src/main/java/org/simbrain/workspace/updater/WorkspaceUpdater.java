@@ -40,7 +40,8 @@ import java.util.function.Consumer;
  * for workspace updates (a single thread), one for event notification updates
  * (a single thread), and one for component updates (a thread pool with multiple
  * threads that can be configured), for cases when component updating happens
- * concurrently.
+ * concurrently. The component executor is rebuilt when the number of threads is
+ * changed.
  *
  * @author Matt Watson
  * @author Jeff Yoshimi
@@ -57,6 +58,12 @@ public class WorkspaceUpdater {
      */
     private final ExecutorService workspaceUpdateExecutor;
 
+    /**
+     * The executor service for doing the component updates. Replaced (on the
+     * workspace update thread) when the number of threads changes.
+     */
+    private volatile ExecutorService componentUpdateExecutor;
+
     /**
      * The executor service for notifying listeners.
      */
@@ -116,6 +123,9 @@ public class WorkspaceUpdater {
         workspaceUpdateExecutor = Executors.newSingleThreadExecutor();
         // A single thread to fire notification events
         notificationEvents = Executors.newSingleThreadExecutor();
+        // In some cases components can be updated in parallel. So
+        // a thread pool with a configurable number of threads is used
+        componentUpdateExecutor = Executors.newFixedThreadPool(threads, new UpdaterThreadFactory());
         // Instantiate the update action manager
         updateActionManager = new UpdateActionManager(this);
     }
@@ -184,6 +194,18 @@ public class WorkspaceUpdater {
         run = false;
     }
 
+    /**
+     * Stops the updater's threads once pending updates and notifications are done. Used when many workspaces are
+     * created and discarded in one session, e.g. by the headless runner and in parameter sweeps. The updater cannot be
+     * used afterwards.
+     */
+    public void shutdown() {
+        stop();
+        workspaceUpdateExecutor.submit(() -> componentUpdateExecutor.shutdown());
+        workspaceUpdateExecutor.shutdown();
+        notificationEvents.shutdown();
+    }
+
     /**
      * Returns whether the updater is set to run.
      */
@@ -417,14 +439,27 @@ public class WorkspaceUpdater {
             stop();
         }
         this.numThreads = numThreads;
-        // this.componentUpdates = Executors.newFixedThreadPool(numThreads,
-        // new UpdaterThreadFactory());
+        // Swap executors between updates, so no update is using the old one
+        workspaceUpdateExecutor.submit(() -> {
+            componentUpdateExecutor.shutdown();
+            componentUpdateExecutor = Executors.newFixedThreadPool(numThreads, new UpdaterThreadFactory());
+        });
         for (WorkspaceUpdaterListener listener : updaterListeners) {
             listener.changeNumThreads();
         }
 
     }
 
+    /**
+     * Returns the executor used to update components (and couplings) in
+     * parallel. Its threads are {@link UpdateThread}s.
+     *
+     * @return the component update executor
+     */
+    public ExecutorService getComponentUpdateExecutor() {
+        return componentUpdateExecutor;
+    }
+
     /**
      * A synch-manager where the methods do nothing.
      */
@@ -471,4 +506,30 @@ public class WorkspaceUpdater {
         return workspace;
     }
 
-}
\ No newline at end of file
+    /**
+     * Creates the threads used in the component update executor. Used to
+     * create a custom thread class that will be generated inside the executor.
+     * This allows for a clean way to capture the events using the thread
+     * instances themselves which 'know' their thread number.
+     */
+    private class UpdaterThreadFactory implements ThreadFactory {
+
+        /**
+         * Numbers the threads sequentially.
+         */
+        private int nextThread = 1;
+
+        /**
+         * Creates a new UpdateThread with the current thread number.
+         *
+         * @param runnable The runnable this thread will execute.
+         * @return current thread number
+         */
+        public Thread newThread(final Runnable runnable) {
+            synchronized (this) {
+                return new UpdateThread(WorkspaceUpdater.this, runnable, nextThread++);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,265 @@
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.world.odorworld;
+
+import org.simbrain.world.odorworld.entities.OdorWorldEntity;
+
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Uniform grid over an {@link OdorWorld}, used to find the entities near a point without checking every entity in the
+ * world. Each entity is stored in the cell containing the center of its collision bound, and moved when the bound is
+ * updated.
+ * <p>
+ * Queries return candidates: every entity that could be within the radius, possibly with some that are not. Callers
+ * apply their exact distance test to the candidates. Candidates are returned in the order of the world's entity list,
+ * so results match checking the whole list.
+ * <p>
+ * When the world wraps around, cells wrap too, so that entities near one edge are found from the opposite edge.
+ */
+public class EntityGrid {
+
+    /**
+     * Approximate width and height of a cell in pixels. Cells are sized so the world is an exact number of cells.
+     */
+    private static final double CELL_SIZE = 64;
+
+    /**
+     * Whether the world wrapped around when the grid was built.
+     */
+    private final boolean wrapAround;
+
+    /**
+     * World width when the grid was built.
+     */
+    private final int width;
+
+    /**
+     * World height when the grid was built.
+     */
+    private final int height;
+
+    private final int columns;
+
+    private final int rows;
+
+    private final double cellWidth;
+
+    private final double cellHeight;
+
+    /**
+     * Entries in each cell, indexed by row * columns + column.
+     */
+    private final List<Entry>[] cells;
+
+    /**
+     * Entry for each indexed entity.
+     */
+    private final Map<OdorWorldEntity, Entry> entries = new IdentityHashMap<>();
+
+    /**
+     * Sequence number given to the next added entity. Entities are added in the order of the entity list, so sorting
+     * by sequence number recovers that order.
+     */
+    private long nextSequence;
+
+    /**
+     * An upper bound on the collision radius of the indexed entities.
+     */
+    private double maxCollisionRadius;
+
+    /**
+     * Build a grid containing the entities of a world.
+     *
+     * @param world the world to index
+     */
+    @SuppressWarnings("unchecked")
+    EntityGrid(OdorWorld world) {
+        wrapAround = world.getWrapAround();
+        width = world.getWidth();
+        height = world.getHeight();
+        columns = Math.max(1, (int) (width / CELL_SIZE));
+        rows = Math.max(1, (int) (height / CELL_SIZE));
+        cellWidth = Math.max(1, width) / (double) columns;
+        cellHeight = Math.max(1, height) / (double) rows;
+        cells = new List[columns * rows];
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] = new ArrayList<>();
+        }
+        for (OdorWorldEntity entity : world.getEntityList()) {
+            add(entity);
+        }
+    }
+
+    /**
+     * Returns true if the world has been resized, or its wrap around setting changed, since the grid was built.
+     */
+    boolean isStale(OdorWorld world) {
+        return world.getWrapAround() != wrapAround || world.getWidth() != width || world.getHeight() != height;
+    }
+
+    /**
+     * Add an entity, which should be the last one in the world's entity list.
+     */
+    synchronized void add(OdorWorldEntity entity) {
+        if (entries.containsKey(entity)) {
+            return;
+        }
+        Entry entry = new Entry(entity, nextSequence++);
+        entries.put(entity, entry);
+        place(entry);
+    }
+
+    /**
+     * Remove an entity.
+     */
+    synchronized void remove(OdorWorldEntity entity) {
+        Entry entry = entries.remove(entity);
+        if (entry != null) {
+            cells[entry.cell].remove(entry);
+        }
+    }
+
+    /**
+     * Move an entity to the cell containing its current collision bound, if it is in the grid.
+     *
+     * @param entity the entity whose collision bound was updated
+     */
+    public synchronized void update(OdorWorldEntity entity) {
+        Entry entry = entries.get(entity);
+        if (entry == null) {
+            return;
+        }
+        Point2D.Double center = entity.getCollisionBound().getCenterLocation();
+        int cell = cellIndex(center.getX(), center.getY());
+        if (cell != entry.cell) {
+            cells[entry.cell].remove(entry);
+            entry.cell = cell;
+            cells[cell].add(entry);
+        }
+        maxCollisionRadius = Math.max(maxCollisionRadius, entity.getCollisionBound().getCollisionRadius());
+    }
+
+    /**
+     * Returns the entities that may be within a radius of a point, in entity list order.
+     *
+     * @param x      x coordinate of the point
+     * @param y      y coordinate of the point
+     * @param radius the radius
+     * @return candidate entities, which must still be checked against the radius
+     */
+    public synchronized List<OdorWorldEntity> getCandidates(double x, double y, double radius) {
+        List<Entry> found = new ArrayList<>();
+        int minCol = (int) Math.floor((x - radius) / cellWidth);
+        int maxCol = (int) Math.floor((x + radius) / cellWidth);
+        int minRow = (int) Math.floor((y - radius) / cellHeight);
+        int maxRow = (int) Math.floor((y + radius) / cellHeight);
+        if (wrapAround) {
+            // Visit each column and row at most once
+            maxCol = Math.min(maxCol, minCol + columns - 1);
+            maxRow = Math.min(maxRow, minRow + rows - 1);
+        } else {
+            minCol = clamp(minCol, columns);
+            maxCol = clamp(maxCol, columns);
+            minRow = clamp(minRow, rows);
+            maxRow = clamp(maxRow, rows);
+        }
+        for (int row = minRow; row <= maxRow; row++) {
+            int rowOffset = Math.floorMod(row, rows) * columns;
+            for (int col = minCol; col <= maxCol; col++) {
+                found.addAll(cells[rowOffset + Math.floorMod(col, columns)]);
+            }
+        }
+        found.sort(Comparator.comparingLong(e -> e.sequence));
+        List<OdorWorldEntity> ret = new ArrayList<>(found.size());
+        for (Entry entry : found) {
+            ret.add(entry.entity);
+        }
+        return ret;
+    }
+
+    /**
+     * Returns a value at least as large as the collision radius of every entity in the grid.
+     */
+    public synchronized double getMaxCollisionRadius() {
+        return maxCollisionRadius;
+    }
+
+    /**
+     * Recompute {@link #getMaxCollisionRadius()} exactly. Between calls it only grows, as entities are updated.
+     */
+    synchronized void recomputeMaxCollisionRadius() {
+        maxCollisionRadius = 0;
+        for (OdorWorldEntity entity : entries.keySet()) {
+            maxCollisionRadius = Math.max(maxCollisionRadius, entity.getCollisionBound().getCollisionRadius());
+        }
+    }
+
+    /**
+     * Put an entry in the cell containing its entity.
+     */
+    private void place(Entry entry) {
+        Point2D.Double center = entry.entity.getCollisionBound().getCenterLocation();
+        entry.cell = cellIndex(center.getX(), center.getY());
+        cells[entry.cell].add(entry);
+        maxCollisionRadius = Math.max(maxCollisionRadius, entry.entity.getCollisionBound().getCollisionRadius());
+    }
+
+    /**
+     * Index of the cell containing a point. Points outside the world are wrapped or clamped.
+     */
+    private int cellIndex(double x, double y) {
+        int col = (int) Math.floor(x / cellWidth);
+        int row = (int) Math.floor(y / cellHeight);
+        if (wrapAround) {
+            col = Math.floorMod(col, columns);
+            row = Math.floorMod(row, rows);
+        } else {
+            col = clamp(col, columns);
+            row = clamp(row, rows);
+        }
+        return row * columns + col;
+    }
+
+    private static int clamp(int index, int size) {
+        return Math.max(0, Math.min(size - 1, index));
+    }
+
+    /**
+     * An entity, its position in the entity list, and the cell it is in.
+     */
+    private static class Entry {
+
+        final OdorWorldEntity entity;
+
+        final long sequence;
+
+        int cell;
+
+        Entry(OdorWorldEntity entity, long sequence) {
+            this.entity = entity;
+            this.sequence = sequence;
+        }
+    }
+}
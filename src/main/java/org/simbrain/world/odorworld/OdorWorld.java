@@ -58,6 +58,21 @@ public class OdorWorld implements EditableObject {
      */
     private transient double maxVectorNorm;
 
+    /**
+     * Largest smell dispersion of any entity in the world, used to bound neighbor queries by smell sensors.
+     */
+    private transient double maxDispersion;
+
+    /**
+     * Largest smell vector dimension of any entity in the world, which is the length of smell sensor values.
+     */
+    private transient int smellDimension;
+
+    /**
+     * Grid used to find the entities near a point. Created when first needed and rebuilt when the world is resized.
+     */
+    private transient EntityGrid entityGrid;
+
     /**
      * Whether or not sprites wrap around or are halted at the borders
      */
@@ -116,6 +131,8 @@ public class OdorWorld implements EditableObject {
      * Update world.
      */
     public void update() {
+        getEntityGrid().recomputeMaxCollisionRadius();
+        recomputeSmellBounds();
         for (OdorWorldEntity entity : entityList) {
             entity.updateSmellSource();
             entity.update();
@@ -151,11 +168,15 @@ public class OdorWorld implements EditableObject {
         entityList.add(entity);
 
         entity.setParentWorld(this);
+        if (entityGrid != null) {
+            entityGrid.add(entity);
+        }
 
         events.fireEntityAdded(entity);
 
         // Recompute max stimulus length
         recomputeMaxVectorNorm();
+        recomputeSmellBounds();
     }
 
     /**
@@ -317,6 +338,9 @@ public class OdorWorld implements EditableObject {
         // map.removeSprite(entity);
         if (entityList.contains(entity)) {
             entityList.remove(entity);
+            if (entityGrid != null) {
+                entityGrid.remove(entity);
+            }
             entity.delete();
             for (Sensor sensor : entity.getSensors()) {
                 //fireSensorRemoved(sensor);
@@ -325,6 +349,7 @@ public class OdorWorld implements EditableObject {
                 //fireEffectorRemoved(effector);
             }
             recomputeMaxVectorNorm();
+            recomputeSmellBounds();
             events.fireEntityRemoved(entity);
         }
 
@@ -350,6 +375,50 @@ public class OdorWorld implements EditableObject {
                 .orElse(0.0);
     }
 
+    /**
+     * Caches the largest smell dispersion, beyond which no entity can be smelled, and the largest smell dimension.
+     * Called on each update, and when entities or smell sources are added or removed.
+     */
+    public void recomputeSmellBounds() {
+        maxDispersion = entityList.stream()
+                .filter(e -> e.getSmellSource() != null)
+                .mapToDouble(e -> e.getSmellSource().getDispersion())
+                .max()
+                .orElse(0.0);
+        smellDimension = entityList.stream()
+                .filter(e -> e.getSmellSource() != null)
+                .mapToInt(e -> e.getSmellSource().getStimulusDimension())
+                .max()
+                .orElse(0);
+    }
+
+    /**
+     * Returns the grid used to find entities near a point, building it if the world has none or has been resized since
+     * it was built.
+     *
+     * @return the entity grid
+     */
+    public EntityGrid getEntityGrid() {
+        EntityGrid grid = entityGrid;
+        if (grid == null || grid.isStale(this)) {
+            grid = new EntityGrid(this);
+            entityGrid = grid;
+        }
+        return grid;
+    }
+
+    /**
+     * Called when an entity's collision bound changes, to keep the entity grid current.
+     *
+     * @param entity the entity that moved
+     */
+    public void entityMoved(OdorWorldEntity entity) {
+        EntityGrid grid = entityGrid;
+        if (grid != null) {
+            grid.update(entity);
+        }
+    }
+
     /**
      * Standard method call made to objects after they are deserialized. See:
      * http://java.sun.com/developer/JDCTechTips/2002/tt0205.html#tip2
@@ -368,6 +437,7 @@ public class OdorWorld implements EditableObject {
             entity.postSerializationInit();
         }
         recomputeMaxVectorNorm();
+        recomputeSmellBounds();
         return this;
     }
 
@@ -473,6 +543,20 @@ public class OdorWorld implements EditableObject {
         return maxVectorNorm;
     }
 
+    /**
+     * Returns the largest smell dispersion of the entities in the world, as of the last update.
+     */
+    public double getMaxDispersion() {
+        return maxDispersion;
+    }
+
+    /**
+     * Returns the largest smell vector dimension of the entities in the world, as of the last update.
+     */
+    public int getSmellDimension() {
+        return smellDimension;
+    }
+
     /**
      * Use the provided set of vectors (stored as a 2-d array of doubles, one
      * vector per row) to set the stimulus vectors on all odor world entities,
@@ -27,6 +27,7 @@ import org.simbrain.util.propertyeditor.EditableObject;
 import org.simbrain.workspace.AttributeContainer;
 import org.simbrain.workspace.Consumable;
 import org.simbrain.workspace.Producible;
+import org.simbrain.world.odorworld.EntityGrid;
 import org.simbrain.world.odorworld.OdorWorld;
 import org.simbrain.world.odorworld.RectangleCollisionBound;
 import org.simbrain.world.odorworld.effectors.Effector;
@@ -601,6 +602,9 @@ public class OdorWorldEntity implements EditableObject, AttributeContainer, Copy
         }
         collisionBound.setLocation(x, y);
         collisionBound.setSize(entityType.getImageWidth(), entityType.getImageHeight()); // TODO: optimize
+        if (parentWorld != null) {
+            parentWorld.entityMoved(this);
+        }
     }
 
     /**
@@ -636,6 +640,9 @@ public class OdorWorldEntity implements EditableObject, AttributeContainer, Copy
 
     public void setSmellSource(final SmellSource smellSource) {
         this.smellSource = smellSource;
+        if (parentWorld != null) {
+            parentWorld.recomputeSmellBounds();
+        }
     }
 
     public OdorWorld getParentWorld() {
@@ -1216,7 +1223,10 @@ public class OdorWorldEntity implements EditableObject, AttributeContainer, Copy
      * @return a list of entities in the collision bound.
      */
     public List<OdorWorldEntity> getEntitiesInCollisionRadius() {
-        return parentWorld.getEntityList().stream()
+        EntityGrid grid = parentWorld.getEntityGrid();
+        Point2D.Double center = collisionBound.getCenterLocation();
+        double radius = collisionBound.getCollisionRadius() + grid.getMaxCollisionRadius();
+        return grid.getCandidates(center.getX(), center.getY(), radius).stream()
             .filter(i -> collisionBound.isInCollisionRadius(i.collisionBound))
             .collect(Collectors.toList());
     }
@@ -1228,7 +1238,7 @@ public class OdorWorldEntity implements EditableObject, AttributeContainer, Copy
      * @return a list of entities in the given radius
      */
     public List<OdorWorldEntity> getEntitiesInRadius(double radius) {
-        return parentWorld.getEntityList().stream()
+        return parentWorld.getEntityGrid().getCandidates(getCenterX(), getCenterY(), radius).stream()
             .filter(i -> isInRadius(i, radius))
             .collect(Collectors.toList());
     }
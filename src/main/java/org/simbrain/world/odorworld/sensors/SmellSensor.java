@@ -20,8 +20,11 @@ package org.simbrain.world.odorworld.sensors;
 
 import org.simbrain.util.math.SimbrainMath;
 import org.simbrain.workspace.Producible;
+import org.simbrain.world.odorworld.OdorWorld;
 import org.simbrain.world.odorworld.entities.OdorWorldEntity;
 
+import java.util.List;
+
 /**
  * A sensor which is updated based on the presence of SmellSources near it.
  *
@@ -93,13 +96,19 @@ public class SmellSensor extends Sensor implements VisualizableEntityAttribute {
     @Override
     public void update() {
 
-        // Start with an empty array. It will grow in size as smell vectors are
-        // added.
-        currentValue = new double[0];
-        for (OdorWorldEntity entity : parent.getParentWorld().getEntityList()) {
+        // Start with zeros, so that the value has the same length whether or
+        // not anything is in range
+        OdorWorld world = parent.getParentWorld();
+        currentValue = new double[world.getSmellDimension()];
+        double[] location = getLocation();
+        // Entities further away than their dispersion add nothing, so only
+        // those within the largest dispersion need to be visited
+        List<OdorWorldEntity> candidates = world.getEntityGrid()
+                .getCandidates(location[0], location[1], world.getMaxDispersion());
+        for (OdorWorldEntity entity : candidates) {
             // Don't smell yourself
             if (entity != parent) {
-                double[] smell = entity.getSmellVector(getLocation());
+                double[] smell = entity.getSmellVector(location);
                 if (smell != null) {
                     currentValue = SimbrainMath.addVector(currentValue, smell);
                 }
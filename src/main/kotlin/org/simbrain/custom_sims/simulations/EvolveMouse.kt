@@ -17,7 +17,9 @@ import org.simbrain.util.point
 import org.simbrain.util.widgets.ProgressWindow
 import org.simbrain.workspace.Workspace
 import org.simbrain.world.odorworld.entities.EntityType
+import org.simbrain.world.odorworld.entities.OdorWorldEntity
 import kotlin.math.abs
+import kotlin.random.Random
 
 val evolveMouse = newSim {
 
@@ -46,13 +48,48 @@ val evolveMouse = newSim {
 
             val connections = chromosome<Synapse, ConnectionGene>()
 
-            val evolutionWorkspace = Workspace()
+            /**
+             * The world the mouse is evaluated in. Pooled, since workspaces are expensive to create.
+             */
+            class Environment {
 
-            val networkComponent = evolutionWorkspace { addNetworkComponent("Network") }
-            val network = networkComponent.network
+                val workspace = Workspace()
 
-            val odorworldComponent = evolutionWorkspace { addOdorWorldComponent("Odor World") }
-            val odorworld = odorworldComponent.world
+                val network = workspace { addNetworkComponent("Network") }.network
+
+                val odorworld = workspace { addOdorWorldComponent("Odor World") }.world
+
+                val mouse = odorworld.addEntity(EntityType.MOUSE)
+
+                val cheeses = List(3) { odorworld.addEntity(EntityType.SWISS) }
+
+                /**
+                 * Random numbers of the agent currently being built, used to move cheeses.
+                 */
+                var random: Random = Random(0)
+
+                fun placeCheese(cheese: OdorWorldEntity) = cheese.setCenterLocation(
+                    random.nextDouble(100.0, 300.0),
+                    random.nextDouble(0.0, 300.0)
+                )
+
+                init {
+                    cheeses.forEach { cheese -> cheese.onCollide { placeCheese(cheese) } }
+                    reset()
+                }
+
+                fun reset() {
+                    workspace.couplingManager.removeCouplings(workspace.couplingManager.couplings.toList())
+                    workspace.resetTime()
+                    network.clearForBuild()
+                    mouse.clearSensors()
+                    mouse.clearEffectors()
+                    mouse.setCenterLocation(50.0, 200.0)
+                    mouse.heading = 0.0
+                }
+            }
+
+            val environment by pooled({ Environment() }) { reset() }
 
             val sensors = chromosome(3) {
                 objectSensorGene {
@@ -72,21 +109,11 @@ val evolveMouse = newSim {
                 turningGene { direction = 1.0 }
             )
 
-            val mouse = odorworld.addEntity(EntityType.MOUSE).apply {
-                setCenterLocation(50.0, 200.0)
-            }
-
-            fun createCheese() = odorworld.addEntity(EntityType.SWISS).apply {
-                setCenterLocation(
-                    random.nextDouble(100.0, 300.0),
-                    random.nextDouble(0.0, 300.0)
-                )
-            }
-
-            val cheeses = List(3) { createCheese() }
-
             onBuild { visible ->
-                network {
+                val env = environment
+                env.random = random
+                env.cheeses.forEach { env.placeCheese(it) }
+                env.network {
                     if (visible) {
                         +inputs.asGroup {
                             label = "Input"
@@ -104,12 +131,12 @@ val evolveMouse = newSim {
                     }
                     +connections
                 }
-                mouse {
+                env.mouse {
                     +sensors
                     +straightMovement
                     +turning
                 }
-                evolutionWorkspace {
+                env.workspace {
                     couplingManager.apply {
                         val (straightNeuron, leftNeuron, rightNeuron) = outputs.products
                         val (straightConsumer) = straightMovement.products
@@ -121,15 +148,6 @@ val evolveMouse = newSim {
                         rightNeuron couple right
                     }
                 }
-
-                cheeses.forEach { cheese ->
-                    cheese.onCollide {
-                        cheese.setCenterLocation(
-                            random.nextDouble(100.0, 300.0),
-                            random.nextDouble(0.0, 300.0)
-                        )
-                    }
-                }
             }
 
             onMutate {
@@ -169,7 +187,7 @@ val evolveMouse = newSim {
                 //     }
                 // }
 
-                evolutionWorkspace.apply {
+                environment.workspace.apply {
                     repeat(100) {
                         simpleIterate()
                         val energy = abs(outputs.products.activations.sum()) + 5
@@ -185,7 +203,7 @@ val evolveMouse = newSim {
             }
 
             onPeek {
-                workspace.openFromZipData(evolutionWorkspace.zipData)
+                workspace.openFromZipData(environment.workspace.zipData)
             }
 
         }
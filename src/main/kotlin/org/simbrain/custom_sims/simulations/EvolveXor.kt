@@ -5,7 +5,6 @@ import kotlinx.coroutines.MainScope
 import kotlinx.coroutines.launch
 import org.simbrain.custom_sims.addNetworkComponent
 import org.simbrain.custom_sims.newSim
-import org.simbrain.network.core.Network
 import org.simbrain.network.core.Synapse
 import org.simbrain.network.core.activations
 import org.simbrain.network.layouts.LineLayout
@@ -21,7 +20,7 @@ val evolveXor = newSim {
 
     val evolutionarySimulation = evolutionarySimulation {
 
-        val network = Network()
+        val network by pooledNetwork()
 
         val inputChromosome = chromosome(2) { index ->
             nodeGene {
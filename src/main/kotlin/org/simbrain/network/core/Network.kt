@@ -20,6 +20,8 @@ import org.simbrain.util.*
 import org.simbrain.util.SimbrainConstants.Polarity
 import org.simbrain.util.math.SimbrainMath
 import java.awt.geom.Point2D
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
 import java.util.concurrent.atomic.AtomicBoolean
 import kotlin.math.abs
 import kotlin.math.ceil
@@ -49,6 +51,20 @@ class Network {
          * An internal id giving networks unique numbers within the same simbrain session.
          */
         private var current_id = 0
+
+        /**
+         * Shared xstream used for binary snapshots. Creating and configuring an xstream is expensive, but once
+         * configured it can be used from several threads.
+         */
+        private val snapshotXStream by lazy {
+            Utils.getSimbrainBinaryXStream().apply { registerConverter(NetworkModelListConverter()) }
+        }
+
+        /**
+         * Recreate a network from a snapshot created by [toSnapshot].
+         */
+        @JvmStatic
+        fun fromSnapshot(snapshot: ByteArray) = snapshotXStream.fromXML(ByteArrayInputStream(snapshot)) as Network
     }
 
     /**
@@ -155,6 +171,19 @@ class Network {
      */
     var oneOffRun = false
 
+    /**
+     * Models whose [NetworkModel.updateInputs] is invoked by [bufferedUpdate], in update order. Precomputed so that
+     * no lists are built on each update; null when it must be rebuilt after models are added or removed.
+     */
+    @Transient
+    private var inputSchedule: Array<NetworkModel>? = null
+
+    /**
+     * Models whose [NetworkModel.update] is invoked by [bufferedUpdate], in update order.
+     */
+    @Transient
+    private var updateSchedule: Array<NetworkModel>? = null
+
     init {
         current_id++
     }
@@ -162,6 +191,9 @@ class Network {
     fun <T : NetworkModel> getModels(cls: Class<T>) = networkModels[cls]
     inline fun <reified T : NetworkModel> getModels() = getModels(T::class.java)
 
+    /**
+     * All models, in the deterministic order used for update. See [bufferedUpdate].
+     */
     val allModels get() = networkModels.all
     val allModelsInDeserializationOrder get() = networkModels.allInDeserializationOrder
 
@@ -213,11 +245,45 @@ class Network {
     }
 
     /**
-     * Default asynchronous update method called by [org.simbrain.network.update_actions.BufferedUpdate].
+     * Default asynchronous update method called by [org.simbrain.network.update_actions.BufferedUpdate]. First all
+     * models' inputs are updated, then all models are updated. Within each pass models are visited in the order given
+     * by [allModels]: by type (neurons, neuron groups, neuron collections, neuron arrays, weight matrices, synapse
+     * groups, subnetworks, synapses, then any other type by class name), and within a type in the order they were
+     * added.
      */
     fun bufferedUpdate() {
-        networkModels.all.forEach { it.updateInputs() }
-        networkModels.all.forEach { it.update() }
+        if (updateSchedule == null) {
+            rebuildUpdateSchedule()
+        }
+        for (model in inputSchedule!!) {
+            model.updateInputs()
+        }
+        for (model in updateSchedule!!) {
+            model.update()
+        }
+    }
+
+    /**
+     * Recompute the arrays used by [bufferedUpdate]. Models that do not override [NetworkModel.updateInputs] (e.g.
+     * loose synapses) are left out of the first pass.
+     */
+    private fun rebuildUpdateSchedule() {
+        val models = networkModels.allInDeserializationOrder
+        val hasInputs = HashMap<Class<*>, Boolean>()
+        inputSchedule = models.filter { model ->
+            hasInputs.getOrPut(model.javaClass) {
+                model.javaClass.getMethod("updateInputs").declaringClass != NetworkModel::class.java
+            }
+        }.toTypedArray()
+        updateSchedule = models.toTypedArray()
+    }
+
+    /**
+     * Mark the update schedule as out of date.
+     */
+    private fun invalidateUpdateSchedule() {
+        inputSchedule = null
+        updateSchedule = null
     }
 
     /**
@@ -315,6 +381,7 @@ class Network {
         if (networkModel.shouldAdd()) {
             networkModel.id = idManager.getAndIncrementId(networkModel.javaClass)
             networkModels.add(networkModel)
+            invalidateUpdateSchedule()
             events.fireModelAdded(networkModel)
         }
     }
@@ -324,6 +391,7 @@ class Network {
      */
     fun delete(toDelete: NetworkModel) {
         networkModels.remove(toDelete)
+        invalidateUpdateSchedule()
         toDelete.delete()
         events.fireModelRemoved(toDelete)
     }
@@ -365,15 +433,30 @@ class Network {
     }
 
     /**
-     * Returns a copy of this network based on its xml rep.
+     * Returns a copy of this network based on its binary snapshot. All models are copied, including neuron groups,
+     * synapse groups, neuron arrays and weight matrices with their update and learning rules.
      *
      * @return the copied network.
      */
-    fun copy(): Network {
+    fun copy() = fromSnapshot(toSnapshot())
+
+    /**
+     * Returns a compact binary snapshot of this network, which can be turned back into a network with [fromSnapshot].
+     * The snapshot is written with the same object graph as the xml used to save networks but is much faster to write
+     * and read, and is meant for copies held in memory, e.g. by genetic algorithms and parameter sweeps. It is not a
+     * stable file format.
+     *
+     * @return the snapshot
+     */
+    fun toSnapshot(): ByteArray {
+        val out = ByteArrayOutputStream()
         preSaveInit()
-        val xmlRepresentation = Utils.getSimbrainXStream().toXML(this)
-        postSaveReInit()
-        return Utils.getSimbrainXStream().fromXML(xmlRepresentation) as Network
+        try {
+            snapshotXStream.toXML(this, out)
+        } finally {
+            postSaveReInit()
+        }
+        return out.toByteArray()
     }
 
     /**
@@ -385,6 +468,7 @@ class Network {
     private fun readResolve(): Any {
         events = NetworkEvents(this)
         updateCompleted = AtomicBoolean(false)
+        invalidateUpdateSchedule()
 
         // Initialize update manager
         updateManager.postUnmarshallingInit()
@@ -681,10 +765,11 @@ class Network {
         }
 
         val all: List<NetworkModel>
-            get() = networkModels.values.flatMap { it?.map { item -> item } ?: listOf() }
+            get() = allInDeserializationOrder
 
         /**
-         * Returns a list of network models in the order required for proper deserilization.
+         * Returns a list of network models in the order required for proper deserilization. Types not listed in
+         * [deserializationOrder] follow, sorted by class name, so the order does not depend on hashing.
          */
         val allInDeserializationOrder: List<NetworkModel>
             get() {
@@ -694,7 +779,7 @@ class Network {
                         networkModels[cls]?.let { yieldAll(it) }
                         keys.remove(cls)
                     }
-                    for (cls in keys) {
+                    for (cls in keys.sortedBy { it.name }) {
                         networkModels[cls]?.let { yieldAll(it) }
                     }
                 }.toList()
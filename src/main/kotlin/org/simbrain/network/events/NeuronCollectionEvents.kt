@@ -18,4 +18,18 @@ class NeuronCollectionEvents(val nc: AbstractNeuronCollection) : LocationEvents(
     fun onRecordingStopped(handler: Runnable) = "RecordingStopped".event(handler)
     fun fireRecordingStopped() = "RecordingStopped"()
 
+    /**
+     * Fired once per update by groups that set their neurons' activations in a batch, in place of an activation
+     * change event for each neuron.
+     */
+    fun onActivationsChanged(handler: Runnable) = "ActivationsChanged".event(handler)
+    fun fireActivationsChanged() = "ActivationsChanged"()
+
+    /**
+     * Fired after a neuron is removed from the collection, with the index it had. Neurons after it have moved down
+     * by one.
+     */
+    fun onNeuronRemoved(handler: Consumer<Int>) = "NeuronRemoved".itemRemovedEvent(handler)
+    fun fireNeuronRemoved(index: Int) = "NeuronRemoved"(old = index)
+
 }
\ No newline at end of file
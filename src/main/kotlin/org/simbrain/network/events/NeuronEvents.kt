@@ -13,10 +13,19 @@ import java.util.function.Consumer
 class NeuronEvents(val neuron: Neuron) : LocationEvents(neuron) {
 
     fun onActivationChange(handler: BiConsumer<Double, Double>) = "ActivationChange".itemChangedEvent(handler)
-    fun fireActivationChange(old: Double, new: Double) = "ActivationChange"(old = old, new = new)
+    fun fireActivationChange(old: Double, new: Double) {
+        // Fired on every update, so avoid boxing when there are no listeners
+        if ("ActivationChange".hasListeners()) {
+            "ActivationChange"(old = old, new = new)
+        }
+    }
 
     fun onSpiked(handler: BiConsumer<Boolean, Boolean>) = "Spiked".itemChangedEvent(handler)
-    fun fireSpiked(old: Boolean, new: Boolean) = "Spiked"(old = old, new = new)
+    fun fireSpiked(old: Boolean, new: Boolean) {
+        if (old != new && "Spiked".hasListeners()) {
+            "Spiked"(old = old, new = new)
+        }
+    }
 
     fun onColorChange(handler: Runnable) = "ColorChange".event(handler)
     fun fireColorChange() = "ColorChange"()
@@ -20,4 +20,10 @@ class SynapseEvents(val synapse: Synapse) : NetworkModelEvents(synapse) {
     fun fireLearningRuleUpdate(old: SynapseUpdateRule, new: SynapseUpdateRule)
             = "LearningRuleUpdate"(old = old, new = new)
 
+    fun onEnabledChange(handler: BiConsumer<Boolean, Boolean>) = "EnabledChange".itemChangedEvent(handler)
+    fun fireEnabledChange(old: Boolean, new: Boolean) = "EnabledChange"(old = old, new = new)
+
+    fun onDelayChange(handler: BiConsumer<Int, Int>) = "DelayChange".itemChangedEvent(handler)
+    fun fireDelayChange(old: Int, new: Int) = "DelayChange"(old = old, new = new)
+
 }
\ No newline at end of file
@@ -24,6 +24,9 @@ class TrainerEvents(val trainer: IterableTrainer) : Event(PropertyChangeSupport(
     fun onErrorUpdated(handler: Consumer<Double>) = "ErrorUpdated".itemAddedEvent(handler)
     fun fireErrorUpdated(error: Double) = "ErrorUpdated"(new =error)
 
+    fun onThroughputUpdated(handler: Consumer<Double>) = "ThroughputUpdated".itemAddedEvent(handler)
+    fun fireThroughputUpdated(rowsPerSecond: Double) = "ThroughputUpdated"(new = rowsPerSecond)
+
     fun onProgressUpdated(handler: Consumer<Pair<String, Int>>) = "ProgressUpdated".itemAddedEvent(handler)
     fun fireProgressUpdated(message:String, percent:Int) = "ProgressUpdated"(new = message to percent)
 
@@ -42,18 +42,30 @@ open class Event(private val changeSupport: PropertyChangeSupport) {
      * Overload "operator" with an argument. Used for "firing" events with an argument
      */
     protected operator fun <T> String.invoke(old: T? = null, new: T? = null) {
+        if (!hasListeners()) {
+            return
+        }
         changeSupport.firePropertyChange(this, old, new)
-        Logger.debug("${this}Event")
+        Logger.debug("{}Event", this)
     }
 
     /**
      * Overload operator with no argument. Used for "firing" events with no argument.
      */
     protected operator fun String.invoke() {
+        if (!hasListeners()) {
+            return
+        }
         changeSupport.firePropertyChange(this, null, null)
-        Logger.debug("${this}Event")
+        Logger.debug("{}Event", this)
     }
 
+    /**
+     * True if anything is listening to this event. Events fired at a high rate with primitive arguments should check
+     * this first, so that nothing is boxed or allocated when no one is listening.
+     */
+    protected fun String.hasListeners() = changeSupport.hasListeners(this)
+
     /**
      * No-argument event handler.
      */
@@ -2,9 +2,14 @@ package org.simbrain.util.geneticalgorithms
 
 import org.simbrain.util.propertyeditor.CopyableObject
 import java.util.*
+import java.util.concurrent.Callable
 import java.util.concurrent.CompletableFuture
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.ForkJoinPool
+import java.util.concurrent.atomic.AtomicLong
 import kotlin.random.Random
-import kotlin.streams.toList
+import kotlin.reflect.KProperty
 
 /**
  * Describes how to make a gene product, or "express a phenotype". Extend this class with your own gene type, and
@@ -26,10 +31,11 @@ abstract class Gene<P> : CopyableObject {
     abstract val product: CompletableFuture<P>
 
     /**
-     * Helper to make it easy to complete the build.
+     * Helper to make it easy to complete the build. An agent can be built more than once (e.g. survivors are built
+     * again in each generation), so the product is replaced by the latest build.
      */
     protected inline fun completeWith(block: () -> P): P {
-        return block().also { product.complete(it) }
+        return block().also { product.obtrudeValue(it) }
     }
 
 }
@@ -97,6 +103,56 @@ class Agent(
 
 }
 
+/**
+ * Shared by all copies of an [AgentBuilder]. Holds objects, like workspaces, that are not in use.
+ */
+class ResourcePool<T : Any>(private val create: () -> T, private val reset: T.() -> Unit) {
+
+    private val idle = ConcurrentLinkedQueue<T>()
+
+    /**
+     * Returns an idle object, reset, or a new one if none are idle.
+     */
+    fun take(): T = idle.poll()?.apply(reset) ?: create()
+
+    fun give(value: T) {
+        idle.add(value)
+    }
+
+    val idleCount get() = idle.size
+
+}
+
+/**
+ * An object that agents are built into and evaluated in, such as a network or a workspace, obtained from a
+ * [ResourcePool] shared by all copies of an [AgentBuilder]. Created with [AgentBuilder.pooled].
+ *
+ * An object is taken from the pool the first time an agent reads it and given back by the [Evaluator] once the agent
+ * has been evaluated, so there are only as many as there are agents being evaluated at once. Use it as a delegated
+ * property, and only read it in onBuild, onEval and onPeek:
+ *
+ * `val network by pooled({ Network() }) { clearForBuild() }`
+ */
+class Pooled<T : Any>(private val pool: ResourcePool<T>) {
+
+    private var value: T? = null
+
+    @Synchronized
+    fun get(): T = value ?: pool.take().also { value = it }
+
+    operator fun getValue(thisRef: Any?, property: KProperty<*>): T = get()
+
+    /**
+     * Give the object back to the pool.
+     */
+    @Synchronized
+    fun release() {
+        value?.let { pool.give(it) }
+        value = null
+    }
+
+}
+
 /**
  * Default context provided by the onBuild block for [TopLevelGene]s.  Allows code like
  * `+intChromosome`
@@ -130,7 +186,9 @@ class AgentBuilder private constructor(
     private val chromosomeList: LinkedList<Chromosome<*, *>>,
     private val block: AgentBuilder.() -> Unit,
     val seed: Int = Random.nextInt(),
-    val random: Random = Random(seed)
+    val random: Random = Random(seed),
+    private val pools: MutableList<ResourcePool<*>> = mutableListOf(),
+    lineage: List<LineageStep> = listOf()
 ) {
 
     /**
@@ -165,9 +223,56 @@ class AgentBuilder private constructor(
 
     private val chromosomeIterator = chromosomeList.iterator()
 
-    fun copy(): AgentBuilder {
-        val newSeed = random.nextInt()
-        return AgentBuilder(LinkedList(chromosomeList.map { it.copy() }), block, newSeed).apply(block)
+    /**
+     * Pooled objects used by this builder, in the order [pooled] was called.
+     */
+    private val pooledObjects = mutableListOf<Pooled<*>>()
+
+    /**
+     * The copies and mutations that led from the original builder to this one. Replaying them on a builder made from
+     * the same block gives the same chromosomes, as long as mutations only use [random]. See [WorkerFarm].
+     */
+    var lineage: List<LineageStep> = lineage
+        private set
+
+    fun copy(): AgentBuilder = copy(random.nextInt())
+
+    /**
+     * Copy this builder, giving the copy the provided seed.
+     */
+    fun copy(newSeed: Int): AgentBuilder {
+        return AgentBuilder(
+            LinkedList(chromosomeList.map { it.copy() }),
+            block,
+            newSeed,
+            pools = pools,
+            lineage = lineage + LineageStep.Copy(newSeed)
+        ).apply(block)
+    }
+
+    /**
+     * Use this for objects that are expensive to create, like workspaces. Rather than each copy of the builder
+     * creating its own, copies share a pool of them. See [Pooled].
+     *
+     * @param create makes a new object
+     * @param reset prepares an object taken from the pool to be built into again
+     */
+    fun <T : Any> pooled(create: () -> T, reset: T.() -> Unit = { }): Pooled<T> {
+        val index = pooledObjects.size
+        @Suppress("UNCHECKED_CAST")
+        val pool = if (index < pools.size) {
+            pools[index] as ResourcePool<T>
+        } else {
+            ResourcePool(create, reset).also { pools.add(it) }
+        }
+        return Pooled(pool).also { pooledObjects.add(it) }
+    }
+
+    /**
+     * Give pooled objects back to their pools. Called by the [Evaluator] after an agent is evaluated.
+     */
+    fun releasePooled() {
+        pooledObjects.forEach { it.release() }
     }
 
     /**
@@ -182,6 +287,35 @@ class AgentBuilder private constructor(
      */
     fun mutate() {
         mutationTasks.forEach { MutationContext.it() }
+        lastFitness = null
+        lineage = lineage + LineageStep.Mutation
+    }
+
+    /**
+     * Fitness from the most recent evaluation, or null if the builder has not been evaluated since it was created or
+     * last mutated.
+     */
+    var lastFitness: Double? = null
+        private set
+
+    /**
+     * Generation in which [lastFitness] was computed.
+     */
+    var lastEvaluatedGeneration = -1
+        private set
+
+    /**
+     * Seed of the random numbers provided to the most recently built agent's onEval.
+     */
+    var lastEvalSeed = 0
+        private set
+
+    /**
+     * Record the result of evaluating an agent built by this builder.
+     */
+    fun recordFitness(fitness: Double, generation: Int) {
+        lastFitness = fitness
+        lastEvaluatedGeneration = generation
     }
 
     /**
@@ -196,9 +330,13 @@ class AgentBuilder private constructor(
         builderBlock = block
     }
 
-    private fun createAgent(): Agent {
-        val newSeed = random.nextInt()
-        return Agent(EvaluationContext(Random(newSeed)), evalFunction, peekFunction)
+    /**
+     * Returns the seed for the next agent's onEval.
+     */
+    fun nextEvalSeed() = random.nextInt().also { lastEvalSeed = it }
+
+    private fun createAgent(evalSeed: Int = nextEvalSeed()): Agent {
+        return Agent(EvaluationContext(Random(evalSeed)), evalFunction, peekFunction)
     }
 
     /**
@@ -209,6 +347,14 @@ class AgentBuilder private constructor(
         return createAgent()
     }
 
+    /**
+     * [build] with a given seed for onEval.
+     */
+    fun build(evalSeed: Int): Agent {
+        TopLevelBuilderContext().builderBlock(false)
+        return createAgent(evalSeed)
+    }
+
     /**
      * [build] for the case where the agent should be visible in the desktop/
      */
@@ -267,6 +413,23 @@ class AgentBuilder private constructor(
 
 }
 
+/**
+ * A step in the [AgentBuilder.lineage] of a builder.
+ */
+sealed class LineageStep {
+
+    /**
+     * The builder was copied, and the copy given this seed.
+     */
+    data class Copy(val seed: Int) : LineageStep()
+
+    /**
+     * The builder was mutated.
+     */
+    object Mutation : LineageStep()
+
+}
+
 /**
  * Holds an environment builder and fitness value. Used to hold results at each generation.
  */
@@ -310,6 +473,30 @@ class Evaluator(agentBuilder: AgentBuilder) {
         MINIMIZE_FITNESS
     }
 
+    /**
+     * How many agents are evaluated at once. Each agent being evaluated needs its own environment, so this also
+     * bounds how many environments are in memory.
+     */
+    var parallelism: Int = Runtime.getRuntime().availableProcessors()
+
+    /**
+     * If true, survivors that have not been mutated keep the fitness they were given when last evaluated, rather than
+     * being built and evaluated again. Only use this when onEval is deterministic, or see [reevaluateEvery].
+     */
+    var memoizeFitness: Boolean = false
+
+    /**
+     * When fitness is memoized, re-evaluate survivors whose fitness is this many generations old. Useful for noisy
+     * fitness functions, so that an agent that got lucky once does not stay on top. 0 means never re-evaluate.
+     */
+    var reevaluateEvery: Int = 0
+
+    /**
+     * If set, agents are evaluated in the worker processes of this farm rather than in this JVM, and [parallelism]
+     * is ignored. The farm must be made from the same simulation as the builder passed to the evaluator.
+     */
+    var workerFarm: WorkerFarm? = null
+
     /**
      * The initial, immutable list of agents.
      */
@@ -336,6 +523,24 @@ class Evaluator(agentBuilder: AgentBuilder) {
      */
     class RunUntilContext(val generation: Int, val fitness: Double)
 
+    /**
+     * Timing of one generation. Build and evaluation times are summed over agents, so when agents are evaluated in
+     * parallel they can add up to more than the wall time.
+     */
+    data class GenerationStats(
+        val generation: Int,
+        val agents: Int,
+        val wallNanos: Long,
+        val buildNanos: Long,
+        val evalNanos: Long,
+        val memoized: Int = 0
+    ) {
+        val agentsPerSecond get() = agents / (wallNanos / 1e9)
+
+        override fun toString() = "Generation $generation: ${"%.1f".format(agentsPerSecond)} agents/s, " +
+                "build ${buildNanos / 1_000_000} ms, eval ${evalNanos / 1_000_000} ms, $memoized memoized"
+    }
+
     /**
      * Packages the result of a run of [Evaluator].
      */
@@ -343,17 +548,85 @@ class Evaluator(agentBuilder: AgentBuilder) {
 
         private var generation = 0
 
+        /**
+         * Timing of the most recent generation.
+         */
+        var lastStats: GenerationStats? = null
+            private set
+
+        /**
+         * Returns true if the fitness of an agent has to be computed in this generation.
+         */
+        private fun needsEvaluation(builder: AgentBuilder): Boolean {
+            if (!memoizeFitness || builder.lastFitness == null) {
+                return true
+            }
+            return reevaluateEvery > 0 && generation - builder.lastEvaluatedGeneration >= reevaluateEvery
+        }
+
+        /**
+         * Build and evaluate each agent whose fitness is not memoized.
+         */
+        private fun evaluate(population: List<AgentBuilder>): List<BuilderFitnessPair> {
+            val toEvaluate = population.filter { needsEvaluation(it) }
+            val buildNanos = AtomicLong()
+            val evalNanos = AtomicLong()
+            val start = System.nanoTime()
+            val farm = workerFarm
+            if (farm != null) {
+                val fitnesses = farm.evaluate(toEvaluate)
+                toEvaluate.forEachIndexed { i, builder -> builder.recordFitness(fitnesses[i], generation) }
+                evalNanos.set(System.nanoTime() - start)
+            } else {
+                evaluateLocally(toEvaluate, buildNanos, evalNanos)
+            }
+            lastStats = GenerationStats(
+                generation,
+                toEvaluate.size,
+                System.nanoTime() - start,
+                buildNanos.get(),
+                evalNanos.get(),
+                population.size - toEvaluate.size
+            )
+            return population.map { BuilderFitnessPair(it, it.lastFitness!!) }
+        }
+
+        /**
+         * Build and evaluate agents in this JVM, at most [parallelism] at a time.
+         */
+        private fun evaluateLocally(toEvaluate: List<AgentBuilder>, buildNanos: AtomicLong, evalNanos: AtomicLong) {
+            val pool = ForkJoinPool(parallelism)
+            try {
+                // A parallel stream started from a task runs in that task's pool
+                pool.submit(Callable {
+                    toEvaluate.parallelStream().forEach {
+                        try {
+                            val buildStart = System.nanoTime()
+                            val build = it.build()
+                            val evalStart = System.nanoTime()
+                            val score = build.eval()
+                            evalNanos.addAndGet(System.nanoTime() - evalStart)
+                            buildNanos.addAndGet(evalStart - buildStart)
+                            it.recordFitness(score, generation)
+                        } finally {
+                            it.releasePooled()
+                        }
+                    }
+                }).get()
+            } catch (e: ExecutionException) {
+                throw e.cause ?: e
+            } finally {
+                pool.shutdown()
+            }
+        }
+
         /**
          * Begins yielding values when evolution.start() is called.
          */
         private var generations = sequence {
             var population = initialPopulation
             do {
-                val builderFitnessPairs = population.parallelStream().map {
-                    val build = it.build()
-                    val score = build.eval()
-                    BuilderFitnessPair(it, score)
-                }.toList()
+                val builderFitnessPairs = evaluate(population)
                     .sortedBy { if (optimizationMethod == OptimizationMethod.MAXIMIZE_FITNESS) -it.fitness else it.fitness }
 
                 val currentFitness = builderFitnessPairs[0].fitness
@@ -395,6 +668,14 @@ class Evaluator(agentBuilder: AgentBuilder) {
                 generations = generations.onEachIndexed { index, list -> block(list, index) }
             }
 
+        /**
+         * Run the provided block with the timing of each generation.
+         */
+        fun onEachGenerationStats(block: (stats: GenerationStats) -> Unit): Result = this
+            .apply {
+                generations = generations.onEach { lastStats?.let(block) }
+            }
+
         /**
          * Like [onEachGeneration] but context only provides the (builder for) the fittest agent at each generation.
          */
@@ -40,7 +40,7 @@ class IntGene(private val template: IntWrapper) : Gene<Int>(), TopLevelGene<Int>
     }
 
     override fun TopLevelBuilderContext.build(): Int {
-        template.copy().also { product.complete(it.value) }
+        template.copy().also { product.obtrudeValue(it.value) }
         return product.get()
     }
 
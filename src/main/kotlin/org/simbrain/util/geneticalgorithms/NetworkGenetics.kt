@@ -94,7 +94,7 @@ class ConnectionGene(private val template: Synapse, val source: NodeGene, val ta
         return Synapse(context.network, source.product.get(), target.product.get(), template.learningRule, template)
             .also {
             context.network.addNetworkModel(it)
-            product.complete(it)
+            product.obtrudeValue(it)
         }
     }
 
@@ -146,6 +146,19 @@ class LayoutGene(private val template: LayoutWrapper) : Gene<Layout>(), TopLevel
 
 }
 
+/**
+ * A [Network] shared through a pool by copies of an agent. See [AgentBuilder.pooled].
+ */
+fun AgentBuilder.pooledNetwork() = pooled({ Network() }) { clearForBuild() }
+
+/**
+ * Remove all models from a network and reset its time, so an agent can be built into it again.
+ */
+fun Network.clearForBuild() {
+    allModels.toList().forEach { delete(it) }
+    resetTime()
+}
+
 operator fun Network.invoke(block: NetworkGeneticsContext.() -> Unit) {
     NetworkGeneticsContext(this).apply(block)
 }
@@ -46,7 +46,7 @@ class SmellSensorGene(private val template: SmellSensor):
     }
 
     override fun build(odorWorldEntity: OdorWorldEntity): SmellSensor {
-        return SmellSensor(template).apply { parent = odorWorldEntity }.also { product.complete(it) }
+        return SmellSensor(template).apply { parent = odorWorldEntity }.also { product.obtrudeValue(it) }
     }
 
 }
@@ -62,7 +62,7 @@ class ObjectSensorGene(private val template: ObjectSensor):
     }
 
     override fun build(odorWorldEntity: OdorWorldEntity): ObjectSensor {
-        return ObjectSensor(template).apply { parent = odorWorldEntity }.also { product.complete(it) }
+        return ObjectSensor(template).apply { parent = odorWorldEntity }.also { product.obtrudeValue(it) }
     }
 
 }
@@ -78,7 +78,7 @@ class StraightMovementGene(private val template: StraightMovement):
     }
 
     override fun build(odorWorldEntity: OdorWorldEntity): StraightMovement {
-        return StraightMovement(template).apply { parent = odorWorldEntity }.also { product.complete(it) }
+        return StraightMovement(template).apply { parent = odorWorldEntity }.also { product.obtrudeValue(it) }
     }
 
 }
@@ -94,7 +94,7 @@ class TurningGene(private val template: Turning):
     }
 
     override fun build(odorWorldEntity: OdorWorldEntity): Turning {
-        return Turning(template).apply { parent = odorWorldEntity }.also { product.complete(it) }
+        return Turning(template).apply { parent = odorWorldEntity }.also { product.obtrudeValue(it) }
     }
 
 }
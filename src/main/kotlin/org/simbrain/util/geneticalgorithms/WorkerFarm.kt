@@ -0,0 +1,318 @@
+package org.simbrain.util.geneticalgorithms
+
+import java.io.*
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicReference
+import kotlin.concurrent.thread
+
+/**
+ * Creates the original [AgentBuilder] of an evolutionary simulation, e.g. by calling [evolutionarySimulation]. Worker
+ * processes of a [WorkerFarm] load the factory by name, so it must be a class with a no-argument constructor or a
+ * Kotlin object.
+ */
+interface AgentBuilderFactory {
+
+    fun create(): AgentBuilder
+
+}
+
+/**
+ * Evaluates agents in separate worker JVMs on this machine, so that evaluation is not limited by the cores, heap and
+ * shared state of one JVM. Set it as [Evaluator.workerFarm].
+ *
+ * Chromosomes are not sent to the workers. Instead each worker makes the original builder from the factory and
+ * replays the [AgentBuilder.lineage] of each agent it is asked to evaluate, so mutations must only draw from the
+ * builder's random. Workers keep recently replayed builders, so usually only the last copy and mutation are replayed.
+ *
+ * Lineages are never shortened: each generation adds a copy and a mutation, so after g generations a request holds 2g
+ * steps. When the parent of an agent is not in the worker's cache, e.g. because the worker was restarted or the agent
+ * went to a different worker than its parent, the whole lineage is replayed from the original builder, which costs g
+ * copies and g mutations. This is cheap next to an evaluation for the simulations this is meant for, but for very
+ * long runs with cheap evaluations it may be better to evaluate in this JVM.
+ *
+ * Workers talk to the farm over their standard input and output; anything the simulation prints goes to standard
+ * error. A worker that crashes, or takes longer than the timeout to evaluate an agent, is killed and restarted and
+ * its agent evaluated again.
+ *
+ * @param factoryClass the simulation
+ * @param numWorkers number of worker processes
+ * @param jvmArgs extra arguments for the worker JVMs, e.g. "-Xmx1g"
+ * @param maxRestarts how many times a worker may be restarted during one call to [evaluate]
+ * @param evaluationTimeout milliseconds a worker may take to evaluate one agent, or 0 to wait forever
+ */
+class WorkerFarm(
+    private val factoryClass: Class<out AgentBuilderFactory>,
+    val numWorkers: Int = Runtime.getRuntime().availableProcessors(),
+    private val jvmArgs: List<String> = listOf(),
+    private val maxRestarts: Int = 3,
+    private val evaluationTimeout: Long = 0
+) : Closeable {
+
+    private val workers = List(numWorkers) { WorkerProcess(it) }
+
+    /**
+     * Kills workers that take too long.
+     */
+    private val watchdog = Executors.newSingleThreadScheduledExecutor { task ->
+        Thread(task, "Evaluation watchdog").apply { isDaemon = true }
+    }
+
+    private val restartCount = AtomicInteger()
+
+    /**
+     * Number of times workers have been restarted after crashing or timing out.
+     */
+    val restarts get() = restartCount.get()
+
+    /**
+     * Evaluate agents in the workers.
+     *
+     * @return the fitness of each agent, in order
+     */
+    fun evaluate(builders: List<AgentBuilder>): DoubleArray {
+        val fitnesses = DoubleArray(builders.size)
+        val requests = builders.map { it.lineage to it.nextEvalSeed() }
+        val queue = ConcurrentLinkedQueue(requests.indices.toList())
+        val failure = AtomicReference<Throwable>()
+        workers.map { worker ->
+            thread(name = "Evaluation worker ${worker.index}") {
+                try {
+                    while (failure.get() == null) {
+                        val i = queue.poll() ?: break
+                        val (lineage, evalSeed) = requests[i]
+                        fitnesses[i] = worker.evaluate(lineage, evalSeed)
+                    }
+                } catch (e: Throwable) {
+                    failure.compareAndSet(null, e)
+                }
+            }
+        }.forEach { it.join() }
+        failure.get()?.let { throw it }
+        return fitnesses
+    }
+
+    /**
+     * Stop all workers.
+     */
+    override fun close() {
+        watchdog.shutdownNow()
+        workers.forEach { it.stop() }
+    }
+
+    /**
+     * One worker JVM. Only used by one thread at a time.
+     */
+    private inner class WorkerProcess(val index: Int) {
+
+        private var process: Process? = null
+
+        private lateinit var input: DataInputStream
+
+        private lateinit var output: DataOutputStream
+
+        @Volatile
+        private var timedOut = false
+
+        private fun start() {
+            val java = File(System.getProperty("java.home"), "bin/java").path
+            val command = listOf(java) + jvmArgs + listOf(
+                "-cp", System.getProperty("java.class.path"),
+                EvaluationWorker::class.java.name,
+                factoryClass.name
+            )
+            process = ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start().also {
+                input = DataInputStream(BufferedInputStream(it.inputStream))
+                output = DataOutputStream(BufferedOutputStream(it.outputStream))
+            }
+        }
+
+        fun evaluate(lineage: List<LineageStep>, evalSeed: Int): Double {
+            var attempts = 0
+            while (true) {
+                try {
+                    if (process == null) {
+                        start()
+                    }
+                    val timeout = if (evaluationTimeout > 0) {
+                        val hung = process!!
+                        timedOut = false
+                        // Killing the process makes the blocked read fail, so the worker is restarted below
+                        watchdog.schedule({
+                            timedOut = true
+                            hung.destroyForcibly()
+                        }, evaluationTimeout, TimeUnit.MILLISECONDS)
+                    } else {
+                        null
+                    }
+                    try {
+                        writeRequest(output, lineage, evalSeed)
+                        output.flush()
+                        return readResponse(input)
+                    } finally {
+                        timeout?.cancel(false)
+                    }
+                } catch (e: IOException) {
+                    stop()
+                    if (++attempts > maxRestarts) {
+                        val reason = if (timedOut) "timed out" else "failed"
+                        throw IllegalStateException("Evaluation worker $index $reason $attempts times", e)
+                    }
+                    restartCount.incrementAndGet()
+                }
+            }
+        }
+
+        fun stop() {
+            process?.let {
+                try {
+                    output.close()
+                } catch (e: IOException) {
+                    // The worker has already gone
+                }
+                it.destroy()
+            }
+            process = null
+        }
+    }
+
+}
+
+private const val STATUS_OK: Byte = 0
+
+private const val STATUS_ERROR: Byte = 1
+
+private const val STEP_COPY: Byte = 0
+
+private const val STEP_MUTATION: Byte = 1
+
+private fun writeRequest(out: DataOutputStream, lineage: List<LineageStep>, evalSeed: Int) {
+    out.writeInt(evalSeed)
+    out.writeInt(lineage.size)
+    lineage.forEach {
+        when (it) {
+            is LineageStep.Copy -> {
+                out.writeByte(STEP_COPY.toInt())
+                out.writeInt(it.seed)
+            }
+            LineageStep.Mutation -> out.writeByte(STEP_MUTATION.toInt())
+        }
+    }
+}
+
+private fun readLineage(input: DataInputStream): List<LineageStep> = List(input.readInt()) {
+    when (val step = input.readByte()) {
+        STEP_COPY -> LineageStep.Copy(input.readInt())
+        STEP_MUTATION -> LineageStep.Mutation
+        else -> throw IOException("Unknown lineage step $step")
+    }
+}
+
+/**
+ * Returns the fitness sent by a worker.
+ *
+ * @throws IllegalStateException if evaluating the agent threw an exception in the worker
+ */
+private fun readResponse(input: DataInputStream): Double {
+    return when (input.readByte()) {
+        STATUS_OK -> input.readDouble()
+        STATUS_ERROR -> throw IllegalStateException("Evaluation failed in worker: ${input.readUTF()}")
+        else -> throw IOException("Unexpected response from worker")
+    }
+}
+
+/**
+ * Main class of the worker processes started by [WorkerFarm]. Reads requests from standard input until it is closed.
+ */
+object EvaluationWorker {
+
+    /**
+     * Number of replayed builders kept, so that the parents of new agents need not be replayed again.
+     */
+    private const val CACHE_SIZE = 256
+
+    @JvmStatic
+    fun main(args: Array<String>) {
+        val input = DataInputStream(BufferedInputStream(FileInputStream(FileDescriptor.`in`)))
+        val output = DataOutputStream(BufferedOutputStream(FileOutputStream(FileDescriptor.out)))
+        // Keep whatever the simulation prints out of the way of responses
+        System.setOut(System.err)
+
+        val root = loadFactory(args[0]).create()
+        val cache = object : LinkedHashMap<List<LineageStep>, AgentBuilder>(CACHE_SIZE, 0.75f, true) {
+            override fun removeEldestEntry(eldest: MutableMap.MutableEntry<List<LineageStep>, AgentBuilder>) =
+                size > CACHE_SIZE
+        }
+
+        while (true) {
+            val evalSeed = try {
+                input.readInt()
+            } catch (e: EOFException) {
+                break
+            }
+            val lineage = readLineage(input)
+            try {
+                val builder = replay(root, lineage, cache)
+                val fitness = try {
+                    builder.build(evalSeed).eval()
+                } finally {
+                    builder.releasePooled()
+                }
+                output.writeByte(STATUS_OK.toInt())
+                output.writeDouble(fitness)
+            } catch (e: Exception) {
+                e.printStackTrace()
+                output.writeByte(STATUS_ERROR.toInt())
+                output.writeUTF(e.toString())
+            }
+            output.flush()
+        }
+    }
+
+    private fun loadFactory(className: String): AgentBuilderFactory {
+        val cls = Class.forName(className)
+        // Kotlin objects have a static INSTANCE field
+        val instance = cls.fields.firstOrNull { it.name == "INSTANCE" }?.get(null)
+            ?: cls.getDeclaredConstructor().newInstance()
+        return instance as AgentBuilderFactory
+    }
+
+    /**
+     * Make the builder with the given lineage, starting from the longest part of it that has been replayed before.
+     */
+    private fun replay(
+        root: AgentBuilder,
+        lineage: List<LineageStep>,
+        cache: MutableMap<List<LineageStep>, AgentBuilder>
+    ): AgentBuilder {
+        var start = lineage.size
+        var builder: AgentBuilder? = null
+        while (start > 0 && builder == null) {
+            // A cached builder may only be copied, not mutated
+            if (start == lineage.size || lineage[start] is LineageStep.Copy) {
+                builder = cache[lineage.subList(0, start)]
+            }
+            if (builder == null) {
+                start--
+            }
+        }
+        if (builder == null) {
+            builder = root
+            start = 0
+            // The root may only be copied too
+            if (lineage.firstOrNull() == LineageStep.Mutation) {
+                throw IllegalArgumentException("Agents must be copied from the original builder before mutation")
+            }
+        }
+        for (step in lineage.subList(start, lineage.size)) {
+            builder = when (step) {
+                is LineageStep.Copy -> builder!!.copy(step.seed)
+                LineageStep.Mutation -> builder!!.apply { mutate() }
+            }
+        }
+        return builder!!.also { cache[ArrayList(lineage)] = it }
+    }
+
+}
@@ -1,11 +1,22 @@
 package org.simbrain.workspace.couplings
 
+import org.pmw.tinylog.Logger
 import org.simbrain.workspace.*
+import java.lang.invoke.LambdaConversionException
+import java.lang.invoke.LambdaMetafactory
+import java.lang.invoke.MethodHandle
+import java.lang.invoke.MethodHandles
+import java.lang.invoke.MethodType
 import java.lang.reflect.Method
+import java.util.function.BiConsumer
+import java.util.function.Function
+import java.util.function.ObjDoubleConsumer
+import java.util.function.ToDoubleFunction
 
 /**
  * Cache method objects for each [AttributeContainer]. Reflection is still used to create Method objects but they are
- * cached here for quick access.
+ * cached here for quick access. Each method is also compiled once into a lambda (see [compile]) so that updating a
+ * coupling does not go through [Method.invoke].
  *
  * A utility class for [CouplingManager]. Provides optimized ways to access specific sets of producers and consumers.
  * These methods should not be called directly and this class should not be instantiated outside of CouplingManager.
@@ -86,7 +97,13 @@ class CouplingCache(val couplingManager: CouplingManager) {
         val customDescription = javaClass.findMethod(annotation.customDescriptionMethod)
         val arrayDescriptionMethod = javaClass.findMethod(annotation.arrayDescriptionMethod)
 
+        val getter = compile(method, Function::class.java, "apply", genericGetterType)
+        val doubleGetter = if (method.returnType == Double::class.javaPrimitiveType) {
+            compile(method, ToDoubleFunction::class.java, "applyAsDouble", doubleGetterType)
+        } else null
+
         fun (attributeContainer: AttributeContainer) = Producer.builder(attributeContainer, method)
+                .accessors(getter as Function<Any?, Any?>?, doubleGetter as ToDoubleFunction<Any?>?)
                 .description(annotation.description)
                 .customDescription(customDescription)
                 .arrayDescriptionMethod(arrayDescriptionMethod)
@@ -109,7 +126,13 @@ class CouplingCache(val couplingManager: CouplingManager) {
 
         val customDescription = javaClass.findMethod(annotation.customDescriptionMethod)
 
+        val setter = compile(method, BiConsumer::class.java, "accept", genericSetterType)
+        val doubleSetter = if (method.parameterTypes[0] == Double::class.javaPrimitiveType) {
+            compile(method, ObjDoubleConsumer::class.java, "accept", doubleSetterType)
+        } else null
+
         fun (attributeContainer: AttributeContainer) = Consumer.builder(attributeContainer, method)
+                .accessors(setter as BiConsumer<Any?, Any?>?, doubleSetter as ObjDoubleConsumer<Any?>?)
                 .description(annotation.description)
                 .customDescription(customDescription)
                 .build()
@@ -211,4 +234,89 @@ class CouplingCache(val couplingManager: CouplingManager) {
 
     private fun Class<AttributeContainer>.findMethod(name: String): Method? = methods.find { it.name == name }
 
+    companion object {
+
+        private val lookup = MethodHandles.lookup()
+
+        private val genericGetterType = MethodType.methodType(Any::class.java, Any::class.java)
+
+        private val doubleGetterType = MethodType.methodType(Double::class.javaPrimitiveType, Any::class.java)
+
+        private val genericSetterType =
+                MethodType.methodType(Void.TYPE, Any::class.java, Any::class.java)
+
+        private val doubleSetterType =
+                MethodType.methodType(Void.TYPE, Any::class.java, Double::class.javaPrimitiveType)
+
+        /**
+         * Compile a method into an instance of a functional interface, whose single abstract method is named [samName]
+         * and has the erased type [samType]. [LambdaMetafactory] is used so the resulting call can be inlined like a
+         * direct call. Returns null if the method cannot be compiled (e.g. because it is declared in a class that is
+         * not public, or loaded by a script class loader), in which case the attribute falls back on reflection.
+         */
+        private fun <T> compile(method: Method, samClass: Class<T>, samName: String, samType: MethodType): T? {
+            val types = method.parameterTypes + method.returnType + method.declaringClass
+            if (!types.all { it.isVisible() }) {
+                Logger.debug("Using reflection for {}, which is not visible to compiled accessors", method)
+                return null
+            }
+            return try {
+                val handle = lookup.unreflect(method)
+                LambdaMetafactory.metafactory(
+                        lookup,
+                        samName,
+                        MethodType.methodType(samClass),
+                        samType,
+                        handle,
+                        instantiatedType(handle, samType)
+                ).target.invoke() as T
+            } catch (e: ReflectiveOperationException) {
+                Logger.warn("Using reflection for {}: {}", method, e)
+                null
+            } catch (e: LambdaConversionException) {
+                Logger.warn("Using reflection for {}: {}", method, e)
+                null
+            }
+        }
+
+        /**
+         * The type of the method handle, with primitives boxed where the functional interface expects objects.
+         */
+        private fun instantiatedType(handle: MethodHandle, samType: MethodType): MethodType {
+            var type = handle.type()
+            for (i in 0 until type.parameterCount()) {
+                if (!samType.parameterType(i).isPrimitive) {
+                    type = type.changeParameterType(i, type.parameterType(i).wrap())
+                }
+            }
+            if (!samType.returnType().isPrimitive) {
+                type = type.changeReturnType(type.returnType().wrap())
+            }
+            return type
+        }
+
+        /**
+         * Whether a class can be resolved from the class loader that compiled lambdas are defined in.
+         */
+        private fun Class<*>.isVisible(): Boolean {
+            if (isPrimitive) {
+                return true
+            }
+            if (isArray) {
+                return componentType.isVisible()
+            }
+            return try {
+                Class.forName(name, false, CouplingCache::class.java.classLoader) == this
+            } catch (e: ClassNotFoundException) {
+                false
+            }
+        }
+
+        /**
+         * The wrapper class of a primitive type, or the type itself.
+         */
+        private fun Class<*>.wrap(): Class<*> = MethodType.methodType(this).wrap().returnType()
+
+    }
+
 }
\ No newline at end of file
@@ -44,6 +44,14 @@ class CouplingManager(val workspace: Workspace) {
 
     val methodVisibilities = HashMap<Method, Boolean>()
 
+    /**
+     * Incremented whenever couplings are added or removed, so that update schedules derived from the couplings (see
+     * [org.simbrain.workspace.updater.UpdateAllAction]) know when to rebuild.
+     */
+    @Volatile
+    var modificationCount = 0
+        private set
+
     /**
      * List of listeners to fire updates when couplings are changed.
      */
@@ -193,7 +201,9 @@ class CouplingManager(val workspace: Workspace) {
      * @return the newly creating coupling
      */
     fun createCoupling(producer: Producer?, consumer: Consumer?) = Coupling.create(producer, consumer).also {
-        _couplings.add(it)
+        if (_couplings.add(it)) {
+            modificationCount++
+        }
         attributeContainerCouplings.getOrPut(it.producer.baseObject) { LinkedHashSet() }.add(it)
         attributeContainerCouplings.getOrPut(it.consumer.baseObject) { LinkedHashSet() }.add(it)
         events.fireCouplingAdded(it)
@@ -308,7 +318,9 @@ class CouplingManager(val workspace: Workspace) {
     }
 
     private fun removeCouplingWithoutFiringEvent(coupling: Coupling) {
-        _couplings.remove(coupling)
+        if (_couplings.remove(coupling)) {
+            modificationCount++
+        }
         attributeContainerCouplings[coupling.producer.baseObject]?.let {
             it.remove(coupling)
             if (it.isEmpty()) {
@@ -325,6 +337,7 @@ class CouplingManager(val workspace: Workspace) {
 
     fun removeAttributeContainer(attributeContainer: AttributeContainer) {
         attributeContainerCouplings[attributeContainer]?.let {
+            modificationCount++
             it.forEach { coupling ->
                 _couplings.remove(coupling)
                 if (coupling.consumer.baseObject !== attributeContainer) {
@@ -0,0 +1,66 @@
+package org.simbrain.network.connections;
+
+import org.junit.jupiter.api.Test;
+import org.simbrain.network.core.Network;
+import org.simbrain.network.core.Neuron;
+import org.simbrain.network.util.SimnetUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NeuronGridTest {
+
+    private List<Neuron> randomNeurons(Network net, int n, Random random) {
+        List<Neuron> neurons = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            Neuron neuron = new Neuron(net);
+            neuron.setX(random.nextDouble() * 1000 - 500);
+            neuron.setY(random.nextDouble() * 1000 - 500);
+            neuron.setZ(random.nextDouble() * 200);
+            neurons.add(neuron);
+        }
+        return neurons;
+    }
+
+    @Test
+    public void candidatesContainNeuronsInRadius() {
+        Random random = new Random(7);
+        Network net = new Network();
+        List<Neuron> neurons = randomNeurons(net, 300, random);
+        for (double radius : new double[]{0, 25, 120, 5000}) {
+            NeuronGrid planar = new NeuronGrid(neurons, radius, false);
+            NeuronGrid spatial = new NeuronGrid(neurons, radius, true);
+            for (Neuron center : neurons.subList(0, 30)) {
+                assertEquals(SimnetUtils.getNeuronsInRadius(center, neurons, radius),
+                        SimnetUtils.getNeuronsInRadius(center, planar.getCandidates(center, radius), radius));
+
+                double radiusSq = radius * radius;
+                List<Neuron> expected = neurons.stream()
+                        .filter(n -> distSq(center, n) < radiusSq)
+                        .collect(Collectors.toList());
+                List<Neuron> actual = spatial.getCandidates(center, radius).stream()
+                        .filter(n -> distSq(center, n) < radiusSq)
+                        .collect(Collectors.toList());
+                assertEquals(expected, actual);
+            }
+        }
+    }
+
+    @Test
+    public void cutoffRadius() {
+        double cutoff = RadialGaussian.getCutoffRadius(200, 0.2, 0.4);
+        assertEquals(RadialGaussian.MIN_CONNECT_PROB, 0.4 * Math.exp(-(cutoff * cutoff) / (200 * 200)), 1E-15);
+        assertEquals(0, RadialGaussian.getCutoffRadius(200, 0, 0));
+    }
+
+    private static double distSq(Neuron a, Neuron b) {
+        double dx = a.getX() - b.getX();
+        double dy = a.getY() - b.getY();
+        double dz = a.getZ() - b.getZ();
+        return dx * dx + dy * dy + dz * dz;
+    }
+}
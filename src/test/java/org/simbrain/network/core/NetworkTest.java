@@ -2,11 +2,18 @@ package org.simbrain.network.core;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.simbrain.network.connections.AllToAll;
 import org.simbrain.network.groups.NeuronGroup;
+import org.simbrain.network.groups.SynapseGroup;
+import org.simbrain.network.matrix.NeuronArray;
+import org.simbrain.network.matrix.WeightMatrix;
+import org.simbrain.network.synapse_update_rules.HebbianRule;
+import org.simbrain.util.SimbrainConstants.Polarity;
 import org.simbrain.util.Utils;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertNotNull;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
 
 public class NetworkTest {
 
@@ -53,4 +60,48 @@ public class NetworkTest {
         assertNotNull(fromXml.getNeuronGroupByLabel("ng2") );
 
     }
-}
\ No newline at end of file
+
+    @Test
+    public void modelsInUpdateOrder() {
+        Neuron n3 = new Neuron(net);
+        net.addNetworkModel(n3);
+        assertEquals(List.of(n1, n2, n3, ng1, ng2), net.getAllModels());
+    }
+
+    @Test
+    public void updateAfterAddingModels() {
+        n1.setClamped(true);
+        n1.forceSetActivation(1);
+        net.update();
+        // Synapse added after the first update must still be used
+        net.addNetworkModel(new Synapse(n1, n2, 1));
+        net.update();
+        assertEquals(1, n2.getActivation(), 0.0);
+    }
+
+    @Test
+    public void testCopy() {
+        NeuronGroup source = new NeuronGroup(net, 3);
+        NeuronGroup target = new NeuronGroup(net, 2);
+        net.addNetworkModels(List.of(source, target));
+        SynapseGroup sg = SynapseGroup.createSynapseGroup(source, target, new AllToAll());
+        sg.setLearningRule(new HebbianRule(), Polarity.BOTH);
+        NeuronArray na = new NeuronArray(net, 3);
+        WeightMatrix wm = new WeightMatrix(net, source, na);
+        net.addNetworkModels(List.of(sg, na, wm));
+        n1.forceSetActivation(.3);
+
+        Network copy = net.copy();
+        assertNotSame(net, copy);
+        assertEquals(net.getAllModels().size(), copy.getAllModels().size());
+        assertEquals(.3, copy.getNeuronByLabel("neuron1").getActivation(), 0.0);
+        SynapseGroup sgCopy = copy.getModels(SynapseGroup.class).iterator().next();
+        assertEquals(sg.getAllSynapses().size(), sgCopy.getAllSynapses().size());
+        assertTrue(sgCopy.getAllSynapses().iterator().next().getLearningRule() instanceof HebbianRule);
+
+        // The copy is independent of the original
+        copy.getNeuronByLabel("neuron1").forceSetActivation(.9);
+        assertEquals(.3, n1.getActivation(), 0.0);
+        copy.update();
+    }
+}
@@ -0,0 +1,88 @@
+package org.simbrain.network.core;
+
+import org.junit.jupiter.api.Test;
+import org.simbrain.network.neuron_update_rules.IntegrateAndFireRule;
+import org.simbrain.network.neuron_update_rules.IzhikevichRule;
+import org.simbrain.network.neuron_update_rules.LinearRule;
+import org.simbrain.network.neuron_update_rules.ProductRule;
+import org.simbrain.network.neuron_update_rules.SigmoidalRule;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NeuronBatchTest {
+
+    /**
+     * Update one list of neurons one at a time and an identical list as a batch, and compare.
+     */
+    private static void compareWithSingleUpdates(NeuronUpdateRule rule) {
+        Network net = new Network();
+        List<Neuron> single = new ArrayList<>();
+        List<Neuron> batched = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Neuron a = new Neuron(net, rule);
+            Neuron b = new Neuron(net, rule);
+            a.forceSetActivation(rule.getRandomValue());
+            b.forceSetActivation(a.getActivation());
+            single.add(a);
+            batched.add(b);
+        }
+        single.get(3).setClamped(true);
+        batched.get(3).setClamped(true);
+
+        assertTrue(NeuronBatch.canBatchUpdate(batched));
+        NeuronBatch batch = new NeuronBatch();
+        for (int t = 0; t < 50; t++) {
+            for (int i = 0; i < single.size(); i++) {
+                double input = 5 * Math.sin(t + i);
+                single.get(i).addInputValue(input);
+                batched.get(i).addInputValue(input);
+                single.get(i).update();
+            }
+            batch.update(batched);
+            for (int i = 0; i < single.size(); i++) {
+                assertEquals(single.get(i).getActivation(), batched.get(i).getActivation(), 1e-12);
+                assertEquals(single.get(i).isSpike(), batched.get(i).isSpike());
+            }
+        }
+    }
+
+    @Test
+    public void linear() {
+        LinearRule rule = new LinearRule();
+        rule.setSlope(.7);
+        rule.setBias(.1);
+        compareWithSingleUpdates(rule);
+    }
+
+    @Test
+    public void sigmoidal() {
+        compareWithSingleUpdates(new SigmoidalRule());
+    }
+
+    @Test
+    public void izhikevich() {
+        compareWithSingleUpdates(new IzhikevichRule());
+    }
+
+    @Test
+    public void integrateAndFire() {
+        compareWithSingleUpdates(new IntegrateAndFireRule());
+    }
+
+    @Test
+    public void mixedRulesNotBatched() {
+        Network net = new Network();
+        List<Neuron> neurons = List.of(new Neuron(net, new LinearRule()), new Neuron(net, new IzhikevichRule()));
+        assertFalse(NeuronBatch.canBatchUpdate(neurons));
+    }
+
+    @Test
+    public void subclassesNotBatched() {
+        Network net = new Network();
+        List<Neuron> neurons = List.of(new Neuron(net, new ProductRule()), new Neuron(net, new ProductRule()));
+        assertFalse(NeuronBatch.canBatchUpdate(neurons));
+    }
+}
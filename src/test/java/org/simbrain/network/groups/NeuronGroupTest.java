@@ -5,6 +5,7 @@ import org.simbrain.network.core.Network;
 import org.simbrain.network.core.Neuron;
 import org.simbrain.network.matrix.WeightMatrix;
 import org.simbrain.network.neuron_update_rules.IntegrateAndFireRule;
+import org.simbrain.network.update_actions.CompiledUpdate;
 
 import java.util.List;
 
@@ -50,6 +51,11 @@ public class NeuronGroupTest {
 
     }
 
+    private void useCompiledUpdate() {
+        net.getUpdateManager().clear();
+        net.getUpdateManager().addAction(new CompiledUpdate(net));
+    }
+
     @Test
     void propagateLooseActivations() {
         ng.getNeuron(0).addInputValue(1.0);
@@ -70,4 +76,16 @@ public class NeuronGroupTest {
         net.update();
         assertArrayEquals(new double[]{1.0, -1.0}, ng2.getActivations());
     }
-}
\ No newline at end of file
+
+    @Test
+    void propagateLooseActivationsCompiled() {
+        useCompiledUpdate();
+        propagateLooseActivations();
+    }
+
+    @Test
+    void propagateGroupActivationCompiled() {
+        useCompiledUpdate();
+        propagateGroupActivation();
+    }
+}
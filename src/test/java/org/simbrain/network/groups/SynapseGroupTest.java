@@ -3,11 +3,27 @@ package org.simbrain.network.groups;
 import org.junit.jupiter.api.Test;
 import org.simbrain.network.connections.AllToAll;
 import org.simbrain.network.core.Network;
+import org.simbrain.network.core.Neuron;
+import org.simbrain.network.core.Synapse;
 import org.simbrain.network.neuron_update_rules.IntegrateAndFireRule;
+import org.simbrain.network.neuron_update_rules.SpikingThresholdRule;
+import org.simbrain.network.connections.Sparse;
+import org.simbrain.network.synapse_update_rules.HebbianRule;
+import org.simbrain.network.core.SynapseUpdateRule;
+import org.simbrain.network.synapse_update_rules.PfisterGerstner2006Rule;
+import org.simbrain.network.synapse_update_rules.STDPRule;
 import org.simbrain.network.synapse_update_rules.spikeresponders.NonResponder;
+import org.simbrain.network.update_actions.CompiledUpdate;
+import org.simbrain.network.util.io_utilities.GroupDeserializer;
+import org.simbrain.network.util.io_utilities.GroupSerializer.Precision;
+import org.simbrain.util.SimbrainConstants.Polarity;
+import org.simbrain.util.math.CompressedRowMatrix;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
 
 public class SynapseGroupTest {
 
@@ -44,4 +60,335 @@ public class SynapseGroupTest {
         
     }
 
-}
\ No newline at end of file
+    private static SynapseGroup getSparseGroup(Network net) {
+        NeuronGroup source = new NeuronGroup(net, 30);
+        NeuronGroup target = new NeuronGroup(net, 20);
+        SynapseGroup sg = SynapseGroup.createSynapseGroup(source, target, new Sparse(.3, false, false));
+        for (int i = 0; i < source.size(); i++) {
+            source.getNeuron(i).forceSetActivation(Math.sin(i));
+        }
+        return sg;
+    }
+
+    @Test
+    public void testCompressKeepsWeightsAndInputs() {
+        SynapseGroup sg = getSparseGroup(new Network());
+        int size = sg.size();
+        double[][] matrix = sg.getWeightMatrix();
+        double ratio = sg.getExcitatoryRatioPrecise();
+        double[] inputs = sg.getTargetNeurons().stream().mapToDouble(Neuron::getWeightedInputs).toArray();
+
+        sg.compress();
+        assertTrue(sg.isCompressed());
+        assertEquals(size, sg.size());
+        assertTrue(sg.getAllSynapses().isEmpty());
+        assertArrayEquals(matrix, sg.getWeightMatrix());
+        assertEquals(ratio, sg.getExcitatoryRatioPrecise(), 0);
+        for (Neuron n : sg.getTargetNeurons()) {
+            assertTrue(n.getFanIn().isEmpty());
+        }
+
+        sg.applyCompressedInputs();
+        for (int i = 0; i < inputs.length; i++) {
+            assertEquals(inputs[i], sg.getTargetNeurons().get(i).getInput(), 1e-12);
+        }
+
+        sg.expand();
+        assertFalse(sg.isCompressed());
+        assertEquals(size, sg.getAllSynapses().size());
+        assertArrayEquals(matrix, sg.getWeightMatrix());
+    }
+
+    /**
+     * Clamped input, hidden (with recurrent weights) and output layers with deterministic weights.
+     */
+    private static Network buildLayeredNetwork(boolean compress) {
+        Network net = new Network();
+        NeuronGroup input = new NeuronGroup(net, 5);
+        input.setLabel("input");
+        input.getNeuronList().forEach(n -> n.setClamped(true));
+        NeuronGroup hidden = new NeuronGroup(net, 4);
+        hidden.setLabel("hidden");
+        NeuronGroup output = new NeuronGroup(net, 3);
+        output.setLabel("output");
+        net.addNetworkModels(List.of(input, hidden, output));
+
+        SynapseGroup sg1 = SynapseGroup.createSynapseGroup(input, hidden, new AllToAll());
+        SynapseGroup sg2 = SynapseGroup.createSynapseGroup(hidden, output, new AllToAll());
+        SynapseGroup rec = SynapseGroup.createSynapseGroup(hidden, hidden, new AllToAll());
+        net.addNetworkModels(List.of(sg1, sg2, rec));
+        for (SynapseGroup sg : List.of(sg1, sg2, rec)) {
+            for (Synapse s : sg.getAllSynapses()) {
+                int i = sg.getSourceNeuronGroup().getNeuronList().indexOf(s.getSource());
+                int j = sg.getTargetNeuronGroup().getNeuronList().indexOf(s.getTarget());
+                s.forceSetStrength(Math.sin(7 * i + 3 * j));
+            }
+            if (compress) {
+                sg.compress();
+            }
+        }
+        return net;
+    }
+
+    private static void assertSameActivations(Network uncompressed, Network compressed) {
+        for (int t = 0; t < 20; t++) {
+            double[] in = new double[5];
+            for (int i = 0; i < in.length; i++) {
+                in[i] = Math.cos(t + i);
+            }
+            uncompressed.getNeuronGroupByLabel("input").forceSetActivations(in);
+            compressed.getNeuronGroupByLabel("input").forceSetActivations(in);
+            uncompressed.update();
+            compressed.update();
+            for (String label : List.of("input", "hidden", "output")) {
+                assertArrayEquals(uncompressed.getNeuronGroupByLabel(label).getActivations(),
+                        compressed.getNeuronGroupByLabel(label).getActivations(), 1e-12);
+            }
+        }
+    }
+
+    @Test
+    public void testCompressedNetworkMatchesUncompressed() {
+        assertSameActivations(buildLayeredNetwork(false), buildLayeredNetwork(true));
+    }
+
+    private static Network useCompiledUpdate(Network net) {
+        net.getUpdateManager().clear();
+        net.getUpdateManager().addAction(new CompiledUpdate(net));
+        return net;
+    }
+
+    @Test
+    public void testCompressedNetworkMatchesUncompressedCompiled() {
+        assertSameActivations(useCompiledUpdate(buildLayeredNetwork(false)),
+                useCompiledUpdate(buildLayeredNetwork(true)));
+    }
+
+    @Test
+    public void testCompiledMatchesBuffered() {
+        assertSameActivations(buildLayeredNetwork(false), useCompiledUpdate(buildLayeredNetwork(false)));
+    }
+
+    /**
+     * Delete a hidden neuron, which is a source and a target of compressed groups, and an output neuron.
+     */
+    private static void deleteNeurons(Network net) {
+        net.getNeuronGroupByLabel("hidden").getNeuron(1).delete();
+        net.getNeuronGroupByLabel("output").getNeuron(0).delete();
+    }
+
+    @Test
+    public void testDeleteNeuronsFromCompressedGroup() {
+        Network uncompressed = buildLayeredNetwork(false);
+        Network compressed = buildLayeredNetwork(true);
+        deleteNeurons(uncompressed);
+        deleteNeurons(compressed);
+
+        List<SynapseGroup> expected = new ArrayList<>(uncompressed.getModels(SynapseGroup.class));
+        List<SynapseGroup> actual = new ArrayList<>(compressed.getModels(SynapseGroup.class));
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertTrue(actual.get(i).isCompressed());
+            assertArrayEquals(expected.get(i).getWeightMatrix(), actual.get(i).getWeightMatrix());
+        }
+        assertSameActivations(uncompressed, compressed);
+    }
+
+    /**
+     * Deleting neurons after the network has been compiled should rebuild the compiled form.
+     */
+    @Test
+    public void testDeleteNeuronsCompiled() {
+        Network buffered = buildLayeredNetwork(false);
+        Network compiled = useCompiledUpdate(buildLayeredNetwork(false));
+        assertSameActivations(buffered, compiled);
+        deleteNeurons(buffered);
+        deleteNeurons(compiled);
+        assertSameActivations(buffered, compiled);
+    }
+
+    @Test
+    public void testPruneCompressed() {
+        SynapseGroup sg = getSparseGroup(new Network());
+        sg.compress();
+        int size = sg.size();
+        sg.setStrength(sg.getCompressedWeights().getColumns()[0], 0, 0);
+        sg.prune();
+        assertEquals(size - 1, sg.size());
+    }
+
+    /**
+     * Pfister-Gerstner rule applied on every time step, as a reference for the event driven update.
+     */
+    private static class EveryStepPfisterGerstner extends PfisterGerstner2006Rule {
+        @Override
+        public boolean isEventDriven() {
+            return false;
+        }
+    }
+
+    /**
+     * STDP applied on every time step, as a reference for the event driven update.
+     */
+    private static class EveryStepSTDP extends STDPRule {
+        @Override
+        public boolean isEventDriven() {
+            return false;
+        }
+
+        @Override
+        public SynapseUpdateRule deepCopy() {
+            return new EveryStepSTDP();
+        }
+    }
+
+    /**
+     * Spiking input and output groups, with feed-forward and recurrent synapse groups using the given rule.
+     */
+    private static Network buildSpikingNetwork(SynapseUpdateRule rule) {
+        Network net = new Network();
+        NeuronGroup input = new NeuronGroup(net, 10);
+        input.setLabel("input");
+        input.setNeuronType(new SpikingThresholdRule());
+        NeuronGroup output = new NeuronGroup(net, 8);
+        output.setLabel("output");
+        output.setNeuronType(new SpikingThresholdRule());
+        net.addNetworkModels(List.of(input, output));
+
+        rule.init(null);
+        SynapseGroup ff = SynapseGroup.createSynapseGroup(input, output, new AllToAll());
+        SynapseGroup rec = SynapseGroup.createSynapseGroup(output, output, new AllToAll());
+        net.addNetworkModels(List.of(ff, rec));
+        for (SynapseGroup sg : List.of(ff, rec)) {
+            for (Synapse s : sg.getAllSynapses()) {
+                int i = sg.getSourceNeuronGroup().getNeuronList().indexOf(s.getSource());
+                int j = sg.getTargetNeuronGroup().getNeuronList().indexOf(s.getTarget());
+                s.forceSetStrength(.2 * Math.sin(7 * i + 3 * j));
+            }
+            sg.setLearningRule(rule, Polarity.BOTH);
+        }
+        return net;
+    }
+
+    /**
+     * Updating event driven synapses through the neurons that spiked should give the same weights and activity as
+     * updating every synapse on every step.
+     */
+    @Test
+    public void testSpikeAdjacentUpdateMatchesEveryStep() {
+        Network eventDriven = buildSpikingNetwork(new PfisterGerstner2006Rule());
+        Network everyStep = buildSpikingNetwork(new EveryStepPfisterGerstner());
+        assertSameSpikes(everyStep, eventDriven);
+        assertSameWeights(everyStep, eventDriven);
+    }
+
+    @Test
+    public void testEventDrivenSTDPMatchesEveryStep() {
+        Network eventDriven = buildSpikingNetwork(new STDPRule());
+        Network everyStep = buildSpikingNetwork(new EveryStepSTDP());
+        assertSameSpikes(everyStep, eventDriven);
+        assertSameWeights(everyStep, eventDriven);
+    }
+
+    @Test
+    public void testSpikingCompiledMatchesBuffered() {
+        Network buffered = buildSpikingNetwork(new PfisterGerstner2006Rule());
+        Network compiled = useCompiledUpdate(buildSpikingNetwork(new PfisterGerstner2006Rule()));
+        assertSameSpikes(buffered, compiled);
+        assertSameWeights(buffered, compiled);
+    }
+
+    /**
+     * Drive the neurons of two spiking networks with the same random inputs and check they spike alike.
+     */
+    private static void assertSameSpikes(Network expectedNet, Network actualNet) {
+        Random random = new Random(2);
+        for (int t = 0; t < 500; t++) {
+            for (String label : List.of("input", "output")) {
+                List<Neuron> a = actualNet.getNeuronGroupByLabel(label).getNeuronList();
+                List<Neuron> b = expectedNet.getNeuronGroupByLabel(label).getNeuronList();
+                for (int i = 0; i < a.size(); i++) {
+                    double drive = random.nextDouble() < .1 ? 1 : 0;
+                    a.get(i).addInputValue(drive);
+                    b.get(i).addInputValue(drive);
+                }
+            }
+            actualNet.update();
+            expectedNet.update();
+            for (String label : List.of("input", "output")) {
+                assertArrayEquals(expectedNet.getNeuronGroupByLabel(label).getActivations(),
+                        actualNet.getNeuronGroupByLabel(label).getActivations(), 0);
+            }
+        }
+    }
+
+    /**
+     * Check that two spiking networks have learned the same weights, and that learning changed them.
+     */
+    private static void assertSameWeights(Network expectedNet, Network actualNet) {
+        List<SynapseGroup> expected = new ArrayList<>(expectedNet.getModels(SynapseGroup.class));
+        List<SynapseGroup> actual = new ArrayList<>(actualNet.getModels(SynapseGroup.class));
+        boolean changed = false;
+        for (int k = 0; k < expected.size(); k++) {
+            double[][] before = expected.get(k).getWeightMatrix();
+            double[][] after = actual.get(k).getWeightMatrix();
+            for (int i = 0; i < before.length; i++) {
+                assertArrayEquals(before[i], after[i], 1e-9);
+                for (int j = 0; j < before[i].length; j++) {
+                    changed |= Math.abs(before[i][j] - .2 * Math.sin(7 * i + 3 * j)) > 1e-6;
+                }
+            }
+        }
+        assertTrue(changed);
+    }
+
+    @Test
+    public void testEditCompressed() {
+        SynapseGroup sg = getSparseGroup(new Network());
+        sg.compress();
+        double[][] triples = sg.getNumericIndices();
+        int src = (int) triples[0][0];
+        int tar = (int) triples[0][1];
+        assertEquals(triples[0][2], sg.getStrength(src, tar));
+        assertTrue(sg.setStrength(src, tar, 2.5));
+        assertEquals(2.5, sg.getWeightMatrix()[src][tar]);
+
+        sg.setStrength(.4, Polarity.INHIBITORY);
+        for (double w : sg.getInhibitoryStrengths()) {
+            assertEquals(-.4, w);
+        }
+
+        // A learning rule needs synapse objects
+        sg.setLearningRule(new HebbianRule(), Polarity.BOTH);
+        assertFalse(sg.isCompressed());
+        assertEquals(triples.length, sg.getAllSynapses().size());
+        assertEquals(2.5, sg.getStrength(src, tar));
+    }
+
+    @Test
+    public void testSparseCodeRoundTrip() {
+        SynapseGroup sg = getSparseGroup(new Network());
+        double[][] matrix = sg.getWeightMatrix();
+        sg.compress();
+        CompressedRowMatrix decoded = GroupDeserializer.decodeSparseCode(sg.getSparseCode(Precision.FLOAT_64).array(),
+                sg.getSourceNeuronGroup().size(), sg.getTargetNeuronGroup().size());
+        assertEquals(sg.size(), decoded.getNumNonZero());
+        assertArrayEquals(matrix, decoded.toArray());
+
+        sg.preSaveInit();
+        sg.postUnmarshallingInit();
+        assertTrue(sg.isCompressed());
+        assertArrayEquals(matrix, sg.getWeightMatrix());
+    }
+
+    @Test
+    public void testSpikingSourceCannotCompress() {
+        Network net = new Network();
+        NeuronGroup spikingNg = new NeuronGroup(net, 2);
+        spikingNg.setNeuronType(new IntegrateAndFireRule());
+        SynapseGroup sg = SynapseGroup.createSynapseGroup(spikingNg, new NeuronGroup(net, 2), new AllToAll());
+        assertFalse(sg.canCompress());
+        assertThrows(IllegalStateException.class, sg::compress);
+    }
+
+}
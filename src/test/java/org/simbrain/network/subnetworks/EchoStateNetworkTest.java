@@ -0,0 +1,105 @@
+package org.simbrain.network.subnetworks;
+
+import org.junit.jupiter.api.Test;
+import org.simbrain.network.core.Network;
+import org.simbrain.util.math.CompressedRowMatrix;
+
+import java.time.Duration;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EchoStateNetworkTest {
+
+    private static final int NUM_STEPS = 600;
+
+    private static final int WASHOUT = 100;
+
+    private static EchoStateNetwork getNetwork() {
+        EchoStateNetwork esn = new EchoStateNetwork(new Network(), 1, 100, 1, null);
+        esn.setRandom(new Random(3));
+        esn.randomize();
+        return esn;
+    }
+
+    /**
+     * A sine wave, shifted ahead by the given number of steps.
+     */
+    private static double[][] sine(int shift) {
+        double[][] data = new double[NUM_STEPS][1];
+        for (int t = 0; t < NUM_STEPS; t++) {
+            data[t][0] = .5 * Math.sin(.2 * (t + shift));
+        }
+        return data;
+    }
+
+    @Test
+    public void testSpectralRadius() {
+        EchoStateNetwork esn = getNetwork();
+        double radius = esn.getReservoirWeights().spectralRadius(1000, new Random(1));
+        assertEquals(.95, radius, .05);
+        esn.setSpectralRadius(.5);
+        radius = esn.getReservoirWeights().spectralRadius(1000, new Random(1));
+        assertEquals(.5, radius, .03);
+    }
+
+    @Test
+    public void testLargeReservoir() {
+        // Weight matrices to and from the reservoir are numRes x k, and should be no larger than that
+        EchoStateNetwork esn = assertTimeout(Duration.ofSeconds(30),
+                () -> new EchoStateNetwork(new Network(), 2, 5000, 3, null));
+        assertEquals(5000, esn.getReservoirLayer().getActivations().length);
+        assertEquals(5000, esn.getReservoirWeights().getNumRows());
+        assertEquals(3, esn.getReadout().getWeightMatrix().nrows());
+    }
+
+    @Test
+    public void testPowerIterationWithComplexEigenvalues() {
+        // Rotation by 90 degrees scaled by .7: eigenvalues are +/- .7i
+        CompressedRowMatrix m = CompressedRowMatrix.of(new double[][]{{0, -.7, 0}, {.7, 0, 0}, {0, 0, .3}});
+        assertEquals(.7, m.spectralRadius(100, new Random(1)), 1e-9);
+    }
+
+    @Test
+    public void testHarvestIntoPreallocatedMatrix() {
+        EchoStateNetwork esn = getNetwork();
+        double[][] states = esn.harvest(sine(0), sine(1), WASHOUT);
+        assertEquals(NUM_STEPS - WASHOUT, states.length);
+        assertEquals(esn.getStateSize(), states[0].length);
+        assertArrayEquals(states[states.length - 1], esn.getReservoirLayer().getActivations(), 0);
+
+        esn.clearState();
+        double[][] preallocated = new double[NUM_STEPS][esn.getStateSize()];
+        esn.harvest(sine(0), sine(1), WASHOUT, preallocated);
+        for (int i = 0; i < states.length; i++) {
+            assertArrayEquals(states[i], preallocated[i], 0);
+        }
+    }
+
+    @Test
+    public void testPredictSine() {
+        EchoStateNetwork esn = getNetwork();
+        esn.setChunkSize(64);
+        double mse = esn.train(sine(0), sine(1), WASHOUT);
+        assertTrue(mse < 1e-4, "mse " + mse);
+        double[][] chunked = esn.getReadout().getWeightMatrix().toArray();
+
+        // Harvesting in one piece gives the same readout
+        esn.clearState();
+        esn.setChunkSize(NUM_STEPS);
+        assertEquals(mse, esn.train(sine(0), sine(1), WASHOUT), 1e-9);
+        double[][] whole = esn.getReadout().getWeightMatrix().toArray();
+        for (int k = 0; k < whole.length; k++) {
+            assertArrayEquals(whole[k], chunked[k], 1e-6);
+        }
+
+        // Run freely after training: the output should continue the wave
+        double[] input = new double[1];
+        for (int t = NUM_STEPS; t < NUM_STEPS + 20; t++) {
+            input[0] = .5 * Math.sin(.2 * t);
+            esn.getInputLayer().setActivations(input);
+            esn.update();
+            assertEquals(.5 * Math.sin(.2 * (t + 1)), esn.getOutputLayer().getActivations()[0], .05);
+        }
+    }
+}
@@ -1,119 +1,105 @@
-// package org.simbrain.network.subnetworks;
-//
-// import junit.framework.TestCase;
-// import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
-// import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
-// import org.deeplearning4j.nn.conf.distribution.UniformDistribution;
-// import org.deeplearning4j.nn.conf.layers.DenseLayer;
-// import org.deeplearning4j.nn.conf.layers.OutputLayer;
-// import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
-// import org.deeplearning4j.optimize.listeners.ScoreIterationListener;
-// import org.junit.jupiter.api.Test;
-// import org.nd4j.evaluation.classification.Evaluation;
-// import org.nd4j.evaluation.regression.RegressionEvaluation;
-// import org.nd4j.linalg.activations.Activation;
-// import org.nd4j.linalg.api.ndarray.INDArray;
-// import org.nd4j.linalg.dataset.DataSet;
-// import org.nd4j.linalg.factory.Nd4j;
-// import org.nd4j.linalg.learning.config.Sgd;
-// import org.nd4j.linalg.lossfunctions.LossFunctions;
-// import org.simbrain.network.core.Network;
-//
-// import java.util.Arrays;
-//
-// public class LMSNetworkTest extends TestCase {
-//
-//     // @Test
-//     // public void testLMSNet() {
-//     //
-//     //     Network net = new Network();
-//     //     LMSNetwork lms = new LMSNetwork(net, 5,5,null);
-//     //
-//     //     lms.getTrainingSet().setInputData(new double[][]{{0, 0}, {0, 1}, {1, 0}, {1, 1}});
-//     //     lms.getTrainingSet().setTargetData(new double[][]{{0, 0}, {0, 1}, {1, 0}, {1, 1}});
-//     //
-//     //     //lms.getTrainer().apply();
-//     //     assertEquals(0,0);
-//     //
-//     // }
-//     //
-//     // public void testName() {
-//     //     INDArray inputs = Nd4j.eye(5);
-//     //     INDArray targets = inputs.dup();
-//     //
-//     //     DataSet dataset = new DataSet(inputs, targets);
-//     //
-//     //     MultiLayerConfiguration config = new NeuralNetConfiguration.Builder()
-//     //             // Using stochastic gradient decent
-//     //             .updater(new Sgd(0.2))
-//     //             .seed(1)
-//     //             .biasInit(0)
-//     //             .miniBatch(false)
-//     //             .list()
-//     //             .layer(new OutputLayer.Builder(LossFunctions.LossFunction.MEAN_ABSOLUTE_ERROR)
-//     //                     .nIn(5)
-//     //                     .nOut(5)
-//     //                     .activation(Activation.RELU)
-//     //                     .weightInit(new UniformDistribution(0, 1))
-//     //                     .build())
-//     //             .build();
-//     //
-//     //     MultiLayerNetwork net = new MultiLayerNetwork(config);
-//     //     net.init();
-//     //
-//     //     // System.out.println(net.summary());
-//     //
-//     //     // net.setListeners(new ScoreIterationListener(5));
-//     //
-//     //     for (int i = 0; i < 25; i++) {
-//     //         // fitting the dataset nEpochs time.
-//     //         net.fit(dataset);
-//     //         // System.out.println("score:" + net.score());
-//     //     }
-//     //
-//     //     var results = net.feedForward(inputs);
-//     //     // results.forEach((row) -> {
-//     //     //     System.out.println("------");
-//     //     //     System.out.println(row);
-//     //     //     System.out.println("-------");
-//     //     // });
-//     //
-//     //     // var evaluation = new RegressionEvaluation();
-//     //     // evaluation.eval(dataset.getLabels(), net.output(dataset.getFeatures()));
-//     //     // System.out.println(evaluation.stats());
-//     //
-//     //     // Check that error is sufficiently low
-//     //     assertTrue(net.score() < .1);
-//     // }
-//     //
-//     // @Test
-//     // public void testMln() {
-//     //
-//     //     MultiLayerNetwork mln;
-//     //
-//     //     MultiLayerConfiguration config = new NeuralNetConfiguration.Builder()
-//     //             // Using stochastic gradient decent
-//     //             .updater(new Sgd(.01))
-//     //             .seed(1)
-//     //             .biasInit(0)
-//     //             .miniBatch(true)
-//     //             .list()
-//     //             .layer(new OutputLayer.Builder(LossFunctions.LossFunction.MSE)
-//     //                     .nIn(3)
-//     //                     .nOut(2)
-//     //                     .activation(Activation.SIGMOID)
-//     //                     .weightInit(new UniformDistribution(0, 1)) //TODO
-//     //                     .build())
-//     //             .build();
-//     //
-//     //     mln = new MultiLayerNetwork(config);
-//     //     mln.init();
-//     //
-//     //     // How to get parameters
-//     //     System.out.println(mln.getLayer(0).paramTable());
-//     //     System.out.println(mln.getLayer(0).getParam("W"));
-//     //     System.out.println(mln.getLayer(0).getParam("b"));
-//     //     System.out.println(mln.getLayer(0).params());
-//     //     assertTrue(1==1);
-//     // }
-// }
\ No newline at end of file
+package org.simbrain.network.subnetworks;
+
+import org.junit.jupiter.api.Test;
+import org.simbrain.network.core.Network;
+import org.simbrain.network.matrix.NeuronArray;
+import org.simbrain.network.trainers.LMSOffline;
+import org.simbrain.network.trainers.TrainingSet;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LMSNetworkTest {
+
+    /**
+     * Weights of the linear map the data is generated from, one row per output. The last column is the bias.
+     */
+    private static final double[][] WEIGHTS = {{1, -2, 0, .5, .25}, {0, .5, 1, -1, -.5}};
+
+    private LMSNetwork getNetwork(int numRows) {
+        LMSNetwork lms = new LMSNetwork(new Network(), 4, 2, null);
+        Random random = new Random(5);
+        double[][] inputs = new double[numRows][4];
+        double[][] targets = new double[numRows][2];
+        for (int i = 0; i < numRows; i++) {
+            for (int j = 0; j < 4; j++) {
+                inputs[i][j] = random.nextDouble() * 2 - 1;
+            }
+            for (int k = 0; k < 2; k++) {
+                targets[i][k] = WEIGHTS[k][4];
+                for (int j = 0; j < 4; j++) {
+                    targets[i][k] += WEIGHTS[k][j] * inputs[i][j];
+                }
+            }
+        }
+        lms.getTrainingSet().setInputData(inputs);
+        lms.getTrainingSet().setTargetData(targets);
+        return lms;
+    }
+
+    private static void assertWeights(LMSNetwork lms, double tolerance) {
+        for (int k = 0; k < 2; k++) {
+            for (int j = 0; j < 4; j++) {
+                assertEquals(WEIGHTS[k][j], lms.getWeightMatrixList().get(0).getWeightMatrix().get(k, j), tolerance);
+            }
+            assertEquals(WEIGHTS[k][4], lms.getNAList().get(1).getBiases()[k], tolerance);
+        }
+    }
+
+    @Test
+    public void testExactSolutions() throws Exception {
+        for (LMSOffline.SolutionType type : LMSOffline.SolutionType.values()) {
+            LMSNetwork lms = getNetwork(50);
+            lms.getTrainer().setSolutionType(type);
+            lms.getTrainer().setChunkSize(7);
+            lms.train();
+            assertWeights(lms, 1e-8);
+            assertEquals(0, lms.getError(), 1e-10);
+        }
+    }
+
+    @Test
+    public void testStreamedChunks() {
+        LMSNetwork lms = getNetwork(1000);
+        double[][] inputs = lms.getTrainingSet().getInputData();
+        double[][] targets = lms.getTrainingSet().getTargetData();
+        List<TrainingSet> chunks = Arrays.asList(
+                new TrainingSet(Arrays.copyOfRange(inputs, 0, 600), Arrays.copyOfRange(targets, 0, 600)),
+                new TrainingSet(Arrays.copyOfRange(inputs, 600, 1000), Arrays.copyOfRange(targets, 600, 1000)));
+        lms.getTrainer().train(chunks);
+        assertWeights(lms, 1e-8);
+    }
+
+    @Test
+    public void testRidgeShrinksWeights() throws Exception {
+        LMSNetwork lms = getNetwork(50);
+        lms.getTrainer().setRidge(10);
+        lms.train();
+        double cholesky = lms.getError();
+        assertTrue(cholesky > 0);
+        assertTrue(Math.abs(lms.getWeightMatrixList().get(0).getWeightMatrix().get(0, 1)) < 2);
+
+        LMSNetwork qr = getNetwork(50);
+        qr.getTrainer().setRidge(10);
+        qr.getTrainer().setSolutionType(LMSOffline.SolutionType.QR);
+        qr.train();
+        assertEquals(cholesky, qr.getError(), 1e-8);
+    }
+
+    @Test
+    public void testLogisticOutputs() throws Exception {
+        LMSNetwork lms = getNetwork(50);
+        NeuronArray output = lms.getNAList().get(1);
+        output.setActivationFunction(NeuronArray.ActivationFunction.LOGISTIC);
+        for (double[] row : lms.getTrainingSet().getTargetData()) {
+            for (int k = 0; k < row.length; k++) {
+                row[k] = 1 / (1 + Math.exp(-row[k]));
+            }
+        }
+        lms.train();
+        assertWeights(lms, 1e-6);
+    }
+}
@@ -0,0 +1,54 @@
+package org.simbrain.network.synapse_update_rules;
+
+import org.junit.jupiter.api.Test;
+import org.simbrain.network.core.Network;
+import org.simbrain.network.core.Neuron;
+import org.simbrain.network.core.Synapse;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+public class PfisterGerstner2006RuleTest {
+
+    /**
+     * Updating only on spikes, with traces decayed lazily, should give the same
+     * weights as updating on every time step.
+     */
+    @Test
+    public void eventDrivenMatchesEveryStep() {
+        Network net = new Network();
+        Neuron sourceA = new Neuron(net);
+        Neuron targetA = new Neuron(net);
+        Neuron sourceB = new Neuron(net);
+        Neuron targetB = new Neuron(net);
+        net.addNetworkModel(sourceA);
+        net.addNetworkModel(targetA);
+        net.addNetworkModel(sourceB);
+        net.addNetworkModel(targetB);
+
+        Synapse eventDriven = new Synapse(sourceA, targetA, new PfisterGerstner2006Rule());
+        Synapse everyStep = new Synapse(sourceB, targetB, new PfisterGerstner2006Rule());
+        net.addNetworkModel(eventDriven);
+        net.addNetworkModel(everyStep);
+        eventDriven.getLearningRule().init(eventDriven);
+        everyStep.getLearningRule().init(everyStep);
+
+        Random random = new Random(1);
+        for (int i = 0; i < 1000; i++) {
+            boolean preSpike = random.nextDouble() < 0.05;
+            boolean postSpike = random.nextDouble() < 0.05;
+            sourceA.setSpike(preSpike);
+            sourceB.setSpike(preSpike);
+            targetA.setSpike(postSpike);
+            targetB.setSpike(postSpike);
+            eventDriven.update();
+            everyStep.getLearningRule().update(everyStep);
+            net.updateTime();
+        }
+
+        assertNotEquals(0, everyStep.getStrength(), 0.0);
+        assertEquals(everyStep.getStrength(), eventDriven.getStrength(), 1e-9);
+    }
+}
@@ -0,0 +1,72 @@
+package org.simbrain.network.synapse_update_rules;
+
+import org.junit.jupiter.api.Test;
+import org.simbrain.network.core.Network;
+import org.simbrain.network.core.Neuron;
+import org.simbrain.network.core.SpikingNeuronUpdateRule;
+import org.simbrain.network.core.Synapse;
+import org.simbrain.network.neuron_update_rules.IntegrateAndFireRule;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class STDPRuleTest {
+
+    private static Synapse getSynapse(double strength) {
+        Network net = new Network();
+        Neuron source = new Neuron(net, new IntegrateAndFireRule());
+        Neuron target = new Neuron(net, new IntegrateAndFireRule());
+        net.addNetworkModel(source);
+        net.addNetworkModel(target);
+        Synapse synapse = new Synapse(source, target, new STDPRule());
+        synapse.forceSetStrength(strength);
+        net.addNetworkModel(synapse);
+
+        // Pre before post: potentiation
+        ((SpikingNeuronUpdateRule) source.getUpdateRule()).setLastSpikeTime(1);
+        ((SpikingNeuronUpdateRule) target.getUpdateRule()).setLastSpikeTime(2);
+        return synapse;
+    }
+
+    /**
+     * In discrete mode the last weight change is applied again on every step
+     * until the next spike, for positive and negative weights alike. The rule
+     * is only applied on spikes, so the steps in between are caught up then.
+     */
+    @Test
+    public void discreteReappliesLastChange() {
+        for (double strength : new double[]{.5, -.5}) {
+            Synapse synapse = getSynapse(strength);
+            Network net = synapse.getNetwork();
+            assertTrue(synapse.getLearningRule().isEventDriven());
+            synapse.getTarget().setSpike(true);
+            synapse.update();
+            double delta = synapse.getStrength() - strength;
+            assertNotEquals(0, delta, 0.0);
+
+            synapse.getTarget().setSpike(false);
+            for (int i = 0; i < 10; i++) {
+                net.updateTime();
+                synapse.update();
+            }
+            assertEquals(strength + delta, synapse.getStrength(), 1e-12);
+
+            net.updateTime();
+            synapse.getTarget().setSpike(true);
+            synapse.update();
+            assertEquals(strength + 12 * delta, synapse.getStrength(), 1e-12);
+        }
+    }
+
+    @Test
+    public void continuousIsAppliedEveryStep() {
+        assertFalse(new STDPRule(10, 10, 30, 60, .01, true).isEventDriven());
+    }
+
+    @Test
+    public void nonSpikingNeuronsRejected() {
+        Network net = new Network();
+        Neuron source = new Neuron(net);
+        Neuron target = new Neuron(net, new IntegrateAndFireRule());
+        assertThrows(IllegalArgumentException.class, () -> new Synapse(source, target, new STDPRule()));
+    }
+}
@@ -0,0 +1,84 @@
+package org.simbrain.network.trainers;
+
+import org.simbrain.network.core.Network;
+import org.simbrain.network.matrix.WeightMatrix;
+import org.simbrain.network.subnetworks.BackpropNetwork;
+
+import java.util.Random;
+
+/**
+ * Measures backprop throughput on MNIST sized data: 784 inputs (a 28x28 image, as in the MNIST simulation), a hidden
+ * layer, and 10 one-hot outputs. The data are random images labeled by a random linear "teacher", so nothing needs to
+ * be downloaded. Not run with the unit tests. Run the main method, optionally passing the number of rows (default
+ * 1000), hidden units (default 100) and epochs (default 5).
+ */
+public class BackpropBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int numRows = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int numHidden = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        int epochs = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+        TrainingSet data = createData(numRows, 784, 10);
+        System.out.printf("%d rows, 784-%d-10, %d epochs%n", numRows, numHidden, epochs);
+        for (int batchSize : new int[]{1, 32, 256}) {
+            run(data, numHidden, batchSize, false, epochs);
+            run(data, numHidden, batchSize, true, epochs);
+        }
+    }
+
+    private static void run(TrainingSet data, int numHidden, int batchSize, boolean parallel, int epochs)
+            throws Exception {
+        BackpropNetwork network = new BackpropNetwork(new Network(), new int[]{784, numHidden, 10});
+        network.getTrainingSet().setInputData(data.getInputData());
+        network.getTrainingSet().setTargetData(data.getTargetData());
+        // Scale the random weights so the logistic units do not start saturated
+        for (WeightMatrix wm : network.getWeightMatrixList()) {
+            wm.getWeightMatrix().mul(1 / Math.sqrt(wm.getWeightMatrix().ncols()));
+        }
+
+        BackpropTrainer trainer = new BackpropTrainer(network);
+        trainer.setBatchSize(batchSize);
+        trainer.setParallel(parallel);
+        trainer.setLearningRate(batchSize == 1 ? .05 : .5);
+        trainer.apply(); // warm up
+        double rowsPerSecond = 0;
+        for (int i = 0; i < epochs; i++) {
+            trainer.apply();
+            rowsPerSecond += trainer.getThroughput();
+        }
+        System.out.printf("batch %4d %-8s %10.0f rows/s  mse %.5f%n", batchSize, parallel ? "parallel" : "serial",
+                rowsPerSecond / epochs, trainer.getError());
+    }
+
+    private static TrainingSet createData(int numRows, int numInputs, int numOutputs) {
+        Random random = new Random(1);
+        double[][] teacher = new double[numOutputs][numInputs];
+        for (double[] row : teacher) {
+            for (int j = 0; j < numInputs; j++) {
+                row[j] = random.nextGaussian();
+            }
+        }
+        double[][] inputs = new double[numRows][numInputs];
+        double[][] targets = new double[numRows][numOutputs];
+        for (int i = 0; i < numRows; i++) {
+            for (int j = 0; j < numInputs; j++) {
+                inputs[i][j] = random.nextDouble() < .2 ? random.nextDouble() : 0;
+            }
+            int label = 0;
+            double best = Double.NEGATIVE_INFINITY;
+            for (int k = 0; k < numOutputs; k++) {
+                double score = 0;
+                for (int j = 0; j < numInputs; j++) {
+                    score += teacher[k][j] * inputs[i][j];
+                }
+                if (score > best) {
+                    best = score;
+                    label = k;
+                }
+            }
+            targets[i][label] = 1;
+        }
+        return new TrainingSet(inputs, targets);
+    }
+}
@@ -1,79 +1,113 @@
-// package org.simbrain.network.trainers;
-//
-// import org.junit.jupiter.api.Test;
-// import org.nd4j.linalg.api.ndarray.INDArray;
-// import org.nd4j.linalg.factory.Nd4j;
-// import org.simbrain.network.core.Network;
-// import org.simbrain.network.subnetworks.BackpropNetwork;
-// import org.simbrain.network.trainers.BackpropTrainer.UpdateMethod;
-//
-// import java.util.stream.IntStream;
-//
-// import static org.junit.Assert.assertTrue;
-//
-// public class BackpropTrainerTest {
-//
-//     /**
-//      * A simple identity map task
-//      */
-//     private BackpropTrainer getSimpleBackprop(int numHidden) {
-//         BackpropNetwork network = new BackpropNetwork(new Network(), new int[]{2, numHidden, 2});
-//         network.getTrainingSet().setInputData(new double[][]{{0, 0}, {0, 1}, {1, 0}, {1, 1}});
-//         network.getTrainingSet().setTargetData(new double[][]{{0, 0}, {0, 1}, {1, 0}, {1, 1}});
-//         BackpropTrainer trainer = new BackpropTrainer(network);
-//         trainer.setUpdateMethod(UpdateMethod.SINGLE);
-//         trainer.initData();
-//         trainer.setLearningRate(0.1);
-//         trainer.commitChanges();
-//         return trainer;
-//     }
-//
-//     // TODO: Test Different UpdateMethods
-//     // TODO: XOR
-//
-//     @Test
-//     public void testConvergence() {
-//
-//         // BackpropTrainer trainer = getSimpleBackprop(2);
-//         // IntStream.range(0, 100).forEach(i -> {
-//         //     try {
-//         //         trainer.iterate();
-//         //     } catch (Trainer.DataNotInitializedException e) {
-//         //         e.printStackTrace();
-//         //     }
-//         // });
-//         // assertTrue(trainer.getError() < 1);
-//         //
-//         // BackpropTrainer trainer2 = getSimpleBackprop(2);
-//         // IntStream.range(0, 100).forEach(i -> {
-//         //     try {
-//         //         trainer2.iterate();
-//         //     } catch (Trainer.DataNotInitializedException e) {
-//         //         e.printStackTrace();
-//         //     }
-//         // });
-//         // assertTrue(trainer2.getError() < 1);
-//
-//         // Fails when running for 1000.  Error < .01 but output is not 1,1
-//         //BackpropNetwork bp = trainer2.getNetwork();
-//         //bp.getNeuronGroup(0).forceSetActivations(new double[]{1,1});
-//         //bp.update();
-//         //System.out.println(bp);
-//         //System.out.println(trainer2.getError());
-//
-//         //TODO: Other activation rules
-//     }
-//
-//     // @Test
-//     public void nd4JScratch() {
-//         INDArray input = Nd4j.ones(1,2);
-//         System.out.println(input);
-//         INDArray weights = Nd4j.ones(2,3);
-//         System.out.println(weights);
-//         System.out.println(input.mmul(weights));
-//         /// In place operation
-//         INDArray result = Nd4j.ones(1,3);
-//         input.mmuli(weights, result);
-//         System.out.println(result);
-//     }
-// }
+package org.simbrain.network.trainers;
+
+import org.junit.jupiter.api.Test;
+import org.simbrain.network.core.Network;
+import org.simbrain.network.matrix.NeuronArray;
+import org.simbrain.network.matrix.WeightMatrix;
+import org.simbrain.network.subnetworks.BackpropNetwork;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BackpropTrainerTest {
+
+    /**
+     * A linear map from 3 inputs to 2 outputs, which a network with no hidden layer can learn exactly.
+     */
+    private BackpropNetwork getLinearNetwork(int numRows) {
+        BackpropNetwork network = new BackpropNetwork(new Network(), new int[]{3, 2});
+        network.getNAList().get(1).setActivationFunction(NeuronArray.ActivationFunction.LINEAR);
+        Random random = new Random(11);
+        double[][] inputs = new double[numRows][3];
+        double[][] targets = new double[numRows][2];
+        for (int i = 0; i < numRows; i++) {
+            for (int j = 0; j < 3; j++) {
+                inputs[i][j] = random.nextDouble() * 2 - 1;
+            }
+            targets[i][0] = inputs[i][0] - 2 * inputs[i][1] + .5;
+            targets[i][1] = .5 * inputs[i][2] + inputs[i][1];
+        }
+        network.getTrainingSet().setInputData(inputs);
+        network.getTrainingSet().setTargetData(targets);
+        return network;
+    }
+
+    @Test
+    public void testConvergence() throws Exception {
+        BackpropNetwork network = getLinearNetwork(20);
+        BackpropTrainer trainer = new BackpropTrainer(network);
+        trainer.setLearningRate(.05);
+        for (int i = 0; i < 500; i++) {
+            trainer.apply();
+        }
+        assertTrue(trainer.getError() < 1e-4);
+        assertEquals(500, trainer.getIteration());
+
+        // The trained network computes the targets when it is run
+        NeuronArray input = network.getNAList().get(0);
+        NeuronArray output = network.getNAList().get(1);
+        double[][] inputs = network.getTrainingSet().getInputData();
+        double[][] targets = network.getTrainingSet().getTargetData();
+        for (int i = 0; i < inputs.length; i++) {
+            input.setActivations(inputs[i]);
+            output.updateInputs();
+            output.update();
+            assertArrayEquals(targets[i], output.getActivations(), .01);
+        }
+    }
+
+    @Test
+    public void testEventsReportErrorAndThroughput() throws Exception {
+        BackpropTrainer trainer = new BackpropTrainer(getLinearNetwork(20));
+        double[] reported = new double[2];
+        trainer.getEvents().onErrorUpdated((Double error) -> reported[0] = error);
+        trainer.getEvents().onThroughputUpdated(rowsPerSecond -> reported[1] = rowsPerSecond);
+        trainer.apply();
+        assertEquals(trainer.getError(), reported[0]);
+        assertTrue(reported[1] > 0);
+    }
+
+    @Test
+    public void testParallelBatchMatchesSerial() throws Exception {
+        BackpropNetwork serialNet = new BackpropNetwork(new Network(), new int[]{4, 6, 3});
+        BackpropNetwork parallelNet = new BackpropNetwork(new Network(), new int[]{4, 6, 3});
+        for (int i = 0; i < serialNet.getWeightMatrixList().size(); i++) {
+            parallelNet.getWeightMatrixList().get(i).setWeights(serialNet.getWeightMatrixList().get(i).getWeights());
+        }
+        Random random = new Random(3);
+        double[][] inputs = new double[500][4];
+        double[][] targets = new double[500][3];
+        for (int i = 0; i < inputs.length; i++) {
+            for (int j = 0; j < 4; j++) {
+                inputs[i][j] = random.nextDouble();
+            }
+            targets[i][random.nextInt(3)] = 1;
+        }
+        for (BackpropNetwork network : new BackpropNetwork[]{serialNet, parallelNet}) {
+            network.getTrainingSet().setInputData(inputs);
+            network.getTrainingSet().setTargetData(targets);
+        }
+
+        BackpropTrainer serial = new BackpropTrainer(serialNet);
+        BackpropTrainer parallel = new BackpropTrainer(parallelNet);
+        for (BackpropTrainer trainer : new BackpropTrainer[]{serial, parallel}) {
+            trainer.setBatchSize(100);
+            trainer.setShuffle(false);
+        }
+        serial.setParallel(false);
+        parallel.setParallel(true);
+        for (int i = 0; i < 5; i++) {
+            serial.apply();
+            parallel.apply();
+        }
+        assertEquals(serial.getError(), parallel.getError(), 1e-9);
+        for (int i = 0; i < serialNet.getWeightMatrixList().size(); i++) {
+            WeightMatrix a = serialNet.getWeightMatrixList().get(i);
+            WeightMatrix b = parallelNet.getWeightMatrixList().get(i);
+            assertArrayEquals(a.getWeights(), b.getWeights(), 1e-9);
+            assertArrayEquals(((NeuronArray) a.getTarget()).getBiases(), ((NeuronArray) b.getTarget()).getBiases(),
+                    1e-9);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package org.simbrain.network.update_actions;
+
+import org.junit.jupiter.api.Test;
+import org.simbrain.network.connections.AllToAll;
+import org.simbrain.network.core.Network;
+import org.simbrain.network.core.Neuron;
+import org.simbrain.network.core.Synapse;
+import org.simbrain.network.groups.NeuronGroup;
+import org.simbrain.network.groups.SynapseGroup;
+import org.simbrain.network.matrix.WeightMatrix;
+import org.simbrain.network.neuron_update_rules.SigmoidalRule;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+public class CompiledUpdateTest {
+
+    /**
+     * Input, hidden (with recurrent weights and a loose input neuron) and output layers with deterministic weights.
+     */
+    private static Network buildNetwork() {
+        Network net = new Network();
+        NeuronGroup input = new NeuronGroup(net, 5);
+        input.setLabel("input");
+        NeuronGroup hidden = new NeuronGroup(net, 4);
+        hidden.setLabel("hidden");
+        NeuronGroup output = new NeuronGroup(net, 3);
+        output.setLabel("output");
+        net.addNetworkModels(List.of(input, hidden, output));
+
+        SynapseGroup sg1 = SynapseGroup.createSynapseGroup(input, hidden, new AllToAll());
+        SynapseGroup sg2 = SynapseGroup.createSynapseGroup(hidden, output, new AllToAll());
+        SynapseGroup rec = SynapseGroup.createSynapseGroup(hidden, hidden, new AllToAll());
+        net.addNetworkModels(List.of(sg1, sg2, rec));
+        for (SynapseGroup sg : List.of(sg1, sg2, rec)) {
+            for (Synapse s : sg.getAllSynapses()) {
+                int i = sg.getSourceNeuronGroup().getNeuronList().indexOf(s.getSource());
+                int j = sg.getTargetNeuronGroup().getNeuronList().indexOf(s.getTarget());
+                s.forceSetStrength(Math.sin(7 * i + 3 * j));
+            }
+        }
+
+        Neuron loose = new Neuron(net);
+        loose.setClamped(true);
+        loose.forceSetActivation(0.5);
+        net.addNetworkModel(loose);
+        net.addNetworkModel(new Synapse(loose, hidden.getNeuron(0), -0.75));
+        return net;
+    }
+
+    private static Network buildCompiledNetwork() {
+        Network compiled = buildNetwork();
+        compiled.getUpdateManager().clear();
+        compiled.getUpdateManager().addAction(new CompiledUpdate(compiled));
+        return compiled;
+    }
+
+    private static void assertSameActivations(Network buffered, Network compiled, int from, int to) {
+        for (int t = from; t < to; t++) {
+            double[] in = new double[5];
+            for (int i = 0; i < in.length; i++) {
+                in[i] = Math.cos(t + i);
+            }
+            buffered.getNeuronGroupByLabel("input").forceSetActivations(in);
+            compiled.getNeuronGroupByLabel("input").forceSetActivations(in);
+            buffered.update();
+            compiled.update();
+            for (String label : List.of("input", "hidden", "output")) {
+                assertArrayEquals(buffered.getNeuronGroupByLabel(label).getActivations(),
+                        compiled.getNeuronGroupByLabel(label).getActivations(), 1e-12);
+            }
+        }
+    }
+
+    @Test
+    public void sameResultsAsBufferedUpdate() {
+        assertSameActivations(buildNetwork(), buildCompiledNetwork(), 0, 20);
+    }
+
+    /**
+     * Edit a static strength, an enabled flag, a delay and an update rule in the same way in both networks.
+     */
+    private static void edit(Network net) {
+        NeuronGroup hidden = net.getNeuronGroupByLabel("hidden");
+        NeuronGroup output = net.getNeuronGroupByLabel("output");
+        List<Synapse> fanIn = hidden.getNeuron(1).getFanIn();
+        fanIn.get(0).setStrength(2.5);
+        fanIn.get(1).setEnabled(false);
+        output.getNeuron(2).getFanIn().get(0).setDelay(3);
+        hidden.getNeuron(3).setUpdateRule(new SigmoidalRule());
+    }
+
+    @Test
+    public void editsAfterCompiling() {
+        Network buffered = buildNetwork();
+        Network compiled = buildCompiledNetwork();
+        assertSameActivations(buffered, compiled, 0, 10);
+        edit(buffered);
+        edit(compiled);
+        assertSameActivations(buffered, compiled, 10, 30);
+    }
+
+    @Test
+    public void propagateGroupActivation() {
+        Network net = new Network();
+        net.getUpdateManager().clear();
+        net.getUpdateManager().addAction(new CompiledUpdate(net));
+        NeuronGroup ng = new NeuronGroup(net, 2);
+        NeuronGroup ng2 = new NeuronGroup(net, 2);
+        net.addNetworkModels(List.of(ng, ng2));
+        ng.setActivations(new double[]{1.0, -1.0});
+        WeightMatrix wm = new WeightMatrix(net, ng, ng2);
+        net.addNetworkModel(wm);
+        net.update();
+        assertArrayEquals(new double[]{1.0, -1.0}, ng2.getActivations());
+    }
+}
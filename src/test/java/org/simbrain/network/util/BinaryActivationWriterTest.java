@@ -0,0 +1,65 @@
+package org.simbrain.network.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BinaryActivationWriterTest {
+
+    @TempDir
+    File tempDir;
+
+    @Test
+    public void testValuesRoundTrip() throws Exception {
+        for (boolean compress : new boolean[]{false, true}) {
+            File file = new File(tempDir, "values" + compress + ".acts");
+            // Capacity smaller than the number of steps, so the simulation thread has to wait for the writer
+            BinaryActivationWriter writer = new BinaryActivationWriter(file, 100, false, compress, 2);
+            for (int t = 0; t < 50; t++) {
+                int step = t;
+                writer.writeValues(step * .1, i -> step + i / 8.0);
+            }
+            writer.close();
+
+            BinaryActivationReader reader = new BinaryActivationReader(file);
+            assertFalse(reader.isSpikes());
+            assertEquals(100, reader.getNumNeurons());
+            assertEquals(50, reader.getRows().size());
+            assertEquals(.1 * 7, reader.getTimes().get(7), 0);
+            assertEquals(7 + 13 / 8.0, reader.getRows().get(7)[13], 0);
+        }
+    }
+
+    @Test
+    public void testSpikesRoundTrip() throws Exception {
+        File file = new File(tempDir, "spikes.acts");
+        BinaryActivationWriter writer = new BinaryActivationWriter(file, 1000, true, false, 4);
+        for (int t = 0; t < 10; t++) {
+            int step = t;
+            // Nothing spikes at odd steps
+            writer.writeSpikes(step, i -> step % 2 == 0 && (i == step || i == 999));
+        }
+        writer.close();
+
+        BinaryActivationReader reader = new BinaryActivationReader(file);
+        assertTrue(reader.isSpikes());
+        assertEquals(5, reader.getTimes().size());
+        List<double[]> rows = reader.getRows();
+        assertEquals(10, rows.size());
+        assertArrayEquals(new double[]{4, 4}, rows.get(4), 0);
+        assertArrayEquals(new double[]{4, 999}, rows.get(5), 0);
+    }
+
+    @Test
+    public void testWriteAfterClose() throws Exception {
+        BinaryActivationWriter writer = new BinaryActivationWriter(new File(tempDir, "closed.acts"), 1, false, false,
+                1);
+        writer.close();
+        assertThrows(IOException.class, () -> writer.writeValues(0, i -> 0));
+    }
+}
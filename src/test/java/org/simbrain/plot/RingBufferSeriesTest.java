@@ -0,0 +1,108 @@
+package org.simbrain.plot;
+
+import com.thoughtworks.xstream.XStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.simbrain.plot.RingBufferSeries.Decimation;
+import org.simbrain.util.Utils;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RingBufferSeriesTest {
+
+    @Test
+    public void testOverwritesOldest() {
+        RingBufferSeries series = new RingBufferSeries("test", 3);
+        List<Double> evicted = new ArrayList<>();
+        series.setEvictionListener((s, x, y) -> evicted.add(x));
+        for (int t = 0; t < 5; t++) {
+            series.add(t, 10 * t);
+        }
+        assertEquals(3, series.size());
+        assertEquals(2, series.getX(0));
+        assertEquals(40, series.getY(2));
+        assertEquals(List.of(0.0, 1.0), evicted);
+
+        series.setCapacity(2);
+        assertEquals(3, series.getX(0));
+        assertEquals(4, series.getX(1));
+        series.setCapacity(4);
+        series.add(5, 50);
+        assertEquals(3, series.size());
+        assertEquals(5, series.getX(2));
+    }
+
+    @Test
+    public void testMinMaxDecimation() {
+        RingBufferSeries series = new RingBufferSeries("test", 10000);
+        for (int t = 0; t < 10000; t++) {
+            series.add(t, Math.sin(t / 100.0) + (t == 5001 ? 10 : 0));
+        }
+        double[][] shown = series.decimate(100, Decimation.MIN_MAX);
+        assertTrue(shown[0].length <= 200);
+        double max = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < shown[0].length; i++) {
+            max = Math.max(max, shown[1][i]);
+            if (i > 0) {
+                assertTrue(shown[0][i] > shown[0][i - 1]);
+            }
+        }
+        // A one point spike is still visible
+        assertTrue(max > 9);
+    }
+
+    @Test
+    public void testDistinctDecimation() {
+        RingBufferSeries series = new RingBufferSeries("raster", 100000);
+        for (int t = 0; t < 10000; t++) {
+            // Neuron t % 5 spikes at every step
+            series.add(t, t % 5);
+        }
+        double[][] shown = series.decimate(100, Decimation.DISTINCT);
+        assertEquals(500, shown[0].length);
+    }
+
+    @Test
+    public void testFewPointsNotDecimated() {
+        RingBufferSeries series = new RingBufferSeries("test", 10);
+        series.add(0, 1);
+        series.add(1, Double.NaN);
+        double[][] shown = series.decimate(100, Decimation.MIN_MAX);
+        assertArrayEquals(new double[]{0, 1}, shown[0]);
+        assertTrue(Double.isNaN(shown[1][1]));
+    }
+
+    @Test
+    public void testSavesOnlyLivePoints(@TempDir File dir) throws Exception {
+        RingBufferDataset dataset = new RingBufferDataset(5000, 100, Decimation.MIN_MAX);
+        dataset.addSeries("a");
+        for (int t = 0; t < 3; t++) {
+            dataset.add(0, t, 10 * t);
+        }
+        XStream xstream = Utils.getSimbrainXStream();
+        String xml = xstream.toXML(dataset);
+        assertTrue(xml.length() < 5000, "saved " + xml.length() + " characters");
+
+        RingBufferDataset copy = (RingBufferDataset) xstream.fromXML(xml);
+        RingBufferSeries series = copy.getSeries(0);
+        assertEquals("a", series.getKey());
+        assertEquals(5000, series.getCapacity());
+        assertEquals(3, series.size());
+        assertEquals(20, series.getY(2));
+        assertEquals(3, copy.getItemCount(0));
+
+        // Points dropped after opening are still spilled
+        File spill = new File(dir, "spill.bin");
+        copy.setSpillFile(spill);
+        for (int t = 3; t < 5002; t++) {
+            copy.add(0, t, t);
+        }
+        copy.flushSpillFile();
+        assertEquals(2 * (4 + 8 + 8), spill.length());
+        copy.setSpillFile(null);
+    }
+}
@@ -0,0 +1,70 @@
+package org.simbrain.plot.timeseries;
+
+import com.thoughtworks.xstream.XStream;
+import org.jfree.data.xy.XYSeries;
+import org.jfree.data.xy.XYSeriesCollection;
+import org.junit.jupiter.api.Test;
+import org.simbrain.plot.RingBufferDataset;
+import org.simbrain.plot.RingBufferSeries;
+import org.simbrain.plot.timeseries.TimeSeriesModel.ScalarTimeSeries;
+
+import java.lang.reflect.Field;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TimeSeriesModelTest {
+
+    private static void setField(TimeSeriesModel model, String name, Object value) throws Exception {
+        Field field = TimeSeriesModel.class.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(model, value);
+    }
+
+    @Test
+    public void testInitialCapacity() {
+        TimeSeriesModel model = new TimeSeriesModel(() -> 0);
+        assertEquals(model.getHistorySize(), model.getDataset().getCapacity());
+        assertEquals(model.getHistorySize(), model.getDataset().getSeries(0).getCapacity());
+        model.setFixedWidth(true);
+        assertEquals(model.getWindowSize(), model.getDataset().getSeries(0).getCapacity());
+    }
+
+    /**
+     * A plot saved before ring buffers were used holds an XYSeriesCollection, which should be converted when opened.
+     */
+    @Test
+    public void testOpenXYSeriesCollection() throws Exception {
+        TimeSeriesModel model = new TimeSeriesModel(() -> 0);
+        XYSeriesCollection old = new XYSeriesCollection();
+        for (ScalarTimeSeries ts : model.getTimeSeriesList()) {
+            XYSeries xy = new XYSeries(ts.getDescription());
+            for (int t = 0; t < 10; t++) {
+                xy.add(t, t == 5 ? null : (Number) (t * old.getSeriesCount()));
+            }
+            old.addSeries(xy);
+            ts.series = xy;
+            ts.ringSeries = null;
+        }
+        setField(model, "dataset", old);
+        setField(model, "ringDataset", null);
+        setField(model, "historySize", 0);
+        setField(model, "displayPoints", 0);
+
+        XStream xstream = TimeSeriesModel.getXStream();
+        TimeSeriesModel opened = (TimeSeriesModel) xstream.fromXML(xstream.toXML(model));
+        RingBufferDataset dataset = opened.getDataset();
+        List<ScalarTimeSeries> timeSeries = opened.getTimeSeriesList();
+        assertEquals(3, dataset.getSeriesCount());
+        assertEquals(100_000, opened.getHistorySize());
+        for (int i = 0; i < 3; i++) {
+            RingBufferSeries series = dataset.getSeries(i);
+            assertSame(series, timeSeries.get(i).getSeries());
+            assertNull(timeSeries.get(i).series);
+            assertEquals(10, series.size());
+            assertEquals(9 * i, series.getY(9));
+            assertTrue(Double.isNaN(series.getY(5)));
+        }
+        assertFalse(xstream.toXML(opened).contains("XYSeries"));
+    }
+}
@@ -4,6 +4,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class DatasetTest {
 
@@ -34,6 +35,41 @@ public class DatasetTest {
         assertEquals(0.0, data.getLastAddedPoint().get(1),0 );
     }
 
+    @Test
+    public void distanceStorageTest() {
+        for (Dataset.DistanceStorage storage : Dataset.DistanceStorage.values()) {
+            Dataset d = new Dataset(3);
+            d.setDistanceStorage(storage);
+            d.addPoint(new DataPoint(new double[]{0, 0, 0}));
+            d.addPoint(new DataPoint(new double[]{3, 4, 0}));
+            d.addPoint(new DataPoint(new double[]{0, 0, 2}));
+            assertEquals(5, d.getDistance(0, 1), 1e-6);
+            assertEquals(5, d.getDistance(1, 0), 1e-6);
+            assertEquals(Math.sqrt(29), d.getDistance(1, 2), 1e-6);
+            assertEquals(5 + 2 + Math.sqrt(29), d.getSumDistances(), 1e-6);
+            assertEquals(2, d.getMinimumDistance(), 1e-6);
+            assertEquals(Math.sqrt(29), d.getMaximumDistance(), 1e-6);
+            assertEquals(2, d.getDistances()[2][0], 1e-6);
+        }
+    }
+
+    @Test
+    public void offHeapGrowsWithDataset() {
+        DistanceCache.OffHeapFloat cache = new DistanceCache.OffHeapFloat();
+        cache.ensureCapacity(10);
+        assertTrue(cache.capacity() < 1 << 20);
+        cache.put(9, 3, 1.5);
+        assertEquals(-1, cache.get(9, 4), 0);
+
+        // Growing the first chunk keeps what is stored
+        cache.ensureCapacity(1000);
+        assertTrue(cache.capacity() >= DistanceCache.size(1000));
+        assertEquals(1.5, cache.get(9, 3), 0);
+        assertEquals(-1, cache.get(999, 998), 0);
+        cache.put(999, 998, 2.5);
+        assertEquals(2.5, cache.get(999, 998), 0);
+    }
+
     // @Test
     // public void testND4JArray() {
     //     data = new Dataset(3);
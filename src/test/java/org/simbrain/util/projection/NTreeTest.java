@@ -0,0 +1,91 @@
+package org.simbrain.util.projection;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NTreeTest {
+
+    private static List<DataPoint> randomPoints(int n, int dims, Random random) {
+        List<DataPoint> points = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            double[] vector = new double[dims];
+            for (int d = 0; d < dims; d++) {
+                vector[d] = random.nextInt(20) + random.nextGaussian();
+            }
+            points.add(new DataPoint(vector));
+        }
+        return points;
+    }
+
+    private static List<Double> bruteForce(List<DataPoint> points, int k, DataPoint target) {
+        return points.stream()
+                .map(p -> NTree.getDistance(p, target))
+                .sorted(Comparator.naturalOrder())
+                .limit(k)
+                .collect(Collectors.toList());
+    }
+
+    private static List<Double> distances(List<DataPoint> points, DataPoint target) {
+        return points.stream().map(p -> NTree.getDistance(p, target)).collect(Collectors.toList());
+    }
+
+    @Test
+    public void closestPointsMatchBruteForce() {
+        Random random = new Random(3);
+        List<DataPoint> points = randomPoints(1000, 3, random);
+        NTree incremental = new NTree(3);
+        points.forEach(incremental::add);
+        NTree bulk = new NTree(3);
+        bulk.addAll(incremental);
+
+        for (DataPoint target : randomPoints(50, 3, random)) {
+            for (int k : new int[]{1, 5, 60}) {
+                List<Double> expected = bruteForce(points, k, target);
+                assertEquals(expected, distances(incremental.getClosestPoints(k, target), target));
+                assertEquals(expected, distances(bulk.getClosestPoints(k, target), target));
+            }
+        }
+    }
+
+    @Test
+    public void closestPointsAreDistinct() {
+        NTree tree = new NTree(2);
+        for (int i = 0; i < 10; i++) {
+            tree.add(new DataPoint(new double[]{i, 0}));
+        }
+        List<DataPoint> closest = tree.getClosestPoints(4, new DataPoint(new double[]{-1, 0}));
+        assertEquals(4, closest.size());
+        for (int i = 0; i < 4; i++) {
+            assertEquals(i, tree.getIndex(closest.get(i)));
+        }
+        assertEquals(10, tree.getClosestPoints(20, new DataPoint(new double[]{0, 0})).size());
+        assertNull(new NTree(2).getClosestPoint(new DataPoint(new double[]{0, 0})));
+    }
+
+    @Test
+    public void bulkLoadKeepsIndices() {
+        Random random = new Random(5);
+        NTree other = new NTree(4);
+        randomPoints(500, 4, random).forEach(other::add);
+        // Identical points cannot be split, and must not prevent the rest from being split
+        for (int i = 0; i < 100; i++) {
+            other.add(new DataPoint(new double[]{1, 1, 1, 1}));
+        }
+        NTree tree = new NTree(4);
+        tree.addAll(other);
+        assertEquals(other.size(), tree.size());
+        for (int i = 0; i < other.asArrayList().size(); i++) {
+            DataPoint p = other.get(i);
+            assertSame(p, tree.get(i));
+            assertEquals(i, tree.getIndex(p));
+            assertNotNull(tree.isUnique(p, 1e-9));
+        }
+    }
+}
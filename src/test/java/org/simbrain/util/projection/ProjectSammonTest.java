@@ -0,0 +1,99 @@
+package org.simbrain.util.projection;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.simbrain.util.SimbrainPreferences;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ProjectSammonTest {
+
+    boolean savedParallel;
+
+    int savedSampleSize;
+
+    @BeforeEach
+    public void savePreferences() {
+        savedParallel = SimbrainPreferences.getBoolean("projectorSammonParallel");
+        savedSampleSize = SimbrainPreferences.getInt("projectorSammonSampleSize");
+    }
+
+    @AfterEach
+    public void restorePreferences() {
+        SimbrainPreferences.putBoolean("projectorSammonParallel", savedParallel);
+        SimbrainPreferences.putInt("projectorSammonSampleSize", savedSampleSize);
+    }
+
+    /**
+     * Enough random points that iterations are run in parallel.
+     */
+    private static Projector createProjector() {
+        Projector proj = new Projector(5);
+        proj.setUseColorManager(false);
+        proj.setTolerance(-1);
+        Random random = new Random(3);
+        for (int i = 0; i < 300; i++) {
+            double[] point = new double[5];
+            for (int d = 0; d < point.length; d++) {
+                point[d] = random.nextGaussian() + (i % 3) * 4;
+            }
+            proj.addDatapoint(new DataPoint(point));
+        }
+        return proj;
+    }
+
+    /**
+     * Copy of the current positions, since the dataset returns its live vectors.
+     */
+    private static double[][] positions(Projector proj) {
+        double[][] positions = proj.getDownstairs().getDoubleArray();
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = positions[i].clone();
+        }
+        return positions;
+    }
+
+    private static double[][] iterate(Projector proj, ProjectSammon sammon, double[][] start, boolean parallel) {
+        for (int i = 0; i < start.length; i++) {
+            System.arraycopy(start[i], 0, proj.getDownstairs().getPoint(i).getVector(), 0, start[i].length);
+        }
+        sammon.setParallel(parallel);
+        for (int i = 0; i < 5; i++) {
+            sammon.iterate();
+        }
+        return positions(proj);
+    }
+
+    @Test
+    public void testParallelMatchesSerial() {
+        Projector proj = createProjector();
+        ProjectSammon sammon = new ProjectSammon(proj);
+        proj.setProjectionMethod(sammon);
+        sammon.setSampleSize(0);
+        double[][] start = positions(proj);
+
+        double[][] serial = iterate(proj, sammon, start, false);
+        double serialError = sammon.getError();
+        double[][] parallel = iterate(proj, sammon, start, true);
+        assertEquals(serialError, sammon.getError(), 0);
+        for (int i = 0; i < serial.length; i++) {
+            assertArrayEquals(serial[i], parallel[i], 0);
+        }
+        assertFalse(Arrays.deepEquals(start, serial));
+    }
+
+    @Test
+    public void testSettingsReinitialize() {
+        ProjectSammon sammon = new ProjectSammon(createProjector());
+        sammon.init();
+        sammon.setSampleSize(20);
+        assertTrue(sammon.needsReInit());
+        sammon.init();
+        sammon.setParallel(true);
+        assertTrue(sammon.needsReInit());
+    }
+}
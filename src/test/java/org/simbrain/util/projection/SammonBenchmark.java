@@ -0,0 +1,102 @@
+package org.simbrain.util.projection;
+
+import org.simbrain.util.SimbrainPreferences;
+
+import java.util.Random;
+
+/**
+ * Compares the exact, parallel and sampled Sammon map iterations on random data, reporting the time taken and the
+ * exact Sammon stress reached by each. Not run with the unit tests. Run the main method, optionally passing the number
+ * of points (default 3000), the number of iterations (default 20) and the sample size (default 100).
+ */
+public class SammonBenchmark {
+
+    public static void main(String[] args) {
+        int numPoints = args.length > 0 ? Integer.parseInt(args[0]) : 3000;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        int sampleSize = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+
+        boolean savedParallel = SimbrainPreferences.getBoolean("projectorSammonParallel");
+        int savedSampleSize = SimbrainPreferences.getInt("projectorSammonSampleSize");
+        try {
+            Projector proj = createProjector(numPoints, 10);
+            ProjectSammon sammon = new ProjectSammon(proj);
+            proj.setProjectionMethod(sammon);
+            double[][] start = proj.getDownstairs().getDoubleArray();
+            for (int i = 0; i < start.length; i++) {
+                start[i] = start[i].clone();
+            }
+            System.out.printf("%d points, %d iterations, initial stress %.5f%n", proj.getNumPoints(), iterations,
+                    stress(proj));
+
+            run("serial exact", proj, sammon, start, false, 0, iterations);
+            run("parallel exact", proj, sammon, start, true, 0, iterations);
+            run("parallel sampled (" + sampleSize + ")", proj, sammon, start, true, sampleSize, iterations);
+        } finally {
+            SimbrainPreferences.putBoolean("projectorSammonParallel", savedParallel);
+            SimbrainPreferences.putInt("projectorSammonSampleSize", savedSampleSize);
+        }
+    }
+
+    private static void run(String name, Projector proj, ProjectSammon sammon, double[][] start, boolean parallel,
+                            int sampleSize, int iterations) {
+        for (int i = 0; i < start.length; i++) {
+            System.arraycopy(start[i], 0, proj.getDownstairs().getPoint(i).getVector(), 0, start[i].length);
+        }
+        sammon.setParallel(parallel);
+        sammon.setSampleSize(sampleSize);
+        sammon.setNeedsReInit(true);
+        long begin = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sammon.iterate();
+        }
+        long time = System.nanoTime() - begin;
+        System.out.printf("%-28s %6d ms  stress %.5f  reported closeness %.5f%n", name, time / 1_000_000,
+                stress(proj), sammon.getError());
+    }
+
+    /**
+     * Projector with random points in a space of the given dimension, clustered so that the projection has some
+     * structure to find.
+     */
+    private static Projector createProjector(int numPoints, int dims) {
+        Projector proj = new Projector(dims);
+        proj.setUseColorManager(false);
+        proj.setTolerance(-1);
+        Random random = new Random(1);
+        double[][] centers = new double[5][dims];
+        for (double[] center : centers) {
+            for (int d = 0; d < dims; d++) {
+                center[d] = random.nextGaussian() * 5;
+            }
+        }
+        for (int i = 0; i < numPoints; i++) {
+            double[] center = centers[i % centers.length];
+            double[] point = new double[dims];
+            for (int d = 0; d < dims; d++) {
+                point[d] = center[d] + random.nextGaussian();
+            }
+            proj.addDatapoint(new DataPoint(point));
+        }
+        return proj;
+    }
+
+    /**
+     * Exact Sammon stress of the current projection.
+     */
+    private static double stress(Projector proj) {
+        Dataset upstairs = proj.getUpstairs();
+        Dataset downstairs = proj.getDownstairs();
+        double sum = 0;
+        double e = 0;
+        for (int i = 0; i < proj.getNumPoints(); i++) {
+            for (int j = i + 1; j < proj.getNumPoints(); j++) {
+                double dstar = upstairs.getDistance(i, j);
+                double d = NTree.getDistance(downstairs.getPoint(i), downstairs.getPoint(j));
+                sum += dstar;
+                e += (dstar - d) * (dstar - d) / dstar;
+            }
+        }
+        return e / sum;
+    }
+}
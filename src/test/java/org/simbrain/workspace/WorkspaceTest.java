@@ -11,6 +11,7 @@ import org.simbrain.world.odorworld.OdorWorldComponent;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -62,6 +63,48 @@ public class WorkspaceTest {
 
     }
 
+    @Test
+    public void testUpdaterIterate() {
+        n1.forceSetActivation(.8);
+        workspace.iterate(1);
+        assertEquals(.8, n2.getActivation(), .0001);
+
+        // Couplings created after an update are picked up
+        Neuron n3 = new Neuron(n2.getNetwork());
+        n2.getNetwork().addNetworkModel(n3);
+        workspace.getCouplingManager().createCoupling(
+                workspace.getCouplingManager().getProducer(n1, "getActivation"),
+                workspace.getCouplingManager().getConsumer(n3, "addInputValue"));
+        workspace.getUpdater().setNumThreads(2);
+        workspace.iterate(1);
+        assertEquals(.8, n3.getActivation(), .0001);
+    }
+
+    @Test
+    public void testIndependentClustersIterate() {
+        // A second cluster, independent of the net1 -> net2 coupling
+        Network net3 = new Network();
+        Network net4 = new Network();
+        workspace.addWorkspaceComponent(new NetworkComponent("Net3", net3));
+        workspace.addWorkspaceComponent(new NetworkComponent("Net4", net4));
+        Neuron n3 = new Neuron(net3);
+        net3.addNetworkModel(n3);
+        Neuron n4 = new Neuron(net4);
+        net4.addNetworkModel(n4);
+        workspace.getCouplingManager().createCoupling(
+                workspace.getCouplingManager().getProducer(n3, "getActivation"),
+                workspace.getCouplingManager().getConsumer(n4, "addInputValue"));
+
+        workspace.getUpdater().setNumThreads(4);
+        for (int i = 1; i <= 10; i++) {
+            n1.forceSetActivation(.1 * i);
+            n3.forceSetActivation(-.1 * i);
+            workspace.iterate(1);
+            assertEquals(.1 * i, n2.getActivation(), .0001);
+            assertEquals(-.1 * i, n4.getActivation(), .0001);
+        }
+    }
+
     @Test
     public void testSerialization() throws IOException {
 
@@ -95,6 +138,17 @@ public class WorkspaceTest {
 
     }
 
+    @Test
+    public void testSaveAndOpenFile() throws IOException {
+        File file = File.createTempFile("workspaceTest", ".zip");
+        file.deleteOnExit();
+        workspace.save(file);
+        workspace.openWorkspace(file);
+
+        assertEquals(4, workspace.getComponentList().size());
+        assertEquals(1, workspace.getCouplingManager().getCouplings().size());
+    }
+
     @Test
     public void testZipMethods() throws IOException {
 
@@ -0,0 +1,161 @@
+package org.simbrain.workspace.batch;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.simbrain.network.NetworkComponent;
+import org.simbrain.network.core.Network;
+import org.simbrain.network.core.Neuron;
+import org.simbrain.network.core.Synapse;
+import org.simbrain.network.groups.NeuronGroup;
+import org.simbrain.network.neuron_update_rules.LinearRule;
+import org.simbrain.workspace.Workspace;
+import org.simbrain.workspace.serialization.WorkspaceSerializer;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HeadlessRunnerTest {
+
+    @TempDir
+    File dir;
+
+    File workspaceFile;
+
+    String activation;
+
+    /**
+     * Save a workspace with a neuron whose activation grows by .1 on each update.
+     */
+    @BeforeEach
+    public void saveWorkspace() throws Exception {
+        Workspace workspace = new Workspace();
+        Network net = new Network();
+        workspace.addWorkspaceComponent(new NetworkComponent("Net1", net));
+        Neuron neuron = new Neuron(net);
+        ((LinearRule) neuron.getUpdateRule()).setBias(.1);
+        net.addNetworkModel(neuron);
+        net.addNetworkModel(new Synapse(neuron, neuron, 1));
+        activation = "Net1/" + neuron.getId() + "/getActivation";
+        workspaceFile = new File(dir, "grow.zip");
+        try (OutputStream out = new FileOutputStream(workspaceFile)) {
+            new WorkspaceSerializer(workspace).serialize(out);
+        }
+        workspace.getUpdater().shutdown();
+    }
+
+    @Test
+    public void testRunUntil() throws Exception {
+        HeadlessRunner runner = new HeadlessRunner();
+        File out = new File(dir, "out");
+        out.mkdirs();
+        runner.parseArguments(new String[]{"-n", "50", "-p", activation, "-until", activation + ">.45",
+                "-o", out.getPath(), workspaceFile.getPath()});
+        HeadlessRunner.Result result = runner.run(workspaceFile);
+        assertTrue(result.conditionMet);
+        assertEquals(5, result.iterations);
+
+        List<String> lines = Files.readAllLines(new File(out, "grow.csv").toPath());
+        assertEquals("iteration,nanos," + activation, lines.get(0));
+        assertEquals(6, lines.size());
+        for (int i = 1; i < lines.size(); i++) {
+            String[] columns = lines.get(i).split(",");
+            assertEquals(Integer.toString(i), columns[0]);
+            assertEquals(.1 * i, Double.parseDouble(columns[2]), 1e-9);
+        }
+    }
+
+    @Test
+    public void testRunIterations() throws Exception {
+        HeadlessRunner runner = new HeadlessRunner();
+        runner.parseArguments(new String[]{"-n", "3", "-p", activation, "-o", dir.getPath(),
+                workspaceFile.getPath()});
+        HeadlessRunner.Result result = runner.run(workspaceFile);
+        assertFalse(result.conditionMet);
+        assertEquals(3, result.iterations);
+        assertEquals(4, Files.readAllLines(new File(dir, "grow.csv").toPath()).size());
+    }
+
+    @Test
+    public void testUnreadableComponentFails() throws Exception {
+        // Copy the workspace with every entry but the contents replaced by something that is not xml
+        File broken = new File(dir, "broken.zip");
+        try (ZipFile zip = new ZipFile(workspaceFile);
+             ZipOutputStream out = new ZipOutputStream(new FileOutputStream(broken))) {
+            for (ZipEntry entry : zip.stream().toArray(ZipEntry[]::new)) {
+                out.putNextEntry(new ZipEntry(entry.getName()));
+                if (entry.getName().endsWith("contents.xml")) {
+                    zip.getInputStream(entry).transferTo(out);
+                } else {
+                    out.write("not xml".getBytes());
+                }
+                out.closeEntry();
+            }
+        }
+        HeadlessRunner runner = new HeadlessRunner();
+        runner.parseArguments(new String[]{"-n", "3", "-o", dir.getPath(), broken.getPath()});
+        assertThrows(IOException.class, () -> runner.run(broken));
+    }
+
+    @Test
+    public void testFailedUpdateFails() throws Exception {
+        Workspace workspace = new Workspace();
+        Network net = new Network();
+        workspace.addWorkspaceComponent(new NetworkComponent("Net1", net));
+        NeuronGroup group = new NeuronGroup(net, 2);
+        net.addNetworkModel(group);
+        File file = new File(dir, "group.zip");
+        try (OutputStream out = new FileOutputStream(file)) {
+            new WorkspaceSerializer(workspace).serialize(out);
+        }
+        workspace.getUpdater().shutdown();
+
+        // Activations are an array, so checking the condition throws on the first update
+        HeadlessRunner runner = new HeadlessRunner();
+        runner.parseArguments(new String[]{"-n", "10", "-until", "Net1/" + group.getId() + "/getActivations>1",
+                "-o", dir.getPath(), file.getPath()});
+        assertThrows(IllegalStateException.class, () -> runner.run(file));
+    }
+
+    /**
+     * Run in a separate JVM and check that no Swing, Piccolo or jMonkeyEngine classes are loaded.
+     */
+    @Test
+    public void testNoGuiClassesLoaded() throws Exception {
+        File out = new File(dir, "out");
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        Process process = new ProcessBuilder(java, "-verbose:class", "-Djava.awt.headless=true",
+                "-cp", System.getProperty("java.class.path"), HeadlessRunner.class.getName(),
+                "-n", "10", "-p", activation, "-o", out.getPath(), workspaceFile.getPath())
+                .redirectErrorStream(true)
+                .start();
+        List<String> guiClasses = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.contains(" javax.swing.") || line.contains(" org.piccolo2d.")
+                        || line.contains(" com.jme3.")) {
+                    guiClasses.add(line);
+                }
+            }
+        }
+        assertTrue(process.waitFor(60, TimeUnit.SECONDS));
+        assertEquals(0, process.exitValue());
+        assertEquals(11, Files.readAllLines(new File(out, "grow.csv").toPath()).size());
+        assertEquals(List.of(), guiClasses);
+    }
+}
@@ -0,0 +1,116 @@
+package org.simbrain.workspace.batch;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.simbrain.network.NetworkComponent;
+import org.simbrain.network.core.Network;
+import org.simbrain.network.core.Neuron;
+import org.simbrain.network.neuron_update_rules.LinearRule;
+import org.simbrain.workspace.Workspace;
+import org.simbrain.workspace.serialization.WorkspaceTemplate;
+
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ParameterSweepTest {
+
+    WorkspaceTemplate template;
+
+    String neuronId;
+
+    @BeforeEach
+    public void setUpTemplate() {
+        Workspace workspace = new Workspace();
+        Network net = new Network();
+        workspace.addWorkspaceComponent(new NetworkComponent("Net1", net));
+        Neuron neuron = new Neuron(net);
+        net.addNetworkModel(neuron);
+        neuronId = neuron.getId();
+        template = WorkspaceTemplate.of(workspace);
+    }
+
+    private Neuron getNeuron(Workspace workspace) {
+        return ((NetworkComponent) workspace.getComponent("Net1")).getNetwork().getLooseNeuron(neuronId);
+    }
+
+    @Test
+    public void testInstancesAreIndependent() {
+        Workspace first = template.instantiate();
+        Workspace second = template.instantiate();
+        ParameterSweep.setParameter(first, "Net1/" + neuronId + "/updateRule.slope", "3");
+        assertEquals(3, ((LinearRule) getNeuron(first).getUpdateRule()).getSlope(), 0);
+        assertEquals(1, ((LinearRule) getNeuron(second).getUpdateRule()).getSlope(), 0);
+    }
+
+    @Test
+    public void testWildcardAndLabel() {
+        Workspace workspace = template.instantiate();
+        ParameterSweep.setParameter(workspace, "Net1/*/Activation", .25);
+        assertEquals(.25, getNeuron(workspace).getActivation(), 0);
+    }
+
+    @Test
+    public void testUnknownParameter() {
+        Workspace workspace = template.instantiate();
+        assertThrows(IllegalArgumentException.class,
+                () -> ParameterSweep.setParameter(workspace, "Net1/" + neuronId + "/noSuchParameter", 1));
+    }
+
+    @Test
+    public void testSweep() throws Exception {
+        ParameterSweep sweep = new ParameterSweep(template)
+                .addParameter("Net1/" + neuronId + "/activation", .2, .5)
+                .addParameter("Net1/" + neuronId + "/updateRule.slope", "1", "2", "3")
+                // Parameters are set in order, so the neuron is clamped at its new activation
+                .addParameter("Net1/" + neuronId + "/clamped", true)
+                .addProducer("Net1/" + neuronId + "/getActivation");
+        sweep.setIterations(5);
+        sweep.setParallelism(3);
+        assertEquals(6, sweep.getNumVariants());
+        assertArrayEquals(new Object[]{.5, "2", true}, sweep.getAssignment(4));
+
+        StringWriter out = new StringWriter();
+        sweep.run(out);
+        String[] lines = out.toString().split("\n");
+        assertEquals(7, lines.length);
+        Set<String> variants = new HashSet<>();
+        for (String line : Arrays.asList(lines).subList(1, lines.length)) {
+            String[] columns = line.split(",", -1);
+            variants.add(columns[0]);
+            assertEquals(Double.parseDouble(columns[1]), Double.parseDouble(columns[4]), 1e-9);
+            assertEquals("", columns[6]);
+        }
+        assertEquals(6, variants.size());
+    }
+
+    @Test
+    public void testRanges() {
+        Object[] values = ParameterSweep.parseValues("0:1:.1");
+        assertEquals(11, values.length);
+        assertEquals("0.7", values[7]);
+        assertEquals("1", values[10]);
+        assertArrayEquals(new Object[]{"2", "4", "6"}, ParameterSweep.parseValues("2:7:2"));
+        assertArrayEquals(new Object[]{"a", "b"}, ParameterSweep.parseValues("a,b"));
+    }
+
+    @Test
+    public void testIntegerRange() {
+        Object[] values = ParameterSweep.parseValues("1:3:1");
+        Workspace workspace = template.instantiate();
+        for (Object value : values) {
+            ParameterSweep.setParameter(workspace, "Net1/" + neuronId + "/updatePriority", value);
+            assertEquals(Integer.parseInt((String) value), getNeuron(workspace).getUpdatePriority());
+        }
+
+        // Fractional values are also accepted by double parameters
+        for (Object value : ParameterSweep.parseValues("0:1:.5")) {
+            ParameterSweep.setParameter(workspace, "Net1/" + neuronId + "/updateRule.slope", value);
+            assertEquals(Double.parseDouble((String) value), ((LinearRule) getNeuron(workspace).getUpdateRule())
+                    .getSlope(), 0);
+        }
+    }
+}
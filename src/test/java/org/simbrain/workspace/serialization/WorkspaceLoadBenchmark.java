@@ -0,0 +1,72 @@
+package org.simbrain.workspace.serialization;
+
+import org.simbrain.network.NetworkComponent;
+import org.simbrain.network.connections.AllToAll;
+import org.simbrain.network.core.Network;
+import org.simbrain.network.groups.NeuronGroup;
+import org.simbrain.network.groups.SynapseGroup;
+import org.simbrain.workspace.Workspace;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * Measures how long it takes to open a saved workspace, from a file and from a stream. Not run with the unit tests.
+ * Run the main method, optionally passing the number of neurons per group (default 300, which gives 90,000 synapses
+ * per synapse group) and the number of repetitions.
+ */
+public class WorkspaceLoadBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int groupSize = args.length > 0 ? Integer.parseInt(args[0]) : 300;
+        int repetitions = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        File file = File.createTempFile("workspaceLoadBenchmark", ".zip");
+        file.deleteOnExit();
+        Workspace workspace = createWorkspace(groupSize);
+        try (OutputStream out = new FileOutputStream(file)) {
+            new WorkspaceSerializer(workspace).serialize(out);
+        }
+        System.out.printf("Saved %d neurons per group to %s (%d kB)%n", groupSize, file, file.length() / 1024);
+
+        for (int i = 0; i < repetitions; i++) {
+            Workspace fromFile = new Workspace();
+            long start = System.nanoTime();
+            new WorkspaceSerializer(fromFile).deserialize(file);
+            long fileTime = System.nanoTime() - start;
+
+            Workspace fromStream = new Workspace();
+            start = System.nanoTime();
+            try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+                new WorkspaceSerializer(fromStream).deserialize(in);
+            }
+            long streamTime = System.nanoTime() - start;
+
+            System.out.printf("Run %d: file %d ms, stream %d ms%n", i + 1, fileTime / 1_000_000,
+                    streamTime / 1_000_000);
+        }
+    }
+
+    /**
+     * A workspace with one network of three groups connected all to all.
+     */
+    private static Workspace createWorkspace(int groupSize) {
+        Workspace workspace = new Workspace();
+        Network net = new Network();
+        workspace.addWorkspaceComponent(new NetworkComponent("Net", net));
+        NeuronGroup input = new NeuronGroup(net, groupSize);
+        NeuronGroup hidden = new NeuronGroup(net, groupSize);
+        NeuronGroup output = new NeuronGroup(net, groupSize);
+        net.addNetworkModels(List.of(input, hidden, output));
+        net.addNetworkModels(List.of(
+                SynapseGroup.createSynapseGroup(input, hidden, new AllToAll()),
+                SynapseGroup.createSynapseGroup(hidden, output, new AllToAll())));
+        return workspace;
+    }
+}
@@ -2,7 +2,16 @@ package org.simbrain.world.odorworld;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.simbrain.util.environment.SmellSource;
+import org.simbrain.util.math.DecayFunctions.GaussianDecayFunction;
+import org.simbrain.util.math.DecayFunctions.LinearDecayFunction;
+import org.simbrain.util.math.SimbrainMath;
 import org.simbrain.world.odorworld.entities.OdorWorldEntity;
+import org.simbrain.world.odorworld.sensors.SmellSensor;
+
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -48,4 +57,97 @@ public class OdorWorldTest {
         world.getTileMap().getLayer("Tile Layer 1").setProperty("collision", "true");
         assertTrue(world.getTileMap().getLayer("Tile Layer 1").getCollision());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testEntitiesInRadiusMatchesFullScan() {
+        for (boolean wrapAround : new boolean[]{true, false}) {
+            world = new OdorWorld();
+            world.setWrapAround(wrapAround);
+            Random random = new Random(42);
+            for (int i = 0; i < 50; i++) {
+                OdorWorldEntity entity = new OdorWorldEntity(world);
+                world.addEntity(entity);
+                entity.setLocation(random.nextDouble() * world.getWidth(), random.nextDouble() * world.getHeight());
+            }
+            // Move entities after the grid has been built
+            for (OdorWorldEntity entity : world.getEntityList()) {
+                entity.getEntitiesInRadius(1);
+                entity.setLocation(random.nextDouble() * world.getWidth(), random.nextDouble() * world.getHeight());
+            }
+            world.deleteEntity(world.getEntityList().get(3));
+            for (OdorWorldEntity entity : world.getEntityList()) {
+                for (double radius : new double[]{10, 80, 200}) {
+                    List<OdorWorldEntity> expected = world.getEntityList().stream()
+                            .filter(e -> entity.isInRadius(e, radius))
+                            .collect(Collectors.toList());
+                    assertEquals(expected, entity.getEntitiesInRadius(radius));
+                }
+                List<OdorWorldEntity> expected = world.getEntityList().stream()
+                        .filter(e -> entity.getCollisionBound().isInCollisionRadius(e.getCollisionBound()))
+                        .collect(Collectors.toList());
+                assertEquals(expected, entity.getEntitiesInCollisionRadius());
+            }
+        }
+    }
+
+    /**
+     * Sum the smell vectors of every entity, as smell sensors did before entities were found through the grid.
+     */
+    private static double[] smellAllEntities(SmellSensor sensor, OdorWorldEntity parent) {
+        double[] ret = new double[parent.getParentWorld().getSmellDimension()];
+        for (OdorWorldEntity entity : parent.getParentWorld().getEntityList()) {
+            if (entity != parent) {
+                double[] smell = entity.getSmellVector(sensor.getLocation());
+                if (smell != null) {
+                    ret = SimbrainMath.addVector(ret, smell);
+                }
+            }
+        }
+        return ret;
+    }
+
+    @Test
+    public void testSmellSensorMatchesFullScan() {
+        for (boolean wrapAround : new boolean[]{true, false}) {
+            world = new OdorWorld();
+            world.setWrapAround(wrapAround);
+            Random random = new Random(7);
+            for (int i = 0; i < 40; i++) {
+                OdorWorldEntity entity = new OdorWorldEntity(world);
+                world.addEntity(entity);
+                double[] stimulus = new double[2 + random.nextInt(3)];
+                for (int j = 0; j < stimulus.length; j++) {
+                    stimulus[j] = random.nextDouble();
+                }
+                entity.setSmellSource(new SmellSource(stimulus,
+                        i % 2 == 0 ? LinearDecayFunction.create() : GaussianDecayFunction.create(),
+                        20 + random.nextDouble() * 100));
+                entity.setLocation(random.nextDouble() * world.getWidth(), random.nextDouble() * world.getHeight());
+            }
+            OdorWorldEntity mouse = new OdorWorldEntity(world);
+            world.addEntity(mouse);
+            SmellSensor sensor = new SmellSensor(mouse);
+            for (int i = 0; i < 50; i++) {
+                mouse.setLocation(random.nextDouble() * world.getWidth(), random.nextDouble() * world.getHeight());
+                sensor.update();
+                assertArrayEquals(smellAllEntities(sensor, mouse), sensor.getCurrentValues(), 1e-12);
+            }
+        }
+    }
+
+    @Test
+    public void testSmellSensorWithNothingInRange() {
+        world.setWrapAround(false);
+        OdorWorldEntity cheese = new OdorWorldEntity(world);
+        world.addEntity(cheese);
+        cheese.setSmellSource(new SmellSource(new double[]{1, 2, 3}, LinearDecayFunction.create(), 10));
+        cheese.setLocation(0, 0);
+        OdorWorldEntity mouse = new OdorWorldEntity(world);
+        world.addEntity(mouse);
+        mouse.setLocation(world.getWidth() / 2, world.getHeight() / 2);
+        SmellSensor sensor = new SmellSensor(mouse);
+        sensor.update();
+        assertArrayEquals(new double[3], sensor.getCurrentValues(), 0);
+        assertArrayEquals(smellAllEntities(sensor, mouse), sensor.getCurrentValues(), 0);
+    }
+}
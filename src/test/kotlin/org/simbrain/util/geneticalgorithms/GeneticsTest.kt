@@ -6,6 +6,7 @@ import org.simbrain.network.NetworkComponent
 import org.simbrain.network.core.Network
 import org.simbrain.network.core.activations
 import org.simbrain.workspace.Workspace
+import java.util.concurrent.atomic.AtomicInteger
 
 class GeneticsTest {
 
@@ -262,4 +263,76 @@ class GeneticsTest {
 
         build.eval()
     }
-}
\ No newline at end of file
+    @Test
+    fun `pooled objects are shared by copies and cleared before reuse`() {
+        val created = AtomicInteger()
+        val environment = evolutionarySimulation {
+
+            val network by pooled({ created.incrementAndGet(); Network() }) { clearForBuild() }
+
+            val nodes = chromosome(3) {
+                nodeGene()
+            }
+
+            onBuild {
+                network {
+                    +nodes
+                }
+            }
+
+            onEval {
+                assertEquals(3, network.flatNeuronList.size)
+                0.0
+            }
+        }
+
+        val stats = mutableListOf<Evaluator.GenerationStats>()
+        evaluator(environment) {
+            parallelism = 2
+            runUntil { generation == 3 }
+        }.start().onEachGenerationStats { stats.add(it) }.best
+
+        assertTrue(created.get() < 10)
+        assertEquals(3, stats.size)
+        assertEquals(100, stats[0].agents)
+    }
+
+    @Test
+    fun `memoized survivors are not evaluated again`() {
+        val evaluations = AtomicInteger()
+        val environment = evolutionarySimulation {
+
+            val network by pooledNetwork()
+
+            val nodes = chromosome(2) {
+                nodeGene()
+            }
+
+            onBuild {
+                network {
+                    +nodes
+                }
+            }
+
+            onMutate {
+                nodes.forEach { it.mutate { activation += 1.0 } }
+            }
+
+            onEval {
+                evaluations.incrementAndGet()
+                nodes.products.activations.sum()
+            }
+        }
+
+        val stats = mutableListOf<Evaluator.GenerationStats>()
+        evaluator(environment) {
+            eliminationRatio = 0.5
+            memoizeFitness = true
+            runUntil { generation == 2 }
+        }.start().onEachGenerationStats { stats.add(it) }.best
+
+        // Survivors of the first generation keep their fitness in the second
+        assertEquals(150, evaluations.get())
+        assertEquals(50, stats[1].memoized)
+    }
+}
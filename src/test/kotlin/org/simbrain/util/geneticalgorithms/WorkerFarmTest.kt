@@ -0,0 +1,126 @@
+package org.simbrain.util.geneticalgorithms
+
+import org.junit.jupiter.api.Assertions.assertArrayEquals
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Test
+import java.io.File
+import kotlin.system.exitProcess
+
+/**
+ * Evolves five integers. If the system property "crashMarker" names a file that does not exist, the first evaluation
+ * creates it and kills the worker. The "hangMarker" property does the same but leaves the worker hanging.
+ */
+object IntSumFactory : AgentBuilderFactory {
+
+    override fun create() = evolutionarySimulation(1) {
+
+        val ints = chromosome(5) {
+            intGene { value = 1 }
+        }
+
+        onMutate {
+            ints.forEach {
+                it.mutate { value += random.nextInt(-5, 5) }
+            }
+        }
+
+        onBuild {
+            +ints
+        }
+
+        onEval {
+            System.getProperty("crashMarker")?.let { File(it) }?.let {
+                if (it.createNewFile()) {
+                    exitProcess(1)
+                }
+            }
+            System.getProperty("hangMarker")?.let { File(it) }?.let {
+                if (it.createNewFile()) {
+                    Thread.sleep(Long.MAX_VALUE)
+                }
+            }
+            ints.products.sum().toDouble() + evalRand.nextDouble()
+        }
+    }
+}
+
+class WorkerFarmTest {
+
+    /**
+     * A population a few generations old, copied and mutated as by the evaluator.
+     */
+    private fun population(): List<AgentBuilder> {
+        var population = List(6) { IntSumFactory.create().copy(it) }
+        repeat(3) {
+            population = population.map { it.copy().apply { mutate() } }
+        }
+        return population
+    }
+
+    @Test
+    fun `workers give the same fitness as local evaluation`() {
+        val population = population()
+        val seeds = population.map { it.random.nextInt() }
+        val local = population.zip(seeds).map { (builder, seed) -> builder.build(seed).eval() }.toDoubleArray()
+
+        // Fresh copies of the same builders, which will draw the same eval seeds
+        val replayed = population.map { builder ->
+            IntSumFactory.create().let { root ->
+                builder.lineage.fold(root) { b, step ->
+                    when (step) {
+                        is LineageStep.Copy -> b.copy(step.seed)
+                        LineageStep.Mutation -> b.apply { mutate() }
+                    }
+                }
+            }
+        }
+
+        WorkerFarm(IntSumFactory::class.java, numWorkers = 2).use { farm ->
+            assertArrayEquals(local, farm.evaluate(replayed), 0.0)
+        }
+    }
+
+    @Test
+    fun `crashed workers are restarted`() {
+        val marker = File.createTempFile("crash", ".marker").apply { delete() }
+        try {
+            WorkerFarm(IntSumFactory::class.java, numWorkers = 1, jvmArgs = listOf("-DcrashMarker=$marker")).use {
+                assertEquals(6, it.evaluate(population()).size)
+                assertEquals(1, it.restarts)
+            }
+        } finally {
+            marker.delete()
+        }
+    }
+
+    @Test
+    fun `hung workers are restarted`() {
+        val marker = File.createTempFile("hang", ".marker").apply { delete() }
+        try {
+            WorkerFarm(
+                IntSumFactory::class.java,
+                numWorkers = 1,
+                jvmArgs = listOf("-DhangMarker=$marker"),
+                evaluationTimeout = 5000
+            ).use {
+                assertEquals(6, it.evaluate(population()).size)
+                assertEquals(1, it.restarts)
+            }
+        } finally {
+            marker.delete()
+        }
+    }
+
+    @Test
+    fun `evaluator runs on workers`() {
+        WorkerFarm(IntSumFactory::class.java, numWorkers = 2).use { farm ->
+            val result = evaluator(IntSumFactory.create()) {
+                workerFarm = farm
+                optimizationMethod = Evaluator.OptimizationMethod.MINIMIZE_FITNESS
+                runUntil { generation == 3 }
+            }.start()
+            result.best
+            assertEquals(3, result.finalGenerationNumber)
+        }
+    }
+}
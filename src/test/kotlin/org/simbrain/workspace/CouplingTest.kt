@@ -1,12 +1,14 @@
 package org.simbrain.workspace
 
 
+import org.junit.jupiter.api.Assertions.assertArrayEquals
 import org.junit.jupiter.api.Assertions.assertEquals
 import org.junit.jupiter.api.Assertions.assertTrue
 import org.junit.jupiter.api.Test
 import org.simbrain.network.NetworkComponent
 import org.simbrain.network.core.Network
 import org.simbrain.network.core.Neuron
+import org.simbrain.network.groups.NeuronGroup
 import org.simbrain.util.complement
 import org.simbrain.workspace.couplings.Coupling
 
@@ -241,4 +243,38 @@ class CouplingTest {
         assertEquals(.5, neuron2.activation, 0.0001)
         assertEquals(.5, neuron3.activation, 0.0001)
     }
+
+    @Test
+    fun `check double producers and consumers without boxing`() {
+        val neuron = Neuron(network)
+        network.addNetworkModel(neuron)
+        neuron.forceSetActivation(.25)
+        with(couplingManager) {
+            val producer = neuron.getProducer("getActivation")
+            val consumer = neuron.getConsumer("forceSetActivation")
+            assertTrue(producer.isCompiled)
+            assertTrue(consumer.isCompiled)
+            assertEquals(.25, producer.doubleValue, 0.0)
+            consumer.setDoubleValue(.75)
+        }
+        assertEquals(.75, neuron.activation, 0.0)
+    }
+
+    @Test
+    fun `check neuron group getActivations coupling with forceSetActivations`() {
+        val ng1 = NeuronGroup(network, 3)
+        val ng2 = NeuronGroup(network, 3)
+        network.addNetworkModels(listOf(ng1, ng2))
+        ng1.forceSetActivations(doubleArrayOf(.1, .2, .3))
+        ng2.setClamped(true)
+        with(couplingManager) {
+            val producer = ng1.getProducer("getActivations")
+            val consumer = ng2.getConsumer("forceSetActivations")
+            assertTrue(producer.isCompiled)
+            assertTrue(consumer.isCompiled)
+            producer couple consumer
+        }
+        workspace.simpleIterate()
+        assertArrayEquals(doubleArrayOf(.1, .2, .3), ng2.activations, 0.0)
+    }
 }